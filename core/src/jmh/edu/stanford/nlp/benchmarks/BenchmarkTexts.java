@@ -0,0 +1,150 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Texts for the benchmarks, made up of sentences with the things that make tokenizing slow:
+ * abbreviations, contractions, numbers, quotes, URLs, hyphenated words and markup.
+ * They are built from a fixed seed, so every run sees the same text.
+ */
+public class BenchmarkTexts {
+
+  private BenchmarkTexts() {} // static methods
+
+  /** The sizes of text benchmarked: a chat message, a news story, and a book. */
+  public enum Size {
+    SHORT(80), MEDIUM(5_000), HUGE(5_000_000);
+
+    public final int chars;
+
+    Size(int chars) {
+      this.chars = chars;
+    }
+  }
+
+  private static final String[] ENGLISH = {
+      "The U.S. Senate voted 52-48 on Tuesday to confirm Dr. Smith's nomination.",
+      "\"We didn't expect it,\" said Mr. O'Neil, who's worked at Acme Corp. since 1998.",
+      "Shares rose 3.5% to $12.75 after the report (see http://www.example.com/news?id=42).",
+      "It's a well-known, long-standing problem -- one that e-mail filters can't solve.",
+      "She'll arrive at 10:30 a.m. on Jan. 5th; call +1 (650) 555-0123 if you're late!",
+      "Results were mixed: 1/2 of the 3,000 respondents said \"yes\", the rest said no...",
+      "lol that's gr8 :) cu @ 7?? #weekend",
+      "The <b>bold</b> claim &amp; its rebuttal appeared in Nature & Science.",
+  };
+
+  private static final String[] SPANISH = {
+      "El Sr. García dijo que no quería dárselo a nadie del ayuntamiento.",
+      "¿Vamos al cine? ¡Claro que sí! Compraremos las entradas a las 8:30.",
+      "La economía creció un 2,5% en el tercer trimestre, según el INE.",
+      "Dámelo ahora, por favor; el tren sale de la estación del norte.",
+  };
+
+  private static final String[] FRENCH = {
+      "M. Dupont a dit qu'il n'était pas d'accord avec l'Assemblée nationale.",
+      "Aujourd'hui, le taux a augmenté de 2,5 % selon l'INSEE.",
+      "« C'est-à-dire ? » demanda-t-elle au porte-parole du gouvernement.",
+      "Les enfants jusqu'à 12 ans entrent gratuitement au musée d'Orsay.",
+  };
+
+  /** English text of about the given size. */
+  public static String english(Size size) {
+    return build(ENGLISH, size.chars);
+  }
+
+  /** Spanish text of about the given size. */
+  public static String spanish(Size size) {
+    return build(SPANISH, size.chars);
+  }
+
+  /** French text of about the given size. */
+  public static String french(Size size) {
+    return build(FRENCH, size.chars);
+  }
+
+  private static final String[] NOVEL = {
+      "The rain had not stopped since morning, and Mr. Jones' carriage was late.",
+      "“You needn't wait for me,” said Elizabeth, turning from the window.",
+      "“But he told me, ‘Never leave her alone,’ and I mean to keep my word,” he answered.",
+      "She laughed. “Then you'll be standing in the hall until Tuesday.”",
+      "“Is that what he said? ‘Never’? How like him,” she said, “to make a promise for you.”",
+      "Nobody spoke; the clock's ticking filled the room's silence for a long while.",
+      "\"It's the '48 vintage,\" the butler said, \"and the last of it.\"",
+      "“I wonder,” she began, and then stopped, as if the rest of it weren't hers to say.",
+  };
+
+  /**
+   * Prose of about the given size, written as novels are: narration and dialogue, with
+   * quotes inside quotes, apostrophes, and now and then plain ASCII quotes.
+   */
+  public static String novel(Size size) {
+    return build(NOVEL, size.chars);
+  }
+
+  private static final String HTML_HEAD =
+      "<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\"/>\n" +
+      "<title>Markets close higher &amp; bonds rally</title>\n" +
+      "<link rel=\"stylesheet\" href=\"/static/css/site.css\"/>\n</head>\n<body class=\"article-page\">\n" +
+      "<header id=\"top\"><nav class=\"site-nav\"><ul>\n" +
+      "<li class=\"nav-item\"><a href=\"/\">Home</a></li>\n" +
+      "<li class=\"nav-item\"><a href=\"/business\" title=\"Business news\">Business</a></li>\n" +
+      "<li class=\"nav-item\"><a href=\"/world\">World</a></li>\n" +
+      "</ul></nav></header>\n<main>\n";
+
+  private static final String HTML_TAIL =
+      "</main>\n<footer><p class=\"copyright\">&copy; 2020 Example News. <a href=\"/terms\">Terms</a></p></footer>\n" +
+      "</body>\n</html>\n";
+
+  /**
+   * A web page of about the given size, laid out as news pages usually are: navigation, then
+   * articles of paragraphs with links, emphasis, quotes and dates, with attributes on most tags.
+   * Empty elements are closed, XHTML style, so that cleanxml doesn't warn of unclosed tags.
+   */
+  public static String html(Size size) {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder(size.chars + 1000);
+    sb.append(HTML_HEAD);
+    int article = 0;
+    while (sb.length() < size.chars) {
+      article++;
+      sb.append("<article class=\"story\" id=\"story-").append(article).append("\" data-author=\"J. Smith\">\n");
+      sb.append("<h2 class=\"headline\"><a href=\"/story/").append(article).append("\">")
+          .append(ENGLISH[random.nextInt(ENGLISH.length)]).append("</a></h2>\n");
+      sb.append("<div class=\"byline\">By <span class=\"author\">J. Smith</span>, <time datetime=\"2020-01-0")
+          .append(1 + random.nextInt(9)).append("\">Jan. 5</time></div>\n");
+      int paragraphs = 1 + random.nextInt(5);
+      for (int i = 0; i < paragraphs; i++) {
+        sb.append(i == 2 ? "<blockquote cite=\"https://example.com/source\"><p>" : "<p class=\"body-text\">");
+        int sentences = 1 + random.nextInt(4);
+        for (int j = 0; j < sentences; j++) {
+          if (random.nextInt(4) == 0) {
+            sb.append("<a href=\"https://example.com/").append(random.nextInt(1000)).append("\" rel=\"nofollow\">See more</a> ");
+          }
+          if (random.nextInt(5) == 0) {
+            sb.append("<em>Update:</em> ");
+          }
+          sb.append(ENGLISH[random.nextInt(ENGLISH.length)]).append(' ');
+        }
+        sb.append(i == 2 ? "</p></blockquote>\n" : "</p>\n");
+        if (random.nextInt(6) == 0) {
+          sb.append("<img src=\"/img/").append(random.nextInt(100)).append(".jpg\" alt=\"photo\"/><br/>\n");
+        }
+      }
+      sb.append("</article>\n");
+    }
+    sb.append(HTML_TAIL);
+    return sb.toString();
+  }
+
+  /** Sentences drawn at random, with paragraph breaks every few sentences. */
+  private static String build(String[] sentences, int chars) {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder(chars + 200);
+    while (sb.length() < chars) {
+      sb.append(sentences[random.nextInt(sentences.length)]);
+      sb.append(random.nextInt(5) == 0 ? "\n\n" : " ");
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,73 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.CleanXmlAnnotator;
+import edu.stanford.nlp.pipeline.TokenizerAnnotator;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of removing the markup from web pages with the cleanxml annotator, with its default
+ * settings and with tags for sentences, sections, dates, quotes and links configured as for web
+ * text.  Each operation cleans a fresh copy of the page's tokens, since cleaning changes them;
+ * the copying is a small part of the time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CleanXmlBenchmark {
+
+  @Param({"SHORT", "MEDIUM", "HUGE"})
+  public BenchmarkTexts.Size size;
+
+  @Param({"default", "web"})
+  public String config;
+
+  private String html;
+  private List<CoreLabel> tokens;
+  private CleanXmlAnnotator cleaner;
+
+  @Setup
+  public void setUp() {
+    html = BenchmarkTexts.html(size);
+    Annotation annotation = new Annotation(html);
+    new TokenizerAnnotator(false, new Properties(), null).annotate(annotation);
+    tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    Properties props = new Properties();
+    if (config.equals("web")) {
+      props = PropertiesUtils.asProperties(
+          "clean.xmltags", ".*",
+          "clean.sentenceendingtags", "p|div|br|li|h[1-6]|title|blockquote",
+          "clean.singlesentencetags", "title|h[1-6]",
+          "clean.datetags", "time",
+          "clean.sectiontags", "article",
+          "clean.sectionAnnotations", "sectionID=article[id],author=article[data-author]",
+          "clean.quotetags", "blockquote",
+          "clean.tokenAnnotations", "link=a[href]");
+    }
+    cleaner = new CleanXmlAnnotator(props);
+  }
+
+  @Benchmark
+  public List<CoreLabel> clean() {
+    List<CoreLabel> copy = new ArrayList<>(tokens.size());
+    for (CoreLabel token : tokens) {
+      copy.add(new CoreLabel(token));
+    }
+    Annotation annotation = new Annotation(html);
+    annotation.set(CoreAnnotations.TokensAnnotation.class, copy);
+    cleaner.annotate(annotation);
+    return annotation.get(CoreAnnotations.TokensAnnotation.class);
+  }
+
+}
@@ -0,0 +1,95 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.QuoteAnnotator;
+import edu.stanford.nlp.pipeline.TokenizerAnnotator;
+import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of finding quotes, on novels of short, medium and huge size and on texts made
+ * to be slow: many quotes which are never closed, each making the rest of the text be searched
+ * again, and quotes nested inside each other thousands deep.
+ * Run with the gc profiler ({@code ./gradlew jmh}) to see the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuoteBenchmark {
+
+  @Param({"SHORT", "MEDIUM", "HUGE"})
+  public BenchmarkTexts.Size size;
+
+  private String novel;
+  private String unclosed;
+  private String nested;
+  private QuoteAnnotator quotes;
+  private Annotation annotation;
+
+  @Setup
+  public void setUp() {
+    novel = BenchmarkTexts.novel(size);
+    unclosed = repeat("He said “wait and ", size.chars);
+    StringBuilder sb = new StringBuilder();
+    int depth = 0;
+    while (sb.length() < size.chars / 2) {
+      sb.append(depth % 2 == 0 ? "“so " : "‘so ");
+      depth++;
+    }
+    sb.append("deep");
+    while (depth > 0) {
+      depth--;
+      sb.append(depth % 2 == 0 ? " ”" : " ’");
+    }
+    nested = sb.toString();
+
+    Properties props = new Properties();
+    props.setProperty("quote.attributeQuotes", "false");
+    props.setProperty("quote.extractUnclosedQuotes", "true");
+    quotes = new QuoteAnnotator("quote", props, false);
+    annotation = new Annotation(novel);
+    new TokenizerAnnotator(false, new Properties(), null).annotate(annotation);
+    new WordsToSentencesAnnotator(false).annotate(annotation);
+  }
+
+  private static String repeat(String s, int chars) {
+    StringBuilder sb = new StringBuilder(chars + s.length());
+    while (sb.length() < chars) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  @Benchmark
+  public Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>> novel() {
+    return quotes.getQuotes(novel);
+  }
+
+  @Benchmark
+  public Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>> unclosed() {
+    return quotes.getQuotes(unclosed);
+  }
+
+  @Benchmark
+  public Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>> nested() {
+    return quotes.getQuotes(nested);
+  }
+
+  /** The whole annotator on a tokenized and sentence split novel, making the quote annotations. */
+  @Benchmark
+  public List<CoreMap> annotateNovel() {
+    quotes.annotate(annotation);
+    return annotation.get(CoreAnnotations.QuotationsAnnotation.class);
+  }
+
+}
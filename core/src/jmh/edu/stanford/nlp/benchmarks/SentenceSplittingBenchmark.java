@@ -0,0 +1,63 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.TokenizerAnnotator;
+import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
+import edu.stanford.nlp.process.PTBTokenizer;
+import edu.stanford.nlp.process.WordToSentenceProcessor;
+import edu.stanford.nlp.util.CoreMap;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of sentence splitting alone, on tokens made beforehand, and of tokenizing and
+ * sentence splitting a document end to end with the annotators, on short, medium and huge texts.
+ * Run with the gc profiler ({@code ./gradlew jmh}) to see the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SentenceSplittingBenchmark {
+
+  @Param({"SHORT", "MEDIUM", "HUGE"})
+  public BenchmarkTexts.Size size;
+
+  private String text;
+  private List<CoreLabel> tokens;
+  private WordToSentenceProcessor<CoreLabel> splitter;
+  private TokenizerAnnotator tokenizer;
+  private WordsToSentencesAnnotator ssplit;
+
+  @Setup
+  public void setUp() {
+    text = BenchmarkTexts.english(size);
+    tokens = PTBTokenizer.PTBTokenizerFactory.newCoreLabelTokenizerFactory("invertible")
+        .getTokenizer(new StringReader(text)).tokenize();
+    splitter = new WordToSentenceProcessor<>();
+    tokenizer = new TokenizerAnnotator(false, new Properties(), null);
+    ssplit = new WordsToSentencesAnnotator(false);
+  }
+
+  @Benchmark
+  public List<List<CoreLabel>> wordToSentenceProcessor() {
+    return splitter.process(tokens);
+  }
+
+  @Benchmark
+  public List<CoreMap> tokenizeAndSplit() {
+    Annotation annotation = new Annotation(text);
+    tokenizer.annotate(annotation);
+    ssplit.annotate(annotation);
+    return annotation.get(CoreAnnotations.SentencesAnnotation.class);
+  }
+
+}
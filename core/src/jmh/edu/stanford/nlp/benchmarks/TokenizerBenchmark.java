@@ -0,0 +1,109 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.international.french.process.FrenchTokenizer;
+import edu.stanford.nlp.international.spanish.process.SpanishTokenizer;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.process.CoreLabelTokenFactory;
+import edu.stanford.nlp.process.PTBTokenizer;
+import edu.stanford.nlp.process.TokenizerFactory;
+import edu.stanford.nlp.process.WhitespaceTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of the tokenizers on short, medium and huge texts.  Each operation tokenizes
+ * one text; the tokens counter gives tokens per second.  Run with the gc profiler
+ * ({@code ./gradlew jmh}) to see the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+
+  @Param({"SHORT", "MEDIUM", "HUGE"})
+  public BenchmarkTexts.Size size;
+
+  private String english;
+  private String spanish;
+  private String french;
+
+  private TokenizerFactory<CoreLabel> ptb;
+  private PTBTokenizer.PTBTokenizerFactory<CoreLabel> ptbFactory;
+  private TokenizerFactory<CoreLabel> whitespace;
+  private TokenizerFactory<CoreLabel> spanishFactory;
+  private TokenizerFactory<CoreLabel> frenchFactory;
+  private ExecutorService threads;
+
+  /** Counts tokens, which JMH reports as a rate alongside the operations. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Tokens {
+    public long tokens;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      tokens = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    english = BenchmarkTexts.english(size);
+    spanish = BenchmarkTexts.spanish(size);
+    french = BenchmarkTexts.french(size);
+    ptbFactory = PTBTokenizer.PTBTokenizerFactory.newCoreLabelTokenizerFactory("invertible");
+    ptb = ptbFactory;
+    whitespace = new WhitespaceTokenizer.WhitespaceTokenizerFactory<>(new CoreLabelTokenFactory());
+    spanishFactory = SpanishTokenizer.factory(new CoreLabelTokenFactory(), "invertible");
+    frenchFactory = FrenchTokenizer.factory(new CoreLabelTokenFactory(), "invertible");
+    threads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  @TearDown
+  public void tearDown() {
+    threads.shutdown();
+  }
+
+  private static List<CoreLabel> tokenize(TokenizerFactory<CoreLabel> factory, String text, Tokens counter) {
+    List<CoreLabel> tokens = factory.getTokenizer(new StringReader(text)).tokenize();
+    counter.tokens += tokens.size();
+    return tokens;
+  }
+
+  @Benchmark
+  public List<CoreLabel> ptb(Tokens counter) {
+    return tokenize(ptb, english, counter);
+  }
+
+  /** PTB tokenization of segments of the text in parallel, on all the processors. */
+  @Benchmark
+  public List<CoreLabel> ptbParallel(Tokens counter) {
+    List<CoreLabel> tokens = ptbFactory.tokenize(english, 1 << 16, threads);
+    counter.tokens += tokens.size();
+    return tokens;
+  }
+
+  @Benchmark
+  public List<CoreLabel> whitespace(Tokens counter) {
+    return tokenize(whitespace, english, counter);
+  }
+
+  @Benchmark
+  public List<CoreLabel> spanish(Tokens counter) {
+    return tokenize(spanishFactory, spanish, counter);
+  }
+
+  @Benchmark
+  public List<CoreLabel> french(Tokens counter) {
+    return tokenize(frenchFactory, french, counter);
+  }
+
+}
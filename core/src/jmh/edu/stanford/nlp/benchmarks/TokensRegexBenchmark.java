@@ -0,0 +1,92 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.tokensregex.TokenSequenceMatcher;
+import edu.stanford.nlp.ling.tokensregex.TokenSequencePattern;
+import edu.stanford.nlp.process.PTBTokenizer;
+import edu.stanford.nlp.process.WordToSentenceProcessor;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of finding the matches of a set of TokensRegex rules in each sentence of short, medium
+ * and huge texts: rules made of nodes, repeats and disjunctions only, which are compiled to an
+ * automaton, and rules with capture groups, which are matched by simulating the NFA.
+ * Run with the gc profiler ({@code ./gradlew jmh}) to see the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokensRegexBenchmark {
+
+  private static final String[] SIMPLE_RULES = {
+      "/Mr\\.|Mrs\\.|Dr\\./ /[A-Z].*/+",
+      "/[0-9][0-9.,]*/ /%|percent/",
+      "/said|says/ /Mr\\.|Dr\\./? /[A-Z].*/",
+      "[]{0,2} /can't|didn't|won't|n't/",
+      "/\\$/ /[0-9].*/",
+      "/[0-9]+:[0-9]+/ /a\\.m\\.|p\\.m\\./?",
+      "/(?i)the/ []? /Senate|report|problem/",
+      "/http.*/ | /.*@.*/",
+  };
+
+  private static final String[] CAPTURING_RULES = {
+      "(/Mr\\.|Mrs\\.|Dr\\./) (/[A-Z].*/+)",
+      "(/[0-9][0-9.,]*/) (?$unit /%|percent/)",
+  };
+
+  @Param({"SHORT", "MEDIUM", "HUGE"})
+  public BenchmarkTexts.Size size;
+
+  private List<List<CoreLabel>> sentences;
+  private List<TokenSequencePattern> simple;
+  private List<TokenSequencePattern> capturing;
+
+  @Setup
+  public void setUp() {
+    List<CoreLabel> tokens = PTBTokenizer.PTBTokenizerFactory.newCoreLabelTokenizerFactory("invertible")
+        .getTokenizer(new StringReader(BenchmarkTexts.english(size))).tokenize();
+    sentences = new WordToSentenceProcessor<CoreLabel>().process(tokens);
+    simple = compile(SIMPLE_RULES);
+    capturing = compile(CAPTURING_RULES);
+  }
+
+  private static List<TokenSequencePattern> compile(String[] rules) {
+    List<TokenSequencePattern> patterns = new ArrayList<>();
+    for (String rule : rules) {
+      patterns.add(TokenSequencePattern.compile(rule));
+    }
+    return patterns;
+  }
+
+  private int countMatches(List<TokenSequencePattern> patterns) {
+    int matches = 0;
+    for (List<CoreLabel> sentence : sentences) {
+      for (TokenSequencePattern pattern : patterns) {
+        TokenSequenceMatcher matcher = pattern.matcher(sentence);
+        while (matcher.find()) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+
+  @Benchmark
+  public int simpleRules() {
+    return countMatches(simple);
+  }
+
+  @Benchmark
+  public int capturingRules() {
+    return countMatches(capturing);
+  }
+
+}
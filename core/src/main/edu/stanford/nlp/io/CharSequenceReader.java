@@ -0,0 +1,117 @@
+package edu.stanford.nlp.io;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * A {@link Reader} over any {@link CharSequence}, which reads the characters where they are.
+ * Unlike {@link java.io.StringReader}, the text needn't first be made into a String, so a
+ * large {@link StringBuilder} or {@link CharBuffer} (for example, one decoded from a
+ * memory-mapped file) is not copied before it is read. Strings, StringBuilders and
+ * CharBuffers are copied out in bulk; other CharSequences a character at a time.
+ *
+ * The reader doesn't lock, and isn't meant to be shared between threads.
+ * The CharSequence should not change while it is being read.
+ */
+public class CharSequenceReader extends Reader {
+
+  private CharSequence text;
+  private final int end;
+  private int next;
+  private int mark;
+
+  public CharSequenceReader(CharSequence text) {
+    this(text, 0, text.length());
+  }
+
+  /** A reader over the characters of {@code text} from {@code begin} up to {@code end}. */
+  public CharSequenceReader(CharSequence text, int begin, int end) {
+    if (begin < 0 || end > text.length() || begin > end) {
+      throw new IndexOutOfBoundsException("Bad range [" + begin + ", " + end + ") of text of length " + text.length());
+    }
+    this.text = text;
+    this.end = end;
+    this.next = begin;
+    this.mark = begin;
+  }
+
+  @Override
+  public int read() {
+    ensureOpen();
+    return next < end ? text.charAt(next++) : -1;
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) {
+    ensureOpen();
+    if (off < 0 || len < 0 || len > cbuf.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (next >= end) {
+      return -1;
+    }
+    int n = Math.min(len, end - next);
+    if (text instanceof String) {
+      ((String) text).getChars(next, next + n, cbuf, off);
+    } else if (text instanceof StringBuilder) {
+      ((StringBuilder) text).getChars(next, next + n, cbuf, off);
+    } else if (text instanceof CharBuffer) {
+      // absolute positions, so the buffer's own position is left alone
+      CharBuffer buffer = ((CharBuffer) text).duplicate();
+      buffer.position(buffer.position() + next);
+      buffer.get(cbuf, off, n);
+    } else {
+      for (int i = 0; i < n; i++) {
+        cbuf[off + i] = text.charAt(next + i);
+      }
+    }
+    next += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    ensureOpen();
+    int skipped = (int) Math.max(0, Math.min(n, end - next));
+    next += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean ready() {
+    ensureOpen();
+    return true;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public void mark(int readAheadLimit) {
+    ensureOpen();
+    mark = next;
+  }
+
+  @Override
+  public void reset() {
+    ensureOpen();
+    next = mark;
+  }
+
+  @Override
+  public void close() {
+    text = null;
+  }
+
+  private void ensureOpen() {
+    if (text == null) {
+      throw new RuntimeIOException("Reader closed");
+    }
+  }
+
+}
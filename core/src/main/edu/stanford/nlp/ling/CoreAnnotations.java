@@ -2148,5 +2148,30 @@ public class CoreAnnotations {
     }
   }
 
+  /**
+   * The wall clock time, in milliseconds since the epoch, by which a document should be
+   * annotated. See {@link edu.stanford.nlp.pipeline.AnnotationPipeline#setTimeBudget}.
+   *
+   * This is attached to documents.
+   */
+  public static class DeadlineAnnotation implements CoreAnnotation<Long> {
+    @Override
+    public Class<Long> getType() {
+      return Long.class;
+    }
+  }
+
+  /**
+   * The name of the annotator which was running when a document ran out of time.
+   * It and the annotators after it in the pipeline did not finish on the document.
+   *
+   * This is attached to documents.
+   */
+  public static class DeadlineExceededAnnotation implements CoreAnnotation<String> {
+    @Override
+    public Class<String> getType() {
+      return String.class;
+    }
+  }
 
 }
@@ -0,0 +1,366 @@
+package edu.stanford.nlp.ling;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.ErasureUtils;
+import edu.stanford.nlp.util.IdentityHashSet;
+import edu.stanford.nlp.util.concurrent.ConcurrentInterner;
+
+/**
+ * The commonest annotations of a document's tokens, stored as columns: primitive
+ * {@code int[]} arrays for the character offsets and the token and sentence indices,
+ * and arrays of interned Strings for the word, lemma, tags and surrounding whitespace.
+ * The tokens themselves are {@link Token}s, CoreLabels which keep these annotations in the
+ * columns and any others in the usual way, so code that reads and writes CoreLabels works
+ * with them unchanged.  A document of a million tokens so needs no boxed Integers and keeps
+ * one copy of each distinct word, rather than a full map of keys and values for each token.
+ *
+ * The columns are fixed in size; the token list may still be changed as usual, and tokens
+ * from elsewhere mixed in.  Different tokens may be annotated in different threads, but one
+ * token may not be, as with an ordinary CoreLabel.
+ */
+public class TokenColumns {
+
+  /** The annotations kept in int columns.  Their values are Integers. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Class<? extends CoreAnnotation<Integer>>[] INT_KEYS = new Class[] {
+      CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+      CoreAnnotations.CharacterOffsetEndAnnotation.class,
+      CoreAnnotations.IndexAnnotation.class,
+      CoreAnnotations.SentenceIndexAnnotation.class,
+      CoreAnnotations.TokenBeginAnnotation.class,
+      CoreAnnotations.TokenEndAnnotation.class,
+  };
+
+  /** The annotations kept in String columns. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Class<? extends CoreAnnotation<String>>[] STRING_KEYS = new Class[] {
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.ValueAnnotation.class,
+      CoreAnnotations.OriginalTextAnnotation.class,
+      CoreAnnotations.BeforeAnnotation.class,
+      CoreAnnotations.AfterAnnotation.class,
+      CoreAnnotations.LemmaAnnotation.class,
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+  };
+
+  /** The IsNewlineAnnotation, a Boolean, is kept in a byte column. */
+  private static final Class<CoreAnnotations.IsNewlineAnnotation> NEWLINE_KEY = CoreAnnotations.IsNewlineAnnotation.class;
+
+  /** Which column each key is kept in: int columns from 0, String columns after them, then the newline column. */
+  private static final Map<Class<?>, Integer> COLUMNS = new IdentityHashMap<>();
+  static {
+    for (Class<?> key : INT_KEYS) {
+      COLUMNS.put(key, COLUMNS.size());
+    }
+    for (Class<?> key : STRING_KEYS) {
+      COLUMNS.put(key, COLUMNS.size());
+    }
+    COLUMNS.put(NEWLINE_KEY, COLUMNS.size());
+  }
+
+  private static final int NEWLINE_COLUMN = INT_KEYS.length + STRING_KEYS.length;
+
+  // bytes of the newline column
+  private static final byte NO_NEWLINE = 0;
+  private static final byte NEWLINE_FALSE = 1;
+  private static final byte NEWLINE_TRUE = 2;
+
+  private final int[][] ints;
+  /** Which tokens have a value in each int column, a bit each, as any int may be a value. */
+  private final AtomicLongArray[] present;
+  private final String[][] strings;
+  private final byte[] newlines;
+  private final ConcurrentInterner<String> interner = new ConcurrentInterner<>();
+
+
+  private TokenColumns(int size) {
+    ints = new int[INT_KEYS.length][size];
+    present = new AtomicLongArray[INT_KEYS.length];
+    for (int column = 0; column < present.length; column++) {
+      present[column] = new AtomicLongArray((size + 63) >>> 6);
+    }
+    strings = new String[STRING_KEYS.length][size];
+    newlines = new byte[size];
+  }
+
+  /**
+   * Copy the given tokens into columns, and return a list of tokens backed by them, which have
+   * the same annotations as the tokens given.
+   *
+   * @param tokens The tokens of a document
+   * @return A new, modifiable list of {@link Token}s
+   */
+  public static List<CoreLabel> of(List<? extends CoreLabel> tokens) {
+    TokenColumns columns = new TokenColumns(tokens.size());
+    List<CoreLabel> result = new ArrayList<>(tokens.size());
+    int i = 0;
+    for (CoreLabel token : tokens) {
+      Token view = new Token(columns, i++);
+      for (Class<?> key : token.keySet()) {
+        Class<? extends CoreMap.Key<Object>> k = ErasureUtils.uncheckedCast(key);
+        view.set(k, token.get(k));
+      }
+      result.add(view);
+    }
+    return result;
+  }
+
+  /** The number of tokens with columns. */
+  public int size() {
+    return newlines.length;
+  }
+
+  private Object get(int column, int token) {
+    if (column < INT_KEYS.length) {
+      return isPresent(column, token) ? ints[column][token] : null;
+    } else if (column < NEWLINE_COLUMN) {
+      return strings[column - INT_KEYS.length][token];
+    } else {
+      byte value = newlines[token];
+      return value == NO_NEWLINE ? null : value == NEWLINE_TRUE;
+    }
+  }
+
+  private Object set(int column, int token, Object value) {
+    Object old = get(column, token);
+    if (column < INT_KEYS.length) {
+      if (value != null) {
+        ints[column][token] = (Integer) value;
+      }
+      setPresent(column, token, value != null);
+    } else if (column < NEWLINE_COLUMN) {
+      strings[column - INT_KEYS.length][token] = value == null ? null : interner.intern((String) value);
+    } else {
+      newlines[token] = value == null ? NO_NEWLINE : (Boolean) value ? NEWLINE_TRUE : NEWLINE_FALSE;
+    }
+    return old;
+  }
+
+  private boolean has(int column, int token) {
+    if (column < INT_KEYS.length) {
+      return isPresent(column, token);
+    } else if (column < NEWLINE_COLUMN) {
+      return strings[column - INT_KEYS.length][token] != null;
+    } else {
+      return newlines[token] != NO_NEWLINE;
+    }
+  }
+
+  private boolean isPresent(int column, int token) {
+    return (present[column].get(token >>> 6) & (1L << token)) != 0;
+  }
+
+  /** Atomic, as tokens sharing a word of bits may be annotated in different threads. */
+  private void setPresent(int column, int token, boolean value) {
+    long bit = 1L << token;
+    present[column].getAndUpdate(token >>> 6, bits -> value ? bits | bit : bits & ~bit);
+  }
+
+  private static Class<?> key(int column) {
+    if (column < INT_KEYS.length) {
+      return INT_KEYS[column];
+    } else if (column < NEWLINE_COLUMN) {
+      return STRING_KEYS[column - INT_KEYS.length];
+    } else {
+      return NEWLINE_KEY;
+    }
+  }
+
+
+  /**
+   * A token whose commonest annotations are kept in {@link TokenColumns}, and others in its own
+   * map.  A null value of a column annotation is the same as no value.
+   */
+  public static class Token extends CoreLabel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TokenColumns columns;
+    private final int index;
+
+    private Token(TokenColumns columns, int index) {
+      super(0);
+      this.columns = columns;
+      this.index = index;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+      Integer column = COLUMNS.get(key);
+      if (column == null) {
+        return super.get(key);
+      }
+      if (listener != null && columns.has(column, index)) {
+        listener.accept(key);  // as ArrayCoreMap tells of the keys it returns
+      }
+      return (VALUE) columns.get(column, index);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+      Integer column = COLUMNS.get(key);
+      if (column == null) {
+        return super.set(key, value);
+      }
+      return (VALUE) columns.set(column, index, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+      Integer column = COLUMNS.get(key);
+      if (column == null) {
+        return super.remove(key);
+      }
+      return (VALUE) columns.set(column, index, null);
+    }
+
+    @Override
+    public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+      Integer column = COLUMNS.get(key);
+      if (column == null) {
+        return super.containsKey(key);
+      }
+      return columns.has(column, index);
+    }
+
+    @Override
+    public int size() {
+      int size = super.size();
+      for (int column = 0; column <= NEWLINE_COLUMN; column++) {
+        if (columns.has(column, index)) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public Set<Class<?>> keySet() {
+      Set<Class<?>> own = super.keySet();
+      return new AbstractSet<Class<?>>() {
+        @Override
+        public Iterator<Class<?>> iterator() {
+          return new Iterator<Class<?>>() {
+            private int column = nextColumn(0);
+            private final Iterator<Class<?>> rest = own.iterator();
+            private Class<?> last;
+
+            private int nextColumn(int from) {
+              while (from <= NEWLINE_COLUMN && ! columns.has(from, index)) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return column <= NEWLINE_COLUMN || rest.hasNext();
+            }
+
+            @Override
+            public Class<?> next() {
+              if (column <= NEWLINE_COLUMN) {
+                last = key(column);
+                column = nextColumn(column + 1);
+                return last;
+              } else if (rest.hasNext()) {
+                last = null;
+                return rest.next();
+              }
+              throw new NoSuchElementException();
+            }
+
+            @Override
+            public void remove() {
+              if (last != null) {
+                Token.this.remove(ErasureUtils.<Class<? extends Key<Object>>>uncheckedCast(last));
+              } else {
+                rest.remove();
+              }
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return Token.this.size();
+        }
+      };
+    }
+
+    @Override
+    public Set<Class<?>> keySetNotNull() {
+      Set<Class<?>> keys = new IdentityHashSet<>();
+      for (Class<?> key : keySet()) {
+        if (get(ErasureUtils.<Class<? extends Key<Object>>>uncheckedCast(key)) != null) {
+          keys.add(key);
+        }
+      }
+      return keys;
+    }
+
+    /** Kept partly in columns, so copied and compared through its keys rather than by its arrays. */
+    @Override
+    protected boolean isArrayBacked() {
+      return false;
+    }
+
+    /** Compared as a general CoreMap, as the columns aren't in the arrays of ArrayCoreMap. */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if ( ! (obj instanceof CoreMap)) {
+        return false;
+      }
+      CoreMap other = (CoreMap) obj;
+      if ( ! keySet().equals(other.keySet())) {
+        return false;
+      }
+      for (Class<?> key : keySet()) {
+        Class<? extends Key<Object>> k = ErasureUtils.uncheckedCast(key);
+        Object thisV = get(k), otherV = other.get(k);
+        if (thisV != otherV && (thisV == null || ! thisV.equals(otherV))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int keysCode = 0;
+      int valuesCode = 0;
+      for (Class<?> key : keySet()) {
+        Object value = get(ErasureUtils.<Class<? extends Key<Object>>>uncheckedCast(key));
+        if (value != null) {
+          keysCode += key.hashCode();
+          valuesCode += value.hashCode();
+        }
+      }
+      return keysCode * 37 + valuesCode;
+    }
+
+    /** Serialized as a plain CoreLabel, rather than with the columns of the whole document. */
+    private Object writeReplace() {
+      return new CoreLabel(this);
+    }
+
+  }
+
+}
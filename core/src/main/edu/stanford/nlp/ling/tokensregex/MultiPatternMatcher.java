@@ -75,6 +75,7 @@ public class MultiPatternMatcher<T> {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
       }
+      Deadline.checkCurrent();
       SequenceMatcher<T> m = p.getMatcher(elements);
       m.setMatchWithResult(matchWithResult);
       m.setOrder(i);
@@ -105,6 +106,7 @@ public class MultiPatternMatcher<T> {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
       }
+      Deadline.checkCurrent();
       SequenceMatcher<T> m = p.getMatcher(elements);
       m.setMatchWithResult(matchWithResult);
       m.setFindType(findType);
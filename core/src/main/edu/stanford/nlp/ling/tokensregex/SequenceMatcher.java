@@ -88,6 +88,9 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
   // Branching limit for searching with back tracking. Higher value makes the search faster but uses more memory.
   private int branchLimit = 32;
 
+  // For matching simple patterns with their compiled automaton
+  private SequencePattern.SimpleAutomaton.Run automatonRun = null;
+
   protected SequenceMatcher(SequencePattern<T> pattern, List<? extends T> elements) {
     this.pattern = pattern;
     // NOTE: It is important elements DO NOT change as we do matches
@@ -357,7 +360,9 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
     boolean match = false;
     matched = false;
     matchingCompleted = false;
-    if (matchStart)  {
+    if (useAutomaton()) {
+      match = findMatchStartAutomaton(start, matchStart ? start + 1 : regionEnd, false);
+    } else if (matchStart)  {
       match = findMatchStart(start, false);
     } else {
       for (int i = start; i < regionEnd; i++) {
@@ -486,6 +491,28 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
     }
   }
 
+  // Whether the pattern can be matched with its compiled automaton: the matches are the same,
+  // but there are no branch states, which the FIND_ALL search and the results of node matches need
+  private boolean useAutomaton() {
+    return pattern.automaton != null && findType == FIND_NONOVERLAPPING && !matchWithResult;
+  }
+
+  // Tries each start from the first up to the last (exclusive) until the pattern matches there
+  private boolean findMatchStartAutomaton(int first, int last, boolean matchAllTokens) {
+    if (automatonRun == null) {
+      automatonRun = pattern.automaton.newRun();
+    }
+    clearMatched();
+    for (int start = first; start < last; start++) {
+      int end = pattern.automaton.match(automatonRun, elements, start, regionEnd, matchAllTokens);
+      if (end >= 0) {
+        matchedGroups[0] = new MatchedGroup(start, end, null);
+        return true;
+      }
+    }
+    return false;
+  }
+
   // Does not do backtracking - alternative matches are stored as we go
   private boolean findMatchStartNoBacktracking(int start, boolean matchAllTokens) {
     boolean matchAll = true;
@@ -493,7 +520,11 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
     cStates.matchLongest = matchAllTokens;
     // Save cStates for FIND_ALL ....
     curMatchStates = cStates;
+    Deadline deadline = Deadline.current();
     for(int i = start; i < regionEnd; i++){
+      if (deadline != null) {
+        deadline.check();
+      }
       boolean match = cStates.match(i);
       if (cStates.size() == 0) {
         break;
@@ -518,6 +549,7 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
     cStates.matchLongest = matchAllTokens;
     cStates.curPosition = start-1;
     todo.push(cStates);
+    Deadline deadline = Deadline.current();
     while (!todo.empty()) {
       cStates = todo.pop();
       int s = cStates.curPosition+1;
@@ -525,6 +557,9 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
         if (Thread.interrupted()) {
           throw new RuntimeInterruptedException();
         }
+        if (deadline != null) {
+          deadline.check();
+        }
         cStates.match(i);
         if (cStates.size() == 0) {
           break;
@@ -558,7 +593,7 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
   public boolean matches() {
     matched = false;
     matchingCompleted = false;
-    boolean status = findMatchStart(0, true);
+    boolean status = useAutomaton() ? findMatchStartAutomaton(0, 1, true) : findMatchStart(0, true);
     if (status) {
       // Check if entire region is matched
       status = ((matchedGroups[0].matchBegin == regionStart) && (matchedGroups[0].matchEnd == regionEnd));
@@ -99,6 +99,8 @@ public class SequencePattern<T> implements Serializable {
 
   State root;
   int totalGroups = 0;
+  // NFA compiled for matching without branch states (null if the pattern isn't simple enough)
+  SimpleAutomaton automaton;
 
   // binding of group number to variable name
   VarGroupBindings varGroupBindings;
@@ -128,6 +130,7 @@ public class SequencePattern<T> implements Serializable {
     Frag f = nodeSequencePattern.build();
     f.connect(MATCH_STATE);
     this.root = f.start;
+    this.automaton = SimpleAutomaton.compile(root, totalGroups);
     varGroupBindings = new VarGroupBindings(totalGroups+1);
     nodeSequencePattern.updateBindings(varGroupBindings);
   }
@@ -1839,6 +1842,7 @@ public class SequencePattern<T> implements Serializable {
     Frag f = patternExpr.build();
     f.connect(MATCH_STATE);
     this.root = f.start;
+    this.automaton = SimpleAutomaton.compile(root, totalGroups);
     varGroupBindings = new VarGroupBindings(totalGroups+1);
     patternExpr.updateBindings(varGroupBindings);
   }
@@ -2040,4 +2044,293 @@ public class SequencePattern<T> implements Serializable {
 
   } // end static class Frag
 
+  /**
+   * A compiled form of the NFA of a simple pattern, for {@link SequenceMatcher} to match with instead
+   * of simulating the NFA with branch states.  A pattern is simple if it is made of nodes, sequences,
+   * disjunctions, greedy repeats (with bounds of at most 5, or no maximum), non-capturing groups and the sequence
+   * anchors, with no capture group besides the whole match, and no back reference, value, multinode
+   * pattern or conjunction; and if none of its repeats can match nothing.
+   * <p>
+   * All a path through the NFA of such a pattern carries is where it is: its start is that of the
+   * search and its end is set just before it matches.  So of two paths that wait for the next node in
+   * the same state, the one of lower priority can never give a better match, and is dropped.  The
+   * matcher keeps the waiting states (nodes, and group starts, which wait for a node before going on)
+   * in order of priority, each at most once, and the states in between are compiled away: each waiting
+   * state has the list of the waiting states, and matches, that it leads to, in the order the NFA
+   * would try them.  Each node pattern is tried at most once for each node.
+   * <p>
+   * The matches are those of {@link SequenceMatcher}'s simulation: when searching, the match of the
+   * path of highest priority, which is the first to match of the paths left when the others die;
+   * and when matching the whole sequence, the longest match.
+   */
+  static class SimpleAutomaton {
+
+    /** Stands for the match state in the lists of states that follow a waiting state. */
+    private static final int MATCH = -1;
+
+    // The distinct node patterns, and the one each waiting state tests (-1 for a group start)
+    private final NodePattern<?>[] patterns;
+    private final int[] patternIndex;
+    // The states each waiting state leads to: for a node, the states after it is matched;
+    // for a group start, the states tried on the next node.  The second list is for when the node
+    // is the last of the sequence (for nodes) or the first (for group starts), where the anchors hold.
+    private final int[][] follow;
+    private final int[][] followAtEdge;
+
+    private SimpleAutomaton(NodePattern<?>[] patterns, int[] patternIndex, int[][] follow, int[][] followAtEdge) {
+      this.patterns = patterns;
+      this.patternIndex = patternIndex;
+      this.follow = follow;
+      this.followAtEdge = followAtEdge;
+    }
+
+    /**
+     * Compiles the NFA starting at {@code root} (the start of group 0).
+     *
+     * @return The automaton, or null if the pattern isn't simple
+     */
+    static SimpleAutomaton compile(State root, int totalGroups) {
+      if (totalGroups != 1 || !(root instanceof GroupStartState)) {
+        return null;
+      }
+      // Waiting states, by index (the root is waiting at the start)
+      Map<State, Integer> index = new IdentityHashMap<>();
+      List<State> waiting = new ArrayList<>();
+      index.put(root, 0);
+      waiting.add(root);
+      Map<NodePattern<?>, Integer> patternIds = new IdentityHashMap<>();
+      List<int[]> follow = new ArrayList<>();
+      List<int[]> followAtEdge = new ArrayList<>();
+      List<Integer> patternIndex = new ArrayList<>();
+      // Compiling a state's lists may find more waiting states
+      for (int i = 0; i < waiting.size(); i++) {
+        State state = waiting.get(i);
+        boolean groupStart = state instanceof GroupStartState;
+        if (groupStart) {
+          patternIndex.add(-1);
+        } else {
+          NodePattern<?> pattern = ((NodePatternState) state).pattern;
+          Integer id = patternIds.get(pattern);
+          if (id == null) {
+            id = patternIds.size();
+            patternIds.put(pattern, id);
+          }
+          patternIndex.add(id);
+        }
+        // A group start goes on when consuming the next node, a node's next states are entered right after it is consumed
+        int[] f = followStates(state, groupStart, false, index, waiting);
+        int[] fe = followStates(state, groupStart, true, index, waiting);
+        if (f == null || fe == null) {
+          return null;
+        }
+        follow.add(f);
+        followAtEdge.add(fe);
+      }
+      NodePattern<?>[] patterns = new NodePattern<?>[patternIds.size()];
+      for (Map.Entry<NodePattern<?>, Integer> entry : patternIds.entrySet()) {
+        patterns[entry.getValue()] = entry.getKey();
+      }
+      return new SimpleAutomaton(patterns, ArrayUtils.asPrimitiveIntArray(patternIndex),
+          follow.toArray(new int[follow.size()][]), followAtEdge.toArray(new int[followAtEdge.size()][]));
+    }
+
+    // The waiting states and matches that the next states of the given one lead to, in order, or null if there is one that isn't simple
+    private static int[] followStates(State state, boolean consume, boolean atEdge, Map<State, Integer> index, List<State> waiting) {
+      List<Integer> out = new ArrayList<>();
+      Set<State> visited = new HashSet<>();
+      Set<State> onPath = new HashSet<>();
+      if (state.next != null) {
+        for (State s : state.next) {
+          if (!addFollowStates(s, consume, atEdge, visited, onPath, out, index, waiting)) {
+            return null;
+          }
+        }
+      }
+      return ArrayUtils.asPrimitiveIntArray(out);
+    }
+
+    // Goes through the states that don't consume nodes as the NFA would, depth first: returns false if a state isn't simple
+    private static boolean addFollowStates(State s, boolean consume, boolean atEdge, Set<State> visited, Set<State> onPath,
+                                           List<Integer> out, Map<State, Integer> index, List<State> waiting) {
+      if (s == MATCH_STATE) {
+        if (!out.contains(MATCH)) {
+          out.add(MATCH);
+        }
+        return true;
+      }
+      if (s instanceof NodePatternState || (!consume && s instanceof GroupStartState)) {
+        Integer id = index.get(s);
+        if (id == null) {
+          id = waiting.size();
+          index.put(s, id);
+          waiting.add(s);
+        }
+        // Later paths to the same state have lower priority
+        if (!out.contains(id)) {
+          out.add(id);
+        }
+        return true;
+      }
+      boolean pass;
+      if (s instanceof SeqStartState) {
+        pass = consume && atEdge;
+      } else if (s instanceof SeqEndState) {
+        pass = !consume && atEdge;
+      } else if (s instanceof GroupStartState || s instanceof GroupEndState || s.getClass() == State.class) {
+        pass = true;
+      } else {
+        return false;
+      }
+      if (!pass || s.next == null) {
+        return true;
+      }
+      if (!visited.add(s)) {
+        // Going around a loop without consuming a node (a repeat that can match nothing) is left to the NFA
+        return !onPath.contains(s);
+      }
+      onPath.add(s);
+      for (State n : s.next) {
+        if (!addFollowStates(n, consume, atEdge, visited, onPath, out, index, waiting)) {
+          return false;
+        }
+      }
+      onPath.remove(s);
+      return true;
+    }
+
+    /**
+     * Matches the pattern starting at {@code start}.
+     *
+     * @param longest Whether to return the longest match, rather than the one of highest priority
+     * @return The end of the match, or -1 if there is none
+     */
+    <T> int match(Run run, List<? extends T> elements, int start, int regionEnd, boolean longest) {
+      run.matchEnd = -1;
+      run.threads[0] = 0;
+      int size = 1;
+      int last = elements.size() - 1;
+      Deadline deadline = Deadline.current();
+      for (int i = start; i < regionEnd && size > 0; i++) {
+        if (Thread.interrupted()) {
+          throw new RuntimeInterruptedException();
+        }
+        if (deadline != null) {
+          deadline.check();
+        }
+        run.nextStep();
+        T node = elements.get(i);
+        for (int t = 0; t < size; t++) {
+          int w = run.threads[t];
+          boolean goOn;
+          if (patternIndex[w] >= 0) {
+            goOn = advance(run, w, node, i, i == last, longest);
+          } else {
+            goOn = true;
+            for (int u : (i == 0) ? followAtEdge[w] : follow[w]) {
+              goOn = (u == MATCH) ? run.addMatch(i, longest) : advance(run, u, node, i, i == last, longest);
+              if (!goOn) {
+                break;
+              }
+            }
+          }
+          if (!goOn) {
+            // The threads after this one can only give matches of lower priority
+            break;
+          }
+        }
+        size = run.swap();
+      }
+      return run.matchEnd;
+    }
+
+    // Tries the node at i against waiting state w, and adds the states it leads to if matched; returns false when a match cuts off the rest
+    private <T> boolean advance(Run run, int w, T node, int i, boolean atLast, boolean longest) {
+      if (!run.matches(patterns, patternIndex[w], node)) {
+        return true;
+      }
+      for (int u : atLast ? followAtEdge[w] : follow[w]) {
+        if (u == MATCH) {
+          if (!run.addMatch(i + 1, longest)) {
+            return false;
+          }
+        } else {
+          run.add(u);
+        }
+      }
+      return true;
+    }
+
+    Run newRun() {
+      return new Run(follow.length, patterns.length);
+    }
+
+    /** The state of matching with the automaton: to be kept by one matcher, and reused for each start. */
+    static class Run {
+
+      // Waiting states in order of priority, before and after the current node
+      private int[] threads;
+      private int[] nextThreads;
+      private int nextSize;
+      // Marks waiting states already added for the current node, and node patterns already tried on it
+      private final int[] added;
+      private final int[] tried;
+      private final boolean[] matched;
+      private int step;
+      private int matchEnd;
+
+      private Run(int states, int patterns) {
+        threads = new int[states];
+        nextThreads = new int[states];
+        added = new int[states];
+        tried = new int[patterns];
+        matched = new boolean[patterns];
+      }
+
+      private void nextStep() {
+        nextSize = 0;
+        step++;
+        if (step == 0) {
+          Arrays.fill(added, 0);
+          Arrays.fill(tried, 0);
+          step = 1;
+        }
+      }
+
+      private void add(int state) {
+        if (added[state] != step) {
+          added[state] = step;
+          nextThreads[nextSize++] = state;
+        }
+      }
+
+      // Notes a match ending at end: returns whether the threads of lower priority should still be run
+      private boolean addMatch(int end, boolean longest) {
+        if (longest) {
+          matchEnd = Math.max(matchEnd, end);
+          return true;
+        } else {
+          matchEnd = end;
+          return false;
+        }
+      }
+
+      @SuppressWarnings("unchecked")
+      private <T> boolean matches(NodePattern<?>[] patterns, int p, T node) {
+        if (tried[p] != step) {
+          tried[p] = step;
+          matched[p] = node != null && ((NodePattern<T>) patterns[p]).match(node);
+        }
+        return matched[p];
+      }
+
+      private int swap() {
+        int[] tmp = threads;
+        threads = nextThreads;
+        nextThreads = tmp;
+        return nextSize;
+      }
+    }
+
+  } // end static class SimpleAutomaton
+
 } // end class SequencePattern
@@ -0,0 +1,151 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.concurrent.BoundedExecutor;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Annotates the documents of an input iterator in parallel, and returns them
+ * as they are finished.
+ * Documents are only pulled from the input as earlier ones are consumed, so that at
+ * most {@code maxInFlight} documents are held at any time, no matter how
+ * long the input is.
+ *
+ * Documents can be returned in the order they were read, in which case a slow
+ * document holds up the ones behind it (but not the annotation of the ones behind it),
+ * or in the order they finish.
+ *
+ * As with {@link StanfordCoreNLP#annotate(Annotation, java.util.function.Consumer)},
+ * an exception thrown while annotating a document is stored in its
+ * {@link CoreAnnotations.ExceptionAnnotation} rather than thrown.
+ * The worker threads are released when the input is exhausted, or when the iterator is closed.
+ */
+public class AnnotationIterator implements Iterator<Annotation>, AutoCloseable {
+
+  private final Annotator annotator;
+  private final Iterator<Annotation> input;
+  private final int maxInFlight;
+  private final boolean ordered;
+
+  private final BoundedExecutor executor;
+  /** The documents being annotated, in input order. Used if ordered. */
+  private final ArrayDeque<Future<Annotation>> pending;
+  /** The documents being annotated, in the order they finish. Used if not ordered. */
+  private final ExecutorCompletionService<Annotation> completed;
+  private int inFlight; // = 0
+  private boolean closed; // = false
+
+  /**
+   * Create a new iterator. Nothing is read from the input until the first call
+   * to {@link #hasNext()} or {@link #next()}.
+   *
+   * @param annotator The annotator to run on each document; it must be threadsafe
+   * @param input The documents to annotate
+   * @param numThreads The number of threads to annotate on
+   * @param maxInFlight The most documents to hold at once, both those being annotated and
+   *                    those finished but not yet returned. Must be at least numThreads to keep all threads busy
+   * @param ordered If true, return documents in input order. Otherwise, return them as they finish
+   */
+  public AnnotationIterator(Annotator annotator, Iterator<Annotation> input, int numThreads, int maxInFlight, boolean ordered) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+    }
+    this.annotator = annotator;
+    this.input = input;
+    this.maxInFlight = maxInFlight;
+    this.ordered = ordered;
+    this.executor = new BoundedExecutor(annotator.getClass().getSimpleName() + "-stream", BoundedExecutor.Mode.POOL,
+        numThreads, maxInFlight, BoundedExecutor.RejectionPolicy.BLOCK, 1000);
+    this.pending = ordered ? new ArrayDeque<>(maxInFlight) : null;
+    this.completed = ordered ? null : new ExecutorCompletionService<>(executor);
+  }
+
+  /** Start annotating documents from the input until maxInFlight are held. */
+  private void fill() {
+    while ( ! closed && inFlight < maxInFlight && input.hasNext()) {
+      Annotation document = input.next();
+      if (ordered) {
+        FutureTask<Annotation> task = new FutureTask<>(() -> annotate(document));
+        executor.execute(task);
+        pending.add(task);
+      } else {
+        completed.submit(() -> annotate(document));
+      }
+      inFlight += 1;
+    }
+    if (inFlight == 0 && ! closed) {
+      close();
+    }
+  }
+
+  private Annotation annotate(Annotation document) {
+    try {
+      annotator.annotate(document);
+    } catch (Throwable t) {
+      document.set(CoreAnnotations.ExceptionAnnotation.class, t);
+    }
+    return document;
+  }
+
+  @Override
+  public boolean hasNext() {
+    fill();
+    return inFlight > 0;
+  }
+
+  @Override
+  public Annotation next() {
+    if ( ! hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Annotation document;
+    try {
+      Future<Annotation> next = ordered ? pending.poll() : completed.take();
+      document = next.get();
+    } catch (InterruptedException e) {
+      close();
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      // annotate() catches everything, so this should not happen
+      throw new RuntimeException(e.getCause());
+    }
+    inFlight -= 1;
+    // start on the next document while this one is being consumed
+    fill();
+    return document;
+  }
+
+  /** The number of documents which have been read from the input but not yet returned. */
+  public int inFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Stop reading the input, and wait for the documents being annotated to finish.
+   * Documents not yet returned are dropped.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (ordered) {
+      for (Future<Annotation> future : pending) {
+        future.cancel(false);
+      }
+      pending.clear();
+    }
+    inFlight = 0;
+    executor.shutdown();
+  }
+
+}
@@ -3,12 +3,21 @@ package edu.stanford.nlp.pipeline;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.PublisherIterator;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -31,15 +40,33 @@ public class AnnotationPipeline implements Annotator {
   protected static final boolean TIME = true;
 
   private final List<Annotator> annotators;
-  private final List<MutableLong> accumulatedTime;
+  /** The latency of each annotator, and the throughput of the whole pipeline. */
+  private final PipelineMetrics metrics = new PipelineMetrics();
+
+  /** If not null, the pool that sentence-local annotators run the sentences of a document on. */
+  private ForkJoinPool sentencePool; // = null
+
+  /** Documents longer than this many characters are annotated in pieces on the chunk pool. */
+  private int chunkSize; // = 0
+  private ForkJoinPool chunkPool; // = null
+
+  /** What to do with a document which runs out of time. */
+  public enum DeadlinePolicy {
+    /** Skip the rest of the pipeline, and mark the document with a {@link CoreAnnotations.DeadlineExceededAnnotation}. */
+    DEGRADE,
+    /** Throw a {@link DeadlineExceededException}. */
+    FAIL
+  }
+
+  /** The time each document gets if it has no deadline of its own; 0 for no limit. */
+  private long timeBudgetMillis; // = 0
+  private DeadlinePolicy deadlinePolicy = DeadlinePolicy.DEGRADE;
 
   public AnnotationPipeline(List<Annotator> annotators) {
     this.annotators = annotators;
     if (TIME) {
-      int num = annotators.size();
-      accumulatedTime = new ArrayList<>(num);
-      for (int i = 0; i < num; i++) {
-        accumulatedTime.add(new MutableLong());
+      for (Annotator annotator : annotators) {
+        metrics.addAnnotator(annotator);
       }
     }
   }
@@ -51,8 +78,94 @@ public class AnnotationPipeline implements Annotator {
   public void addAnnotator(Annotator annotator) {
     annotators.add(annotator);
     if (TIME) {
-      accumulatedTime.add(new MutableLong());
+      metrics.addAnnotator(annotator);
+    }
+  }
+
+  /**
+   * Run the annotators which are {@link Annotator#isSentenceLocal() sentence-local} on
+   * several sentences of a document at once. This lets a single long document
+   * use more than one core. The results are the same as annotating sentence by sentence.
+   *
+   * @param numThreads The number of threads to annotate the sentences of a document on.
+   *                   If 1 or less, sentences are annotated one after the other (the default).
+   */
+  public synchronized void setSentenceThreads(int numThreads) {
+    if (sentencePool != null) {
+      sentencePool.shutdown();
+    }
+    sentencePool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+  }
+
+  /**
+   * Annotate very long documents in pieces, several at once, and join the results into one
+   * document. Pieces start at paragraphs, after a blank line, or, when the pipeline cleans XML,
+   * after the end tag of a top-level section (see the {@code clean.sectiontags} property);
+   * XML without section tags isn't cut. The character, token and sentence offsets of the
+   * joined document are those of the whole text.
+   * Annotators which look across the whole document see each piece on its own, so this is
+   * best suited to pipelines of annotators which work a sentence or paragraph at a time.
+   *
+   * @param chunkSize Documents longer than this many characters are cut into pieces of at least
+   *                  this size. If 0 or less, documents are never cut (the default).
+   * @param numThreads The number of pieces to annotate at once
+   */
+  public synchronized void setChunking(int chunkSize, int numThreads) {
+    if (chunkPool != null) {
+      chunkPool.shutdown();
     }
+    this.chunkSize = chunkSize;
+    chunkPool = chunkSize > 0 ? new ForkJoinPool(Math.max(1, numThreads)) : null;
+  }
+
+  /**
+   * Limit the time spent on each document. The deadline of a document is its
+   * {@link CoreAnnotations.DeadlineAnnotation} if it has one, else the deadline of the
+   * calling thread, if any, else the given budget from when its annotation starts.
+   * The deadline is checked between annotators and inside the long loops of the
+   * annotators which may take a long time on some inputs, such as TokensRegex matching.
+   *
+   * @param millis The time a document without a deadline gets; 0 for no limit (the default)
+   * @param policy What to do with a document which runs out of time
+   */
+  public void setTimeBudget(long millis, DeadlinePolicy policy) {
+    this.timeBudgetMillis = millis;
+    this.deadlinePolicy = policy;
+  }
+
+  /** The deadline for annotating a document, or null if it has none. */
+  private Deadline deadline(Annotation annotation) {
+    Long epochMillis = annotation.get(CoreAnnotations.DeadlineAnnotation.class);
+    if (epochMillis != null) {
+      return Deadline.atEpochMillis(epochMillis);
+    }
+    Deadline current = Deadline.current();
+    if (current != null) {
+      return current;
+    }
+    return timeBudgetMillis > 0 ? Deadline.after(timeBudgetMillis, TimeUnit.MILLISECONDS) : null;
+  }
+
+  /** Run one annotator on a document, splitting it by sentence if the annotator allows it. */
+  private void annotate(Annotator annotator, Annotation annotation) {
+    ForkJoinPool pool = sentencePool;
+    List<CoreMap> sentences;
+    if (pool == null || ! annotator.isSentenceLocal() ||
+        (sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class)) == null || sentences.size() < 2) {
+      annotator.annotate(annotation);
+      return;
+    }
+    // the worker threads check the same deadline as the calling thread
+    Deadline deadline = Deadline.current();
+    pool.submit(() -> sentences.parallelStream().forEach(sentence -> {
+      Deadline previous = Deadline.setCurrent(deadline);
+      try {
+        annotator.annotateSentence(annotation, sentence);
+      } finally {
+        Deadline.setCurrent(previous);
+      }
+    })).join();
+    annotator.finishSentences(annotation);
   }
 
   /**
@@ -63,22 +176,276 @@ public class AnnotationPipeline implements Annotator {
    */
   @Override
   public void annotate(Annotation annotation) {
-    Iterator<MutableLong> it = accumulatedTime.iterator();
-    Timing t = new Timing();
+    ForkJoinPool pool = chunkPool;
+    String text;
+    if (pool != null && ! annotation.containsKey(CoreAnnotations.TokensAnnotation.class) &&
+        (text = annotation.get(CoreAnnotations.TextAnnotation.class)) != null && text.length() > chunkSize &&
+        annotateInChunks(annotation, text, pool)) {
+      return;
+    }
+    annotateDocument(annotation, true);
+  }
+
+  /**
+   * Annotate a long document in pieces on the given pool.
+   *
+   * @return false if the document can't be cut, and so wasn't annotated
+   */
+  private boolean annotateInChunks(Annotation annotation, String text, ForkJoinPool pool) {
+    Pattern sectionTags = null;
     for (Annotator annotator : annotators) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
+      if (annotator instanceof CleanXmlAnnotator) {
+        sectionTags = ((CleanXmlAnnotator) annotator).sectionTagMatcher();
+        if (sectionTags == null) {
+          return false;
+        }
+      }
+    }
+    List<Integer> begins = ChunkAnnotationUtils.safeChunkBoundaries(text, chunkSize, sectionTags);
+    if (begins.size() < 2) {
+      return false;
+    }
+    long documentStart = System.nanoTime();
+    List<Annotation> chunks = new ArrayList<>();
+    for (int i = 0; i < begins.size(); i++) {
+      int end = i + 1 < begins.size() ? begins.get(i + 1) : text.length();
+      Annotation chunk = new Annotation(text.substring(begins.get(i), end));
+      for (Class<?> key : annotation.keySet()) {
+        if (key != CoreAnnotations.TextAnnotation.class) {
+          chunk.set(ChunkAnnotationUtils.anyKey(key), annotation.get(ChunkAnnotationUtils.anyKey(key)));
+        }
+      }
+      chunks.add(chunk);
+    }
+    // the pieces share the deadline of the whole document
+    Deadline deadline = deadline(annotation);
+    pool.submit(() -> chunks.parallelStream().forEach(chunk -> {
+      Deadline previous = Deadline.setCurrent(deadline);
+      try {
+        annotateDocument(chunk, false);
+      } finally {
+        Deadline.setCurrent(previous);
+      }
+    })).join();
+    ChunkAnnotationUtils.mergeAnnotatedChunks(annotation, chunks, begins);
+    if (TIME) {
+      metrics.recordDocument(annotation, System.nanoTime() - documentStart);
+    }
+    return true;
+  }
+
+  /**
+   * Run each annotator on a document.
+   *
+   * @param record Whether to count the document in the throughput of the pipeline
+   */
+  private void annotateDocument(Annotation annotation, boolean record) {
+    Iterator<PipelineMetrics.AnnotatorMetrics> it = metrics.annotators().iterator();
+    long documentStart = System.nanoTime();
+    Deadline deadline = deadline(annotation);
+    Deadline previous = Deadline.setCurrent(deadline);
+    try {
+      for (Annotator annotator : annotators) {
+        if (Thread.interrupted()) {  // Allow interrupting
+          throw new RuntimeInterruptedException();
+        }
+        long start = System.nanoTime();
+        try {
+          if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException(deadline);
+          }
+          annotate(annotator, annotation);
+        } catch (DeadlineExceededException e) {
+          if (deadlinePolicy == DeadlinePolicy.FAIL) {
+            throw e;
+          }
+          String name = annotator.getClass().getSimpleName();
+          annotation.set(CoreAnnotations.DeadlineExceededAnnotation.class, name);
+          log.warn("Document ran out of time in " + name + "; skipping the rest of the pipeline");
+          break;
+        }
+        if (TIME) {
+          it.next().record(System.nanoTime() - start);
+        }
+      }
+    } finally {
+      Deadline.setCurrent(previous);
+    }
+    if (TIME && record) {
+      metrics.recordDocument(annotation, System.nanoTime() - documentStart);
+    }
+  }
+
+  /**
+   * The latency of each annotator on each document, and the throughput of the pipeline,
+   * since it was created or the metrics were last reset.
+   */
+  public PipelineMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Whether {@link #reannotate(Annotation, String)} can update documents annotated by this
+   * pipeline in place: the pipeline has to be a tokenizer and a sentence splitter, followed
+   * only by {@link Annotator#isSentenceLocal() sentence-local} annotators.
+   */
+  public boolean isIncremental() {
+    if (annotators.size() < 2 || ! (annotators.get(0) instanceof TokenizerAnnotator) ||
+        ! (annotators.get(1) instanceof WordsToSentencesAnnotator)) {
+      return false;
+    }
+    for (Annotator annotator : annotators.subList(2, annotators.size())) {
+      if ( ! annotator.isSentenceLocal()) {
+        return false;
       }
+    }
+    return true;
+  }
+
+  /**
+   * Update a document already annotated by this pipeline after its text was edited.
+   * The old and new text are compared to find the changed region, which is widened to
+   * whole sentences plus one sentence of context on either side. Only that region is
+   * tokenized and split again, and only its new sentences are passed to the
+   * sentence-local annotators; the tokens and sentences after it keep their annotations
+   * and just have their character, token and sentence offsets shifted.
+   * If the pipeline isn't {@link #isIncremental() incremental}, or the document has line
+   * numbers or sections, which depend on the whole document, it is annotated again from scratch.
+   *
+   * @param annotation A document annotated by this pipeline. It is modified in place.
+   * @param text The new text of the document
+   */
+  public void reannotate(Annotation annotation, String text) {
+    String oldText = annotation.get(CoreAnnotations.TextAnnotation.class);
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    if (oldText == null || sentences == null || sentences.isEmpty() || tokens == null || ! isIncremental() ||
+        annotation.containsKey(CoreAnnotations.SectionsAnnotation.class) ||
+        sentences.get(0).containsKey(CoreAnnotations.LineNumberAnnotation.class)) {
+      reannotateAll(annotation, text);
+      return;
+    }
+    if (oldText.equals(text)) {
+      return;
+    }
+
+    // the changed characters are [prefix, oldText.length() - suffix) in the old text
+    int limit = Math.min(oldText.length(), text.length());
+    int prefix = 0;
+    while (prefix < limit && oldText.charAt(prefix) == text.charAt(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < limit - prefix &&
+        oldText.charAt(oldText.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+      suffix++;
+    }
+    int editEnd = oldText.length() - suffix;
+
+    // the sentences touching the edit, and one more on each side, since the edit may
+    // join a sentence to its neighbor or split one off
+    int first = 0;
+    while (first < sentences.size() &&
+        sentences.get(first).get(CoreAnnotations.CharacterOffsetEndAnnotation.class) < prefix) {
+      first++;
+    }
+    int last = sentences.size() - 1;
+    while (last >= 0 && sentences.get(last).get(CoreAnnotations.CharacterOffsetBeginAnnotation.class) > editEnd) {
+      last--;
+    }
+    first = Math.max(first - 1, 0);
+    last = Math.min(last + 1, sentences.size() - 1);
+    CoreMap firstSentence = sentences.get(first);
+    CoreMap lastSentence = sentences.get(last);
+    int regionBegin = first == 0 ? 0 : firstSentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+    int oldRegionEnd = last == sentences.size() - 1 ? oldText.length() :
+        lastSentence.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+    int charDelta = text.length() - oldText.length();
+    int tokenBegin = firstSentence.get(CoreAnnotations.TokenBeginAnnotation.class);
+    int tokenEnd = lastSentence.get(CoreAnnotations.TokenEndAnnotation.class);
+    List<CoreLabel> firstTokens = firstSentence.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreLabel> lastTokens = lastSentence.get(CoreAnnotations.TokensAnnotation.class);
+    String before = firstTokens.get(0).get(CoreAnnotations.BeforeAnnotation.class);
+    String after = lastTokens.get(lastTokens.size() - 1).get(CoreAnnotations.AfterAnnotation.class);
+
+    // tokenize and split the region on its own
+    Annotation region = new Annotation(text.substring(regionBegin, oldRegionEnd + charDelta));
+    String docID = annotation.get(CoreAnnotations.DocIDAnnotation.class);
+    if (docID != null) {
+      region.set(CoreAnnotations.DocIDAnnotation.class, docID);
+    }
+    Iterator<PipelineMetrics.AnnotatorMetrics> it = metrics.annotators().iterator();
+    for (Annotator annotator : annotators.subList(0, 2)) {
+      long start = System.nanoTime();
+      annotator.annotate(region);
       if (TIME) {
-        t.start();
+        it.next().record(System.nanoTime() - start);
       }
-      annotator.annotate(annotation);
+    }
+    List<CoreLabel> regionTokens = region.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreMap> regionSentences = region.get(CoreAnnotations.SentencesAnnotation.class);
+    Set<CoreMap> shifted = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (CoreMap sentence : regionSentences) {
+      ChunkAnnotationUtils.shiftOffsets(sentence, regionBegin, tokenBegin, first, shifted);
+    }
+    // the text around the region is unchanged
+    if ( ! regionTokens.isEmpty()) {
+      if (first > 0) {
+        regionTokens.get(0).set(CoreAnnotations.BeforeAnnotation.class, before);
+      }
+      if (last < sentences.size() - 1) {
+        regionTokens.get(regionTokens.size() - 1).set(CoreAnnotations.AfterAnnotation.class, after);
+      }
+    }
+
+    // everything after the region moves by the change in its length
+    int tokenDelta = regionTokens.size() - (tokenEnd - tokenBegin);
+    int sentenceDelta = regionSentences.size() - (last + 1 - first);
+    if (charDelta != 0 || tokenDelta != 0 || sentenceDelta != 0) {
+      for (CoreMap sentence : sentences.subList(last + 1, sentences.size())) {
+        ChunkAnnotationUtils.shiftOffsets(sentence, charDelta, tokenDelta, sentenceDelta, shifted);
+      }
+    }
+
+    List<CoreMap> newSentences = new ArrayList<>(sentences.subList(0, first));
+    newSentences.addAll(regionSentences);
+    newSentences.addAll(sentences.subList(last + 1, sentences.size()));
+    List<CoreLabel> newTokens = new ArrayList<>(tokens.subList(0, tokenBegin));
+    newTokens.addAll(regionTokens);
+    newTokens.addAll(tokens.subList(tokenEnd, tokens.size()));
+    annotation.set(CoreAnnotations.TextAnnotation.class, text);
+    annotation.set(CoreAnnotations.TokensAnnotation.class, newTokens);
+    annotation.set(CoreAnnotations.SentencesAnnotation.class, newSentences);
+
+    // and only the new sentences need the rest of the pipeline
+    ForkJoinPool pool = sentencePool;
+    for (Annotator annotator : annotators.subList(2, annotators.size())) {
+      long start = System.nanoTime();
+      if (pool == null || regionSentences.size() < 2) {
+        for (CoreMap sentence : regionSentences) {
+          annotator.annotateSentence(annotation, sentence);
+        }
+      } else {
+        pool.submit(() -> regionSentences.parallelStream().forEach(sentence -> annotator.annotateSentence(annotation, sentence))).join();
+      }
+      annotator.finishSentences(annotation);
       if (TIME) {
-        long elapsed = t.stop();
-        MutableLong m = it.next();
-        m.incValue(elapsed);
+        it.next().record(System.nanoTime() - start);
+      }
+    }
+  }
+
+  /** Annotate an edited document from scratch, dropping what this pipeline set on it before. */
+  private void reannotateAll(Annotation annotation, String text) {
+    annotation.remove(CoreAnnotations.TokensAnnotation.class);
+    annotation.remove(CoreAnnotations.SentencesAnnotation.class);
+    for (Annotator annotator : annotators) {
+      for (Class<?> key : annotator.requirementsSatisfied()) {
+        annotation.remove(ChunkAnnotationUtils.anyKey(key));
       }
     }
+    annotation.set(CoreAnnotations.TextAnnotation.class, text);
+    annotate(annotation);
   }
 
   /**
@@ -129,6 +496,7 @@ public class AnnotationPipeline implements Annotator {
         annotate(ann);
         callback.accept(ann);
       }
+      return;
     }
     // Java's equivalent to ".map{ lambda(annotation) => annotate(annotation) }
     Iterable<Runnable> threads = () -> {
@@ -166,16 +534,120 @@ public class AnnotationPipeline implements Annotator {
     Redwood.Util.threadAndRun(this.getClass().getSimpleName(), threads, numThreads );
   }
 
+  /**
+   * Annotate a collection of input annotations IN PARALLEL on the lanes of a
+   * {@link LaneScheduler}, so that each document waits only behind documents of a similar size.
+   * Returns once all the documents are done; the scheduler can then take more work.
+   * An exception while annotating a document is stored in its
+   * {@link CoreAnnotations.ExceptionAnnotation} rather than thrown.
+   *
+   * @param annotations The input annotations to process
+   * @param lanes The lanes to run the documents on
+   * @param callback A function to be called when an annotation finishes.
+   */
+  public void annotate(Iterable<Annotation> annotations, LaneScheduler lanes, Consumer<Annotation> callback) {
+    Phaser outstanding = new Phaser(1);
+    for (Annotation annotation : annotations) {
+      outstanding.register();
+      try {
+        lanes.execute(annotation, () -> {
+          try {
+            annotate(annotation);
+          } catch (RuntimeException e) {
+            annotation.set(CoreAnnotations.ExceptionAnnotation.class, e);
+          }
+          try {
+            callback.accept(annotation);
+          } finally {
+            outstanding.arriveAndDeregister();
+          }
+        });
+      } catch (RuntimeException e) {
+        outstanding.arriveAndDeregister();
+        throw e;
+      }
+    }
+    outstanding.arriveAndAwaitAdvance();
+  }
+
+  /**
+   * Annotate the documents of an iterator IN PARALLEL, returning them lazily as they are finished.
+   * Documents are only read from the input as finished ones are consumed, so that no more
+   * than maxInFlight documents are held in memory at once, however long the input is.
+   * An exception while annotating a document is stored in its
+   * {@link CoreAnnotations.ExceptionAnnotation} rather than thrown.
+   *
+   * @param annotations The input annotations to process
+   * @param numThreads The number of threads to run on
+   * @param maxInFlight The most documents to hold at once, both those being annotated and
+   *                    those waiting to be returned
+   * @param ordered If true, return the documents in input order; otherwise return them as they finish
+   * @return The annotated documents. Close it (if it isn't run to the end) to release the threads
+   */
+  public AnnotationIterator annotate(Iterator<Annotation> annotations, int numThreads, int maxInFlight, boolean ordered) {
+    return new AnnotationIterator(this, annotations, numThreads, maxInFlight, ordered);
+  }
+
+  /**
+   * Annotate a stream of documents IN PARALLEL.
+   * See {@link #annotate(Iterator, int, int, boolean)}.
+   * Closing the returned stream closes the input stream and releases the threads.
+   *
+   * @param annotations The input annotations to process
+   * @param numThreads The number of threads to run on
+   * @param maxInFlight The most documents to hold at once
+   * @param ordered If true, return the documents in input order; otherwise return them as they finish
+   * @return A sequential stream of the annotated documents
+   */
+  public Stream<Annotation> annotate(Stream<Annotation> annotations, int numThreads, int maxInFlight, boolean ordered) {
+    AnnotationIterator iter = annotate(annotations.iterator(), numThreads, maxInFlight, ordered);
+    return asStream(iter, ordered).onClose(annotations::close);
+  }
+
+  /**
+   * Annotate texts coming from a publisher IN PARALLEL, for example texts read off a message queue.
+   * No more than maxInFlight texts are requested from the publisher ahead of the
+   * documents consumed from the returned stream.
+   * See {@link #annotate(Iterator, int, int, boolean)}.
+   *
+   * @param texts The texts to annotate
+   * @param numThreads The number of threads to run on
+   * @param maxInFlight The most documents to hold at once
+   * @param ordered If true, return the documents in the order published; otherwise return them as they finish
+   * @return A sequential stream of the annotated documents.
+   *         Closing it cancels the subscription and releases the threads.
+   */
+  public Stream<Annotation> annotateTexts(Flow.Publisher<String> texts, int numThreads, int maxInFlight, boolean ordered) {
+    PublisherIterator<String> published = new PublisherIterator<>(texts, maxInFlight);
+    Iterator<Annotation> documents = new Iterator<Annotation>() {
+      @Override
+      public boolean hasNext() {
+        return published.hasNext();
+      }
+      @Override
+      public Annotation next() {
+        return new Annotation(published.next());
+      }
+    };
+    AnnotationIterator iter = annotate(documents, numThreads, maxInFlight, ordered);
+    return asStream(iter, ordered).onClose(published::cancel);
+  }
+
+  private static Stream<Annotation> asStream(AnnotationIterator iter, boolean ordered) {
+    int characteristics = ordered ? (Spliterator.ORDERED | Spliterator.NONNULL) : Spliterator.NONNULL;
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iter, characteristics), false).onClose(iter::close);
+  }
+
   /** Return the total pipeline annotation time in milliseconds.
    *
    *  @return The total pipeline annotation time in milliseconds
    */
   protected long getTotalTime() {
     long total = 0;
-    for (MutableLong m: accumulatedTime) {
-      total += m.longValue();
+    for (PipelineMetrics.AnnotatorMetrics m : metrics.annotators()) {
+      total += m.latency().sum();
     }
-    return total;
+    return total / 1000000;
   }
 
   /** Return a String that gives detailed human-readable information about
@@ -191,14 +663,16 @@ public class AnnotationPipeline implements Annotator {
     if (TIME) {
       sb.append("Annotation pipeline timing information:");
       sb.append(IOUtils.eolChar);
-      Iterator<MutableLong> it = accumulatedTime.iterator();
+      Iterator<PipelineMetrics.AnnotatorMetrics> it = metrics.annotators().iterator();
       long total = 0;
       for (Annotator annotator : annotators) {
-        MutableLong m = it.next();
+        PipelineMetrics.AnnotatorMetrics m = it.next();
+        long millis = m.latency().sum() / 1000000;
         sb.append(StringUtils.getShortClassName(annotator)).append(": ");
-        sb.append(Timing.toSecondsString(m.longValue())).append(" sec.");
+        sb.append(Timing.toSecondsString(millis)).append(" sec.");
+        sb.append(String.format(" (p50 %.1f ms, p99 %.1f ms, max %.1f ms)", m.getP50Millis(), m.getP99Millis(), m.getMaxMillis()));
         sb.append(IOUtils.eolChar);
-        total += m.longValue();
+        total += millis;
       }
       sb.append("TOTAL: ").append(Timing.toSecondsString(total)).append(" sec.");
     }
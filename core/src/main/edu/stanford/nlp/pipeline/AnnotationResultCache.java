@@ -0,0 +1,419 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.TypesafeMap;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of annotated documents, keyed by the content of the input document and the
+ * signatures of the annotators of the pipeline, so that a document seen before needn't
+ * be annotated again.
+ *
+ * Documents are stored serialized (with Java serialization, as by {@link GenericAnnotationSerializer}),
+ * so each hit gives a fresh copy, which the caller can change without affecting the cache or other
+ * callers. There are two tiers: documents are kept in memory, up to a limit in bytes, and optionally
+ * in a directory, up to another limit; both drop the least recently used documents first.
+ * Documents older than the time to live, if there is one, are treated as missing.
+ * The disk tier survives restarts, and can be shared by several processes running the same pipeline.
+ *
+ * Documents whose annotations can't be serialized are not cached.
+ */
+public class AnnotationResultCache {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotationResultCache.class);
+
+  private static final String SUFFIX = ".ser.gz";
+
+  /** A document in one of the tiers. */
+  private static class Entry {
+    /** The serialized document, for the memory tier; null on disk. */
+    final byte[] bytes;
+    final long size;
+    final long created;
+
+    Entry(byte[] bytes, long size, long created) {
+      this.bytes = bytes;
+      this.size = size;
+      this.created = created;
+    }
+  }
+
+  private final String pipelineSignature;
+  private final long maxMemoryBytes;
+  private final File directory;
+  private final long maxDiskBytes;
+  private final long ttlMillis;
+
+  /** Both in least recently used order. */
+  private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBytes; // = 0
+  private long diskBytes; // = 0
+
+  private long memoryHits; // = 0
+  private long diskHits; // = 0
+  private long misses; // = 0
+  private long stores; // = 0
+  private long evictions; // = 0
+  private long expirations; // = 0
+  private long unserializable; // = 0
+
+
+  /**
+   * Create a cache.
+   *
+   * @param pipelineSignature Identifies the annotators and their properties; documents are only
+   *                          shared between pipelines with the same signature
+   * @param maxMemoryBytes The most bytes of serialized documents to keep in memory
+   * @param directory The directory of the disk tier, or null for none
+   * @param maxDiskBytes The most bytes of compressed documents to keep on disk
+   * @param ttlMillis How long documents are good for, or 0 for ever
+   */
+  public AnnotationResultCache(String pipelineSignature, long maxMemoryBytes,
+                               File directory, long maxDiskBytes, long ttlMillis) {
+    this.pipelineSignature = pipelineSignature;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.directory = directory;
+    this.maxDiskBytes = maxDiskBytes;
+    this.ttlMillis = ttlMillis;
+    if (directory != null) {
+      loadDirectory();
+    }
+  }
+
+  /**
+   * Create a cache from the {@code resultCache.*} properties, or return null if
+   * {@code resultCache} isn't true. The properties are {@code resultCache.maxBytes}
+   * (default 256m), {@code resultCache.dir} (default none), {@code resultCache.maxDiskBytes}
+   * (default 4g) and {@code resultCache.ttl} in seconds (default 0, for no limit).
+   */
+  public static AnnotationResultCache fromProperties(Properties props, String pipelineSignature) {
+    if ( ! PropertiesUtils.getBool(props, "resultCache", false)) {
+      return null;
+    }
+    String dir = props.getProperty("resultCache.dir");
+    return new AnnotationResultCache(pipelineSignature,
+        PropertiesUtils.getBytes(props, "resultCache.maxBytes", 256L << 20),
+        dir == null ? null : new File(dir),
+        PropertiesUtils.getBytes(props, "resultCache.maxDiskBytes", 4L << 30),
+        PropertiesUtils.getLong(props, "resultCache.ttl", 0L) * 1000);
+  }
+
+  /** Index the documents already in the directory, oldest first. */
+  private void loadDirectory() {
+    if ( ! directory.isDirectory() && ! directory.mkdirs()) {
+      throw new IllegalArgumentException("Cannot create result cache directory " + directory);
+    }
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    synchronized (this) {
+      for (File file : files) {
+        String key = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+        Entry entry = new Entry(null, file.length(), file.lastModified());
+        disk.put(key, entry);
+        diskBytes += entry.size;
+      }
+      evict(disk, maxDiskBytes, true);
+    }
+  }
+
+
+  /**
+   * The key of an input document: a hash of all its annotations (usually only the text, but also,
+   * for example, a document date, which may change the result) and of the pipeline signature.
+   * A {@link CoreAnnotations.DeadlineAnnotation deadline} doesn't change the result, and is left out.
+   */
+  public String key(CoreMap input) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-256 is always available", e);
+    }
+    digest.update(pipelineSignature.getBytes(StandardCharsets.UTF_8));
+    List<Class<?>> keys = new ArrayList<>(input.keySet());
+    keys.sort(Comparator.comparing(Class::getName));
+    for (Class<?> key : keys) {
+      if (key == CoreAnnotations.DeadlineAnnotation.class) {
+        continue;
+      }
+      digest.update((byte) 0);
+      digest.update(key.getName().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) '=');
+      digest.update(String.valueOf(input.get(uncheckedKey(key))).getBytes(StandardCharsets.UTF_8));
+    }
+    StringBuilder sb = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends TypesafeMap.Key<Object>> uncheckedKey(Class<?> key) {
+    return (Class<? extends TypesafeMap.Key<Object>>) key;
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return ttlMillis > 0 && now - entry.created > ttlMillis;
+  }
+
+  /**
+   * Look up a document, and if it is found, copy its annotations into the given document.
+   *
+   * @param key The key of the input document, from {@link #key(CoreMap)}
+   * @param into The document to fill in
+   * @return Whether the document was found
+   */
+  public boolean get(String key, Annotation into) {
+    long now = System.currentTimeMillis();
+    byte[] bytes = null;
+    boolean onDisk = false;
+    synchronized (this) {
+      Entry entry = memory.get(key);
+      if (entry != null) {
+        if (isExpired(entry, now)) {
+          memory.remove(key);
+          memoryBytes -= entry.size;
+          expirations += 1;
+        } else {
+          bytes = entry.bytes;
+          memoryHits += 1;
+        }
+      }
+      if (bytes == null && directory != null) {
+        entry = disk.get(key);
+        if (entry != null) {
+          if (isExpired(entry, now)) {
+            disk.remove(key);
+            diskBytes -= entry.size;
+            expirations += 1;
+            if ( ! file(key).delete()) {
+              log.debug("Could not delete expired " + file(key));
+            }
+          } else {
+            onDisk = true;
+          }
+        }
+      }
+      if (bytes == null && ! onDisk) {
+        misses += 1;
+        return false;
+      }
+    }
+    Annotation cached;
+    try {
+      if (onDisk) {
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file(key).toPath()))) {
+          bytes = in.readAllBytes();
+        }
+      }
+      cached = deserialize(bytes);
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      log.warn("Dropping unreadable cached document " + key + ": " + e);
+      remove(key);
+      synchronized (this) {
+        misses += 1;
+      }
+      return false;
+    }
+    if (onDisk) {
+      synchronized (this) {
+        diskHits += 1;
+        putInMemory(key, bytes, now);
+      }
+    }
+    copyInto(cached, into);
+    return true;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static void copyInto(Annotation from, Annotation into) {
+    for (Class key : from.keySet()) {
+      into.set(key, from.get(key));
+    }
+  }
+
+  /**
+   * Store an annotated document. It is serialized right away, so later changes to it don't reach the cache.
+   *
+   * @param key The key of the input document, computed before it was annotated
+   * @param result The annotated document
+   */
+  public void put(String key, Annotation result) {
+    byte[] bytes;
+    try {
+      bytes = serialize(result);
+    } catch (IOException e) {
+      synchronized (this) {
+        if (unserializable++ == 0) {
+          log.warn("Not caching documents which can't be serialized: " + e);
+        }
+      }
+      return;
+    }
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      stores += 1;
+      putInMemory(key, bytes, now);
+    }
+    if (directory != null) {
+      putOnDisk(key, bytes, now);
+    }
+  }
+
+  private void putInMemory(String key, byte[] bytes, long created) {
+    if (bytes.length > maxMemoryBytes) {
+      return;
+    }
+    Entry old = memory.put(key, new Entry(bytes, bytes.length, created));
+    if (old != null) {
+      memoryBytes -= old.size;
+    }
+    memoryBytes += bytes.length;
+    evict(memory, maxMemoryBytes, false);
+  }
+
+  private void putOnDisk(String key, byte[] bytes, long created) {
+    File file = file(key);
+    try {
+      // write to a temporary file and rename it, so that readers never see part of a document
+      File tmp = File.createTempFile(key, ".tmp", directory);
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))) {
+        out.write(bytes);
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not write cached document " + file + ": " + e);
+      return;
+    }
+    synchronized (this) {
+      Entry old = disk.put(key, new Entry(null, file.length(), created));
+      if (old != null) {
+        diskBytes -= old.size;
+      }
+      diskBytes += disk.get(key).size;
+      evict(disk, maxDiskBytes, true);
+    }
+  }
+
+  /** Drop the least recently used documents of a tier until it is within its limit. */
+  private void evict(LinkedHashMap<String, Entry> tier, long maxBytes, boolean onDisk) {
+    long bytes = onDisk ? diskBytes : memoryBytes;
+    Iterator<Map.Entry<String, Entry>> it = tier.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Map.Entry<String, Entry> eldest = it.next();
+      it.remove();
+      bytes -= eldest.getValue().size;
+      evictions += 1;
+      if (onDisk && ! file(eldest.getKey()).delete()) {
+        log.debug("Could not delete evicted " + file(eldest.getKey()));
+      }
+    }
+    if (onDisk) {
+      diskBytes = bytes;
+    } else {
+      memoryBytes = bytes;
+    }
+  }
+
+  /** Remove a document from both tiers. */
+  public synchronized void remove(String key) {
+    Entry entry = memory.remove(key);
+    if (entry != null) {
+      memoryBytes -= entry.size;
+    }
+    if (directory != null) {
+      entry = disk.remove(key);
+      if (entry != null) {
+        diskBytes -= entry.size;
+        if ( ! file(key).delete()) {
+          log.debug("Could not delete " + file(key));
+        }
+      }
+    }
+  }
+
+  /** Remove all documents from memory. Documents on disk are kept. */
+  public synchronized void clearMemory() {
+    memory.clear();
+    memoryBytes = 0;
+  }
+
+  private File file(String key) {
+    return new File(directory, key + SUFFIX);
+  }
+
+  private static byte[] serialize(Annotation annotation) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(annotation);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Annotation deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Annotation) in.readObject();
+    }
+  }
+
+
+  public synchronized long memoryHits() { return memoryHits; }
+
+  public synchronized long diskHits() { return diskHits; }
+
+  public synchronized long misses() { return misses; }
+
+  public synchronized long stores() { return stores; }
+
+  public synchronized long evictions() { return evictions; }
+
+  public synchronized long expirations() { return expirations; }
+
+  public synchronized int memoryCount() { return memory.size(); }
+
+  public synchronized long memoryBytes() { return memoryBytes; }
+
+  public synchronized int diskCount() { return disk.size(); }
+
+  public synchronized long diskBytes() { return diskBytes; }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("AnnotationResultCache[memory: %d docs, %.1fMB  disk: %d docs, %.1fMB  hits: %d memory, %d disk  misses: %d  stores: %d  evictions: %d  expirations: %d]",
+        memory.size(), memoryBytes / 1048576.0, disk.size(), diskBytes / 1048576.0,
+        memoryHits, diskHits, misses, stores, evictions, expirations);
+  }
+
+}
@@ -0,0 +1,489 @@
+package edu.stanford.nlp.pipeline;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.concurrent.BoundedExecutor;
+import edu.stanford.nlp.util.concurrent.ConcurrentHistogram;
+import edu.stanford.nlp.util.logging.Redwood;
+import edu.stanford.nlp.util.logging.StanfordRedwoodConfiguration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * An HTTP front end for a {@link StanfordCoreNLP} pipeline, built on the HTTP server of the JDK.
+ * The endpoints are:
+ * <ul>
+ *   <li>{@code POST /annotate}: annotate the request body, UTF-8 text, and reply with the
+ *       document in the {@code outputFormat} given in the query string ({@code json}, {@code conll},
+ *       {@code text}, {@code tagged} or {@code inlinexml}), by default that of the properties,
+ *       else {@code json}. The output is streamed as it is written.</li>
+ *   <li>{@code GET /metrics}: the throughput and latency of the pipeline and of the server,
+ *       in the Prometheus text format.</li>
+ *   <li>{@code GET /ready}: {@code ok} once the pipeline is loaded.</li>
+ * </ul>
+ *
+ * Requests which arrive together are gathered into micro-batches of up to
+ * {@code server.batchSize} documents, waiting at most {@code server.batchWaitMillis} for a batch
+ * to fill. Each batch is handed to {@link StanfordCoreNLP#annotate(Annotation, java.util.function.Consumer)},
+ * so documents are annotated on the threads the pipeline is configured with
+ * ({@code threads}, {@code executor.*}, {@code lanes}), and identical texts in a batch are
+ * annotated only once. When its document is done, a response is written on the HTTP threads, so a
+ * slow client doesn't hold up an annotation thread. With one thread and no lanes, the pipeline
+ * annotates each document on the batching thread itself, one at a time, while the HTTP threads go on
+ * reading and queueing requests.
+ *
+ * Admission control: at most {@code server.maxInFlight} requests are accepted at once; others are
+ * answered at once with 503 and a Retry-After header. Bodies over {@code server.maxBodyBytes}
+ * are refused with 413. Connections are kept alive between requests, as HTTP/1.1 clients expect.
+ *
+ * The properties read, besides those of the pipeline, are
+ * {@code server.host} (default 127.0.0.1, so only local clients can connect),
+ * {@code server.port} (default 9000), {@code server.batchSize} (default 16),
+ * {@code server.batchWaitMillis} (default 2), {@code server.maxInFlight} (default 256),
+ * {@code server.maxBodyBytes} (default 16m), {@code server.httpThreads} (default 4),
+ * and {@code server.timeout}, the milliseconds each document may take (default 0, no limit;
+ * see {@link AnnotationPipeline#setTimeBudget}).
+ */
+public class AnnotationServer {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotationServer.class);
+
+  /** How much of a request left unread is read and dropped before answering; past it, the connection is closed. */
+  private static final long MAX_DISCARDED_BYTES = 64 << 10;
+
+  /** The output formats which can be asked for. */
+  private static final StanfordCoreNLP.OutputFormat[] FORMATS = {
+      StanfordCoreNLP.OutputFormat.JSON, StanfordCoreNLP.OutputFormat.CONLL, StanfordCoreNLP.OutputFormat.TEXT,
+      StanfordCoreNLP.OutputFormat.TAGGED, StanfordCoreNLP.OutputFormat.INLINEXML,
+  };
+
+  private final StanfordCoreNLP pipeline;
+  private final HttpServer server;
+  private final BoundedExecutor httpExecutor;
+  private final Thread batcher;
+  private volatile boolean running; // = false
+
+  private final int batchSize;
+  private final long batchWaitNanos;
+  private final int maxInFlight;
+  private final long maxBodyBytes;
+  private final long timeoutMillis;
+  private final StanfordCoreNLP.OutputFormat defaultFormat;
+  private final Map<StanfordCoreNLP.OutputFormat, BiConsumer<Annotation, OutputStream>> outputters =
+      new EnumMap<>(StanfordCoreNLP.OutputFormat.class);
+
+  /** One permit per request accepted and not yet answered. */
+  private final Semaphore admitted;
+  private final BlockingQueue<Request> pending = new LinkedBlockingQueue<>();
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder deduplicated = new LongAdder();
+  private final ConcurrentHistogram batchSizes = new ConcurrentHistogram();
+  private final ConcurrentHistogram requestLatency = new ConcurrentHistogram();
+
+
+  /** A document waiting to be annotated, and the exchange to answer when it is done. */
+  private static class Request {
+    final HttpExchange exchange;
+    final String text;
+    final StanfordCoreNLP.OutputFormat format;
+    final long startNanos;
+
+    Request(HttpExchange exchange, String text, StanfordCoreNLP.OutputFormat format, long startNanos) {
+      this.exchange = exchange;
+      this.text = text;
+      this.format = format;
+      this.startNanos = startNanos;
+    }
+  }
+
+
+  /**
+   * Create a server for the given pipeline. It doesn't take requests until {@link #start()}.
+   *
+   * @param pipeline The pipeline to annotate documents with
+   * @param props The {@code server.*} properties, and those for the output
+   * @throws IOException If the address can't be bound
+   */
+  public AnnotationServer(StanfordCoreNLP pipeline, Properties props) throws IOException {
+    this.pipeline = pipeline;
+    this.batchSize = Math.max(1, PropertiesUtils.getInt(props, "server.batchSize", 16));
+    this.batchWaitNanos = TimeUnit.MILLISECONDS.toNanos(PropertiesUtils.getLong(props, "server.batchWaitMillis", 2));
+    this.maxInFlight = Math.max(1, PropertiesUtils.getInt(props, "server.maxInFlight", 256));
+    this.maxBodyBytes = PropertiesUtils.getBytes(props, "server.maxBodyBytes", 16L << 20);
+    this.timeoutMillis = PropertiesUtils.getLong(props, "server.timeout", 0);
+    this.admitted = new Semaphore(maxInFlight);
+    this.defaultFormat = StanfordCoreNLP.OutputFormat.valueOf(
+        props.getProperty("outputFormat", "json").toUpperCase(Locale.ROOT));
+    AnnotationOutputter.Options options = AnnotationOutputter.getOptions(props);
+    for (StanfordCoreNLP.OutputFormat format : FORMATS) {
+      Properties formatProps = new Properties();
+      formatProps.putAll(props);
+      formatProps.setProperty("outputFormat", format.name());
+      outputters.put(format, StanfordCoreNLP.createOutputter(formatProps, options));
+    }
+
+    String host = props.getProperty("server.host", "127.0.0.1");
+    int port = PropertiesUtils.getInt(props, "server.port", 9000);
+    int httpThreads = PropertiesUtils.getInt(props, "server.httpThreads", 4);
+    this.server = HttpServer.create(new InetSocketAddress(host, port), PropertiesUtils.getInt(props, "server.backlog", 0));
+    // these threads read requests and write responses, while the annotation is done elsewhere;
+    // there is room to queue a response for every accepted request besides as many new requests
+    this.httpExecutor = new BoundedExecutor("AnnotationServer-http", BoundedExecutor.Mode.POOL, httpThreads,
+        2 * maxInFlight, BoundedExecutor.RejectionPolicy.BLOCK, 60000);
+    server.setExecutor(httpExecutor);
+    server.createContext("/annotate", this::handleAnnotate);
+    server.createContext("/metrics", this::handleMetrics);
+    server.createContext("/ready", exchange -> sendText(exchange, 200, "ok\n"));
+    this.batcher = new Thread(this::batchLoop, "AnnotationServer-batcher");
+    batcher.setDaemon(true);
+  }
+
+  /** Start taking requests. */
+  public void start() {
+    running = true;
+    batcher.start();
+    server.start();
+    log.info("Annotation server listening on " + address());
+  }
+
+  /**
+   * Stop taking requests, and wait for those already accepted to be answered.
+   *
+   * @param delaySeconds The most time to give open exchanges to finish
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    running = false;
+    try {
+      batcher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    pipeline.awaitAnnotations();
+    httpExecutor.shutdown();
+  }
+
+  /** The address the server is listening on, with the port chosen if it was given as 0. */
+  public InetSocketAddress address() {
+    return server.getAddress();
+  }
+
+
+  private void handleAnnotate(HttpExchange exchange) throws IOException {
+    long start = System.nanoTime();
+    requests.increment();
+    if ( ! "POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().set("Allow", "POST");
+      sendText(exchange, 405, "Send the text to annotate with POST\n");
+      return;
+    }
+    if ( ! admitted.tryAcquire()) {
+      rejected.increment();
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      sendText(exchange, 503, "Too many requests in progress\n");
+      return;
+    }
+    boolean queued = false;
+    try {
+      StanfordCoreNLP.OutputFormat format = defaultFormat;
+      String formatName = query(exchange).get("outputFormat");
+      if (formatName != null) {
+        try {
+          format = StanfordCoreNLP.OutputFormat.valueOf(formatName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+          format = null;
+        }
+      }
+      if (format == null || ! outputters.containsKey(format)) {
+        sendText(exchange, 400, "Unknown output format " + formatName + "\n");
+        return;
+      }
+      byte[] body = readBody(exchange.getRequestBody(), maxBodyBytes);
+      if (body == null) {
+        sendText(exchange, 413, "The text is longer than " + maxBodyBytes + " bytes\n");
+        return;
+      }
+      pending.add(new Request(exchange, new String(body, StandardCharsets.UTF_8), format, start));
+      queued = true;
+    } finally {
+      if ( ! queued) {
+        admitted.release();
+      }
+    }
+  }
+
+  /** Gather waiting requests into batches and hand them to the pipeline. */
+  private void batchLoop() {
+    List<Request> batch = new ArrayList<>();
+    while (running || ! pending.isEmpty()) {
+      try {
+        Request first = pending.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long until = System.nanoTime() + batchWaitNanos;
+        while (batch.size() < batchSize) {
+          long left = until - System.nanoTime();
+          Request next = left <= 0 ? pending.poll() : pending.poll(left, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        if ( ! running) {
+          break;
+        }
+      }
+      if ( ! batch.isEmpty()) {
+        submit(batch);
+        batch = new ArrayList<>();
+      }
+    }
+  }
+
+  private void submit(List<Request> batch) {
+    batches.increment();
+    batchSizes.record(batch.size());
+    Map<String, List<Request>> byText = new LinkedHashMap<>();
+    for (Request request : batch) {
+      byText.computeIfAbsent(request.text, text -> new ArrayList<>()).add(request);
+    }
+    deduplicated.add(batch.size() - byText.size());
+    for (Map.Entry<String, List<Request>> entry : byText.entrySet()) {
+      Annotation annotation = new Annotation(entry.getKey());
+      if (timeoutMillis > 0) {
+        annotation.set(CoreAnnotations.DeadlineAnnotation.class, System.currentTimeMillis() + timeoutMillis);
+      }
+      List<Request> requests = entry.getValue();
+      try {
+        pipeline.annotate(annotation, done -> {
+          for (Request request : requests) {
+            respondLater(request, done);
+          }
+        });
+      } catch (RuntimeException e) {
+        // the pipeline refused the document, for example because its executor is full
+        annotation.set(CoreAnnotations.ExceptionAnnotation.class, e);
+        for (Request request : requests) {
+          respond(request, annotation);
+        }
+      }
+    }
+  }
+
+  /**
+   * Write the response to a request on the HTTP threads, rather than on the annotation thread
+   * which calls this, or here if the server has been stopped.
+   */
+  private void respondLater(Request request, Annotation annotation) {
+    try {
+      httpExecutor.execute(() -> respond(request, annotation));
+    } catch (RejectedExecutionException e) {
+      respond(request, annotation);
+    }
+  }
+
+  /** Write the annotated document, or the error, as the response to a request. */
+  private void respond(Request request, Annotation annotation) {
+    HttpExchange exchange = request.exchange;
+    try {
+      Throwable exception = annotation.get(CoreAnnotations.ExceptionAnnotation.class);
+      if (exception != null) {
+        failed.increment();
+        log.warn("Failed to annotate a document: " + exception);
+        sendText(exchange, 500, "Annotation failed: " + exception + "\n");
+        return;
+      }
+      String outOfTime = annotation.get(CoreAnnotations.DeadlineExceededAnnotation.class);
+      if (outOfTime != null) {
+        exchange.getResponseHeaders().set("X-Deadline-Exceeded", outOfTime);
+      }
+      exchange.getResponseHeaders().set("Content-Type", contentType(request.format));
+      // a length of 0 streams the response in chunks as the outputter writes it
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream os = new BufferedOutputStream(exchange.getResponseBody())) {
+        outputters.get(request.format).accept(annotation, os);
+      }
+    } catch (IOException | RuntimeException e) {
+      failed.increment();
+      log.warn("Failed to send a response: " + e);
+    } finally {
+      exchange.close();
+      admitted.release();
+      requestLatency.record(System.nanoTime() - request.startNanos);
+    }
+  }
+
+  private static String contentType(StanfordCoreNLP.OutputFormat format) {
+    switch (format) {
+      case JSON: return "application/json; charset=utf-8";
+      case INLINEXML: return "application/xml; charset=utf-8";
+      default: return "text/plain; charset=utf-8";
+    }
+  }
+
+
+  private void handleMetrics(HttpExchange exchange) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    PipelineMetrics metrics = pipeline.metrics();
+    counter(sb, "corenlp_documents_total", "Documents annotated", metrics.getDocuments());
+    counter(sb, "corenlp_tokens_total", "Tokens annotated", metrics.getTokens());
+    counter(sb, "corenlp_characters_total", "Characters annotated", metrics.getCharacters());
+    summary(sb, "corenlp_document_latency_seconds", "Time to annotate a document", "", metrics.documentLatency());
+    sb.append("# HELP corenlp_annotator_latency_seconds Time each annotator takes on a document\n");
+    sb.append("# TYPE corenlp_annotator_latency_seconds summary\n");
+    for (PipelineMetrics.AnnotatorMetrics annotator : metrics.annotators()) {
+      quantiles(sb, "corenlp_annotator_latency_seconds", "annotator=\"" + annotator.getName() + "\",", annotator.latency());
+    }
+    counter(sb, "corenlp_server_requests_total", "Annotation requests received", requests.sum());
+    counter(sb, "corenlp_server_rejected_total", "Requests refused because too many were in progress", rejected.sum());
+    counter(sb, "corenlp_server_failed_total", "Requests which failed", failed.sum());
+    gauge(sb, "corenlp_server_in_flight", "Requests accepted and not yet answered", maxInFlight - admitted.availablePermits());
+    gauge(sb, "corenlp_server_queued", "Requests waiting for a batch", pending.size());
+    counter(sb, "corenlp_server_batches_total", "Batches handed to the pipeline", batches.sum());
+    counter(sb, "corenlp_server_deduplicated_total", "Requests answered with the annotation of an identical text in their batch", deduplicated.sum());
+    gauge(sb, "corenlp_server_batch_size_mean", "Mean number of requests in a batch", batchSizes.mean());
+    summary(sb, "corenlp_server_request_latency_seconds", "Time from receiving a request to answering it", "", requestLatency);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+    sendText(exchange, 200, sb.toString());
+  }
+
+  private static void counter(StringBuilder sb, String name, String help, long value) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(" counter\n");
+    sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void gauge(StringBuilder sb, String name, String help, double value) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(" gauge\n");
+    sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void summary(StringBuilder sb, String name, String help, String labels, ConcurrentHistogram nanos) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(" summary\n");
+    quantiles(sb, name, labels, nanos);
+  }
+
+  /** Write the quantiles, sum and count of a histogram of nanoseconds, in seconds. */
+  private static void quantiles(StringBuilder sb, String name, String labels, ConcurrentHistogram nanos) {
+    for (double quantile : new double[] { 0.5, 0.95, 0.99 }) {
+      sb.append(name).append('{').append(labels).append("quantile=\"").append(quantile).append("\"} ")
+          .append(nanos.percentile(quantile * 100) / 1e9).append('\n');
+    }
+    String braces = labels.isEmpty() ? "" : '{' + labels.substring(0, labels.length() - 1) + '}';
+    sb.append(name).append("_sum").append(braces).append(' ').append(nanos.sum() / 1e9).append('\n');
+    sb.append(name).append("_count").append(braces).append(' ').append(nanos.count()).append('\n');
+  }
+
+
+  /** Send a short text response and end the exchange. */
+  private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    if ( ! exchange.getResponseHeaders().containsKey("Content-Type")) {
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    }
+    // discard what is left of the request, so that the connection can be kept alive,
+    // unless there is too much of it: then the connection is closed instead of reading it all
+    try (InputStream is = exchange.getRequestBody()) {
+      if ( ! discard(is, MAX_DISCARDED_BYTES)) {
+        exchange.getResponseHeaders().set("Connection", "close");
+      }
+    }
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+
+  /** Read and drop the rest of a stream, through a small buffer: returns false if there was more than the limit. */
+  private static boolean discard(InputStream is, long limit) throws IOException {
+    byte[] buffer = new byte[8192];
+    long discarded = 0;
+    int read;
+    while ((read = is.read(buffer)) >= 0) {
+      discarded += read;
+      if (discarded > limit) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Read the whole body of a request, or return null if it is longer than the limit. */
+  private static byte[] readBody(InputStream is, long limit) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) >= 0) {
+      if (bytes.size() + read > limit) {
+        return null;
+      }
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Map<String, String> query(HttpExchange exchange) throws UnsupportedEncodingException {
+    Map<String, String> params = new HashMap<>();
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return params;
+    }
+    for (String param : query.split("&")) {
+      int eq = param.indexOf('=');
+      if (eq > 0) {
+        params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"), URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+      }
+    }
+    return params;
+  }
+
+
+  /**
+   * Run a server for a pipeline given by the command line properties, for example
+   * {@code java edu.stanford.nlp.pipeline.AnnotationServer -annotators tokenize,ssplit -threads 4 -server.port 9000}
+   */
+  public static void main(String[] args) throws IOException {
+    StanfordRedwoodConfiguration.minimalSetup();
+    Properties props = StringUtils.argsToProperties(args);
+    AnnotationServer server = new AnnotationServer(new StanfordCoreNLP(props), props);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1), "AnnotationServer-shutdown"));
+    server.start();
+  }
+
+}
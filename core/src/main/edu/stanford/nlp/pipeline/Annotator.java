@@ -1,6 +1,7 @@
 package edu.stanford.nlp.pipeline;
 
 import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.util.CoreMap;
 
 import java.util.*;
 
@@ -65,6 +66,41 @@ public interface Annotator {
    */
   default void unmount() { }
 
+  /**
+   * Whether this annotator only ever looks at one sentence at a time.
+   * If true, an {@link AnnotationPipeline} with sentence threads may, instead of calling
+   * {@link #annotate(Annotation)}, call {@link #annotateSentence(Annotation, CoreMap)}
+   * on the sentences of a document concurrently, and then call
+   * {@link #finishSentences(Annotation)} once they are all done.
+   * This is only done for documents which already have sentences.
+   * By default, annotators are not sentence-local.
+   */
+  default boolean isSentenceLocal() {
+    return false;
+  }
+
+  /**
+   * Annotate one sentence of a document.
+   * Only called if {@link #isSentenceLocal()} is true, in which case it may be called
+   * for several sentences of the same document at once, and must only change that sentence
+   * and its tokens.
+   *
+   * @param document The document the sentence belongs to; this should not be changed
+   * @param sentence The sentence to annotate
+   */
+  default void annotateSentence(Annotation document, CoreMap sentence) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " is not sentence-local");
+  }
+
+  /**
+   * Called after all the sentences of a document have been passed to
+   * {@link #annotateSentence(Annotation, CoreMap)}, from a single thread.
+   * This is the place to set any document level annotations from the sentence
+   * level ones, in sentence order.
+   * By default, nothing is done.
+   */
+  default void finishSentences(Annotation document) { }
+
 
   /**
    * Returns a set of requirements for which tasks this annotator can
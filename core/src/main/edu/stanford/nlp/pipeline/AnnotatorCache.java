@@ -0,0 +1,467 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.util.Lazy;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A cache of annotators by signature, with a limit on the number of entries and
+ * on the memory taken by the annotators which have been created.
+ * This is the type of {@link StanfordCoreNLP#GLOBAL_ANNOTATOR_CACHE}, which
+ * otherwise keeps every annotator ever made by a pipeline in a JVM.
+ *
+ * An entry is a {@link Lazy}, which only creates its annotator when a pipeline needs it.
+ * The memory an annotator takes is estimated from the bytes allocated while creating it.
+ * When the cache is over either limit, entries whose annotators were never created are
+ * removed first, and then those whose annotators were least recently used ({@link Policy#LRU}, the default)
+ * or least often used ({@link Policy#LFU}). Removing an entry clears its lazy, so that the annotator
+ * can be garbage collected once no pipeline uses it, and is created again if one asks for it.
+ * A pipeline which still holds the lazy of a removed entry gets the annotator through the cache again,
+ * which adds the entry back.
+ * Annotators which are expensive to create can be pinned, by name, so they are never removed.
+ *
+ * By default there are no limits, which is the behavior of the unbounded map this replaces.
+ * All methods are threadsafe; annotators are created outside the lock of the cache.
+ */
+public class AnnotatorCache extends AbstractMap<StanfordCoreNLP.AnnotatorSignature, Lazy<Annotator>> {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotatorCache.class);
+
+  /** Which created annotators to remove first when the cache is over its limits. */
+  public enum Policy {
+    /** Least recently used. */
+    LRU,
+    /** Least often used, and least recently used among those used equally often. */
+    LFU
+  }
+
+  /** An entry of the cache. */
+  private class Node {
+    final StanfordCoreNLP.AnnotatorSignature key;
+    final Lazy<Annotator> inner;
+    final Lazy<Annotator> lazy;
+    long uses;      // guarded by the cache
+    long lastUsed;  // guarded by the cache
+    long weight = -1;  // guarded by the cache; -1 until created
+
+    Node(StanfordCoreNLP.AnnotatorSignature key, Lazy<Annotator> inner) {
+      this.key = key;
+      this.inner = inner;
+      this.lazy = new Lazy<Annotator>() {
+        @Override
+        public Annotator get() {
+          touch(Node.this);
+          return super.get();
+        }
+
+        @Override
+        protected Annotator compute() {
+          Node current = readmit(Node.this);
+          if (current != Node.this) {
+            // this entry was removed while a pipeline kept its lazy, and the key was added again since
+            return current.lazy.get();
+          }
+          long before = allocatedBytes();
+          Annotator annotator = Node.this.inner.get();
+          long after = allocatedBytes();
+          created(Node.this, before < 0 || after < 0 ? 0 : after - before);
+          return annotator;
+        }
+
+        @Override
+        public boolean isCache() {
+          return Node.this.inner.isCache();
+        }
+      };
+    }
+
+    boolean isCreated() {
+      return weight >= 0 && lazy.getIfDefined() != null;
+    }
+  }
+
+
+  private final Map<StanfordCoreNLP.AnnotatorSignature, Node> nodes = new HashMap<>();
+  private final Set<String> pinned = new HashSet<>();
+  private long clock; // = 0
+
+  private int maxEntries = Integer.MAX_VALUE;
+  private long maxBytes = Long.MAX_VALUE;
+  private Policy policy = Policy.LRU;
+
+  private long hits; // = 0
+  private long misses; // = 0
+  private long creations; // = 0
+  private long evictions; // = 0
+
+
+  /** Create a cache without limits. */
+  public AnnotatorCache() { }
+
+  /**
+   * Set the limits of the cache from properties, where given. The properties read are
+   * {@code annotatorCache.maxEntries}, {@code annotatorCache.maxBytes} (which may end in
+   * k, m or g), {@code annotatorCache.policy} ({@code lru} or {@code lfu}) and
+   * {@code annotatorCache.pin} (a comma-separated list of annotator names, which replaces
+   * the annotators pinned before, so that pins don't build up over the pipelines made in a JVM).
+   */
+  public void configure(Properties props) {
+    if (props.containsKey("annotatorCache.maxEntries")) {
+      setMaxEntries(PropertiesUtils.getInt(props, "annotatorCache.maxEntries", Integer.MAX_VALUE));
+    }
+    if (props.containsKey("annotatorCache.maxBytes")) {
+      setMaxBytes(PropertiesUtils.getBytes(props, "annotatorCache.maxBytes", Long.MAX_VALUE));
+    }
+    if (props.containsKey("annotatorCache.policy")) {
+      setPolicy(Policy.valueOf(props.getProperty("annotatorCache.policy").trim().toUpperCase()));
+    }
+    if (props.containsKey("annotatorCache.pin")) {
+      Set<String> names = new HashSet<>();
+      for (String name : props.getProperty("annotatorCache.pin").split("[, \t]+")) {
+        if ( ! name.isEmpty()) {
+          names.add(name);
+        }
+      }
+      setPinned(names);
+    }
+  }
+
+  /** Keep at most this many entries, whether their annotators have been created or not. */
+  public void setMaxEntries(int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+    }
+    List<Node> evicted;
+    synchronized (this) {
+      this.maxEntries = maxEntries;
+      evicted = evict(null);
+    }
+    release(evicted);
+  }
+
+  /** Keep annotators estimated to take at most this many bytes. */
+  public void setMaxBytes(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    List<Node> evicted;
+    synchronized (this) {
+      this.maxBytes = maxBytes;
+      evicted = evict(null);
+    }
+    release(evicted);
+  }
+
+  public synchronized void setPolicy(Policy policy) {
+    this.policy = policy;
+  }
+
+  /** Never remove annotators with this name (for example, "tokenize"), whatever their properties. */
+  public synchronized void pin(String annotatorName) {
+    pinned.add(annotatorName);
+  }
+
+  /** Pin exactly these annotator names, unpinning any others. */
+  public void setPinned(Collection<String> annotatorNames) {
+    List<Node> evicted;
+    synchronized (this) {
+      pinned.clear();
+      pinned.addAll(annotatorNames);
+      evicted = evict(null);
+    }
+    release(evicted);
+  }
+
+  public void unpin(String annotatorName) {
+    List<Node> evicted;
+    synchronized (this) {
+      pinned.remove(annotatorName);
+      evicted = evict(null);
+    }
+    release(evicted);
+  }
+
+  public synchronized boolean isPinned(String annotatorName) {
+    return pinned.contains(annotatorName);
+  }
+
+
+  private synchronized void touch(Node node) {
+    node.uses += 1;
+    node.lastUsed = ++clock;
+  }
+
+  /**
+   * The entry to create the annotator of, when a lazy is asked for it: the entry itself,
+   * added back if it had been removed, or the entry which has taken its place.
+   */
+  private synchronized Node readmit(Node node) {
+    Node current = nodes.get(node.key);
+    if (current == null) {
+      nodes.put(node.key, node);
+      node.lastUsed = ++clock;
+      current = node;
+    }
+    return current;
+  }
+
+  private void created(Node node, long weight) {
+    List<Node> evicted = null;
+    synchronized (this) {
+      node.weight = weight;
+      creations += 1;
+      // it may have been removed while it was created, and is tracked again all the same
+      nodes.putIfAbsent(node.key, node);
+      if (nodes.get(node.key) == node) {
+        evicted = evict(node);
+      }
+    }
+    release(evicted);
+  }
+
+  /** The bytes allocated so far by this thread, or -1 if the JVM can't tell. */
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Remove entries until the cache is within its limits. Called with the lock held.
+   *
+   * @param keep An entry not to remove, because it has only just been added or created
+   * @return The entries removed whose annotators had been created, which should be
+   *         {@link #release(List) released} once the lock is no longer held
+   */
+  private List<Node> evict(Node keep) {
+    List<Node> evicted = new ArrayList<>();
+    long bytes = createdBytes();
+    if (keep != null && keep.weight >= 0 && ! keep.isCreated()) {
+      bytes += keep.weight;  // its lazy isn't set until creating it returns
+    }
+    while (nodes.size() > maxEntries || bytes > maxBytes) {
+      Node victim = null;
+      for (Node node : nodes.values()) {
+        if (node == keep || pinned.contains(node.key.name)) {
+          continue;
+        }
+        if (victim == null || isBetterVictim(node, victim)) {
+          victim = node;
+        }
+      }
+      if (victim == null) {
+        break;  // everything left is pinned
+      }
+      if ( ! victim.isCreated()) {
+        if (nodes.size() <= maxEntries) {
+          break;  // only created annotators take memory
+        }
+        nodes.remove(victim.key);
+        continue;
+      }
+      log.debug("Evicting annotator " + victim.key + " (" + victim.weight + " bytes)");
+      bytes -= victim.weight;
+      nodes.remove(victim.key);
+      evicted.add(victim);
+      evictions += 1;
+    }
+    return evicted;
+  }
+
+  /**
+   * Drop the annotators of evicted entries, so they can be garbage collected when no pipeline
+   * uses them. This takes the locks of the lazies, so it must not be called with the lock of
+   * the cache held: a lazy holds its own lock while creating an annotator, and then takes the cache's.
+   */
+  private static void release(List<Node> evicted) {
+    if (evicted != null) {
+      for (Node node : evicted) {
+        node.lazy.clear();
+        node.inner.clear();
+      }
+    }
+  }
+
+  /** Whether a is better to remove than b. */
+  private boolean isBetterVictim(Node a, Node b) {
+    boolean aCreated = a.isCreated();
+    if (aCreated != b.isCreated()) {
+      return ! aCreated;
+    }
+    if (policy == Policy.LFU && a.uses != b.uses) {
+      return a.uses < b.uses;
+    }
+    return a.lastUsed < b.lastUsed;
+  }
+
+  private long createdBytes() {
+    long bytes = 0;
+    for (Node node : nodes.values()) {
+      if (node.isCreated()) {
+        bytes += node.weight;
+      }
+    }
+    return bytes;
+  }
+
+
+  @Override
+  public synchronized Lazy<Annotator> get(Object key) {
+    Node node = nodes.get(key);
+    if (node == null) {
+      misses += 1;
+      return null;
+    }
+    hits += 1;
+    return node.lazy;
+  }
+
+  @Override
+  public synchronized boolean containsKey(Object key) {
+    return nodes.containsKey(key);
+  }
+
+  /**
+   * Return the entry for the key, adding the lazy made by the given function if there isn't one.
+   * The lazy returned is not the one the function made, but one which keeps track of its use.
+   */
+  @Override
+  public Lazy<Annotator> computeIfAbsent(StanfordCoreNLP.AnnotatorSignature key,
+                                        Function<? super StanfordCoreNLP.AnnotatorSignature, ? extends Lazy<Annotator>> mappingFunction) {
+    Node node;
+    List<Node> evicted;
+    synchronized (this) {
+      node = nodes.get(key);
+      if (node != null) {
+        hits += 1;
+        return node.lazy;
+      }
+      misses += 1;
+      Lazy<Annotator> inner = mappingFunction.apply(key);
+      if (inner == null) {
+        return null;
+      }
+      node = new Node(key, inner);
+      node.lastUsed = ++clock;
+      nodes.put(key, node);
+      evicted = evict(node);
+    }
+    release(evicted);
+    return node.lazy;
+  }
+
+  /**
+   * Add an entry. As with {@link #computeIfAbsent(StanfordCoreNLP.AnnotatorSignature, Function)},
+   * the lazy stored is a wrapper around the given one.
+   */
+  @Override
+  public Lazy<Annotator> put(StanfordCoreNLP.AnnotatorSignature key, Lazy<Annotator> value) {
+    Node old;
+    List<Node> evicted;
+    synchronized (this) {
+      Node node = new Node(key, value);
+      node.lastUsed = ++clock;
+      old = nodes.put(key, node);
+      evicted = evict(node);
+    }
+    release(evicted);
+    return old == null ? null : old.lazy;
+  }
+
+  @Override
+  public synchronized Lazy<Annotator> remove(Object key) {
+    Node old = nodes.remove(key);
+    return old == null ? null : old.lazy;
+  }
+
+  @Override
+  public synchronized void clear() {
+    nodes.clear();
+  }
+
+  @Override
+  public synchronized int size() {
+    return nodes.size();
+  }
+
+  /** A copy of the entries of the cache. */
+  @Override
+  public synchronized Set<Entry<StanfordCoreNLP.AnnotatorSignature, Lazy<Annotator>>> entrySet() {
+    Set<Entry<StanfordCoreNLP.AnnotatorSignature, Lazy<Annotator>>> entries = new LinkedHashSet<>();
+    for (Node node : nodes.values()) {
+      entries.add(new SimpleImmutableEntry<>(node.key, node.lazy));
+    }
+    return entries;
+  }
+
+
+  /** The number of lookups which found an entry. */
+  public synchronized long hits() { return hits; }
+
+  /** The number of lookups which found no entry. */
+  public synchronized long misses() { return misses; }
+
+  /** The number of annotators the cache has created. */
+  public synchronized long creations() { return creations; }
+
+  /** The number of created annotators removed to keep within the limits. */
+  public synchronized long evictions() { return evictions; }
+
+  /** The estimated bytes taken by the annotators which have been created and not collected. */
+  public synchronized long bytes() { return createdBytes(); }
+
+  /** The number of entries whose annotators have been created and not collected. */
+  public synchronized int createdCount() {
+    int count = 0;
+    for (Node node : nodes.values()) {
+      if (node.isCreated()) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  /** The signatures of the entries whose annotators have been created, most recently used first. */
+  public synchronized List<StanfordCoreNLP.AnnotatorSignature> createdSignatures() {
+    List<Node> created = new ArrayList<>();
+    for (Node node : nodes.values()) {
+      if (node.isCreated()) {
+        created.add(node);
+      }
+    }
+    created.sort((a, b) -> Long.compare(b.lastUsed, a.lastUsed));
+    List<StanfordCoreNLP.AnnotatorSignature> keys = new ArrayList<>(created.size());
+    for (Node node : created) {
+      keys.add(node.key);
+    }
+    return keys;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("AnnotatorCache[entries: %d/%s  created: %d  bytes: %.1fMB/%s  policy: %s  pinned: %s  hits: %d  misses: %d  creations: %d  evictions: %d]",
+        nodes.size(), maxEntries == Integer.MAX_VALUE ? "unbounded" : Integer.toString(maxEntries),
+        createdCount(), createdBytes() / 1048576.0, maxBytes == Long.MAX_VALUE ? "unbounded" : String.format("%.1fMB", maxBytes / 1048576.0),
+        policy, pinned, hits, misses, creations, evictions);
+  }
+
+}
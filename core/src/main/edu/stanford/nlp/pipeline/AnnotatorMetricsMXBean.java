@@ -0,0 +1,15 @@
+package edu.stanford.nlp.pipeline;
+
+/** The JMX view of one annotator of a pipeline. Times are in milliseconds. */
+public interface AnnotatorMetricsMXBean {
+  String getName();
+  long getCount();
+  double getTotalSeconds();
+  double getMeanMillis();
+  double getP50Millis();
+  double getP95Millis();
+  double getP99Millis();
+  double getMaxMillis();
+  double getLoadMillis();
+  long getLoadAllocatedBytes();
+}
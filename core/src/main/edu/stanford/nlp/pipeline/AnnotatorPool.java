@@ -139,12 +139,17 @@ public class AnnotatorPool  {
    * been requested, it will be created. Otherwise, the existing instance of
    * the Annotator will be returned.
    *
+   * Different annotators can be created at the same time by different threads.
+   *
    * @param name The annotator to retrieve from the pool
    * @return The annotator
    * @throws IllegalArgumentException If the annotator cannot be created
    */
-  public synchronized Annotator get(String name) {
-    CachedAnnotator factory =  this.cachedAnnotators.get(name);
+  public Annotator get(String name) {
+    CachedAnnotator factory;
+    synchronized (this.cachedAnnotators) {
+      factory = this.cachedAnnotators.get(name);
+    }
     if (factory != null) {
       return factory.annotator.get();
     } else {
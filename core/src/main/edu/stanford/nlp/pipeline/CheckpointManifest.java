@@ -0,0 +1,209 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An append-only record of the input files which a batch run has finished, so that
+ * a run which is restarted after a crash can skip them.
+ * For each file, the size and modification time it had when it was read, and a hash of its
+ * contents, are kept. A file is done if its size and modification time are unchanged, which
+ * costs a hash lookup and no reads; optionally, a file whose size or time has changed is
+ * still done if its contents hash the same, so that copying or touching files doesn't force
+ * them to be annotated again.
+ *
+ * The manifest is a text file with one line per finished file: the size, the modification
+ * time, the hash, and the absolute path, separated by tabs. Each line is flushed as
+ * it is written, and a partly written last line (from a crash) is ignored on reading.
+ * If a file is finished more than once, the last line for it counts.
+ */
+public class CheckpointManifest implements Closeable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(CheckpointManifest.class);
+
+  /** How many bytes of the SHA-256 hash are kept. */
+  private static final int HASH_BYTES = 16;
+
+  /** What is known about a finished file. */
+  public static class Entry {
+    public final long size;
+    public final long lastModified;
+    public final String hash;
+
+    public Entry(long size, long lastModified, String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
+  private final File file;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Writer out;
+
+  /**
+   * Open a manifest, reading the files already finished if it exists, and creating it if not.
+   *
+   * @param file The manifest file
+   * @throws IOException If the manifest can't be read or opened for appending
+   */
+  public CheckpointManifest(File file) throws IOException {
+    this.file = file;
+    if (file.exists()) {
+      int malformed = 0;
+      try (BufferedReader reader = IOUtils.readerFromFile(file, "UTF-8")) {
+        for (String line; (line = reader.readLine()) != null; ) {
+          if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+          }
+          String[] fields = line.split("\t", 4);
+          try {
+            if (fields.length == 4) {
+              entries.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+              continue;
+            }
+          } catch (NumberFormatException e) {
+            // fall through to count it
+          }
+          malformed++;
+        }
+      }
+      if (malformed > 0) {
+        log.warn("Ignored " + malformed + " malformed lines in checkpoint manifest " + file);
+      }
+    }
+    boolean isNew = ! file.exists() || file.length() == 0;
+    boolean endsInNewline = isNew || endsInNewline(file);
+    this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    if (isNew) {
+      out.write("# size\tlastModified\thash\tpath\n");
+      out.flush();
+    } else if ( ! endsInNewline) {
+      // finish off a line cut short by a crash, so that it isn't joined to the next one
+      out.write('\n');
+      out.flush();
+    }
+  }
+
+  private static boolean endsInNewline(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.seek(raf.length() - 1);
+      return raf.read() == '\n';
+    }
+  }
+
+  private static String key(File input) {
+    return input.getAbsolutePath();
+  }
+
+  /** The number of files recorded as finished. */
+  public int size() {
+    return entries.size();
+  }
+
+  /** What was recorded when the given file was finished, or null if it hasn't been. */
+  public Entry get(File input) {
+    return entries.get(key(input));
+  }
+
+  /**
+   * Whether the given file has been finished and is unchanged since.
+   *
+   * @param input The input file
+   * @param size The current size of the file
+   * @param lastModified The current modification time of the file
+   * @param verify If true and the size or time has changed, hash the contents of the
+   *               file to see whether it really has changed
+   */
+  public boolean isDone(File input, long size, long lastModified, boolean verify) throws IOException {
+    Entry entry = entries.get(key(input));
+    if (entry == null) {
+      return false;
+    }
+    if (entry.size == size && entry.lastModified == lastModified) {
+      return true;
+    }
+    return verify && entry.size == size && entry.hash.equals(hash(input));
+  }
+
+  /**
+   * Record that a file has been finished. The size and time should be those seen when
+   * the file was read, so that a change made to it since is picked up on a restart.
+   */
+  public synchronized void markDone(File input, long size, long lastModified, String hash) throws IOException {
+    String key = key(input);
+    out.write(Long.toString(size));
+    out.write('\t');
+    out.write(Long.toString(lastModified));
+    out.write('\t');
+    out.write(hash);
+    out.write('\t');
+    out.write(key);
+    out.write('\n');
+    out.flush();
+    entries.put(key, new Entry(size, lastModified, hash));
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-256 is always available", e);
+    }
+  }
+
+  private static String toHex(byte[] digest) {
+    StringBuilder sb = new StringBuilder(2 * HASH_BYTES);
+    for (int i = 0; i < HASH_BYTES; i++) {
+      sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(digest[i] & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  /** The hash of some file contents, as recorded in the manifest. */
+  public static String hash(byte[] contents) {
+    return toHex(newDigest().digest(contents));
+  }
+
+  /** The hash of the contents of a file, as recorded in the manifest. */
+  public static String hash(File input) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[65536];
+    try (InputStream is = new FileInputStream(input)) {
+      for (int n; (n = is.read(buffer)) > 0; ) {
+        digest.update(buffer, 0, n);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  @Override
+  public String toString() {
+    return "CheckpointManifest[" + file + ": " + entries.size() + " files]";
+  }
+
+}
@@ -5,13 +5,18 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.process.CoreLabelTokenFactory;
 import edu.stanford.nlp.process.CoreTokenFactory;
+import edu.stanford.nlp.process.PTBTokenizer;
 import edu.stanford.nlp.util.*;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -101,6 +106,194 @@ public class ChunkAnnotationUtils  {
   }
 
 
+  /**
+   * Add to the character, token and sentence offsets of an annotation, and of the
+   * annotations listed under it, such as its tokens or mentions. Each is changed only once,
+   * as the same token is often in several lists.
+   *
+   * @param shifted The annotations already changed, which are skipped
+   */
+  public static void shiftOffsets(CoreMap map, int chars, int tokens, int sentences, Set<CoreMap> shifted) {
+    if ( ! shifted.add(map)) {
+      return;
+    }
+    Integer offset = map.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+    if (offset != null) {
+      map.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, offset + chars);
+    }
+    offset = map.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+    if (offset != null) {
+      map.set(CoreAnnotations.CharacterOffsetEndAnnotation.class, offset + chars);
+    }
+    offset = map.get(CoreAnnotations.TokenBeginAnnotation.class);
+    if (offset != null) {
+      map.set(CoreAnnotations.TokenBeginAnnotation.class, offset + tokens);
+    }
+    offset = map.get(CoreAnnotations.TokenEndAnnotation.class);
+    if (offset != null) {
+      map.set(CoreAnnotations.TokenEndAnnotation.class, offset + tokens);
+    }
+    offset = map.get(CoreAnnotations.SentenceIndexAnnotation.class);
+    if (offset != null) {
+      map.set(CoreAnnotations.SentenceIndexAnnotation.class, offset + sentences);
+    }
+    for (Class<?> key : map.keySet()) {
+      Object value = map.get(anyKey(key));
+      if (value instanceof List) {
+        for (Object element : (List<?>) value) {
+          if (element instanceof CoreMap) {
+            shiftOffsets((CoreMap) element, chars, tokens, sentences, shifted);
+          }
+        }
+      }
+    }
+  }
+
+  /** A key of a CoreMap whose value type isn't known, for reading or removing its value as an Object. */
+  @SuppressWarnings("unchecked")
+  static Class<? extends TypesafeMap.Key<Object>> anyKey(Class<?> key) {
+    return (Class<? extends TypesafeMap.Key<Object>>) key;
+  }
+
+  /** An XML start, end or empty element tag. */
+  private static final Pattern XML_TAG = Pattern.compile("<(/?)([A-Za-z_][\\w:.-]*)[^<>]*?(/?)>");
+
+  /**
+   * Find where to cut a long text into pieces of about the given size which can be annotated
+   * on their own. A piece starts at the beginning of a paragraph, after a blank line.
+   * If section tags are given, the text is taken to be XML, and a piece starts instead after
+   * the end tag of a section which isn't inside any other element, so that each piece is
+   * well formed XML.
+   *
+   * @param text The text to cut
+   * @param chunkSize The least number of characters in each piece but the last
+   * @param sectionTags If not null, the names of the section elements of an XML text
+   * @return The character offsets where the pieces start, beginning with 0
+   */
+  public static List<Integer> safeChunkBoundaries(String text, int chunkSize, Pattern sectionTags) {
+    List<Integer> begins = new ArrayList<>();
+    begins.add(0);
+    int from = Math.max(1, chunkSize);
+    if (sectionTags == null) {
+      Matcher m = PTBTokenizer.BLANK_LINE.matcher(text);
+      while (from < text.length() && m.find(from)) {
+        int begin = m.end();
+        if (begin >= text.length()) {
+          break;
+        }
+        begins.add(begin);
+        from = begin + Math.max(1, chunkSize);
+      }
+    } else {
+      Matcher m = XML_TAG.matcher(text);
+      int depth = 0;
+      while (m.find()) {
+        boolean isEnd = ! m.group(1).isEmpty();
+        if ( ! m.group(3).isEmpty()) {
+          continue;
+        }
+        depth = isEnd ? Math.max(0, depth - 1) : depth + 1;
+        if (isEnd && depth == 0 && m.end() >= from && sectionTags.matcher(m.group(2)).matches()) {
+          int begin = m.end();
+          while (begin < text.length() && Character.isWhitespace(text.charAt(begin))) {
+            begin++;
+          }
+          if (begin >= text.length()) {
+            break;
+          }
+          begins.add(begin);
+          from = begin + Math.max(1, chunkSize);
+        }
+      }
+    }
+    return begins;
+  }
+
+  /**
+   * Join pieces of a text which were annotated separately into one document for the
+   * whole text. The character, token and sentence offsets of each piece are shifted to
+   * where it is in the whole, its tokens and sentences are appended to those of the document,
+   * and so are the elements of its other lists, such as mentions or sections. Other
+   * annotations of the pieces are kept from the first piece which has them, unless the
+   * document already has them.
+   *
+   * @param document The document for the whole text, which is given the annotations of the pieces
+   * @param chunks The annotated pieces, in order
+   * @param chunkBegins The character offset in the document where each piece begins
+   */
+  public static void mergeAnnotatedChunks(Annotation document, List<Annotation> chunks, List<Integer> chunkBegins) {
+    Set<Class<?>> inputKeys = new HashSet<>(document.keySet());
+    List<CoreLabel> tokens = new ArrayList<>();
+    List<CoreMap> sentences = new ArrayList<>();
+    Set<CoreMap> shifted = Collections.newSetFromMap(new IdentityHashMap<>());
+    CoreLabel previous = null;
+    for (int i = 0; i < chunks.size(); i++) {
+      Annotation chunk = chunks.get(i);
+      int begin = chunkBegins.get(i);
+      List<CoreLabel> chunkTokens = chunk.get(CoreAnnotations.TokensAnnotation.class);
+      if (chunkTokens == null) {
+        chunkTokens = Collections.emptyList();
+      }
+      List<CoreMap> chunkSentences = chunk.get(CoreAnnotations.SentencesAnnotation.class);
+      if (chunkSentences == null) {
+        chunkSentences = Collections.emptyList();
+      }
+      int tokenBase = tokens.size();
+      int sentenceBase = sentences.size();
+      List<CoreMap> sections = document.get(CoreAnnotations.SectionsAnnotation.class);
+      int sectionBase = sections == null ? 0 : sections.size();
+      for (CoreMap sentence : chunkSentences) {
+        shiftOffsets(sentence, begin, tokenBase, sentenceBase, shifted);
+        Integer sectionIndex = sentence.get(CoreAnnotations.SectionIndexAnnotation.class);
+        if (sectionIndex != null) {
+          sentence.set(CoreAnnotations.SectionIndexAnnotation.class, sectionIndex + sectionBase);
+        }
+      }
+      for (CoreLabel token : chunkTokens) {
+        shiftOffsets(token, begin, tokenBase, sentenceBase, shifted);
+      }
+      for (Class<?> key : chunk.keySet()) {
+        if (key == CoreAnnotations.TextAnnotation.class || key == CoreAnnotations.TokensAnnotation.class ||
+            key == CoreAnnotations.SentencesAnnotation.class || inputKeys.contains(key)) {
+          continue;
+        }
+        Object value = chunk.get(anyKey(key));
+        if (value instanceof List) {
+          for (Object element : (List<?>) value) {
+            if (element instanceof CoreMap) {
+              shiftOffsets((CoreMap) element, begin, tokenBase, sentenceBase, shifted);
+            }
+          }
+          List<Object> merged = ErasureUtils.uncheckedCast(document.get(anyKey(key)));
+          if (merged == null) {
+            merged = new ArrayList<>();
+            document.set(anyKey(key), merged);
+          }
+          merged.addAll((List<?>) value);
+        } else if ( ! document.containsKey(anyKey(key))) {
+          document.set(anyKey(key), value);
+        }
+      }
+      // the text between the last token of a piece and the first of the next one is split
+      // between the end of the one piece and the start of the other
+      if (previous != null && ! chunkTokens.isEmpty()) {
+        CoreLabel first = chunkTokens.get(0);
+        String after = previous.get(CoreAnnotations.AfterAnnotation.class);
+        String before = first.get(CoreAnnotations.BeforeAnnotation.class);
+        String between = (after == null ? "" : after) + (before == null ? "" : before);
+        previous.set(CoreAnnotations.AfterAnnotation.class, between);
+        first.set(CoreAnnotations.BeforeAnnotation.class, between);
+      }
+      if ( ! chunkTokens.isEmpty()) {
+        previous = chunkTokens.get(chunkTokens.size() - 1);
+      }
+      tokens.addAll(chunkTokens);
+      sentences.addAll(chunkSentences);
+    }
+    document.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    document.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+  }
+
   /**
    * Copies annotation over to this CoreMap if not already set.
    */
@@ -1,6 +1,7 @@
 package edu.stanford.nlp.pipeline;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -155,6 +156,12 @@ public class CleanXmlAnnotator implements Annotator {
 
   public static final boolean DEFAULT_ALLOW_FLAWS = true;
 
+  /**
+   * Which of the patterns above match each tag and attribute name seen.  It is made when first
+   * needed, and made again if the patterns are changed.
+   */
+  private volatile TagClassifier tagClassifier; // = null
+
   public CleanXmlAnnotator() {
     this(DEFAULT_XML_TAGS, DEFAULT_SENTENCE_ENDERS, DEFAULT_DATE_TAGS, DEFAULT_ALLOW_FLAWS);
   }
@@ -280,44 +287,77 @@ public class CleanXmlAnnotator implements Annotator {
 
   public void setSingleSentenceTagMatcher(String tags) {
     singleSentenceTagMatcher = toCaseInsensitivePattern(tags);
+    tagClassifier = null;
   }
 
   public void setDocIdTagMatcher(String docIdTags) {
     docIdTagMatcher = toCaseInsensitivePattern(docIdTags);
+    tagClassifier = null;
   }
 
   public void setDocTypeTagMatcher(String docTypeTags) {
     docTypeTagMatcher = toCaseInsensitivePattern(docTypeTags);
+    tagClassifier = null;
   }
 
   public void setSectionTagMatcher(String sectionTags) {
     sectionTagMatcher = toCaseInsensitivePattern(sectionTags);
+    tagClassifier = null;
+  }
+
+  /** The tags which start a section, or null if sections aren't marked. */
+  Pattern sectionTagMatcher() {
+    return sectionTagMatcher;
   }
 
   public void setQuoteTagMatcher(String quoteTags) {
     quoteTagMatcher = toCaseInsensitivePattern(quoteTags);
+    tagClassifier = null;
   }
 
   public void setDiscourseTags(String utteranceTurnTags, String speakerTags) {
     utteranceTurnTagMatcher = toCaseInsensitivePattern(utteranceTurnTags);
     speakerTagMatcher = toCaseInsensitivePattern(speakerTags);
+    tagClassifier = null;
   }
 
   public void setDocAnnotationPatterns(String conf) {
     docAnnotationPatterns.clear();
     // Patterns can only be tag attributes
     addAnnotationPatterns(docAnnotationPatterns, conf, true);
+    tagClassifier = null;
   }
 
   public void setTokenAnnotationPatterns(String conf) {
     tokenAnnotationPatterns.clear();
     // Patterns can only be tag attributes
     addAnnotationPatterns(tokenAnnotationPatterns, conf, true);
+    tagClassifier = null;
   }
 
   public void setSectionAnnotationPatterns(String conf) {
     sectionAnnotationPatterns.clear();
     addAnnotationPatterns(sectionAnnotationPatterns, conf, false);
+    tagClassifier = null;
+  }
+
+  private TagClassifier tagClassifier() {
+    TagClassifier classifier = tagClassifier;
+    if (classifier == null) {
+      List<Pattern> patterns = new ArrayList<>(Arrays.asList(xmlTagMatcher, sentenceEndingTagMatcher,
+          singleSentenceTagMatcher, dateTagMatcher, docIdTagMatcher, docTypeTagMatcher, utteranceTurnTagMatcher,
+          speakerTagMatcher, sectionTagMatcher, quoteTagMatcher));
+      for (Collection<Pair<Pattern,Pattern>> annotationPatterns : Arrays.asList(docAnnotationPatterns.allValues(),
+          tokenAnnotationPatterns.allValues(), sectionAnnotationPatterns.allValues())) {
+        for (Pair<Pattern,Pattern> pattern : annotationPatterns) {
+          patterns.add(pattern.first);
+          patterns.add(pattern.second);
+        }
+      }
+      classifier = new TagClassifier(patterns);
+      tagClassifier = classifier;
+    }
+    return classifier;
   }
 
   private static final Pattern TAG_ATTR_PATTERN = Pattern.compile("(.*)\\[(.*)\\]");
@@ -406,6 +446,7 @@ public class CleanXmlAnnotator implements Annotator {
    * @param annotation - Main document level annotation (from which the original text can be extracted)
    * @param cm - CoreMap to annotate
    * @param tag - tag to process
+   * @param classifier - which patterns match the tag and attribute names
    * @param annotationPatterns - list of annotation patterns to match
    * @param savedTokens - tokens for annotations that are text context of a tag
    * @param toAnnotate - what keys to annotate
@@ -414,6 +455,7 @@ public class CleanXmlAnnotator implements Annotator {
   private static Set<Class> annotateWithTag(Annotation annotation,
                                      CoreMap cm,
                                      XMLUtils.XMLTag tag,
+                                     TagClassifier classifier,
                                      CollectionValuedMap<Class, Pair<Pattern,Pattern>> annotationPatterns,
                                      Map<Class, List<CoreLabel>> savedTokens,
                                      Collection<Class> toAnnotate,
@@ -423,16 +465,17 @@ public class CleanXmlAnnotator implements Annotator {
     if (toAnnotate == null) {
       toAnnotate = annotationPatterns.keySet();
     }
+    TagClassifier.Matches tagMatches = classifier.classify(tag.name);
     for (Class key : toAnnotate) {
       for (Pair<Pattern,Pattern> pattern: annotationPatterns.get(key)) {
         Pattern tagPattern = pattern.first;
         Pattern attrPattern = pattern.second;
-        if (tagPattern.matcher(tag.name).matches()) {
+        if (tagMatches.matches(tagPattern)) {
           boolean matched = false;
           if (attrPattern != null) {
             if (tag.attributes != null) {
               for (Map.Entry<String,String> entry:tag.attributes.entrySet()) {
-                if (attrPattern.matcher(entry.getKey()).matches()) {
+                if (classifier.classify(entry.getKey()).matches(attrPattern)) {
                   if (savedTokenAnnotations != null) {
                     Stack<Pair<String, String>> stack = savedTokenAnnotations.computeIfAbsent(key, k -> new Stack<>());
                     stack.push(Pair.makePair(tag.name, entry.getValue()));
@@ -538,6 +581,9 @@ public class CleanXmlAnnotator implements Annotator {
 
     boolean markSingleSentence = false;
 
+    TagClassifier classifier = tagClassifier();
+    boolean keepTextOutsideTags = xmlTagMatcher == null || classifier.classify("").matches(xmlTagMatcher);
+
     for (CoreLabel token : tokens) {
       String word = token.word().trim();
       if (DEBUG) { log.info("CleanXML: token begins as " + word); }
@@ -548,9 +594,7 @@ public class CleanXmlAnnotator implements Annotator {
         // TODO: put this into the lexer instead of here
         token.setWord(XMLUtils.unescapeStringForXML(token.word()));
         // TODO: was there another annotation that also represents the word?
-        if (matchDepth > 0 ||
-            xmlTagMatcher == null ||
-            xmlTagMatcher.matcher("").matches()) {
+        if (matchDepth > 0 || keepTextOutsideTags) {
           newTokens.add(token);
           if (DEBUG) { log.info("CleanXML: token added as: " + token.word()); }
           if (inUtterance) {
@@ -597,23 +641,20 @@ public class CleanXmlAnnotator implements Annotator {
         }
         token.set(CoreAnnotations.XmlContextAnnotation.class, currentTagSet);
 
-        // is this token part of the doc date sequence?
-        if (dateTagMatcher != null &&
-            ! currentTagSet.isEmpty() &&
-            dateTagMatcher.matcher(currentTagSet.get(currentTagSet.size() - 1)).matches()) {
-          docDateTokens.add(token);
-        }
+        if ( ! currentTagSet.isEmpty()) {
+          TagClassifier.Matches enclosingMatches = classifier.classify(currentTagSet.get(currentTagSet.size() - 1));
+          // is this token part of the doc date sequence?
+          if (enclosingMatches.matches(dateTagMatcher)) {
+            docDateTokens.add(token);
+          }
 
-        if (docIdTagMatcher != null &&
-                ! currentTagSet.isEmpty() &&
-                docIdTagMatcher.matcher(currentTagSet.get(currentTagSet.size() - 1)).matches()) {
-          docIdTokens.add(token);
-        }
+          if (enclosingMatches.matches(docIdTagMatcher)) {
+            docIdTokens.add(token);
+          }
 
-        if (docTypeTagMatcher != null &&
-                ! currentTagSet.isEmpty() &&
-                docTypeTagMatcher.matcher(currentTagSet.get(currentTagSet.size() - 1)).matches()) {
-          docTypeTokens.add(token);
+          if (enclosingMatches.matches(docTypeTagMatcher)) {
+            docTypeTokens.add(token);
+          }
         }
 
         if (inSpeakerTag) {
@@ -657,15 +698,16 @@ public class CleanXmlAnnotator implements Annotator {
       }
 
       // Process tag
+      TagClassifier.Matches tagMatches = classifier.classify(tag.name);
 
       // Check if we want to annotate anything using the tags's attributes
       if ( ! toAnnotate.isEmpty() && tag.attributes != null) {
-        Set<Class> foundAnnotations = annotateWithTag(annotation, annotation, tag, docAnnotationPatterns, null, toAnnotate, null);
+        Set<Class> foundAnnotations = annotateWithTag(annotation, annotation, tag, classifier, docAnnotationPatterns, null, toAnnotate, null);
         toAnnotate.removeAll(foundAnnotations);
       }
 
       // Check if the tag matches a quote
-      if (quoteTagMatcher != null && quoteTagMatcher.matcher(tag.name).matches()) {
+      if (tagMatches.matches(quoteTagMatcher)) {
         if (tag.isEndTag) {
           // only store quote info if currently processing a section
           if (sectionQuotes != null) {
@@ -698,13 +740,13 @@ public class CleanXmlAnnotator implements Annotator {
       }
 
       // Check if the tag matches a section
-      if (sectionTagMatcher != null && sectionTagMatcher.matcher(tag.name).matches()) {
+      if (tagMatches.matches(sectionTagMatcher)) {
         if (tag.isEndTag) {
           // sometimes there is malformed xml (post within post)
           // only store section info if sectionStartTag is not null
           // if sectionStartTag is null something has gone wrong, like posts within posts, etc...
           if (sectionStartTag != null) {
-            annotateWithTag(annotation, sectionAnnotations, tag, sectionAnnotationPatterns, savedTokensForSection, null, null);
+            annotateWithTag(annotation, sectionAnnotations, tag, classifier, sectionAnnotationPatterns, savedTokensForSection, null, null);
             // create a CoreMap to store info about this section
             CoreMap currSectionCoreMap = new ArrayCoreMap();
             if (sectionStartToken != null) {
@@ -778,22 +820,21 @@ public class CleanXmlAnnotator implements Annotator {
       }
       if (sectionStartTag != null) {
         // store away annotations for section
-        annotateWithTag(annotation, sectionAnnotations, tag, sectionAnnotationPatterns, savedTokensForSection, null, null);
+        annotateWithTag(annotation, sectionAnnotations, tag, classifier, sectionAnnotationPatterns, savedTokensForSection, null, null);
       }
       if (tokenAnnotations != null) {
-        annotateWithTag(annotation, tokenAnnotations, tag, tokenAnnotationPatterns, null, null, savedTokenAnnotations);
+        annotateWithTag(annotation, tokenAnnotations, tag, classifier, tokenAnnotationPatterns, null, null, savedTokenAnnotations);
       }
 
       // If the tag matches the sentence ending tags, and we have some
       // existing words, mark that word as being somewhere we want
       // to end the sentence.
-      if (sentenceEndingTagMatcher != null &&
-          sentenceEndingTagMatcher.matcher(tag.name).matches() && ! newTokens.isEmpty()) {
+      if (tagMatches.matches(sentenceEndingTagMatcher) && ! newTokens.isEmpty()) {
         CoreLabel previous = newTokens.get(newTokens.size() - 1);
         previous.set(CoreAnnotations.ForcedSentenceEndAnnotation.class, true);
       }
 
-      if (utteranceTurnTagMatcher != null && utteranceTurnTagMatcher.matcher(tag.name).matches()) {
+      if (tagMatches.matches(utteranceTurnTagMatcher)) {
         if ( ! newTokens.isEmpty()) {
           // Utterance turn is also sentence ending
           CoreLabel previous = newTokens.get(newTokens.size() - 1);
@@ -808,7 +849,7 @@ public class CleanXmlAnnotator implements Annotator {
         }
       }
 
-      if (speakerTagMatcher != null && speakerTagMatcher.matcher(tag.name).matches()) {
+      if (tagMatches.matches(speakerTagMatcher)) {
         if ( ! newTokens.isEmpty()) {
           // Speaker is not really part of sentence
           CoreLabel previous = newTokens.get(newTokens.size() - 1);
@@ -830,7 +871,7 @@ public class CleanXmlAnnotator implements Annotator {
         speakerTokens.clear();
       }
 
-      if (singleSentenceTagMatcher != null && singleSentenceTagMatcher.matcher(tag.name).matches()) {
+      if (tagMatches.matches(singleSentenceTagMatcher)) {
         if (tag.isEndTag) {
           // Mark previous token as forcing sentence end
           if ( ! newTokens.isEmpty()) {
@@ -865,7 +906,7 @@ public class CleanXmlAnnotator implements Annotator {
             }
           }
           String lastTag = enclosingTags.pop();
-          if (xmlTagMatcher.matcher(lastTag).matches()) {
+          if (classifier.classify(lastTag).matches(xmlTagMatcher)) {
             matchDepth--;
           }
           if (lastTag.equals(tag.name)) {
@@ -887,7 +928,7 @@ public class CleanXmlAnnotator implements Annotator {
       } else {
         // open tag, since all other cases are exhausted
         enclosingTags.push(tag.name);
-        if (xmlTagMatcher.matcher(tag.name).matches()) {
+        if (tagMatches.matches(xmlTagMatcher)) {
           matchDepth++;
         }
       }
@@ -948,4 +989,78 @@ public class CleanXmlAnnotator implements Annotator {
     return Collections.emptySet();
   }
 
+
+  /**
+   * Matches tag and attribute names against all the patterns of the annotator at once, and
+   * remembers the result, since a document (particularly web HTML) uses the same few names over
+   * and over.  Each name is then classified with one hash lookup, rather than matched against each
+   * pattern each time it is seen.  It is safe to share between threads.
+   */
+  static class TagClassifier {
+
+    /** Beyond this many names (say, of made up tags), new names are matched but not remembered. */
+    private static final int MAX_CACHED_NAMES = 10000;
+
+    private final Pattern[] patterns;
+    private final IdentityHashMap<Pattern, Integer> indices = new IdentityHashMap<>();
+    private final Map<String, Matches> cache = new ConcurrentHashMap<>();
+
+    /** Classify names by the given patterns; null patterns are ignored. */
+    TagClassifier(Collection<Pattern> patterns) {
+      List<Pattern> distinct = new ArrayList<>();
+      for (Pattern pattern : patterns) {
+        if (pattern != null && ! indices.containsKey(pattern)) {
+          indices.put(pattern, distinct.size());
+          distinct.add(pattern);
+        }
+      }
+      this.patterns = distinct.toArray(new Pattern[0]);
+    }
+
+    /** Which of the patterns match the name. */
+    Matches classify(String name) {
+      Matches matches = cache.get(name);
+      if (matches == null) {
+        BitSet bits = new BitSet(patterns.length);
+        for (int i = 0; i < patterns.length; i++) {
+          if (patterns[i].matcher(name).matches()) {
+            bits.set(i);
+          }
+        }
+        matches = new Matches(name, bits);
+        if (cache.size() < MAX_CACHED_NAMES) {
+          cache.put(name, matches);
+        }
+      }
+      return matches;
+    }
+
+    /** The patterns which match one name. */
+    class Matches {
+
+      private final String name;
+      private final BitSet bits;
+
+      private Matches(String name, BitSet bits) {
+        this.name = name;
+        this.bits = bits;
+      }
+
+      /** Whether the pattern matches the name.  A null pattern matches nothing. */
+      boolean matches(Pattern pattern) {
+        if (pattern == null) {
+          return false;
+        }
+        Integer index = indices.get(pattern);
+        if (index == null) {
+          // not one of the patterns classified by this TagClassifier, so match it here
+          return pattern.matcher(name).matches();
+        }
+        return bits.get(index);
+      }
+
+    }
+
+  }
+
 }
@@ -0,0 +1,381 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.concurrent.BoundedExecutor;
+import edu.stanford.nlp.util.concurrent.ConcurrentHistogram;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs documents on separate lanes by size, so that short documents don't wait behind long
+ * ones. Each lane takes the documents up to a given size, and has its own
+ * {@link BoundedExecutor}, with its own queue and worker threads, so a burst of long documents only ever occupies the threads of the long lane.
+ * Within a lane, documents run in the order they came, or optionally shortest first.
+ *
+ * The size of a document is its length in characters, or an estimate of its number of tokens,
+ * made by a quick scan of the text (see {@link #estimateTokens(CharSequence)}).
+ * Each lane keeps statistics on its queue and on how long its documents took, both waiting
+ * and in total.
+ */
+public class LaneScheduler {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(LaneScheduler.class);
+
+  /** How long an idle lane keeps its threads. */
+  private static final long KEEP_ALIVE_MILLIS = 5000L;
+
+  /** How the size of a document is measured. */
+  public enum Measure { CHARS, TOKENS }
+
+  private final String name;
+  private final Measure measure;
+  private final boolean shortestFirst;
+  private final long[] bounds;
+  private final int[] threads;
+  private final int queueSize;
+  private final List<Lane> lanes;
+  private volatile boolean shutdown; // = false
+  /** The first Error thrown by a document, which stops the scheduler taking new ones */
+  private final AtomicReference<Error> error = new AtomicReference<>();
+
+  /**
+   * Create the lanes and start their threads.
+   *
+   * @param name The name given to the worker threads
+   * @param bounds The largest size of document taken by each lane but the last, in increasing
+   *               order. There is one more lane than there are bounds, for the largest documents.
+   * @param threads The number of threads of each lane
+   * @param queueSize The number of documents which may wait in each lane before
+   *                  {@link #execute(long, Runnable)} blocks, or a negative number for
+   *                  twice the threads of each lane
+   * @param measure How to measure the size of a document
+   * @param shortestFirst If true, the smallest waiting document of a lane runs first,
+   *                      rather than the one which came first
+   */
+  public LaneScheduler(String name, long[] bounds, int[] threads, int queueSize, Measure measure, boolean shortestFirst) {
+    if (threads.length != bounds.length + 1) {
+      throw new IllegalArgumentException("Need " + (bounds.length + 1) + " thread counts for " + bounds.length +
+          " lane bounds, got " + threads.length);
+    }
+    for (int i = 1; i < bounds.length; i++) {
+      if (bounds[i] <= bounds[i - 1]) {
+        throw new IllegalArgumentException("Lane bounds must be increasing: " + Arrays.toString(bounds));
+      }
+    }
+    this.name = name;
+    this.measure = measure;
+    this.shortestFirst = shortestFirst;
+    this.bounds = bounds.clone();
+    this.threads = threads.clone();
+    this.queueSize = queueSize;
+    List<Lane> lanes = new ArrayList<>();
+    for (int i = 0; i < threads.length; i++) {
+      long bound = i < bounds.length ? bounds[i] : Long.MAX_VALUE;
+      int laneThreads = Math.max(1, threads[i]);
+      lanes.add(new Lane(name + "-lane" + i, bound, laneThreads, queueSize < 0 ? 2 * laneThreads : queueSize));
+    }
+    this.lanes = Collections.unmodifiableList(lanes);
+  }
+
+  /**
+   * Create a scheduler from properties, or return null if the {@code lanes} property isn't set.
+   * The properties read are:
+   * <ul>
+   *   <li>{@code lanes}: the largest size of each lane but the last, for example {@code 2000,100000}
+   *       for three lanes</li>
+   *   <li>{@code lanes.threads}: the number of threads of each lane
+   *       (default: the given number of threads, shared out evenly)</li>
+   *   <li>{@code lanes.queueSize}: the number of documents which may wait in a lane (default: twice its threads)</li>
+   *   <li>{@code lanes.measure}: {@code chars} (default) or {@code tokens}</li>
+   *   <li>{@code lanes.shortestFirst}: if true, run the smallest waiting document of a lane first (default false)</li>
+   * </ul>
+   *
+   * @param name The name given to the worker threads
+   * @param props The properties to read
+   * @param nThreads The number of threads to share out when {@code lanes.threads} isn't given
+   */
+  public static LaneScheduler fromProperties(String name, Properties props, int nThreads) {
+    String boundsProperty = props.getProperty("lanes", "").trim();
+    if (boundsProperty.isEmpty()) {
+      return null;
+    }
+    String[] boundStrings = boundsProperty.split("\\s*,\\s*");
+    long[] bounds = new long[boundStrings.length];
+    for (int i = 0; i < bounds.length; i++) {
+      bounds[i] = Long.parseLong(boundStrings[i]);
+    }
+    int[] threads = new int[bounds.length + 1];
+    String threadsProperty = props.getProperty("lanes.threads", "").trim();
+    if (threadsProperty.isEmpty()) {
+      Arrays.fill(threads, Math.max(1, nThreads / threads.length));
+    } else {
+      String[] threadStrings = threadsProperty.split("\\s*,\\s*");
+      for (int i = 0; i < threads.length; i++) {
+        threads[i] = Integer.parseInt(threadStrings[Math.min(i, threadStrings.length - 1)]);
+      }
+    }
+    int queueSize = PropertiesUtils.getInt(props, "lanes.queueSize", -1);
+    Measure measure = Measure.valueOf(props.getProperty("lanes.measure", "chars").toUpperCase(Locale.ROOT));
+    boolean shortestFirst = PropertiesUtils.getBool(props, "lanes.shortestFirst", false);
+    return new LaneScheduler(name, bounds, threads, queueSize, measure, shortestFirst);
+  }
+
+
+  /**
+   * A new scheduler with the same lanes and settings as this one, and fresh statistics,
+   * to use once this one has been shut down.
+   */
+  public LaneScheduler copy() {
+    return new LaneScheduler(name, bounds, threads, queueSize, measure, shortestFirst);
+  }
+
+
+  /**
+   * A rough count of the tokens of a text, without tokenizing it: each run of letters
+   * and digits counts as a token, and so does every other character which isn't a space.
+   */
+  public static long estimateTokens(CharSequence text) {
+    long tokens = 0;
+    boolean inWord = false;
+    for (int i = 0, length = text.length(); i < length; i++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        if ( ! inWord) {
+          tokens++;
+          inWord = true;
+        }
+      } else {
+        inWord = false;
+        if ( ! Character.isWhitespace(c)) {
+          tokens++;
+        }
+      }
+    }
+    return tokens;
+  }
+
+  /** The size of a document, as measured by this scheduler. */
+  public long size(Annotation annotation) {
+    String text = annotation.get(CoreAnnotations.TextAnnotation.class);
+    if (text == null) {
+      return 0;
+    }
+    return measure == Measure.TOKENS ? estimateTokens(text) : text.length();
+  }
+
+  /** The lane which takes documents of the given size. */
+  public Lane laneFor(long size) {
+    for (Lane lane : lanes) {
+      if (size <= lane.bound) {
+        return lane;
+      }
+    }
+    return lanes.get(lanes.size() - 1);
+  }
+
+  /** Annotate a document on the lane for its size. See {@link #execute(long, Runnable)}. */
+  public void execute(Annotation annotation, Runnable task) {
+    execute(size(annotation), task);
+  }
+
+  /**
+   * Run a task on the lane for the given size. If the lane's queue is full, this waits until
+   * there is room.
+   *
+   * @throws RejectedExecutionException If the scheduler has been shut down, or a task has thrown an Error
+   */
+  public void execute(long size, Runnable task) {
+    if (shutdown) {
+      throw new RejectedExecutionException(name + " has been shut down");
+    }
+    if (error.get() != null) {
+      throw new RejectedExecutionException(name + " stopped after an error", error.get());
+    }
+    laneFor(size).add(size, task);
+  }
+
+  /** The lanes, from the one for the smallest documents to the one for the largest. */
+  public List<Lane> lanes() {
+    return lanes;
+  }
+
+  public Measure measure() { return measure; }
+
+  public boolean shortestFirst() { return shortestFirst; }
+
+  /**
+   * Stop accepting new documents, and wait for those already submitted to finish.
+   *
+   * @throws Error The first Error thrown by a task, once the others have finished
+   */
+  public void shutdown() {
+    shutdown = true;
+    for (Lane lane : lanes) {
+      lane.shutdown();
+    }
+    if (error.get() != null) {
+      throw error.get();
+    }
+  }
+
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  /**
+   * Return the statistics of each lane, one per line.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(name).append('[').append(measure.name().toLowerCase(Locale.ROOT));
+    if (shortestFirst) {
+      sb.append(", shortest first");
+    }
+    sb.append(']');
+    for (Lane lane : lanes) {
+      sb.append(System.lineSeparator()).append("  ").append(lane);
+    }
+    return sb.toString();
+  }
+
+
+  /** A document waiting in a lane which runs the shortest first. */
+  private static class Job {
+    final long size;
+    final long sequence;
+    final long enqueuedNanos;
+    final Runnable task;
+
+    Job(long size, long sequence, long enqueuedNanos, Runnable task) {
+      this.size = size;
+      this.sequence = sequence;
+      this.enqueuedNanos = enqueuedNanos;
+      this.task = task;
+    }
+  }
+
+  private static final Comparator<Job> SHORTEST_FIRST =
+      Comparator.<Job>comparingLong(job -> job.size).thenComparingLong(job -> job.sequence);
+
+
+  /**
+   * The documents in one range of sizes, run on their own {@link BoundedExecutor}, which
+   * bounds the queue and blocks when it is full.
+   */
+  public class Lane {
+    private final String name;
+    private final long bound;
+    private final BoundedExecutor executor;
+    /**
+     * The waiting documents, smallest first, when the lane runs the shortest first.
+     * Each task given to the executor then runs whichever document is smallest when it starts.
+     */
+    private final PriorityBlockingQueue<Job> waiting;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final ConcurrentHistogram queueWait = new ConcurrentHistogram();
+    private final ConcurrentHistogram latency = new ConcurrentHistogram();
+
+    Lane(String name, long bound, int nThreads, int queueCapacity) {
+      this.name = name;
+      this.bound = bound;
+      // daemon threads, as the documents of a lane are only waited for by shutdown()
+      this.executor = new BoundedExecutor(name, BoundedExecutor.Mode.POOL, nThreads, queueCapacity,
+          BoundedExecutor.RejectionPolicy.BLOCK, KEEP_ALIVE_MILLIS, true);
+      this.waiting = shortestFirst ? new PriorityBlockingQueue<>(Math.max(1, nThreads + queueCapacity), SHORTEST_FIRST) : null;
+    }
+
+    void add(long size, Runnable task) {
+      long enqueued = System.nanoTime();
+      if (waiting == null) {
+        executor.execute(() -> run(task, enqueued));
+        return;
+      }
+      // the executor admits the task first, so that the waiting documents stay within its bound;
+      // a worker which starts before the document is added waits for it, or takes a smaller one
+      executor.execute(() -> {
+        Job job;
+        try {
+          job = waiting.take();
+        } catch (InterruptedException e) {
+          throw new RuntimeInterruptedException(e);
+        }
+        run(job.task, job.enqueuedNanos);
+      });
+      waiting.add(new Job(size, sequence.getAndIncrement(), enqueued, task));
+    }
+
+    private void run(Runnable task, long enqueued) {
+      queueWait.record(System.nanoTime() - enqueued);
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        failed.incrementAndGet();
+        log.warn(name + ": a document failed: " + e);
+      } catch (Error e) {
+        // the lane goes on, so that the documents already queued don't wait forever,
+        // but no more are taken, and shutdown() throws the error
+        failed.incrementAndGet();
+        error.compareAndSet(null, e);
+        log.err(name + ": a document failed: " + e);
+      } finally {
+        latency.record(System.nanoTime() - enqueued);
+      }
+    }
+
+    void shutdown() {
+      executor.shutdown();
+    }
+
+    /** The largest document this lane takes. */
+    public long bound() { return bound; }
+
+    public int nThreads() { return executor.nThreads(); }
+
+    public int queueCapacity() { return executor.queueCapacity(); }
+
+    /** The number of documents currently waiting for a worker. */
+    public int queueDepth() { return executor.queueDepth(); }
+
+    /** The largest number of documents which have been waiting for a worker at once. */
+    public int maxQueueDepth() { return executor.maxQueueDepth(); }
+
+    /** The number of documents finished, whether normally or with an exception. */
+    public long completedCount() { return executor.completedCount(); }
+
+    /** The number of documents whose task threw an exception. */
+    public long failedCount() { return failed.get(); }
+
+    /** How long documents waited for a worker, in nanoseconds. */
+    public ConcurrentHistogram queueWait() { return queueWait; }
+
+    /** How long documents took from being submitted to being finished, in nanoseconds. */
+    public ConcurrentHistogram latency() { return latency; }
+
+    @Override
+    public String toString() {
+      return String.format("%s[size <= %s  threads: %d  queued: %d/%d (max %d)  completed: %d  failed: %d  " +
+              "wait p50: %.2fms p99: %.2fms  latency p50: %.2fms p99: %.2fms max: %.2fms]",
+          name, bound == Long.MAX_VALUE ? "any" : Long.toString(bound), nThreads(), queueDepth(), queueCapacity(),
+          maxQueueDepth(), completedCount(), failedCount(),
+          queueWait.percentile(50) / 1e6, queueWait.percentile(99) / 1e6,
+          latency.percentile(50) / 1e6, latency.percentile(99) / 1e6, latency.max() / 1e6);
+    }
+  }
+
+}
@@ -93,105 +93,147 @@ public class MWTAnnotator implements Annotator {
    */
 
   public void annotate(Annotation annotation) {
-    List<CoreLabel> finalDocumentTokens = new ArrayList<CoreLabel>();
     // if using statistical model, run the mwt part-of-speech tagger
     if (useStatisticalModel) {
       statisticalMWTAnnotator.annotate(annotation);
     }
-    // keep track of sentence number
-    int sentNum = 0;
     for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-      // set token begin for sentence
-      sentence.set(CoreAnnotations.TokenBeginAnnotation.class, finalDocumentTokens.size());
-      List<CoreLabel> newSentenceTokens = new ArrayList<>();
-      int sentenceIndex = 1;
-      for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
-        // list of potential multi word tokens
-        List<String> tokenWords = new ArrayList<>();
-
-        // check if statistical model detected a split
-        if (useStatisticalModel) {
-          String mwtTagKey = String.format("%s-%s", token.word().toLowerCase(), token.tag()).toLowerCase();
-          if (statisticalMultiWordTokenMapping.containsKey(mwtTagKey))
-            tokenWords = statisticalMultiWordTokenMapping.get(mwtTagKey).stream().collect(Collectors.toList());
-        }
-        // Note: it is not recommended to have the deterministic dictionary and the statistical model
-        // both handle the same tokens, but if for some reason this is done, the deterministic dictionary
-        // will take precedence...that is, if "des" is an entry for both the statistical model and the
-        // dictionary, the split dictated by the dictionary will be used regardless of what the model says
-        // in other words...deterministic
-
-        // check if deterministic dictionary says to split
-        if (useDictionary && multiWordTokenMapping.containsKey(token.word().toLowerCase())) {
-          tokenWords =
-              multiWordTokenMapping.get(token.word().toLowerCase()).stream().collect(Collectors.toList());
-        }
+      splitSentence(sentence);
+    }
+    finishSentences(annotation);
+  }
+
+  /**
+   * Replace the tokens of one sentence with their words.
+   * The token offsets set here are only relative to the sentence;
+   * the document level ones are set by {@link #finishSentences(Annotation)}.
+   */
+  private void splitSentence(CoreMap sentence) {
+    // provisional sentence number, fixed in finishSentences
+    Integer sentNum = sentence.get(CoreAnnotations.SentenceIndexAnnotation.class);
+    if (sentNum == null) {
+      sentNum = 0;
+    }
+    List<CoreLabel> newSentenceTokens = new ArrayList<>();
+    int sentenceIndex = 1;
+    for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+      // list of potential multi word tokens
+      List<String> tokenWords = new ArrayList<>();
+
+      // check if statistical model detected a split
+      if (useStatisticalModel) {
+        String mwtTagKey = String.format("%s-%s", token.word().toLowerCase(), token.tag()).toLowerCase();
+        if (statisticalMultiWordTokenMapping.containsKey(mwtTagKey))
+          tokenWords = statisticalMultiWordTokenMapping.get(mwtTagKey).stream().collect(Collectors.toList());
+      }
+      // Note: it is not recommended to have the deterministic dictionary and the statistical model
+      // both handle the same tokens, but if for some reason this is done, the deterministic dictionary
+      // will take precedence...that is, if "des" is an entry for both the statistical model and the
+      // dictionary, the split dictated by the dictionary will be used regardless of what the model says
+      // in other words...deterministic
 
-        // process the words
-        if (tokenWords.size() > 1) {
-          // this is an MWT token
-          // check if case needs to be corrected
-          if (preserveCasing) {
-            if (StringUtils.isAllUpperCase(token.word())) {
-              // DES
-              tokenWords = tokenWords.stream().map(t -> t.toUpperCase()).collect(Collectors.toList());
-            } else if (StringUtils.isTitleCase(token.word())) {
-              // Des
-              tokenWords.set(0, StringUtils.toTitleCase(tokenWords.get(0)));
-            }
+      // check if deterministic dictionary says to split
+      if (useDictionary && multiWordTokenMapping.containsKey(token.word().toLowerCase())) {
+        tokenWords =
+            multiWordTokenMapping.get(token.word().toLowerCase()).stream().collect(Collectors.toList());
+      }
+
+      // process the words
+      if (tokenWords.size() > 1) {
+        // this is an MWT token
+        // check if case needs to be corrected
+        if (preserveCasing) {
+          if (StringUtils.isAllUpperCase(token.word())) {
+            // DES
+            tokenWords = tokenWords.stream().map(t -> t.toUpperCase()).collect(Collectors.toList());
+          } else if (StringUtils.isTitleCase(token.word())) {
+            // Des
+            tokenWords.set(0, StringUtils.toTitleCase(tokenWords.get(0)));
           }
-          boolean isFirst = true;
-          for (String word : tokenWords) {
-            CoreLabel newToken = new CoreLabel();
-            newToken.setWord(word);
-            newToken.setValue(word);
-            newToken.setOriginalText(word);
-            newToken.setIsNewline(false);
-            if (token.keySet().contains(CoreAnnotations.ParentAnnotation.class)) {
-              newToken.set(CoreAnnotations.ParentAnnotation.class,
-                  token.get(CoreAnnotations.ParentAnnotation.class));
-            }
-            newToken.set(CoreAnnotations.TokenBeginAnnotation.class, finalDocumentTokens.size());
-            newToken.set(CoreAnnotations.TokenEndAnnotation.class, finalDocumentTokens.size() + 1);
-            // the char offsets, before, and after should match the original token
-            newToken.setBeginPosition(token.beginPosition());
-            newToken.setEndPosition(token.endPosition());
-            newToken.setBefore(token.before());
-            newToken.setAfter(token.after());
-            newToken.set(CoreAnnotations.MWTTokenTextAnnotation.class, token.word());
-            // set that this is a multi-word-token
-            newToken.setIsMWT(true);
-            // set that this is the first word derived from a multi-word-token
-            // e.g. when "des" is split into "de" and "les", "de" would be true
-            if (isFirst) {
-              newToken.setIsMWTFirst(true);
-              isFirst = false;
-            } else {
-              newToken.setIsMWTFirst(false);
-            }
-            newToken.setIndex(sentenceIndex);
-            newToken.setSentIndex(sentNum);
-            // add finalized token
-            newSentenceTokens.add(newToken);
-            finalDocumentTokens.add(newToken);
-            sentenceIndex++;
+        }
+        boolean isFirst = true;
+        for (String word : tokenWords) {
+          CoreLabel newToken = new CoreLabel();
+          newToken.setWord(word);
+          newToken.setValue(word);
+          newToken.setOriginalText(word);
+          newToken.setIsNewline(false);
+          if (token.keySet().contains(CoreAnnotations.ParentAnnotation.class)) {
+            newToken.set(CoreAnnotations.ParentAnnotation.class,
+                token.get(CoreAnnotations.ParentAnnotation.class));
+          }
+          newToken.set(CoreAnnotations.TokenBeginAnnotation.class, newSentenceTokens.size());
+          newToken.set(CoreAnnotations.TokenEndAnnotation.class, newSentenceTokens.size() + 1);
+          // the char offsets, before, and after should match the original token
+          newToken.setBeginPosition(token.beginPosition());
+          newToken.setEndPosition(token.endPosition());
+          newToken.setBefore(token.before());
+          newToken.setAfter(token.after());
+          newToken.set(CoreAnnotations.MWTTokenTextAnnotation.class, token.word());
+          // set that this is a multi-word-token
+          newToken.setIsMWT(true);
+          // set that this is the first word derived from a multi-word-token
+          // e.g. when "des" is split into "de" and "les", "de" would be true
+          if (isFirst) {
+            newToken.setIsMWTFirst(true);
+            isFirst = false;
+          } else {
+            newToken.setIsMWTFirst(false);
           }
-        } else {
-          CoreLabel newToken = new CoreLabel(token);
-          newToken.set(CoreAnnotations.TokenBeginAnnotation.class, finalDocumentTokens.size());
-          newToken.set(CoreAnnotations.TokenEndAnnotation.class, finalDocumentTokens.size() + 1);
           newToken.setIndex(sentenceIndex);
-          newToken.setIsMWT(false);
-          newToken.setIsMWTFirst(false);
+          newToken.setSentIndex(sentNum);
           // add finalized token
           newSentenceTokens.add(newToken);
-          finalDocumentTokens.add(newToken);
           sentenceIndex++;
         }
+      } else {
+        CoreLabel newToken = new CoreLabel(token);
+        newToken.set(CoreAnnotations.TokenBeginAnnotation.class, newSentenceTokens.size());
+        newToken.set(CoreAnnotations.TokenEndAnnotation.class, newSentenceTokens.size() + 1);
+        newToken.setIndex(sentenceIndex);
+        newToken.setIsMWT(false);
+        newToken.setIsMWTFirst(false);
+        // add finalized token
+        newSentenceTokens.add(newToken);
+        sentenceIndex++;
+      }
+    }
+    sentence.set(CoreAnnotations.TokensAnnotation.class, newSentenceTokens);
+  }
+
+  /** Without the statistical model, which tags the whole document, tokens are split one sentence at a time. */
+  @Override
+  public boolean isSentenceLocal() {
+    return ! useStatisticalModel;
+  }
+
+  @Override
+  public void annotateSentence(Annotation document, CoreMap sentence) {
+    splitSentence(sentence);
+  }
+
+  /**
+   * Set the document level token offsets of the split sentences, and the
+   * token list of the document.
+   */
+  @Override
+  public void finishSentences(Annotation annotation) {
+    List<CoreLabel> finalDocumentTokens = new ArrayList<>();
+    // keep track of sentence number
+    int sentNum = 0;
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      // set token begin for sentence
+      sentence.set(CoreAnnotations.TokenBeginAnnotation.class, finalDocumentTokens.size());
+      for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+        token.set(CoreAnnotations.TokenBeginAnnotation.class, finalDocumentTokens.size());
+        token.set(CoreAnnotations.TokenEndAnnotation.class, finalDocumentTokens.size() + 1);
+        if (token.isMWT()) {
+          token.setSentIndex(sentNum);
+        }
+        finalDocumentTokens.add(token);
       }
       // set end token index for sentence
       sentence.set(CoreAnnotations.TokenEndAnnotation.class, finalDocumentTokens.size());
-      sentence.set(CoreAnnotations.TokensAnnotation.class, newSentenceTokens);
       sentNum++;
     }
     // set final tokens list for document
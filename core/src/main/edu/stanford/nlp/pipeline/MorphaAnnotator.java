@@ -35,6 +35,9 @@ public class MorphaAnnotator implements Annotator {
   private static final String[] prep = {"abroad", "across", "after", "ahead", "along", "aside", "away", "around", "back", "down", "forward", "in", "off", "on", "over", "out", "round", "together", "through", "up"};
   private static final List<String> particles = Arrays.asList(prep);
 
+  /** Morphology is not threadsafe, so sentences annotated concurrently each get their thread's own. */
+  private final ThreadLocal<Morphology> sentenceMorphology = ThreadLocal.withInitial(Morphology::new);
+
   public MorphaAnnotator() {
     this(true);
   }
@@ -51,13 +54,7 @@ public class MorphaAnnotator implements Annotator {
     Morphology morphology = new Morphology();
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
       for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-        List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
-        //log.info("Lemmatizing sentence: " + tokens);
-        for (CoreLabel token : tokens) {
-          String text = token.get(CoreAnnotations.TextAnnotation.class);
-          String posTag = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
-          addLemma(morphology, CoreAnnotations.LemmaAnnotation.class, token, text, posTag);
-        }
+        doOneSentence(morphology, sentence);
       }
     } else {
       throw new RuntimeException("Unable to find words/tokens in: " +
@@ -65,6 +62,27 @@ public class MorphaAnnotator implements Annotator {
     }
   }
 
+  private static void doOneSentence(Morphology morphology, CoreMap sentence) {
+    List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+    //log.info("Lemmatizing sentence: " + tokens);
+    for (CoreLabel token : tokens) {
+      String text = token.get(CoreAnnotations.TextAnnotation.class);
+      String posTag = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
+      addLemma(morphology, CoreAnnotations.LemmaAnnotation.class, token, text, posTag);
+    }
+  }
+
+  /** Lemmas only depend on the word and tag of each token. */
+  @Override
+  public boolean isSentenceLocal() {
+    return true;
+  }
+
+  @Override
+  public void annotateSentence(Annotation document, CoreMap sentence) {
+    doOneSentence(sentenceMorphology.get(), sentence);
+  }
+
 
   private static void addLemma(Morphology morpha,
                         Class<? extends CoreAnnotation<String>> ann,
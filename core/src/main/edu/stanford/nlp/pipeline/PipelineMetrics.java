@@ -0,0 +1,286 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.concurrent.ConcurrentHistogram;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and throughput metrics for an {@link AnnotationPipeline}.
+ * For each annotator, the time taken on each document is kept in a
+ * {@link ConcurrentHistogram}, from which latency percentiles are read.
+ * For the pipeline as a whole, documents, tokens, characters and (UTF-8) bytes
+ * processed are counted, giving throughput since the metrics were created or last reset.
+ *
+ * Recording is lock-free, so metrics are always on. They can be read through this class,
+ * or through JMX once {@link #registerMBeans(String)} has been called.
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(PipelineMetrics.class);
+
+  /** The JMX domain metrics are registered under. */
+  public static final String JMX_DOMAIN = "edu.stanford.nlp.pipeline";
+
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  /**
+   * The latency of one annotator of the pipeline.
+   */
+  public static class AnnotatorMetrics implements AnnotatorMetricsMXBean {
+    private final String name;
+    private final ConcurrentHistogram latency = new ConcurrentHistogram();
+    private volatile long loadNanos = -1;
+    private volatile long loadAllocatedBytes = -1;
+
+    AnnotatorMetrics(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Record how long the annotator took to get, and how many bytes were allocated
+     * on the thread getting it (-1 if this JVM can't tell).
+     */
+    public void recordLoad(long nanos, long allocatedBytes) {
+      this.loadNanos = nanos;
+      this.loadAllocatedBytes = allocatedBytes;
+    }
+
+    /** Record the time, in nanoseconds, spent on one document. */
+    public void record(long nanos) {
+      latency.record(nanos);
+    }
+
+    /** The time taken on each document, in nanoseconds. */
+    public ConcurrentHistogram latency() {
+      return latency;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public long getCount() { return latency.count(); }
+
+    @Override
+    public double getTotalSeconds() { return latency.sum() / 1e9; }
+
+    @Override
+    public double getMeanMillis() { return latency.mean() / NANOS_PER_MILLI; }
+
+    @Override
+    public double getP50Millis() { return latency.percentile(50) / NANOS_PER_MILLI; }
+
+    @Override
+    public double getP95Millis() { return latency.percentile(95) / NANOS_PER_MILLI; }
+
+    @Override
+    public double getP99Millis() { return latency.percentile(99) / NANOS_PER_MILLI; }
+
+    @Override
+    public double getMaxMillis() { return latency.max() / NANOS_PER_MILLI; }
+
+    /** The time taken to get the annotator, or -1 if not recorded. */
+    @Override
+    public double getLoadMillis() { return loadNanos < 0 ? -1 : loadNanos / NANOS_PER_MILLI; }
+
+    /** The bytes allocated while getting the annotator, or -1 if not recorded. */
+    @Override
+    public long getLoadAllocatedBytes() { return loadAllocatedBytes; }
+
+    @Override
+    public String toString() {
+      return String.format("%s: n=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+          name, getCount(), getMeanMillis(), getP50Millis(), getP95Millis(), getP99Millis(), getMaxMillis());
+    }
+  }
+
+
+  private final List<AnnotatorMetrics> annotators = new CopyOnWriteArrayList<>();
+  private final ConcurrentHistogram documentLatency = new ConcurrentHistogram();
+  private final LongAdder documents = new LongAdder();
+  private final LongAdder tokens = new LongAdder();
+  private final LongAdder characters = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private volatile long startNanos = System.nanoTime();
+
+  /** The object names registered with JMX, if any. */
+  private final List<ObjectName> registered = new ArrayList<>();
+
+
+  /** Add the metrics for the next annotator of the pipeline. */
+  AnnotatorMetrics addAnnotator(Annotator annotator) {
+    AnnotatorMetrics metrics = new AnnotatorMetrics(annotator.getClass().getSimpleName());
+    annotators.add(metrics);
+    return metrics;
+  }
+
+  /** The metrics of each annotator, in pipeline order. */
+  public List<AnnotatorMetrics> annotators() {
+    return annotators;
+  }
+
+  /** The time taken on each document by the whole pipeline, in nanoseconds. */
+  public ConcurrentHistogram documentLatency() {
+    return documentLatency;
+  }
+
+  /** Record that a document has gone through the whole pipeline. */
+  void recordDocument(Annotation document, long nanos) {
+    documentLatency.record(nanos);
+    documents.increment();
+    List<CoreLabel> words = document.get(CoreAnnotations.TokensAnnotation.class);
+    if (words != null) {
+      tokens.add(words.size());
+    }
+    String text = document.get(CoreAnnotations.TextAnnotation.class);
+    if (text != null) {
+      characters.add(text.length());
+      bytes.add(utf8Length(text));
+    }
+  }
+
+  /** The number of bytes the text takes in UTF-8, without encoding it. */
+  static long utf8Length(CharSequence text) {
+    long length = 0;
+    int n = text.length();
+    for (int i = 0; i < n; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private double perSecond(long count) {
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    return seconds <= 0.0 ? 0.0 : count / seconds;
+  }
+
+  @Override
+  public long getDocuments() { return documents.sum(); }
+
+  @Override
+  public long getTokens() { return tokens.sum(); }
+
+  @Override
+  public long getCharacters() { return characters.sum(); }
+
+  @Override
+  public long getBytes() { return bytes.sum(); }
+
+  @Override
+  public double getDocumentsPerSecond() { return perSecond(getDocuments()); }
+
+  @Override
+  public double getTokensPerSecond() { return perSecond(getTokens()); }
+
+  @Override
+  public double getBytesPerSecond() { return perSecond(getBytes()); }
+
+  @Override
+  public double getDocumentLatencyMeanMillis() { return documentLatency.mean() / NANOS_PER_MILLI; }
+
+  @Override
+  public double getDocumentLatencyP50Millis() { return documentLatency.percentile(50) / NANOS_PER_MILLI; }
+
+  @Override
+  public double getDocumentLatencyP95Millis() { return documentLatency.percentile(95) / NANOS_PER_MILLI; }
+
+  @Override
+  public double getDocumentLatencyP99Millis() { return documentLatency.percentile(99) / NANOS_PER_MILLI; }
+
+  @Override
+  public double getDocumentLatencyMaxMillis() { return documentLatency.max() / NANOS_PER_MILLI; }
+
+  @Override
+  public List<String> getAnnotatorNames() {
+    List<String> names = new ArrayList<>(annotators.size());
+    for (AnnotatorMetrics annotator : annotators) {
+      names.add(annotator.getName());
+    }
+    return names;
+  }
+
+  /** Forget everything recorded so far, and restart the throughput clock. */
+  @Override
+  public void reset() {
+    for (AnnotatorMetrics annotator : annotators) {
+      annotator.latency.reset();
+    }
+    documentLatency.reset();
+    documents.reset();
+    tokens.reset();
+    characters.reset();
+    bytes.reset();
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Make these metrics visible through JMX, as one MBean for the pipeline and one for
+   * each annotator, all with the key {@code pipeline=name}.
+   * Annotators added to the pipeline later are not registered.
+   *
+   * @param name A name for the pipeline, unique in this JVM
+   */
+  public synchronized void registerMBeans(String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName pipelineName = new ObjectName(JMX_DOMAIN + ":type=AnnotationPipeline,pipeline=" + ObjectName.quote(name));
+      server.registerMBean(this, pipelineName);
+      registered.add(pipelineName);
+      for (int i = 0; i < annotators.size(); i++) {
+        AnnotatorMetrics annotator = annotators.get(i);
+        ObjectName annotatorName = new ObjectName(JMX_DOMAIN + ":type=Annotator,pipeline=" + ObjectName.quote(name) +
+            ",position=" + i + ",name=" + ObjectName.quote(annotator.getName()));
+        server.registerMBean(annotator, annotatorName);
+        registered.add(annotatorName);
+      }
+    } catch (JMException e) {
+      log.warn("Could not register metrics for pipeline " + name + ": " + e);
+    }
+  }
+
+  /** Remove the MBeans added by {@link #registerMBeans(String)}. */
+  public synchronized void unregisterMBeans() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName name : registered) {
+      try {
+        server.unregisterMBean(name);
+      } catch (JMException e) {
+        log.warn("Could not unregister " + name + ": " + e);
+      }
+    }
+    registered.clear();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%d documents, %d tokens, %d bytes: %.1f docs/sec, %.1f tokens/sec, %.1f bytes/sec",
+        getDocuments(), getTokens(), getBytes(), getDocumentsPerSecond(), getTokensPerSecond(), getBytesPerSecond()));
+    for (AnnotatorMetrics annotator : annotators) {
+      sb.append(System.lineSeparator()).append(annotator);
+    }
+    return sb.toString();
+  }
+
+}
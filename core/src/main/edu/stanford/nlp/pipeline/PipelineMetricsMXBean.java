@@ -0,0 +1,21 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.List;
+
+/** The JMX view of a pipeline. Times are in milliseconds. */
+public interface PipelineMetricsMXBean {
+  long getDocuments();
+  long getTokens();
+  long getCharacters();
+  long getBytes();
+  double getDocumentsPerSecond();
+  double getTokensPerSecond();
+  double getBytesPerSecond();
+  double getDocumentLatencyMeanMillis();
+  double getDocumentLatencyP50Millis();
+  double getDocumentLatencyP95Millis();
+  double getDocumentLatencyP99Millis();
+  double getDocumentLatencyMaxMillis();
+  List<String> getAnnotatorNames();
+  void reset();
+}
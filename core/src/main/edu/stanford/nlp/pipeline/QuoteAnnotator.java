@@ -5,6 +5,7 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.process.LexerUtils;
 import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Deadline;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.PropertiesUtils;
@@ -176,28 +177,39 @@ public class QuoteAnnotator implements Annotator  {
     int firstTokenCharIndex =
         annotation.get(CoreAnnotations.TokensAnnotation.class).get(0).get(
             CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+    StringBuilder cleanedText = new StringBuilder(documentText.length());
     // add white space for all text before first token
-    String cleanedText =
-        documentText.substring(0,firstTokenCharIndex).replaceAll("\\S", " ");
+    appendBlanked(cleanedText, documentText, 0, firstTokenCharIndex);
     int tokenIndex = 0;
     List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
     for (CoreLabel token : tokens) {
       // add the current token's text
-      cleanedText += token.originalText();
+      cleanedText.append(token.originalText());
       // add whitespace for non-tokens and xml in between these tokens
       tokenIndex += 1;
       if (tokenIndex < tokens.size()) {
         CoreLabel nextToken = tokens.get(tokenIndex);
         int inBetweenStart = token.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
         int inBetweenEnd = nextToken.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
-        String inBetweenTokenText = documentText.substring(inBetweenStart, inBetweenEnd);
-        inBetweenTokenText = inBetweenTokenText.replaceAll("\\S", " ");
-        cleanedText += inBetweenTokenText;
+        appendBlanked(cleanedText, documentText, inBetweenStart, inBetweenEnd);
       }
     }
     // add white space for all non-token content after last token
-    cleanedText += documentText.substring(cleanedText.length()).replaceAll("\\S", " ");
-    return cleanedText;
+    appendBlanked(cleanedText, documentText, cleanedText.length(), documentText.length());
+    return cleanedText.toString();
+  }
+
+  /** Append the text from begin to end with each non-whitespace character made a space, as replaceAll("\\S", " ") would. */
+  private static void appendBlanked(StringBuilder sb, String text, int begin, int end) {
+    if (begin > end) {
+      // as String.substring would
+      throw new StringIndexOutOfBoundsException("begin " + begin + ", end " + end + ", length " + text.length());
+    }
+    for (int i = begin; i < end; i++) {
+      char ch = text.charAt(i);
+      // \s without UNICODE_CHARACTER_CLASS: just the ASCII whitespace
+      sb.append(ch == ' ' || (ch >= '\t' && ch <= '\r') ? ch : ' ');
+    }
   }
 
   @Override
@@ -322,6 +334,41 @@ public class QuoteAnnotator implements Annotator  {
                                                String text, String docID,
                                                boolean unclosed) {
     List<CoreMap> cmQuotes = Generics.newArrayList();
+    if (quotes.isEmpty()) {
+      return cmQuotes;
+    }
+
+    // the offsets of the tokens and sentences, searched for each quote
+    int[] tokenBegins = null;
+    int[] tokenEnds = null;
+    boolean tokensSorted = true;
+    if (tokens != null) {
+      tokenBegins = new int[tokens.size()];
+      tokenEnds = new int[tokens.size()];
+      for (int i = 0; i < tokens.size(); i++) {
+        tokenBegins[i] = tokens.get(i).beginPosition();
+        tokenEnds[i] = tokens.get(i).endPosition();
+        tokensSorted = tokensSorted && (i == 0 || tokenBegins[i - 1] <= tokenBegins[i]);
+      }
+    }
+    int[] sentBegins = null;
+    int[] sentEnds = null;
+    int[] sentIndices = null;
+    boolean sentencesSorted = true;
+    if (sentences != null) {
+      sentBegins = new int[sentences.size()];
+      sentEnds = new int[sentences.size()];
+      sentIndices = new int[sentences.size()];
+      for (int i = 0; i < sentences.size(); i++) {
+        CoreMap sentence = sentences.get(i);
+        sentBegins[i] = sentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+        sentEnds[i] = sentence.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+        sentIndices[i] = sentence.get(CoreAnnotations.SentenceIndexAnnotation.class);
+        sentencesSorted = sentencesSorted && (i == 0 ||
+            (sentBegins[i - 1] <= sentBegins[i] && sentEnds[i - 1] <= sentEnds[i]));
+      }
+    }
+
     for (Pair<Integer, Integer> p : quotes) {
       int begin = p.first();
       int end = p.second();
@@ -330,31 +377,36 @@ public class QuoteAnnotator implements Annotator  {
       List<CoreLabel> quoteTokens = new ArrayList<>();
       int tokenOffset = -1;
       if (tokens != null) {
-        int currTok = 0;
-        while (currTok < tokens.size() && tokens.get(currTok).beginPosition() < begin) {
-          currTok++;
-        }
-        int i = currTok;
+        int i = firstAtLeast(tokenBegins, tokensSorted, begin);
         tokenOffset = i;
-        while (i < tokens.size() && tokens.get(i).endPosition() <= end) {
+        while (i < tokens.size() && tokenEnds[i] <= end) {
           quoteTokens.add(tokens.get(i));
           i++;
         }
       }
 
-      // find the sentences for this quote
+      // find the sentences for this quote: the last one beginning by the quote's beginning,
+      // and the first one ending after the quote's end
       int beginSentence = -1;
       int endSentence = -1;
       if (sentences != null) {
-        for (CoreMap sentence : sentences) {
-          int sentBegin = sentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
-          int sentEnd = sentence.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
-          int sentIndex = sentence.get(CoreAnnotations.SentenceIndexAnnotation.class);
-          if (sentBegin <= begin) {
-            beginSentence = sentIndex;
+        if (sentencesSorted) {
+          int after = firstAtLeast(sentBegins, true, begin + 1);
+          if (after > 0) {
+            beginSentence = sentIndices[after - 1];
           }
-          if (sentEnd >= end && endSentence < 0) {
-            endSentence = sentIndex;
+          int first = firstAtLeast(sentEnds, true, end);
+          if (first < sentEnds.length) {
+            endSentence = sentIndices[first];
+          }
+        } else {
+          for (int s = 0; s < sentBegins.length; s++) {
+            if (sentBegins[s] <= begin) {
+              beginSentence = sentIndices[s];
+            }
+            if (sentEnds[s] >= end && endSentence < 0) {
+              endSentence = sentIndices[s];
+            }
           }
         }
       }
@@ -376,14 +428,20 @@ public class QuoteAnnotator implements Annotator  {
 
     // embed quotes
     List<CoreMap> toRemove = new ArrayList<>();
-    for (CoreMap cmQuote : cmQuotes) {
+    for (int q = 0; q < cmQuotes.size(); q++) {
+      CoreMap cmQuote = cmQuotes.get(q);
       int start = cmQuote.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
       int end = cmQuote.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
-      // See if we need to embed a quote
+      // See if we need to embed a quote.  Being sorted, only the quotes after this one
+      // and beginning before its end can be inside it
       List<CoreMap> embeddedQuotes = new ArrayList<>();
-      for (CoreMap cmQuoteComp : cmQuotes) {
+      for (int c = q + 1; c < cmQuotes.size(); c++) {
+        CoreMap cmQuoteComp = cmQuotes.get(c);
         int startComp = cmQuoteComp.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
         int endComp = cmQuoteComp.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+        if (startComp > end) {
+          break;
+        }
         if (start < startComp && end >= endComp) {
           // p contains comp
           embeddedQuotes.add(cmQuoteComp);
@@ -398,10 +456,24 @@ public class QuoteAnnotator implements Annotator  {
       }
     }
 
-    // Remove all the quotes that we want to.
-    for (CoreMap r : toRemove) {
-      // remove that quote from the overall list
-      cmQuotes.remove(r);
+    // Remove all the quotes that we want to.  As List.remove would, each removes the first
+    // quote equal to it; only quotes with the same offsets can be equal
+    if ( ! toRemove.isEmpty()) {
+      Map<Pair<Integer, Integer>, List<CoreMap>> quotesBySpan = new HashMap<>();
+      for (CoreMap cmQuote : cmQuotes) {
+        quotesBySpan.computeIfAbsent(span(cmQuote), k -> new ArrayList<>(1)).add(cmQuote);
+      }
+      Set<CoreMap> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (CoreMap r : toRemove) {
+        for (CoreMap cmQuote : quotesBySpan.get(span(r))) {
+          if ( ! removed.contains(cmQuote) && (cmQuote == r || r.equals(cmQuote))) {
+            // remove that quote from the overall list
+            removed.add(cmQuote);
+            break;
+          }
+        }
+      }
+      cmQuotes.removeIf(removed::contains);
     }
 
     // Set the quote index annotations properly
@@ -409,6 +481,33 @@ public class QuoteAnnotator implements Annotator  {
     return cmQuotes;
   }
 
+  private static Pair<Integer, Integer> span(CoreMap quote) {
+    return new Pair<>(quote.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class),
+        quote.get(CoreAnnotations.CharacterOffsetEndAnnotation.class));
+  }
+
+  /** The first index whose value is at least the key, or the length if none is; by binary search if sorted. */
+  private static int firstAtLeast(int[] values, boolean sorted, int key) {
+    if ( ! sorted) {
+      int i = 0;
+      while (i < values.length && values[i] < key) {
+        i++;
+      }
+      return i;
+    }
+    int lo = 0;
+    int hi = values.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (values[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
   private static void setQuoteIndices(List<CoreMap> topLevel, boolean unclosed) {
     List<CoreMap> level = topLevel;
     int index = 0;
@@ -468,86 +567,210 @@ public class QuoteAnnotator implements Annotator  {
     return recursiveQuotes(text, 0, null);
   }
 
+  /**
+   * Finds the quotes in {@code text}, and the quotes embedded in them.  The parts of the text left
+   * to search are kept on a stack rather than searched by recursion, so that neither quotes nested
+   * deep nor many unclosed quotes overflow the call stack; the quotes come out in the same order.
+   */
   public Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>>  recursiveQuotes(String text, int offset, String prevQuote) {
+    QuoteMarks marks = new QuoteMarks(text);
+    List<Pair<Integer, Integer>> quotes = Generics.newArrayList();
+    List<Pair<Integer, Integer>> unclosedQuotes = Generics.newArrayList();
+    Deque<Frame> frames = new ArrayDeque<>();
+    frames.push(new Frame(0, text.length(), offset, prevQuote, 0, 0, NO_MIN_LENGTH));
+    while ( ! frames.isEmpty()) {
+      Frame frame = frames.pop();
+      if (frame.quote != null) {
+        quotes.add(frame.quote);
+      } else {
+        findQuotes(marks, frame, frames, unclosedQuotes);
+      }
+    }
+    if (marks.unmatched > 1) {
+      log.info("WARNING: " + (marks.unmatched - 1) + " more unmatched quotes found");
+    }
+    return new Pair<>(quotes, unclosedQuotes);
+  }
+
+  private static final int NO_MIN_LENGTH = Integer.MIN_VALUE;
+
+  /**
+   * A part of a text to find quotes in, as if that part were the whole text, or else a quote
+   * already found, to add once the quotes embedded in it have been added.
+   * Quotes found in a part are carried up to the whole text as the recursive search used to
+   * return them: their begin and end are shifted, and only quotes longer than minLength are kept.
+   */
+  private static class Frame {
+    final int begin;
+    final int end;
+    final int offset;
+    final String prevQuote;
+    final int shiftBegin;
+    final int shiftEnd;
+    final int minLength;
+    final Pair<Integer, Integer> quote;
+
+    Frame(int begin, int end, int offset, String prevQuote, int shiftBegin, int shiftEnd, int minLength) {
+      this.begin = begin;
+      this.end = end;
+      this.offset = offset;
+      this.prevQuote = prevQuote;
+      this.shiftBegin = shiftBegin;
+      this.shiftEnd = shiftEnd;
+      this.minLength = minLength;
+      this.quote = null;
+    }
+
+    private Frame(Pair<Integer, Integer> quote) {
+      this.begin = this.end = this.offset = this.shiftBegin = this.shiftEnd = this.minLength = 0;
+      this.prevQuote = null;
+      this.quote = quote;
+    }
+
+    /** The rest of this part after a quote left open at {@code start}, relative to the begin. */
+    Frame afterUnclosed(int start, String quote) {
+      // quotes found there used to be shifted by the quote mark at the begin and by one at the end
+      return new Frame(begin + start + quote.length(), end, offset, null,
+          shiftBegin + start + quote.length(), shiftEnd + start + 1,
+          minLength == NO_MIN_LENGTH ? NO_MIN_LENGTH : minLength + quote.length() - 1);
+    }
+
+    /** The inside of a quote from {@code begin} to {@code end}. */
+    Frame embedded(int begin, int end, int offset, String prevQuote) {
+      return new Frame(begin, end, offset, prevQuote, shiftBegin, shiftEnd, Math.max(minLength, 2));
+    }
+
+    /** A quote found in this part, or null if it would have been dropped on the way up. */
+    Frame found(int quoteBegin, int quoteEnd) {
+      if (quoteEnd - quoteBegin <= minLength) {
+        return null;
+      }
+      return new Frame(new Pair<>(quoteBegin + shiftBegin, quoteEnd + shiftEnd));
+    }
+  }
+
+  /**
+   * Finds the quotes in the part of the text of a frame, as if that part were the whole text.
+   * The unclosed quotes are added to {@code unclosedQuotes} at once; the parts left to search and the
+   * quotes found are pushed on {@code frames}, so that they are taken off it in order.
+   * The positions i below are relative to the begin of the part.
+   */
+  private void findQuotes(QuoteMarks marks, Frame frame, Deque<Frame> frames, List<Pair<Integer, Integer>> unclosedQuotes) {
+    String doc = marks.doc;
+    int begin = frame.begin;
+    int end = frame.end;
+    int offset = frame.offset;
+    String prevQuote = frame.prevQuote;
+    int length = end - begin;
     Map<String, List<Pair<Integer, Integer>>> quotesMap = new HashMap<>();
     int start = -1;
-    int end = -1;
+    int quoteEnd = -1;
     String quote = null;
     int directed = 0;
-    for (int i = 0 ; i < text.length(); i++) {
+    Deadline deadline = Deadline.current();
+    for (int i = 0 ; i < length; i++) {
+      if (start < 0 || MAX_LENGTH <= 0) {
+        // anything but a quote mark can't open or close a quote, so go to the next one
+        int next = marks.next(begin + i);
+        if (next >= end) {
+          break;
+        }
+        i = next - begin;
+      }
+      if (deadline != null) {
+        deadline.check();
+      }
       // Either I'm not in any quote or this one matches
       // the kind that I am.
-      String c = text.substring(i, i + 1);
-
-      if (c.equals("`") && i < text.length() - 1 &&
-          text.charAt(i + 1) == '`') {
-        c += text.charAt(i + 1);
-      } else if (c.equals("'") && (quote != null && (quote.equals("``") || quote.equals("`")))) {
-        // we want to ignore it if unless is is the beginning of the
-        // last set of ' of the proper length
-        int curr = i;
-        while (curr < text.length() && text.charAt(curr) == '\'') {
-          curr++;
-        }
-        if (i == curr - quote.length() ||
-            (directed > 0 && i == curr - (directed * quote.length()))) {
-          for (int a = i + 1; a < i + quote.length(); a++) {
-            c += text.charAt(a);
+      String c = quoteMark(doc.charAt(begin + i));
+
+      // anything but a quote mark can't open or close a quote
+      if (c != null) {
+        if (c.equals("`") && i < length - 1 &&
+            doc.charAt(begin + i + 1) == '`') {
+          c += doc.charAt(begin + i + 1);
+        } else if (c.equals("'") && (quote != null && (quote.equals("``") || quote.equals("`")))) {
+          // we want to ignore it if unless is is the beginning of the
+          // last set of ' of the proper length
+          int curr = i;
+          while (curr < length && doc.charAt(begin + curr) == '\'') {
+            curr++;
+          }
+          if (i == curr - quote.length() ||
+              (directed > 0 && i == curr - (directed * quote.length()))) {
+            for (int a = i + 1; a < i + quote.length(); a++) {
+              c += doc.charAt(begin + a);
+            }
+          } else {
+            continue;
           }
-        } else {
-          continue;
         }
-      }
 
-      if (DIRECTED_QUOTES.containsKey(quote) &&
-          DIRECTED_QUOTES.get(quote).equals(c)) {
-        if (c.equals("’")) {
-          if ((i == text.length() - 1 || isSingleQuoteEnd(text, i))) {
-            // check to make sure that this isn't an apostrophe..
+        if (DIRECTED_QUOTES.containsKey(quote) &&
+            DIRECTED_QUOTES.get(quote).equals(c)) {
+          if (c.equals("’")) {
+            if ((i == length - 1 || isSingleQuoteEnd(doc, begin, end, i))) {
+              // check to make sure that this isn't an apostrophe..
+              directed--;
+            }
+          } else {
+            // closing
             directed--;
           }
-        } else {
-          // closing
-          directed--;
         }
-      }
 
-      // opening
-      if ((start < 0) && !matchesPrevQuote(c, prevQuote) &&
-          (((isSingleQuoteWithUse(c) || c.equals("`")) && isSingleQuoteStart(text, i)) ||
-            (c.equals("\"") || DIRECTED_QUOTES.containsKey(c)))) {
-        start = i;
-        quote = c;
-      // closing
-      } else if ((start >= 0 && end < 0) &&
-          ((c.equals(quote) &&
-           (((c.equals("'") || c.equals("`")) && isSingleQuoteEnd(text, i)) ||
-            (c.equals("\"") && isDoubleQuoteEnd(text, i)))) ||
-           (c.equals("'") && quote.equals("`") && isSingleQuoteEnd(text, i)) ||  // latex quotes are kind of problematic
-           (DIRECTED_QUOTES.containsKey(quote) &&
-               DIRECTED_QUOTES.get(quote).equals(c) &&
-           directed == 0))) {
-        end = i + c.length();
-      }
-
-      if (DIRECTED_QUOTES.containsKey(c) &&
-          c.equals(quote)) {
-        // opening of this kind of directed quote
-        directed++;
-      }
-
-      if (start >= 0 && end > 0) {
-        if (!quotesMap.containsKey(quote)) {
-          quotesMap.put(quote, new ArrayList<>());
+        boolean opened = false;
+        // opening
+        if ((start < 0) && !matchesPrevQuote(c, prevQuote) &&
+            (((isSingleQuoteWithUse(c) || c.equals("`")) && isSingleQuoteStart(doc, begin, i)) ||
+              (c.equals("\"") || DIRECTED_QUOTES.containsKey(c)))) {
+          start = i;
+          quote = c;
+          opened = true;
+        // closing
+        } else if ((start >= 0 && quoteEnd < 0) &&
+            ((c.equals(quote) &&
+             (((c.equals("'") || c.equals("`")) && isSingleQuoteEnd(doc, begin, end, i)) ||
+              (c.equals("\"") && isDoubleQuoteEnd(doc, begin, end, i)))) ||
+             (c.equals("'") && quote.equals("`") && isSingleQuoteEnd(doc, begin, end, i)) ||  // latex quotes are kind of problematic
+             (DIRECTED_QUOTES.containsKey(quote) &&
+                 DIRECTED_QUOTES.get(quote).equals(c) &&
+             directed == 0))) {
+          quoteEnd = i + c.length();
+        }
+
+        if (DIRECTED_QUOTES.containsKey(c) &&
+            c.equals(quote)) {
+          // opening of this kind of directed quote
+          directed++;
+        }
+
+        // Only latex quotes read their closing marks differently depending on what is open,
+        // so any other quote is closed where it is closed in the whole text, looked up at once
+        if (opened && MAX_LENGTH <= 0 && ! quote.startsWith("`")) {
+          int close = marks.closingMark(quote, begin + i, end);
+          if (close < 0) {
+            // nothing after a quote which is never closed is found
+            break;
+          }
+          quoteEnd = close - begin + 1;
+          directed = 0;
+          i = close - begin;
+        }
+
+        if (start >= 0 && quoteEnd > 0) {
+          if (!quotesMap.containsKey(quote)) {
+            quotesMap.put(quote, new ArrayList<>());
+          }
+          quotesMap.get(quote).add(new Pair<>(start, quoteEnd));
+          start = -1;
+          quoteEnd = -1;
+          quote = null;
         }
-        quotesMap.get(quote).add(new Pair<>(start, end));
-        start = -1;
-        end = -1;
-        quote = null;
-      }
 
-      if (c.length() > 1) {
-        i += c.length() - 1;
+        if (c.length() > 1) {
+          i += c.length() - 1;
+        }
       }
 
       // forget about this quote
@@ -557,82 +780,203 @@ public class QuoteAnnotator implements Annotator  {
         i = start + quote.length();
 
         start = -1;
-        end = -1;
+        quoteEnd = -1;
         quote = null;
       }
     }
 
     // TODO: determine if we want to be more strict w/ single quotes than double
     // answer: we do want to.
-    if (start >= 0 && start < text.length() - 3) {
-      String warning = text;
-      if (text.length() > 150) {
-        warning = text.substring(0, 150) + "...";
-      }
+    // Only the first is logged, as each unclosed quote makes the rest of the text be searched again
+    if (start >= 0 && start < length - 3 && marks.unmatched++ == 0) {
+      String warning = length > 150 ? doc.substring(begin, begin + 150) + "..." : doc.substring(begin, end);
       log.info("WARNING: unmatched quote of type " +
           quote + " found at index " + start + " in text segment: " + warning);
     }
 
-    // recursively look for embedded quotes in these ones
-    List<Pair<Integer, Integer>> quotes = Generics.newArrayList();
-    List<Pair<Integer, Integer>> unclosedQuotes = Generics.newArrayList();
+    // look for embedded quotes in these ones, after the quotes found in the rest of the text
+    List<Frame> later = new ArrayList<>();
     // If I didn't find any quotes, but did find a quote-beginning, try again,
     // but without the part of the text before the single quote
     // really this test should be whether or not start is mapped to in quotesMap
-    if (!isAQuoteMapStarter(start, quotesMap) && start >= 0 && start < text.length() - 3) {
+    if (!isAQuoteMapStarter(start, quotesMap) && start >= 0 && start < length - 3) {
       if (EXTRACT_UNCLOSED) {
-        unclosedQuotes.add(new Pair<>(start, text.length()));
-      }
-      String toPass = text.substring(start + quote.length());
-      Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>> embedded = recursiveQuotes(toPass, offset, null);
-      // these are the good quotes
-      for (Pair<Integer, Integer> e : embedded.first()) {
-        quotes.add(new Pair<>(e.first() + start + quote.length(),
-            e.second() + start + 1));
-      }
-      if (EXTRACT_UNCLOSED) {
-        // these are the unclosed quotes
-        for (Pair<Integer, Integer> e : embedded.second()) {
-          unclosedQuotes.add(new Pair<>(e.first() + start + quote.length(),
-              e.second() + start + 1));
-        }
+        unclosedQuotes.add(new Pair<>(start + frame.shiftBegin, length + frame.shiftEnd));
       }
+      later.add(frame.afterUnclosed(start, quote));
     }
 
     // Now take care of the good quotes that we found
     for (String qKind : quotesMap.keySet()) {
       for (Pair<Integer, Integer> q : quotesMap.get(qKind)) {
         if (q.second() - q.first() >= qKind.length() * 2) {
-          String toPass = text.substring(q.first() + qKind.length(),
-              q.second() - qKind.length());
           String qKindToPass = null;
           if (!(DIRECTED_QUOTES.containsKey(qKind) || qKind.equals("`"))
                   || !ALLOW_EMBEDDED_SAME) {
             qKindToPass = qKind;
           }
-          Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>> embedded =
-              recursiveQuotes(toPass, q.first() + qKind.length() + offset, qKindToPass);
-          // good quotes
-          for (Pair<Integer, Integer> e : embedded.first()) {
-            // don't add offset here because the
-            // recursive method already added it
-            if (e.second() - e.first() > 2) {
-              quotes.add(new Pair<>(e.first(), e.second()));
-            }
+          later.add(frame.embedded(begin + q.first() + qKind.length(), begin + q.second() - qKind.length(),
+              q.first() + qKind.length() + offset, qKindToPass));
+        }
+        Frame found = frame.found(q.first() + offset, q.second() + offset);
+        if (found != null) {
+          later.add(found);
+        }
+      }
+    }
+
+    for (int k = later.size() - 1; k >= 0; k--) {
+      frames.push(later.get(k));
+    }
+  }
+
+  /**
+   * The quote marks of a text, and where the quotes opened at them are closed in the whole text.
+   * A quote is then skipped in one step, rather than searched through again for each part of the
+   * text that it is in.
+   */
+  private static class QuoteMarks {
+    final String doc;
+    /** The positions of the quote marks, in order. */
+    private final int[] positions;
+    /** For each kind of quote, the position where a quote opened at each mark is closed, or -1. */
+    private final Map<String, int[]> closings = new HashMap<>();
+    /** The number of unmatched quotes found so far. */
+    int unmatched;
+
+    QuoteMarks(String doc) {
+      this.doc = doc;
+      int count = 0;
+      for (int i = 0; i < doc.length(); i++) {
+        if (quoteMark(doc.charAt(i)) != null) {
+          count++;
+        }
+      }
+      positions = new int[count];
+      count = 0;
+      for (int i = 0; i < doc.length(); i++) {
+        if (quoteMark(doc.charAt(i)) != null) {
+          positions[count++] = i;
+        }
+      }
+    }
+
+    /** The position of the first quote mark at or after {@code position}, or the length of the text. */
+    int next(int position) {
+      int index = firstAtLeast(positions, true, position);
+      return index < positions.length ? positions[index] : doc.length();
+    }
+
+    /**
+     * Where the quote opened at {@code open} is closed in the part of the text which ends at
+     * {@code end}, or -1 if it isn't.  This holds for any quote but latex quotes, without a
+     * maximum length.
+     */
+    int closingMark(String quote, int open, int end) {
+      int index = firstAtLeast(positions, true, open);
+      // Marks just before the end of a part of the text may close a quote there but not in the
+      // whole text, or the other way around; then this part is searched on its own
+      boolean sameAsWhole = true;
+      for (int x = Math.max(open + 1, end - 2); x < end; x++) {
+        if (closes(quote, x, end) != closes(quote, x, doc.length())) {
+          sameAsWhole = false;
+        }
+      }
+      if ( ! sameAsWhole) {
+        return searchClosingMark(quote, index, end);
+      }
+      int[] closing = closings.get(quote);
+      if (closing == null) {
+        closing = closings(quote);
+        closings.put(quote, closing);
+      }
+      int close = closing[index];
+      return close < end ? close : -1;
+    }
+
+    /** Where the quote opened at the mark with the given index is closed in the part of the text ending at {@code end}. */
+    private int searchClosingMark(String quote, int index, int end) {
+      boolean directed = DIRECTED_QUOTES.containsKey(quote);
+      int depth = 1;
+      for (int m = index + 1; m < positions.length && positions[m] < end; m++) {
+        int x = positions[m];
+        if (closes(quote, x, end) && ( ! directed || --depth == 0)) {
+          return x;
+        }
+        if (directed && doc.charAt(x) == quote.charAt(0)) {
+          depth++;
+        }
+      }
+      return -1;
+    }
+
+    /** For each mark, where a quote of the given kind opened there is closed in the whole text, or -1. */
+    private int[] closings(String quote) {
+      int[] closing = new int[positions.length];
+      Arrays.fill(closing, -1);
+      if (DIRECTED_QUOTES.containsKey(quote)) {
+        // each closing mark closes the innermost quote of the kind which is open
+        int[] open = new int[positions.length];
+        int depth = 0;
+        for (int m = 0; m < positions.length; m++) {
+          int x = positions[m];
+          if (depth > 0 && closes(quote, x, doc.length())) {
+            closing[open[--depth]] = x;
           }
-          // unclosed quotes
-          if (EXTRACT_UNCLOSED) {
-            // these are the unclosed quotes
-            for (Pair<Integer, Integer> e : embedded.second()) {
-              unclosedQuotes.add(new Pair<>(e.first(), e.second()));
-            }
+          if (doc.charAt(x) == quote.charAt(0)) {
+            open[depth++] = m;
+          }
+        }
+      } else {
+        // the first closing mark after a quote closes it
+        int next = -1;
+        for (int m = positions.length - 1; m >= 0; m--) {
+          closing[m] = next;
+          if (closes(quote, positions[m], doc.length())) {
+            next = positions[m];
           }
         }
-        quotes.add(new Pair<>(q.first() + offset, q.second() + offset));
       }
+      return closing;
     }
 
-    return new Pair<>(quotes, unclosedQuotes);
+    /** Whether the mark at x closes a quote of the given kind, in a part of the text ending at end. */
+    private boolean closes(String quote, int x, int end) {
+      char ch = doc.charAt(x);
+      String closing = DIRECTED_QUOTES.get(quote);
+      if (closing != null) {
+        return ch == closing.charAt(0) && ( ! closing.equals("’") || isSingleQuoteEnd(doc, 0, end, x));
+      } else if (quote.equals("\"")) {
+        return ch == '"' && isDoubleQuoteEnd(doc, 0, end, x);
+      } else {
+        return ch == '\'' && isSingleQuoteEnd(doc, 0, end, x);
+      }
+    }
+  }
+
+  /** The characters which quote marks are made of, and each as a String. */
+  private static final String QUOTE_CHARS;
+  private static final String[] QUOTE_MARKS;
+  static {
+    StringBuilder chars = new StringBuilder("\"'`");
+    for (Map.Entry<String, String> entry : DIRECTED_QUOTES.entrySet()) {
+      for (char ch : (entry.getKey() + entry.getValue()).toCharArray()) {
+        if (chars.indexOf(String.valueOf(ch)) < 0) {
+          chars.append(ch);
+        }
+      }
+    }
+    QUOTE_CHARS = chars.toString();
+    QUOTE_MARKS = new String[QUOTE_CHARS.length()];
+    for (int i = 0; i < QUOTE_MARKS.length; i++) {
+      QUOTE_MARKS[i] = QUOTE_CHARS.substring(i, i + 1);
+    }
+  }
+
+  /** The character as a String if it is (part of) a quote mark, else null. */
+  private static String quoteMark(char ch) {
+    int index = QUOTE_CHARS.indexOf(ch);
+    return index < 0 ? null : QUOTE_MARKS[index];
   }
 
   private static boolean isAQuoteMapStarter(int target, Map<String, List<Pair<Integer, Integer>>> quotesMap) {
@@ -654,35 +998,56 @@ public class QuoteAnnotator implements Annotator  {
     return prev != null && prev.equals(c);
   }
 
-  private static boolean isSingleQuoteStart(String text, int i) {
+  private static boolean isSingleQuoteStart(String doc, int begin, int i) {
     if (i == 0) return true;
-    String prev = text.substring(i - 1, i);
-    return isWhitespaceOrPunct(prev);
+    return isWhitespaceOrPunct(doc.charAt(begin + i - 1));
   }
 
-  private static boolean isSingleQuoteEnd(String text, int i) {
-    if (i == text.length() - 1) return true;
-    String next = text.substring(i + 1, i + 2);
-    return isWhitespaceOrPunct(next);
+  private static boolean isSingleQuoteEnd(String doc, int begin, int end, int i) {
+    if (i == end - begin - 1) return true;
+    return isWhitespaceOrPunct(doc.charAt(begin + i + 1));
   }
 
-  private static boolean isDoubleQuoteEnd(String text, int i) {
-    if (i == text.length() - 1) return true;
-    String next = text.substring(i + 1, i + 2);
-    if (i == text.length() - 2 && isWhitespaceOrPunct(next)) {
-      return true;
+  private static boolean isDoubleQuoteEnd(String doc, int begin, int end, int i) {
+    int length = end - begin;
+    if (i == length - 1) return true;
+    char next = doc.charAt(begin + i + 1);
+    if (i == length - 2) {
+      // the quote is followed by one last character
+      return isWhitespaceOrPunct(next);
     }
-    String nextNext = text.substring(i + 2, i + 3);
+    char nextNext = doc.charAt(begin + i + 2);
     return ((isWhitespaceOrPunct(next) &&
-           !isSingleQuote(next)) || (isSingleQuote(next) && isWhitespaceOrPunct(nextNext)));
+           next != '\'') || (next == '\'' && isWhitespaceOrPunct(nextNext)));
   }
 
+  private static final Pattern punctOrWhite = Pattern.compile("[\\s\\p{Punct}]", Pattern.UNICODE_CHARACTER_CLASS);
+
   public static boolean isWhitespaceOrPunct(String c) {
-    Pattern punctOrWhite = Pattern.compile("[\\s\\p{Punct}]", Pattern.UNICODE_CHARACTER_CLASS);
     Matcher m = punctOrWhite.matcher(c);
     return m.matches();
   }
 
+  /**
+   * Whether the character is whitespace or punctuation, as {@link #isWhitespaceOrPunct(String)}
+   * says of it as a String: Unicode White_Space, or a character of a punctuation category.
+   */
+  static boolean isWhitespaceOrPunct(char c) {
+    switch (Character.getType(c)) {
+      case Character.CONNECTOR_PUNCTUATION:
+      case Character.DASH_PUNCTUATION:
+      case Character.START_PUNCTUATION:
+      case Character.END_PUNCTUATION:
+      case Character.INITIAL_QUOTE_PUNCTUATION:
+      case Character.FINAL_QUOTE_PUNCTUATION:
+      case Character.OTHER_PUNCTUATION:
+        return true;
+      default:
+        // the White_Space property, which \s is with UNICODE_CHARACTER_CLASS
+        return (c >= '\t' && c <= '\r') || c == '\u0085' || Character.isSpaceChar(c);
+    }
+  }
+
   public static boolean isSingleQuote(String c) {
     return c.equals("'");
   }
@@ -33,6 +33,7 @@ import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.BoundedExecutor;
 import edu.stanford.nlp.util.logging.Redwood;
 import edu.stanford.nlp.util.logging.StanfordRedwoodConfiguration;
 // import static edu.stanford.nlp.util.logging.Redwood.Util.*;
@@ -41,13 +42,21 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 
 /**
@@ -141,8 +150,10 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
 
   /**
    * A global cache of annotators, so we don't have to re-create one if there's enough memory floating around.
+   * It is unbounded unless limits are set, either directly or through the {@code annotatorCache.*}
+   * properties of a pipeline (see {@link AnnotatorCache#configure(Properties)}).
    */
-  public static final Map<AnnotatorSignature, Lazy<Annotator>> GLOBAL_ANNOTATOR_CACHE = new ConcurrentHashMap<>();
+  public static final AnnotatorCache GLOBAL_ANNOTATOR_CACHE = new AnnotatorCache();
 
 
 
@@ -167,11 +178,23 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
   /** Properties for this pipeline. Always non-null. */
   private final Properties properties;
 
-  private final Semaphore availableProcessors;
+  /** The number of documents to annotate at once in {@link #annotate(Annotation, Consumer)}. */
+  private final int numThreads;
+
+  /** The executor documents are annotated on when running multithreaded. Created when first needed. */
+  private BoundedExecutor annotationExecutor; // = null
+  /**
+   * Used instead of the annotation executor when the {@code lanes} property is set, and otherwise null.
+   * Made from the properties once, and copied when needed again after being shut down.
+   */
+  private LaneScheduler laneScheduler; // = null
 
   /** The annotator pool we should be using to get annotators. */
   public final AnnotatorPool pool;
 
+  /** If not null, documents seen before are taken from this cache instead of being annotated. */
+  private final AnnotationResultCache resultCache;
+
 
   /**
    * Constructs a pipeline using as properties the properties file found in the classpath
@@ -230,28 +253,54 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     }
     this.properties = props;  // from now on we use this.properties
 
+    // Set the limits of the annotator cache, which is shared by all pipelines
+    GLOBAL_ANNOTATOR_CACHE.configure(props);
+
     // cdm [2017]: constructAnnotatorPool (PropertiesUtils.getSignature) requires non-null Properties, so after properties setup
     this.pool = annotatorPool != null ? annotatorPool : constructAnnotatorPool(props, getAnnotatorImplementations());
 
     // Set threading
     if (this.properties.containsKey("threads")) {
       ArgumentParser.threads = PropertiesUtils.getInt(this.properties, "threads");
-      this.availableProcessors = new Semaphore(ArgumentParser.threads);
+      this.numThreads = ArgumentParser.threads;
     } else {
-      this.availableProcessors = new Semaphore(1);
+      this.numThreads = 1;
     }
+    // Annotate documents on lanes by size; the lanes only start threads once given documents
+    this.laneScheduler = LaneScheduler.fromProperties(getClass().getSimpleName() + "-annotate", properties, numThreads);
+    // Split long documents by sentence for the annotators which allow it
+    setSentenceThreads(PropertiesUtils.getInt(this.properties, "sentenceThreads", 1));
+    // Cut very long documents into pieces annotated at once
+    setChunking(PropertiesUtils.getInt(this.properties, "chunk.size", 0),
+        PropertiesUtils.getInt(this.properties, "chunk.threads", Runtime.getRuntime().availableProcessors()));
+    // Limit the time spent on each document
+    setTimeBudget(PropertiesUtils.getLong(this.properties, "timeBudget", 0),
+        DeadlinePolicy.valueOf(this.properties.getProperty("timeBudget.policy", "degrade").toUpperCase(Locale.ROOT)));
 
     // now construct the annotators from the given properties in the given order
-    String[] annoNames = getRequiredProperty(this.properties, "annotators").split("[, \t]+");
+    List<String> annoNames = new ArrayList<>();
+    for (String name : getRequiredProperty(this.properties, "annotators").split("[, \t]+")) {
+      name = name.trim();
+      if ( ! name.isEmpty()) {
+        annoNames.add(name);
+      }
+    }
+    List<LoadedAnnotator> loaded = loadAnnotators(annoNames, PropertiesUtils.getInt(this.properties, "loadThreads", 1));
+    StringBuilder pipelineSignature = new StringBuilder();
+    for (String name : annoNames) {
+      pipelineSignature.append(new AnnotatorSignature(name, PropertiesUtils.getSignature(name, this.properties))).append('\n');
+    }
+    this.resultCache = AnnotationResultCache.fromProperties(this.properties, pipelineSignature.toString());
     Set<String> alreadyAddedAnnoNames = Generics.newHashSet();
     Set<Class<? extends CoreAnnotation>> requirementsSatisfied = Generics.newHashSet();
-    for (String name : annoNames) {
-      name = name.trim();
-      if (name.isEmpty()) { continue; }
-      logger.info("Adding annotator " + name);
-
-      Annotator an = pool.get(name);
+    for (int i = 0; i < annoNames.size(); i++) {
+      String name = annoNames.get(i);
+      Annotator an = loaded.get(i).annotator;
       this.addAnnotator(an);
+      List<PipelineMetrics.AnnotatorMetrics> annotatorMetrics = metrics().annotators();
+      if ( ! annotatorMetrics.isEmpty()) {
+        annotatorMetrics.get(annotatorMetrics.size() - 1).recordLoad(loaded.get(i).nanos, loaded.get(i).allocatedBytes);
+      }
 
       if (enforceRequirements) {
         Set<Class<? extends CoreAnnotation>> allRequirements = an.requires();
@@ -274,9 +323,92 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     if (! alreadyAddedAnnoNames.contains(STANFORD_SSPLIT)) {
       System.setProperty(NEWLINE_SPLITTER_PROPERTY, "false");
     }
+    // Make latency and throughput visible to JMX clients such as jconsole
+    if (PropertiesUtils.getBool(this.properties, "metrics.jmx", false)) {
+      metrics().registerMBeans(this.properties.getProperty("metrics.name",
+          getClass().getSimpleName() + '-' + Integer.toHexString(System.identityHashCode(this))));
+    }
     this.pipelineSetupTime = tim.report();
   }
 
+  /** An annotator taken from the pool, with how long that took and how much it allocated. */
+  private static class LoadedAnnotator {
+    final Annotator annotator;
+    final long nanos;
+    final long allocatedBytes;
+
+    LoadedAnnotator(Annotator annotator, long nanos, long allocatedBytes) {
+      this.annotator = annotator;
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+  /**
+   * Get the named annotators from the pool, creating them if need be.
+   * Creating an annotator doesn't depend on the others having been created (only running it
+   * depends on what earlier annotators did, which is checked once they are all created),
+   * so with more than one thread they are all created at once, and startup takes about as long
+   * as the slowest annotator rather than the sum of them all.
+   *
+   * @param names The annotators to get, in pipeline order
+   * @param numThreads The number of threads to create annotators on
+   * @return The annotators, in the same order
+   */
+  private List<LoadedAnnotator> loadAnnotators(List<String> names, int numThreads) {
+    List<LoadedAnnotator> loaded = new ArrayList<>(names.size());
+    if (numThreads <= 1 || names.size() <= 1) {
+      for (String name : names) {
+        logger.info("Adding annotator " + name);
+        loaded.add(loadAnnotator(name));
+      }
+    } else {
+      BoundedExecutor executor = new BoundedExecutor(getClass().getSimpleName() + "-load", BoundedExecutor.Mode.POOL,
+          Math.min(numThreads, names.size()), names.size(), BoundedExecutor.RejectionPolicy.BLOCK, 1000);
+      List<FutureTask<LoadedAnnotator>> tasks = new ArrayList<>(names.size());
+      try {
+        for (String name : names) {
+          logger.info("Adding annotator " + name);
+          FutureTask<LoadedAnnotator> task = new FutureTask<>(() -> loadAnnotator(name));
+          tasks.add(task);
+          executor.execute(task);
+        }
+        for (FutureTask<LoadedAnnotator> task : tasks) {
+          loaded.add(task.get());
+        }
+      } catch (InterruptedException e) {
+        throw new RuntimeInterruptedException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        } else if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw new RuntimeException(e.getCause());
+      } finally {
+        for (FutureTask<LoadedAnnotator> task : tasks) {
+          task.cancel(false);
+        }
+        executor.shutdown();
+      }
+    }
+    for (int i = 0; i < names.size(); i++) {
+      LoadedAnnotator an = loaded.get(i);
+      logger.info(String.format("Loaded annotator %s in %s sec.%s", names.get(i), Timing.toSecondsString(an.nanos / 1000000),
+          an.allocatedBytes < 0 ? "" : String.format(", allocating %.1f MB", an.allocatedBytes / 1048576.0)));
+    }
+    return loaded;
+  }
+
+  private LoadedAnnotator loadAnnotator(String name) {
+    long allocatedBefore = AnnotatorCache.allocatedBytes();
+    long start = System.nanoTime();
+    Annotator an = pool.get(name);
+    long nanos = System.nanoTime() - start;
+    long allocatedAfter = AnnotatorCache.allocatedBytes();
+    return new LoadedAnnotator(an, nanos, allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore);
+  }
+
   //
   // @Override-able methods to change pipeline behavior
   //
@@ -560,10 +692,21 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     document.wrapAnnotations();
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   * If there is a {@link #resultCache() result cache}, and it has the document, then the document
+   * isn't annotated; instead, the annotations of the cached copy are added to it.
+   */
   @Override
   public void annotate(Annotation annotation) {
-    super.annotate(annotation);
+    String cacheKey = resultCache == null ? null : resultCache.key(annotation);
+    if (cacheKey == null || ! resultCache.get(cacheKey, annotation)) {
+      super.annotate(annotation);
+      // a document which ran out of time is incomplete, and isn't cached
+      if (cacheKey != null && ! annotation.containsKey(CoreAnnotations.DeadlineExceededAnnotation.class)) {
+        resultCache.put(cacheKey, annotation);
+      }
+    }
     List<CoreLabel> words = annotation.get(CoreAnnotations.TokensAnnotation.class);
     if (words != null) {
       numWords += words.size();
@@ -571,25 +714,94 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
   }
 
 
+  /**
+   * Annotate the given document, and call the callback when done.
+   * If the {@code threads} property is more than 1, then the annotation is done on a
+   * {@link BoundedExecutor}, configured with the {@code executor.*} properties
+   * (see {@link BoundedExecutor#fromProperties(String, Properties, String, int)}),
+   * and this method returns once the document has been queued.
+   * If the {@code lanes} property is set, the document is instead queued on the
+   * {@link LaneScheduler} lane for its size.
+   * An exception thrown while annotating is stored in the
+   * {@link CoreAnnotations.ExceptionAnnotation} of the document rather than thrown.
+   *
+   * @param annotation The document to annotate
+   * @param callback A function to be called when the annotation finishes
+   * @throws java.util.concurrent.RejectedExecutionException If the executor is full and set to reject documents
+   */
   public void annotate(final Annotation annotation, final Consumer<Annotation> callback){
-    if (PropertiesUtils.getInt(properties, "threads", 1) == 1) {
+    LaneScheduler lanes = laneScheduler();
+    if (numThreads == 1 && lanes == null) {
       annotate(annotation);
       callback.accept(annotation);
     } else {
-      try {
-        availableProcessors.acquire();
-      } catch (InterruptedException e) {
-        throw new RuntimeInterruptedException(e);
-      }
-      new Thread(() -> {
+      Runnable task = () -> {
         try {
           annotate(annotation);
         } catch (Throwable t) {
           annotation.set(CoreAnnotations.ExceptionAnnotation.class, t);
         }
         callback.accept(annotation);
-        availableProcessors.release();
-      }).start();
+      };
+      if (lanes != null) {
+        lanes.execute(annotation, task);
+      } else {
+        annotationExecutor().execute(task);
+      }
+    }
+  }
+
+  /**
+   * The cache of annotated documents set up by the {@code resultCache} properties,
+   * or null if there isn't one.
+   */
+  public AnnotationResultCache resultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Returns the executor used by {@link #annotate(Annotation, Consumer)} when running
+   * on more than one thread, creating it if necessary.
+   */
+  public synchronized BoundedExecutor annotationExecutor() {
+    if (annotationExecutor == null || annotationExecutor.isShutdown()) {
+      annotationExecutor = BoundedExecutor.fromProperties(getClass().getSimpleName() + "-annotate", properties, "executor.", numThreads);
+    }
+    return annotationExecutor;
+  }
+
+  /**
+   * Returns the lanes used by {@link #annotate(Annotation, Consumer)} to keep long
+   * documents from holding up short ones, replacing them if they have been shut down, or null if the
+   * {@code lanes} property isn't set. See {@link LaneScheduler#fromProperties(String, Properties, int)}.
+   */
+  public synchronized LaneScheduler laneScheduler() {
+    if (laneScheduler != null && laneScheduler.isShutdown()) {
+      laneScheduler = laneScheduler.copy();
+    }
+    return laneScheduler;
+  }
+
+  /**
+   * Wait for all the documents handed to {@link #annotate(Annotation, Consumer)} to finish,
+   * and release the threads used to annotate them.
+   * The pipeline can still be used afterwards; a new executor is created when needed.
+   */
+  public void awaitAnnotations() {
+    BoundedExecutor executor;
+    LaneScheduler lanes;
+    synchronized (this) {
+      executor = annotationExecutor;
+      annotationExecutor = null;
+      lanes = laneScheduler;  // kept for its statistics, and copied when next needed
+    }
+    if (executor != null) {
+      executor.shutdown();
+      logger.info("Annotation executor: " + executor);
+    }
+    if (lanes != null && ! lanes.isShutdown()) {
+      lanes.shutdown();
+      logger.info("Annotation lanes: " + lanes);
     }
   }
 
@@ -695,6 +907,10 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     os.println("\t\"tokenize.options\" - PTBTokenizer options (see edu.stanford.nlp.process.PTBTokenizer for details)");
     os.println("\t\"tokenize.whitespace\" - If true, just use whitespace tokenization");
     os.println("\t\"tokenize.codepoint\" - If true, add codepoint offsets for counting non-BMP characters");
+    os.println("\t\"tokenize.threads\" - With PTB tokenization, tokenize long texts in segments cut at blank lines on this many threads (default 1)");
+    os.println("\t\"tokenize.segmentSize\" - With tokenize.threads, the least number of characters in a segment (default 65536)");
+    os.println("\t\"tokenize.intern\" - If true, share one copy of each short token string, such as punctuation and common words, between tokens and threads");
+    os.println("\t\"tokenize.columnar\" - If true, keep the offsets, indices, words and tags of tokens in compact columns (see edu.stanford.nlp.ling.TokenColumns)");
 
     os.println();
     os.println("\tIf annotator \"cleanxml\" is defined:");
@@ -746,6 +962,33 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     os.println("\t\"noClobber\" - don't automatically override (clobber) output files that already exist");
     os.println("\t\"isOneDocument\" - (for piped input only) treat the text till eof as one document rather than one document per line");
     os.println("\t\"threads\" - multithread on this number of threads");
+    os.println("\t\"executor.type\" - with threads, \"pool\" (default) or \"virtual\" threads to annotate documents on");
+    os.println("\t\"executor.queueSize\" - with threads, how many documents may wait for a free thread (defaults to threads)");
+    os.println("\t\"executor.rejection\" - with threads, \"block\" (default), \"abort\" or \"callerRuns\" when the queue is full");
+    os.println("\t\"checkpoint\" - with a file or filelist, a manifest of the files finished, which are skipped when the run is restarted");
+    os.println("\t\"checkpoint.verify\" - with checkpoint, skip finished files whose size and time changed but whose contents did not");
+    os.println("\t\"reader.threads\" - with a file or filelist, the number of threads to read files on (default 1)");
+    os.println("\t\"reader.queueSize\" - with a file or filelist, how many files to read ahead of annotation (defaults to twice threads)");
+    os.println("\t\"reader.splitTag\" - with a file or filelist, make a document of the text of each XML tag of this name in the files, read as they're needed; output goes to file.N.outputExtension");
+    os.println("\t\"writer.threads\" - with a file or filelist, the number of threads to write output on (default 1)");
+    os.println("\t\"writer.queueSize\" - with a file or filelist, how many annotated documents may wait to be written (defaults to twice threads)");
+    os.println("\t\"annotatorCache.maxEntries\", \"annotatorCache.maxBytes\" - limits on the annotators cached across pipelines in this JVM (default unbounded)");
+    os.println("\t\"annotatorCache.policy\" - \"lru\" (default) or \"lfu\": which cached annotators to drop first");
+    os.println("\t\"annotatorCache.pin\" - annotators (e.g., tokenize) which are never dropped from the cache");
+    os.println("\t\"resultCache\" - if true, documents annotated before are taken from a cache keyed by their text and the annotators");
+    os.println("\t\"resultCache.maxBytes\", \"resultCache.dir\", \"resultCache.maxDiskBytes\" - size of the in-memory cache, and a directory and size for an on-disk cache");
+    os.println("\t\"resultCache.ttl\" - seconds cached documents are good for (default 0, forever)");
+    os.println("\t\"loadThreads\" - the number of threads to create annotators on when the pipeline starts (default 1)");
+    os.println("\t\"metrics.jmx\" - if true, register per-annotator latency and pipeline throughput as JMX MBeans");
+    os.println("\t\"metrics.name\" - with metrics.jmx, the name the pipeline is registered under");
+    os.println("\t\"sentenceThreads\" - run sentence-local annotators (lemma, mwt, regexner, tokensregex) on this many sentences of a document at once");
+    os.println("\t\"chunk.size\" - annotate documents longer than this many characters in pieces cut at blank lines or top-level XML sections (default 0, never)");
+    os.println("\t\"chunk.threads\" - the number of pieces of a long document to annotate at once (default: the number of processors)");
+    os.println("\t\"lanes\" - largest document size of each lane but the last (e.g. 2000,100000); documents are annotated on separate threads per lane so long ones don't hold up short ones");
+    os.println("\t\"lanes.threads\", \"lanes.queueSize\" - threads of each lane (e.g. 4,2,1), and how many documents may wait in a lane");
+    os.println("\t\"lanes.measure\" - \"chars\" (default) or \"tokens\" (estimated) for the document size; \"lanes.shortestFirst\" - run the smallest waiting document of a lane first");
+    os.println("\t\"timeBudget\" - milliseconds each document may take, unless it carries its own DeadlineAnnotation (default 0, no limit)");
+    os.println("\t\"timeBudget.policy\" - \"degrade\" (default) to skip the rest of the pipeline and mark the document, or \"fail\" to throw an exception");
     os.println();
     os.println("If none of the above are present, run the pipeline in an interactive shell (default properties will be loaded from the classpath).");
     os.println("The shell accepts input from stdin and displays the output at stdout.");
@@ -769,6 +1012,9 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
       sb.append(String.format("%.1f", numWords / (((double) total)/1000)));
       sb.append( " tokens/sec.");
     }
+    if (resultCache != null) {
+      sb.append(IOUtils.eolChar).append(resultCache);
+    }
     return sb.toString();
   }
 
@@ -912,6 +1158,13 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
 
   /**
    * A common method for processing a set of files, used in both {@link StanfordCoreNLP} as well as
+   * its subclasses.
+   * Files are read ahead by the {@code reader.threads} threads (default 1), up to {@code reader.queueSize}
+   * files; annotated by {@code annotate}; and written by the {@code writer.threads} threads
+   * (default 1), up to {@code writer.queueSize} documents waiting. This method returns when all
+   * the files have been written, and logs how busy each stage was.
+   * If the {@code checkpoint} property names a {@link CheckpointManifest}, files finished by
+   * an earlier run are skipped, and each file written is added to it.
    *
    * @param base The base input directory to process from.
    * @param files The files to process.
@@ -961,168 +1214,417 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     final boolean noClobber = Boolean.parseBoolean(properties.getProperty("noClobber", "false"));
     // final boolean randomize = Boolean.parseBoolean(properties.getProperty("randomize", "false"));
 
-    final MutableInteger totalProcessed = new MutableInteger(0);
-    final MutableInteger totalSkipped = new MutableInteger(0);
-    final MutableInteger totalErrorAnnotating = new MutableInteger(0);
-
-    //for each file...
-    for (final File file : files) {
-      // Determine if there is anything to be done....
-      if (excludeFiles.contains(file.getName())) {
-        logger.err("Skipping excluded file " + file.getName());
-        totalSkipped.incValue(1);
-        continue;
-      }
+    final AtomicInteger totalProcessed = new AtomicInteger();
+    final AtomicInteger totalSkipped = new AtomicInteger();
+    final AtomicInteger totalErrorAnnotating = new AtomicInteger();
+
+    // A manifest of the files already finished, so that a restarted run can skip them
+    final String checkpointFile = properties.getProperty("checkpoint");
+    final boolean verifyCheckpoint = PropertiesUtils.getBool(properties, "checkpoint.verify", false);
+    final CheckpointManifest checkpoint = checkpointFile == null ? null : new CheckpointManifest(new File(checkpointFile));
+    final AtomicInteger totalCheckpointed = new AtomicInteger();
+    if (checkpoint != null) {
+      logger.info("Skipping files finished according to " + checkpoint);
+    }
 
-      //--Get Output File Info
-      //(filename)
-      String outputDir = baseOutputDir;
-      if (baseInputDir != null) {
-        // Get input file name relative to base
-        String relDir = file.getParent().replaceFirst(Pattern.quote(baseInputDir), "");
-        outputDir = outputDir + File.separator + relDir;
-      }
-      // Make sure output directory exists
-      new File(outputDir).mkdirs();
-      String outputFilename = new File(outputDir, file.getName()).getPath();
-      if (replaceExtension) {
-        int lastDot = outputFilename.lastIndexOf('.');
-        // for paths like "./zzz", lastDot will be 0
-        if (lastDot > 0) {
-          outputFilename = outputFilename.substring(0, lastDot);
+    // Files go through three stages, each on its own threads, connected by bounded queues so that
+    // slow I/O in one stage doesn't hold up the others: reader threads read files ahead into readQueue,
+    // this thread hands them on to be annotated, and annotated documents are queued for writer threads.
+    final int readerThreads = PropertiesUtils.getInt(properties, "reader.threads", 1);
+    final int readAhead = PropertiesUtils.getInt(properties, "reader.queueSize", Math.max(2, 2 * numThreads));
+    final int writerThreads = PropertiesUtils.getInt(properties, "writer.threads", 1);
+    final int writeQueueSize = PropertiesUtils.getInt(properties, "writer.queueSize", Math.max(2, 2 * numThreads));
+    // Files may be split into documents, one for each XML tag of this name, read as they're needed
+    final String splitTag = properties.getProperty("reader.splitTag");
+    final BoundedExecutor readers = new BoundedExecutor("processFiles-read",
+        BoundedExecutor.modeFromProperties(properties, "reader.type"),
+        readerThreads, readerThreads, BoundedExecutor.RejectionPolicy.BLOCK, 1000);
+    final BoundedExecutor writers = new BoundedExecutor("processFiles-write", BoundedExecutor.Mode.POOL,
+        writerThreads, writeQueueSize, BoundedExecutor.RejectionPolicy.BLOCK, 1000);
+    final BlockingQueue<FileJob> readQueue = new ArrayBlockingQueue<>(Math.max(1, readAhead));
+    // The first error which stops the run; once set, no new files are started
+    final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    // Counts the files handed on to be annotated but not yet written (plus one for this thread)
+    final Phaser outstanding = new Phaser(1);
+
+    Thread feeder = new Thread(() -> {
+      try {
+        for (final File file : files) {
+          if (failure.get() != null) {
+            break;
+          }
+          readers.execute(() -> {
+            if (failure.get() != null) {
+              return;
+            }
+            try {
+              // stat the file once: if it gets finished, these are what the checkpoint records
+              long size = file.length();
+              long lastModified = file.lastModified();
+              if (checkpoint != null && checkpoint.isDone(file, size, lastModified, verifyCheckpoint)) {
+                totalCheckpointed.incrementAndGet();
+                return;
+              }
+              if (splitTag != null && ! file.getName().endsWith(".ser.gz")) {
+                int documents = readDocuments(file, size, lastModified, checkpoint, splitTag, properties, excludeFiles,
+                    baseOutputDir, baseInputDir, extension, replaceExtension, noClobber,
+                    job -> putOrThrow(readQueue, job), () -> failure.get() != null);
+                if (documents == 0) {
+                  totalSkipped.incrementAndGet();
+                }
+                return;
+              }
+              FileJob job = readFile(file, size, lastModified, checkpoint != null, properties, excludeFiles,
+                  baseOutputDir, baseInputDir, extension, replaceExtension, noClobber, inputSerializerClass, inputSerializerName);
+              if (job == null) {
+                totalSkipped.incrementAndGet();
+              } else {
+                putOrThrow(readQueue, job);
+              }
+            } catch (IOException e) {
+              failure.compareAndSet(null, new RuntimeIOException(e));
+            } catch (RuntimeException e) {
+              failure.compareAndSet(null, e);
+            }
+          });
         }
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        readers.shutdown();
+        putOrThrow(readQueue, FileJob.END);
       }
-      // ensure we don't make filenames with doubled extensions like .xml.xml
-      if (!outputFilename.endsWith(extension)) {
-        outputFilename += extension;
+    }, "processFiles-feed");
+    feeder.setDaemon(true);
+    feeder.start();
+
+    long start = System.nanoTime();
+    long annotateNanos = 0;
+    boolean drained = false;
+    try {
+      for (FileJob job = takeOrThrow(readQueue); job != FileJob.END; job = takeOrThrow(readQueue)) {
+        if (failure.get() != null) {
+          continue;  // keep draining, so that the readers can finish
+        }
+        final FileJob finalJob = job;
+        final Timing timing = new Timing();
+        outstanding.register();
+        long annotateStart = System.nanoTime();
+        try {
+          annotate.accept(job.annotation, finishedAnnotation -> {
+            timing.done(logger, "Annotating file " + finalJob.file.getAbsoluteFile());
+            Throwable ex = finishedAnnotation.get(CoreAnnotations.ExceptionAnnotation.class);
+            if (ex == null) {
+              try {
+                writers.execute(() -> {
+                  try {
+                    //--Output File
+                    try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(finalJob.outputFilename))) {
+                      print.accept(finishedAnnotation, fos);
+                    }
+                    if (checkpoint != null && finalJob.finishesFile()) {
+                      checkpoint.markDone(finalJob.file, finalJob.size, finalJob.lastModified, finalJob.hash);
+                    }
+                    int processed = totalProcessed.incrementAndGet();
+                    if (processed % 1000 == 0) {
+                      logger.info("Processed " + processed + " documents");
+                    }
+                  } catch (IOException e) {
+                    failure.compareAndSet(null, new RuntimeIOException(e));
+                  } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                  } finally {
+                    outstanding.arriveAndDeregister();
+                  }
+                });
+              } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                outstanding.arriveAndDeregister();
+              }
+            } else {
+              if (continueOnAnnotateError) {
+                // Error annotating but still wanna continue
+                // (maybe in the middle of long job and maybe next one will be okay)
+                logger.err("Error annotating " + finalJob.file.getAbsoluteFile() + ": " + ex);
+                totalErrorAnnotating.incrementAndGet();
+              } else {
+                failure.compareAndSet(null, new RuntimeException("Error annotating " + finalJob.file.getAbsoluteFile(), ex));
+              }
+              outstanding.arriveAndDeregister();
+            }
+          });
+        } catch (RuntimeException e) {
+          // the document was never annotated, so the callback won't be called
+          failure.compareAndSet(null, new RuntimeException("Error annotating " + job.file.getAbsoluteFile(), e));
+          outstanding.arriveAndDeregister();
+        } catch (Error e) {
+          // nor here, and the error stops the run once the readers are drained below
+          outstanding.arriveAndDeregister();
+          throw e;
+        }
+        annotateNanos += System.nanoTime() - annotateStart;
       }
-      // normalize filename for the upcoming comparison
-      outputFilename = new File(outputFilename).getCanonicalPath();
-
-      //--Conditions For Skipping The File
-      // TODO this could fail if there are softlinks, etc. -- need some sort of sameFile tester
-      //      Java 7 will have a Files.isSymbolicLink(file) method
-      if (outputFilename.equals(file.getCanonicalPath())) {
-        logger.err("Skipping " + file.getName() + ": output file " + outputFilename + " has the same filename as the input file -- assuming you don't actually want to do this.");
-        totalSkipped.incValue(1);
-        continue;
+      drained = true;
+    } finally {
+      if ( ! drained) {
+        // this thread is leaving on an error: stop the readers, and take what they still put on
+        // readQueue so that neither they nor the feeder are left blocked on it forever
+        failure.compareAndSet(null, new RuntimeException("Stopped processing files after an error"));
+        while (takeOrThrow(readQueue) != FileJob.END) {
+          // discard
+        }
       }
-      if (noClobber && new File(outputFilename).exists()) {
-        logger.err("Skipping " + file.getName() + ": output file " + outputFilename + " as it already exists.  Don't use the noClobber option to override this.");
-        totalSkipped.incValue(1);
-        continue;
+      outstanding.arriveAndAwaitAdvance();
+      writers.shutdown();
+      if (checkpoint != null) {
+        checkpoint.close();
       }
+    }
 
-      final String finalOutputFilename = outputFilename;
+    // report how busy each stage was, to show which one to give more threads
+    long elapsed = System.nanoTime() - start;
+    logger.info("Processed " + totalProcessed + " files, skipped " + totalSkipped + ", failed to annotate " + totalErrorAnnotating);
+    if (checkpoint != null) {
+      logger.info("Skipped " + totalCheckpointed + " files already finished according to " + checkpoint);
+    }
+    logger.info("Read stage: " + readers);
+    if (pipeline.isPresent() && pipeline.get().laneScheduler != null) {
+      logger.info("Annotate stage: " + pipeline.get().laneScheduler);
+    } else if (pipeline.isPresent() && pipeline.get().annotationExecutor != null) {
+      logger.info("Annotate stage: " + pipeline.get().annotationExecutor);
+    } else {
+      logger.info(String.format("Annotate stage: busy: %.0f%%", elapsed <= 0 ? 0.0 : 100.0 * annotateNanos / elapsed));
+    }
+    logger.info("Write stage: " + writers);
 
-      //register a task...
-      //catching exceptions...
-      try {
-        // Check whether this file should be skipped again
-        if (noClobber && new File(finalOutputFilename).exists()) {
-          logger.err("Skipping " + file.getName() + ": output file " + finalOutputFilename + " as it already exists.  Don't use the noClobber option to override this.");
-          synchronized (totalSkipped) {
-            totalSkipped.incValue(1);
-          }
-          return;
-        }
+    // clear pool if necessary
+    if (clearPool) {
+      GLOBAL_ANNOTATOR_CACHE.clear();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    // print out timing info
+    if (TIME && pipeline.isPresent() && tim.isPresent()) {
+      logTimingInfo(pipeline.get(), tim.get());
+    }
+  }
 
-        logger.info("Processing file " + file.getAbsolutePath() + " ... writing to " + finalOutputFilename);
-
-        //--Process File
-        Annotation annotation = null;
-        if (file.getAbsolutePath().endsWith(".ser.gz")) {
-          // maybe they want to continue processing a partially processed annotation
-          try {
-            // Create serializers
-            if (inputSerializerClass != null) {
-              AnnotationSerializer inputSerializer = loadSerializer(inputSerializerClass, inputSerializerName, properties);
-              InputStream is = new BufferedInputStream(new FileInputStream(file));
-              Pair<Annotation, InputStream> pair = inputSerializer.read(is);
-              pair.second.close();
-              annotation = pair.first;
-              IOUtils.closeIgnoringExceptions(is);
-            } else {
-              annotation = IOUtils.readObjectFromFile(file);
-            }
-          } catch (IOException e) {
-            // guess that's not what they wanted
-            // We hide IOExceptions because ones such as file not
-            // found will be thrown again in a moment.  Note that
-            // we are intentionally letting class cast exceptions
-            // and class not found exceptions go through.
-          } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
-          }
-        }
+  /** A file which has been read and is waiting to be annotated. */
+  private static class FileJob {
+    /** Marks the end of the files. */
+    static final FileJob END = new FileJob(null, 0, 0, null, null, null, null);
+
+    final File file;
+    /** The size and modification time of the file when it was read. */
+    final long size;
+    final long lastModified;
+    /** The hash of the contents of the file, if a checkpoint manifest is kept. */
+    final String hash;
+    final String outputFilename;
+    final Annotation annotation;
+    /**
+     * For a file split into documents, the number of them not yet written, plus one while the
+     * file is still being read; null for a file which is one document.
+     */
+    final AtomicInteger unwritten;
+
+    FileJob(File file, long size, long lastModified, String hash, String outputFilename, Annotation annotation,
+            AtomicInteger unwritten) {
+      this.file = file;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+      this.outputFilename = outputFilename;
+      this.annotation = annotation;
+      this.unwritten = unwritten;
+    }
 
-        //(read file)
-        if (annotation == null) {
-          String encoding = properties.getProperty("encoding", "UTF-8");
-          String text = IOUtils.slurpFile(file.getAbsoluteFile(), encoding);
-          annotation = new Annotation(text);
-          annotation.set(CoreAnnotations.DocIDAnnotation.class, file.getName());
-        }
+    /** Called when this job is written: whether that finishes its file, so that the file is done. */
+    boolean finishesFile() {
+      return unwritten == null || unwritten.decrementAndGet() == 0;
+    }
+  }
 
-        Timing timing = new Timing();
-        annotate.accept(annotation, finishedAnnotation -> {
-          timing.done(logger, "Annotating file " + file.getAbsoluteFile());
-          Throwable ex = finishedAnnotation.get(CoreAnnotations.ExceptionAnnotation.class);
-          if (ex == null) {
-            try {
-              //--Output File
-              OutputStream fos = new BufferedOutputStream(new FileOutputStream(finalOutputFilename));
-              print.accept(finishedAnnotation, fos);
-              fos.close();
-            } catch(IOException e) {
-              throw new RuntimeIOException(e);
-            }
+  /**
+   * Read a file to be processed, deciding first where its output goes.
+   *
+   * @param hashContents Whether to hash the contents of the file, for a checkpoint manifest
+   * @return The file read, or null if it should be skipped
+   */
+  private static FileJob readFile(File file, long size, long lastModified, boolean hashContents,
+                                  Properties properties, Set<String> excludeFiles,
+                                  String baseOutputDir, String baseInputDir, String extension,
+                                  boolean replaceExtension, boolean noClobber,
+                                  String inputSerializerClass, String inputSerializerName) throws IOException {
+    // Determine if there is anything to be done....
+    if (excludeFiles.contains(file.getName())) {
+      logger.err("Skipping excluded file " + file.getName());
+      return null;
+    }
 
-            synchronized (totalProcessed) {
-              totalProcessed.incValue(1);
-              if (totalProcessed.intValue() % 1000 == 0) {
-                logger.info("Processed " + totalProcessed + " documents");
-              }
-              // check we've processed or errored on every file, handle tasks to run after last document
-              if ((totalProcessed.intValue() + totalErrorAnnotating.intValue()) == files.size()) {
-                // clear pool if necessary
-                if (clearPool)
-                  GLOBAL_ANNOTATOR_CACHE.clear();
-                // print out timing info
-                if (TIME && pipeline.isPresent() && tim.isPresent())
-                  logTimingInfo(pipeline.get(), tim.get());
-              }
-            }
-          } else if (continueOnAnnotateError) {
-            // Error annotating but still wanna continue
-            // (maybe in the middle of long job and maybe next one will be okay)
-            logger.err("Error annotating " + file.getAbsoluteFile() + ": " + ex);
-            synchronized (totalErrorAnnotating) {
-              totalErrorAnnotating.incValue(1);
-              // check we've processed or errored on every file, handle tasks to run after last document
-              if ((totalProcessed.intValue() + totalErrorAnnotating.intValue()) == files.size()) {
-                // clear pool if necessary
-                if (clearPool)
-                  GLOBAL_ANNOTATOR_CACHE.clear();
-                // print out timing info
-                if (TIME && pipeline.isPresent() && tim.isPresent())
-                  logTimingInfo(pipeline.get(), tim.get());
-              }
-            }
+    String outputFilename = outputFilename(file, baseOutputDir, baseInputDir, extension, replaceExtension);
 
-          } else {
-            // if stopping due to error, make sure to clear the pool
-            if (clearPool) {
-              GLOBAL_ANNOTATOR_CACHE.clear();
-            }
-            throw new RuntimeException("Error annotating " + file.getAbsoluteFile(), ex);
-          }
-        });
+    //--Conditions For Skipping The File
+    // TODO this could fail if there are softlinks, etc. -- need some sort of sameFile tester
+    //      Java 7 will have a Files.isSymbolicLink(file) method
+    if (outputFilename.equals(file.getCanonicalPath())) {
+      logger.err("Skipping " + file.getName() + ": output file " + outputFilename + " has the same filename as the input file -- assuming you don't actually want to do this.");
+      return null;
+    }
+    if (noClobber && new File(outputFilename).exists()) {
+      logger.err("Skipping " + file.getName() + ": output file " + outputFilename + " as it already exists.  Don't use the noClobber option to override this.");
+      return null;
+    }
 
+    logger.info("Processing file " + file.getAbsolutePath() + " ... writing to " + outputFilename);
+
+    //--Process File
+    Annotation annotation = null;
+    if (file.getAbsolutePath().endsWith(".ser.gz")) {
+      // maybe they want to continue processing a partially processed annotation
+      try {
+        // Create serializers
+        if (inputSerializerClass != null) {
+          AnnotationSerializer inputSerializer = loadSerializer(inputSerializerClass, inputSerializerName, properties);
+          InputStream is = new BufferedInputStream(new FileInputStream(file));
+          Pair<Annotation, InputStream> pair = inputSerializer.read(is);
+          pair.second.close();
+          annotation = pair.first;
+          IOUtils.closeIgnoringExceptions(is);
+        } else {
+          annotation = IOUtils.readObjectFromFile(file);
+        }
       } catch (IOException e) {
-        throw new RuntimeIOException(e);
+        // guess that's not what they wanted
+        // We hide IOExceptions because ones such as file not
+        // found will be thrown again in a moment.  Note that
+        // we are intentionally letting class cast exceptions
+        // and class not found exceptions go through.
+      } catch (ClassNotFoundException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    //(read file)
+    String hash = null;
+    if (annotation == null) {
+      String encoding = properties.getProperty("encoding", "UTF-8");
+      String text;
+      if (hashContents) {
+        // read the bytes once, both to hash and to decode
+        byte[] contents = Files.readAllBytes(file.toPath());
+        hash = CheckpointManifest.hash(contents);
+        InputStream is = new ByteArrayInputStream(contents);
+        if (file.getName().endsWith(".gz")) {
+          is = new GZIPInputStream(is);
+        }
+        text = IOUtils.slurpReader(IOUtils.encodedInputStreamReader(is, encoding));
+      } else {
+        text = IOUtils.slurpFile(file.getAbsoluteFile(), encoding);
+      }
+      annotation = new Annotation(text);
+      annotation.set(CoreAnnotations.DocIDAnnotation.class, file.getName());
+    } else if (hashContents) {
+      hash = CheckpointManifest.hash(file);
+    }
+    return new FileJob(file, size, lastModified, hash, outputFilename, annotation, null);
+  }
+
+  /**
+   * Read a file to be processed as documents, one for each XML tag {@code splitTag} in it, handing each
+   * on to be annotated as soon as it has been read, so that the file need not fit in memory.  The text of
+   * a document is the text content of its tag.  The output of each goes where the file's output would,
+   * numbered from 0 before the extension.  The file is marked done in the checkpoint manifest, if there
+   * is one, once all its documents have been written.
+   *
+   * @param stop Whether to stop reading, because the run has failed
+   * @return The number of documents handed on
+   */
+  private static int readDocuments(File file, long size, long lastModified, CheckpointManifest checkpoint, String splitTag,
+                                   Properties properties, Set<String> excludeFiles,
+                                   String baseOutputDir, String baseInputDir, String extension,
+                                   boolean replaceExtension, boolean noClobber,
+                                   Consumer<FileJob> handOn, BooleanSupplier stop) throws IOException {
+    if (excludeFiles.contains(file.getName())) {
+      logger.err("Skipping excluded file " + file.getName());
+      return 0;
+    }
+    String outputFilename = outputFilename(file, baseOutputDir, baseInputDir, extension, replaceExtension);
+    String outputBase = outputFilename.substring(0, outputFilename.length() - extension.length());
+    logger.info("Processing <" + splitTag + "> documents in file " + file.getAbsolutePath() + " ... writing to " + outputBase + ".*" + extension);
+
+    String hash = checkpoint == null ? null : CheckpointManifest.hash(file);
+    AtomicInteger unwritten = new AtomicInteger(1);
+    int documents = 0;
+    String encoding = properties.getProperty("encoding", "UTF-8");
+    try (Reader reader = IOUtils.encodedInputStreamReader(IOUtils.inputStreamFromFile(file), encoding)) {
+      Iterator<String> texts = XMLUtils.textContentFromTags(reader, splitTag);
+      for (int index = 0; texts.hasNext() && ! stop.getAsBoolean(); index++) {
+        String text = texts.next();
+        String documentFilename = outputBase + '.' + index + extension;
+        if (noClobber && new File(documentFilename).exists()) {
+          logger.err("Skipping document " + index + " of " + file.getName() + ": output file " + documentFilename + " as it already exists.  Don't use the noClobber option to override this.");
+          continue;
+        }
+        Annotation annotation = new Annotation(text);
+        annotation.set(CoreAnnotations.DocIDAnnotation.class, file.getName() + '.' + index);
+        unwritten.incrementAndGet();
+        handOn.accept(new FileJob(file, size, lastModified, hash, documentFilename, annotation, unwritten));
+        documents++;
+      }
+    }
+    // done reading: if its documents have all been written, the file is done
+    if (checkpoint != null && ! stop.getAsBoolean() && unwritten.decrementAndGet() == 0) {
+      checkpoint.markDone(file, size, lastModified, hash);
+    }
+    return documents;
+  }
+
+  /** Where the output for a file goes, as a canonical path. */
+  private static String outputFilename(File file, String baseOutputDir, String baseInputDir, String extension,
+                                       boolean replaceExtension) throws IOException {
+    //--Get Output File Info
+    //(filename)
+    String outputDir = baseOutputDir;
+    if (baseInputDir != null) {
+      // Get input file name relative to base
+      String relDir = file.getParent().replaceFirst(Pattern.quote(baseInputDir), "");
+      outputDir = outputDir + File.separator + relDir;
+    }
+    // Make sure output directory exists
+    new File(outputDir).mkdirs();
+    String outputFilename = new File(outputDir, file.getName()).getPath();
+    if (replaceExtension) {
+      int lastDot = outputFilename.lastIndexOf('.');
+      // for paths like "./zzz", lastDot will be 0
+      if (lastDot > 0) {
+        outputFilename = outputFilename.substring(0, lastDot);
       }
+    }
+    // ensure we don't make filenames with doubled extensions like .xml.xml
+    if (!outputFilename.endsWith(extension)) {
+      outputFilename += extension;
+    }
+    // normalize filename for the upcoming comparison
+    return new File(outputFilename).getCanonicalPath();
+  }
 
+  /** Put a job on the queue, throwing a RuntimeInterruptedException if interrupted while waiting for room. */
+  private static void putOrThrow(BlockingQueue<FileJob> queue, FileJob job) {
+    try {
+      queue.put(job);
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    }
+  }
+
+  /** Take a job from the queue, throwing a RuntimeInterruptedException if interrupted while waiting for one. */
+  private static FileJob takeOrThrow(BlockingQueue<FileJob> queue) {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
     }
   }
 
@@ -1162,6 +1664,7 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     } else {
       this.shell();
     }
+    awaitAnnotations();
 
     // clear the pool if not running in multi-thread mode
     if (clearPool && numThreads == 1) {
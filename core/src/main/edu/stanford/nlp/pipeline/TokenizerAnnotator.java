@@ -1,9 +1,10 @@
 package edu.stanford.nlp.pipeline;
 
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+import edu.stanford.nlp.io.CharSequenceReader;
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -13,6 +14,7 @@ import edu.stanford.nlp.international.french.process.FrenchTokenizer;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.ReflectionLoading;
+import edu.stanford.nlp.util.concurrent.BoundedExecutor;
 import edu.stanford.nlp.util.logging.Redwood;
 
 
@@ -130,6 +132,23 @@ public class TokenizerAnnotator implements Annotator  {
   private final boolean VERBOSE;
   private final TokenizerFactory<CoreLabel> factory;
 
+  /** Each thread's PTBTokenizer, reset for each text rather than made anew, as making one
+   *  allocates the lexer's buffers and parses its options. */
+  private final ThreadLocal<PTBTokenizer<CoreLabel>> reusableTokenizer = new ThreadLocal<>();
+
+  /** Whether tokenizers may be reused, or texts cut into segments, without calling {@link #getTokenizer}:
+   *  not in a subclass, which may override it. */
+  private final boolean factoryTokenizers = getClass() == TokenizerAnnotator.class;
+
+  /** The pools long texts are tokenized on in segments, by number of threads. They are shared by
+   *  all annotators and never shut down, so their threads are daemon threads. */
+  private static final Map<Integer, BoundedExecutor> SEGMENT_EXECUTORS = new ConcurrentHashMap<>();
+
+  /** Threads to tokenize long texts on in segments, or null to tokenize each text in one piece. */
+  private final BoundedExecutor segmentExecutor;
+  /** The least number of characters to tokenize in one segment. */
+  private final int segmentSize;
+
   /** new segmenter properties **/
   private final boolean useSegmenter;
   private final Annotator segmenterAnnotator;
@@ -224,11 +243,23 @@ public class TokenizerAnnotator implements Annotator  {
     if (PropertiesUtils.getBool(props, "tokenize.codepoint")) {
       processors.add(new CodepointCoreLabelProcessor());
     }
+    if (PropertiesUtils.getBool(props, "tokenize.columnar")) {
+      processors.add(new ColumnarCoreLabelProcessor());
+    }
     postProcessors = Collections.unmodifiableList(processors);
 
     VERBOSE = PropertiesUtils.getBool(props, "tokenize.verbose", verbose);
     TokenizerType type = TokenizerType.getTokenizerType(props);
     factory = initFactory(type, props, options);
+    segmentSize = PropertiesUtils.getInt(props, "tokenize.segmentSize", 1 << 16);
+    int threads = PropertiesUtils.getInt(props, "tokenize.threads", 1);
+    if (threads > 1 && factory instanceof PTBTokenizer.PTBTokenizerFactory) {
+      segmentExecutor = SEGMENT_EXECUTORS.computeIfAbsent(threads, n ->
+          new BoundedExecutor("tokenize", BoundedExecutor.Mode.POOL, n, 4 * n,
+              BoundedExecutor.RejectionPolicy.CALLER_RUNS, 60000, true));
+    } else {
+      segmentExecutor = null;
+    }
     if (VERBOSE) {
       log.info("Initialized tokenizer factory: " + factory);
     }
@@ -264,6 +295,8 @@ public class TokenizerAnnotator implements Annotator  {
       }
     }
 
+    CoreLabelTokenFactory tokenFactory = new CoreLabelTokenFactory(true, PropertiesUtils.getBool(props, "tokenize.intern"));
+
     switch(type) {
 
     case Arabic:
@@ -272,27 +305,27 @@ public class TokenizerAnnotator implements Annotator  {
       break;
 
     case Spanish:
-      factory = SpanishTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = SpanishTokenizer.factory(tokenFactory, options);
       break;
 
     case French:
-      factory = FrenchTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = FrenchTokenizer.factory(tokenFactory, options);
       break;
 
     case Whitespace:
       boolean eolIsSignificant = Boolean.parseBoolean(props.getProperty(EOL_PROPERTY, "false"));
       eolIsSignificant = eolIsSignificant || KEEP_NL_OPTION.equals(computeExtraOptions(props));
-      factory = new WhitespaceTokenizer.WhitespaceTokenizerFactory<>(new CoreLabelTokenFactory(), eolIsSignificant);
+      factory = new WhitespaceTokenizer.WhitespaceTokenizerFactory<>(tokenFactory, eolIsSignificant);
       break;
 
     case English:
     case German:
-      factory = PTBTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = PTBTokenizer.factory(tokenFactory, options);
       break;
 
     case Unspecified:
       log.info("No tokenizer type provided. Defaulting to PTBTokenizer.");
-      factory = PTBTokenizer.factory(new CoreLabelTokenFactory(), options);
+      factory = PTBTokenizer.factory(tokenFactory, options);
       break;
 
     default:
@@ -310,6 +343,27 @@ public class TokenizerAnnotator implements Annotator  {
     return factory.getTokenizer(r);
   }
 
+  /**
+   * A tokenizer for the Reader, which is this thread's PTBTokenizer reset if the
+   * factory makes PTBTokenizers and {@link #getTokenizer} isn't overridden.
+   * It must be used up before the next call on this thread.
+   */
+  private Tokenizer<CoreLabel> reusableTokenizer(Reader r) {
+    if ( ! factoryTokenizers) {
+      return getTokenizer(r);
+    }
+    PTBTokenizer<CoreLabel> tokenizer = reusableTokenizer.get();
+    if (tokenizer != null) {
+      tokenizer.reset(r);
+      return tokenizer;
+    }
+    Tokenizer<CoreLabel> newTokenizer = getTokenizer(r);
+    if (newTokenizer instanceof PTBTokenizer) {
+      reusableTokenizer.set((PTBTokenizer<CoreLabel>) newTokenizer);
+    }
+    return newTokenizer;
+  }
+
   /**
    * Helper method to set the TokenBeginAnnotation and TokenEndAnnotation of every token.
    */
@@ -356,25 +410,7 @@ public class TokenizerAnnotator implements Annotator  {
 
     if (annotation.containsKey(CoreAnnotations.TextAnnotation.class)) {
       String text = annotation.get(CoreAnnotations.TextAnnotation.class);
-      Reader r = new StringReader(text);
-      // don't wrap in BufferedReader.  It gives you nothing for in-memory String unless you need the readLine() method!
-
-      List<CoreLabel> tokens = getTokenizer(r).tokenize();
-      // cdm 2010-05-15: This is now unnecessary, as it is done in CoreLabelTokenFactory
-      // for (CoreLabel token: tokens) {
-      // token.set(CoreAnnotations.TextAnnotation.class, token.get(CoreAnnotations.TextAnnotation.class));
-      // }
-
-      // label newlines
-      setNewlineStatus(tokens);
-
-      // set indexes into document wide token list
-      setTokenBeginTokenEnd(tokens);
-
-      // run post processing
-      for (CoreLabelProcessor postProcessor : postProcessors) {
-        tokens = postProcessor.process(tokens);
-      }
+      List<CoreLabel> tokens = tokenize(text);
 
       // add tokens list to annotation
       annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
@@ -388,6 +424,44 @@ public class TokenizerAnnotator implements Annotator  {
 
   }
 
+  /**
+   * Tokenize text read in place from any CharSequence, such as a StringBuilder or a
+   * {@link java.nio.CharBuffer} decoded from a memory-mapped file, without first copying it into
+   * a String. The tokens get the same annotations as from {@link #annotate}, with character
+   * offsets into {@code text}. This doesn't work for the languages which use a segmenter.
+   * With {@code tokenize.threads}, a long text is cut into segments tokenized in parallel,
+   * only at blank lines which the lexer doesn't look across (see {@link PTBTokenizer#safeSplitPoints}).
+   */
+  public List<CoreLabel> tokenize(CharSequence text) {
+    if (useSegmenter) {
+      throw new UnsupportedOperationException("The segmenter can only annotate a document");
+    }
+    // don't wrap in BufferedReader.  It gives you nothing for in-memory text unless you need the readLine() method!
+    List<CoreLabel> tokens;
+    if (segmentExecutor != null && factoryTokenizers && text.length() >= 2L * segmentSize) {
+      tokens = ((PTBTokenizer.PTBTokenizerFactory<CoreLabel>) factory).tokenize(text, segmentSize, segmentExecutor);
+    } else {
+      Reader r = new CharSequenceReader(text);
+      tokens = reusableTokenizer(r).tokenize();
+    }
+    // cdm 2010-05-15: This is now unnecessary, as it is done in CoreLabelTokenFactory
+    // for (CoreLabel token: tokens) {
+    // token.set(CoreAnnotations.TextAnnotation.class, token.get(CoreAnnotations.TextAnnotation.class));
+    // }
+
+    // label newlines
+    setNewlineStatus(tokens);
+
+    // set indexes into document wide token list
+    setTokenBeginTokenEnd(tokens);
+
+    // run post processing
+    for (CoreLabelProcessor postProcessor : postProcessors) {
+      tokens = postProcessor.process(tokens);
+    }
+    return tokens;
+  }
+
   @Override
   public Set<Class<? extends CoreAnnotation>> requires() {
     return Collections.emptySet();
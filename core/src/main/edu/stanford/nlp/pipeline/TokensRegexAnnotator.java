@@ -139,13 +139,9 @@ public class TokensRegexAnnotator implements Annotator {
         allMatched = new ArrayList<>();
         List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
         for (CoreMap sentence : sentences) {
-          List<CoreMap> matched = extract(sentence);
-          if (matched != null && options.matchedExpressionsAnnotationKey != null) {
+          List<CoreMap> matched = annotateOneSentence(sentence);
+          if (matched != null) {
             allMatched.addAll(matched);
-            sentence.set(options.matchedExpressionsAnnotationKey, matched);
-            for (CoreMap cm : matched) {
-              cm.set(CoreAnnotations.SentenceIndexAnnotation.class, sentence.get(CoreAnnotations.SentenceIndexAnnotation.class));
-            }
           }
         }
       } else {
@@ -160,6 +156,50 @@ public class TokensRegexAnnotator implements Annotator {
     }
   }
 
+  /** Returns the expressions matched in the sentence if they are to be kept, or null otherwise. */
+  private List<CoreMap> annotateOneSentence(CoreMap sentence) {
+    List<CoreMap> matched = extract(sentence);
+    if (matched != null && options.matchedExpressionsAnnotationKey != null) {
+      sentence.set(options.matchedExpressionsAnnotationKey, matched);
+      for (CoreMap cm : matched) {
+        cm.set(CoreAnnotations.SentenceIndexAnnotation.class, sentence.get(CoreAnnotations.SentenceIndexAnnotation.class));
+      }
+      return matched;
+    }
+    return null;
+  }
+
+  /**
+   * Rules are matched one sentence at a time, unless token offsets
+   * have to be set across the whole document first.
+   */
+  @Override
+  public boolean isSentenceLocal() {
+    return ! options.setTokenOffsets;
+  }
+
+  @Override
+  public void annotateSentence(Annotation document, CoreMap sentence) {
+    if (extractor != null) {
+      annotateOneSentence(sentence);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void finishSentences(Annotation document) {
+    if (extractor != null && options.matchedExpressionsAnnotationKey != null) {
+      List<CoreMap> allMatched = new ArrayList<>();
+      for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+        List<CoreMap> matched = (List<CoreMap>) sentence.get(options.matchedExpressionsAnnotationKey);
+        if (matched != null) {
+          allMatched.addAll(matched);
+        }
+      }
+      document.set(options.matchedExpressionsAnnotationKey, allMatched);
+    }
+  }
+
   @Override
   public Set<Class<? extends CoreAnnotation>> requires() {
     return Collections.singleton(CoreAnnotations.TokensAnnotation.class);
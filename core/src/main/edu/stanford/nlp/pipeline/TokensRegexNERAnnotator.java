@@ -348,6 +348,17 @@ public class TokensRegexNERAnnotator implements Annotator  {
       logger.info("done.");
   }
 
+  /** Matches never cross a sentence boundary. */
+  @Override
+  public boolean isSentenceLocal() {
+    return true;
+  }
+
+  @Override
+  public void annotateSentence(Annotation document, CoreMap sentence) {
+    annotateMatched(sentence.get(CoreAnnotations.TokensAnnotation.class));
+  }
+
   private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry) {
     // Convert to tokensregex pattern
 
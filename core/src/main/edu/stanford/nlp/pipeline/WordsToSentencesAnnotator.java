@@ -9,6 +9,7 @@ import edu.stanford.nlp.ling.tokensregex.TokenSequencePattern;
 import edu.stanford.nlp.process.AbstractTokenizer;
 import edu.stanford.nlp.process.PTBTokenizer;
 import edu.stanford.nlp.process.WordToSentenceProcessor;
+import edu.stanford.nlp.util.AbstractIterator;
 import edu.stanford.nlp.util.ArraySet;
 import edu.stanford.nlp.util.ArrayUtils;
 import edu.stanford.nlp.util.CoreMap;
@@ -201,22 +202,9 @@ public class WordsToSentencesAnnotator implements Annotator  {
         }
       }
 
-      // get the sentence text from the first and last character offsets
-      int begin = sentenceTokens.get(0).get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
-      int last = sentenceTokens.size() - 1;
-      int end = sentenceTokens.get(last).get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
-      String sentenceText = text.substring(begin, end);
-
-      // create a sentence annotation with text and token offsets
-      Annotation sentence = new Annotation(sentenceText);
-      sentence.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, begin);
-      sentence.set(CoreAnnotations.CharacterOffsetEndAnnotation.class, end);
-      sentence.set(CoreAnnotations.TokensAnnotation.class, sentenceTokens);
-      sentence.set(CoreAnnotations.SentenceIndexAnnotation.class, sentences.size());
-
-      if (countLineNumbers) {
-        sentence.set(CoreAnnotations.LineNumberAnnotation.class, lineNumber);
-      }
+      Annotation sentence = newSentence(sentenceTokens, text, sentences.size(), lineNumber);
+      int begin = sentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+      int end = sentence.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
 
       // Annotate sentence with section information.
       // Assume section start and end appear as first and last tokens of sentence
@@ -275,18 +263,7 @@ public class WordsToSentencesAnnotator implements Annotator  {
         }
       }
 
-      if (docID != null) {
-        sentence.set(CoreAnnotations.DocIDAnnotation.class, docID);
-      }
-
-      int index = 1;
-      for (CoreLabel token : sentenceTokens) {
-        token.setIndex(index++);
-        token.setSentIndex(sentences.size());
-        if (docID != null) {
-          token.setDocID(docID);
-        }
-      }
+      setDocIDAndIndices(sentence, sentenceTokens, docID);
 
       // add the sentence to the list
       sentences.add(sentence);
@@ -301,41 +278,187 @@ public class WordsToSentencesAnnotator implements Annotator  {
     int tokenIndex = 0;
     CoreLabel prevToken = null;
     for (CoreLabel currToken : annotation.get(CoreAnnotations.TokensAnnotation.class)) {
-      if (!currToken.isNewline()) {
+      if (removeNewline(prevToken, currToken, tokenIndex)) {
         finalTokens.add(currToken);
-        currToken.set(CoreAnnotations.TokenBeginAnnotation.class, tokenIndex);
-        currToken.set(CoreAnnotations.TokenEndAnnotation.class, tokenIndex + 1);
         tokenIndex++;
-        // fix before text for this token
-        if (prevToken != null && prevToken.isNewline() &&
-            currToken.get(CoreAnnotations.BeforeAnnotation.class) != null) {
-          String prevNewlineTokenText = prevToken.get(CoreAnnotations.OriginalTextAnnotation.class);
-          currToken.set(CoreAnnotations.BeforeAnnotation.class, prevNewlineTokenText);
-        }
-      } else {
-        String newlineText = currToken.get(CoreAnnotations.OriginalTextAnnotation.class);
-        // fix after text for last token
-        if (prevToken != null && prevToken.get(CoreAnnotations.AfterAnnotation.class) != null) {
-          prevToken.set(CoreAnnotations.AfterAnnotation.class, newlineText);
-        }
       }
       prevToken = currToken;
     }
     annotation.set(CoreAnnotations.TokensAnnotation.class, finalTokens);
     // set sentence token begin and token end values
     for (CoreMap sentence : sentences) {
-      List<CoreLabel> sentenceTokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
-      int sentenceTokenBegin = sentenceTokens.get(0).get(CoreAnnotations.TokenBeginAnnotation.class);
-      int sentenceTokenEnd = sentenceTokens.get(sentenceTokens.size()-1).get(
-          CoreAnnotations.TokenEndAnnotation.class);
-      sentence.set(CoreAnnotations.TokenBeginAnnotation.class, sentenceTokenBegin);
-      sentence.set(CoreAnnotations.TokenEndAnnotation.class, sentenceTokenEnd);
+      setTokenBeginAndEnd(sentence);
     }
 
     // add the sentences annotations to the document
     annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
   }
 
+  /**
+   * Splits tokens into sentences as they are read, rather than from a whole document's
+   * tokens at once, as {@link #annotate(Annotation)} does.  Each sentence is made as soon as it
+   * is certain where it ends (see {@link WordToSentenceProcessor#process(Iterator)}), with the
+   * same annotations as annotate() gives it, except that sentences aren't put in sections, which
+   * need the whole document.  Newline tokens are left out of the sentences and their text is
+   * moved to the tokens beside them, as annotate() does, and the other tokens are numbered from
+   * 0 in their TokenBeginAnnotation as they are read.  Tokens such as a {@link
+   * edu.stanford.nlp.process.Tokenizer} yields may be read lazily, so memory holds only a
+   * sentence or two, and sentences can be annotated further while the rest of the text is
+   * still being tokenized.
+   *
+   * @param tokens The tokens of a document, with character offsets
+   * @param text The text of the document, from which the text of each sentence is taken, or
+   *             null to rebuild a sentence's text from the original text of its tokens and the
+   *             whitespace after them
+   * @param docID The document ID to give the sentences and tokens, or null
+   * @return An iterator over the sentences, which reads the tokens as it goes
+   */
+  public Iterator<CoreMap> sentences(Iterator<CoreLabel> tokens, CharSequence text, String docID) {
+    Iterator<CoreLabel> withoutNewlineText = new AbstractIterator<CoreLabel>() {
+      private CoreLabel prevToken;
+      private int tokenIndex;
+
+      @Override
+      public boolean hasNext() {
+        return tokens.hasNext();
+      }
+
+      @Override
+      public CoreLabel next() {
+        CoreLabel currToken = tokens.next();
+        if (removeNewline(prevToken, currToken, tokenIndex)) {
+          tokenIndex++;
+        }
+        prevToken = currToken;
+        return currToken;
+      }
+    };
+    Iterator<List<CoreLabel>> split = wts.process(withoutNewlineText);
+
+    return new AbstractIterator<CoreMap>() {
+      private int lineNumber;
+      private int sentenceIndex;
+      private List<CoreLabel> next;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && split.hasNext()) {
+          List<CoreLabel> sentenceTokens = split.next();
+          if (countLineNumbers) {
+            ++lineNumber;
+          }
+          if ( ! sentenceTokens.isEmpty()) {
+            next = sentenceTokens;
+          } else if ( ! countLineNumbers) {
+            throw new IllegalStateException("unexpected empty sentence: " + sentenceTokens);
+          }
+        }
+        return next != null;
+      }
+
+      @Override
+      public CoreMap next() {
+        if ( ! hasNext()) {
+          throw new NoSuchElementException();
+        }
+        List<CoreLabel> sentenceTokens = next;
+        next = null;
+        Annotation sentence = newSentence(sentenceTokens, text, sentenceIndex, lineNumber);
+        setDocIDAndIndices(sentence, sentenceTokens, docID);
+        setTokenBeginAndEnd(sentence);
+        sentenceIndex++;
+        return sentence;
+      }
+    };
+  }
+
+  /** A sentence annotation with the text, character offsets, index and line number of the tokens given. */
+  private Annotation newSentence(List<CoreLabel> sentenceTokens, CharSequence text, int sentenceIndex, int lineNumber) {
+    // get the sentence text from the first and last character offsets
+    int begin = sentenceTokens.get(0).get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+    int last = sentenceTokens.size() - 1;
+    int end = sentenceTokens.get(last).get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+    String sentenceText;
+    if (text != null) {
+      sentenceText = text.subSequence(begin, end).toString();
+    } else {
+      StringBuilder sb = new StringBuilder(end - begin);
+      for (int i = 0; i <= last; i++) {
+        CoreLabel token = sentenceTokens.get(i);
+        sb.append(token.originalText() != null ? token.originalText() : token.word());
+        if (i < last) {
+          sb.append(token.after() != null ? token.after() : " ");
+        }
+      }
+      sentenceText = sb.toString();
+    }
+
+    // create a sentence annotation with text and token offsets
+    Annotation sentence = new Annotation(sentenceText);
+    sentence.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, begin);
+    sentence.set(CoreAnnotations.CharacterOffsetEndAnnotation.class, end);
+    sentence.set(CoreAnnotations.TokensAnnotation.class, sentenceTokens);
+    sentence.set(CoreAnnotations.SentenceIndexAnnotation.class, sentenceIndex);
+
+    if (countLineNumbers) {
+      sentence.set(CoreAnnotations.LineNumberAnnotation.class, lineNumber);
+    }
+    return sentence;
+  }
+
+  /** Set the document ID of a sentence and its tokens, and the indices of the tokens. */
+  private static void setDocIDAndIndices(CoreMap sentence, List<CoreLabel> sentenceTokens, String docID) {
+    if (docID != null) {
+      sentence.set(CoreAnnotations.DocIDAnnotation.class, docID);
+    }
+
+    int sentenceIndex = sentence.get(CoreAnnotations.SentenceIndexAnnotation.class);
+    int index = 1;
+    for (CoreLabel token : sentenceTokens) {
+      token.setIndex(index++);
+      token.setSentIndex(sentenceIndex);
+      if (docID != null) {
+        token.setDocID(docID);
+      }
+    }
+  }
+
+  /**
+   * Give a token that isn't a newline its token index, and give a newline token's text to the
+   * tokens beside it, so that it is as though newline tokens were never used.
+   *
+   * @return Whether the token is kept, that is, isn't a newline
+   */
+  private static boolean removeNewline(CoreLabel prevToken, CoreLabel currToken, int tokenIndex) {
+    if (!currToken.isNewline()) {
+      currToken.set(CoreAnnotations.TokenBeginAnnotation.class, tokenIndex);
+      currToken.set(CoreAnnotations.TokenEndAnnotation.class, tokenIndex + 1);
+      // fix before text for this token
+      if (prevToken != null && prevToken.isNewline() &&
+          currToken.get(CoreAnnotations.BeforeAnnotation.class) != null) {
+        String prevNewlineTokenText = prevToken.get(CoreAnnotations.OriginalTextAnnotation.class);
+        currToken.set(CoreAnnotations.BeforeAnnotation.class, prevNewlineTokenText);
+      }
+      return true;
+    } else {
+      String newlineText = currToken.get(CoreAnnotations.OriginalTextAnnotation.class);
+      // fix after text for last token
+      if (prevToken != null && prevToken.get(CoreAnnotations.AfterAnnotation.class) != null) {
+        prevToken.set(CoreAnnotations.AfterAnnotation.class, newlineText);
+      }
+      return false;
+    }
+  }
+
+  private static void setTokenBeginAndEnd(CoreMap sentence) {
+    List<CoreLabel> sentenceTokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+    int sentenceTokenBegin = sentenceTokens.get(0).get(CoreAnnotations.TokenBeginAnnotation.class);
+    int sentenceTokenEnd = sentenceTokens.get(sentenceTokens.size()-1).get(
+        CoreAnnotations.TokenEndAnnotation.class);
+    sentence.set(CoreAnnotations.TokenBeginAnnotation.class, sentenceTokenBegin);
+    sentence.set(CoreAnnotations.TokenEndAnnotation.class, sentenceTokenEnd);
+  }
+
 
   @Override
   public Set<Class<? extends CoreAnnotation>> requires() {
@@ -0,0 +1,31 @@
+package edu.stanford.nlp.process;
+
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.TokenColumns;
+
+/**
+ * Processor to move the commonest annotations of the tokens into {@link TokenColumns},
+ * which makes the tokens of a large document take much less memory.
+ * It should run after any processor which changes the list of tokens.
+ */
+public class ColumnarCoreLabelProcessor extends CoreLabelProcessor {
+
+  /**
+   * Returns new tokens, backed by columns, with the same annotations as the tokens given.
+   */
+  @Override
+  public List<CoreLabel> process(List<CoreLabel> tokens) {
+    return TokenColumns.of(tokens);
+  }
+
+  /**
+   * Returns the processed tokens, which are already the same tokens as the originals
+   */
+  @Override
+  public List<CoreLabel> restore(List<CoreLabel> originalTokens, List<CoreLabel> processedTokens) {
+    return processedTokens;
+  }
+
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.concurrent.ConcurrentInterner;
 
 /**
  * Constructs {@link CoreLabel}s from Strings optionally with
@@ -15,13 +16,22 @@ import edu.stanford.nlp.ling.CoreLabel;
  * EndPositionAnnotation.  If the tokens are built in PTBTokenizer with
  * an "invertible" tokenizer, you will also get a BeforeAnnotation and for
  * the last token an AfterAnnotation. You can also get an empty CoreLabel token.
+ * Optionally, short token Strings, which are the ones that recur, such as
+ * punctuation and common words, are interned, so that the tokens of a large
+ * document share one copy of each.
  *
  * @author Anna Rafferty
  * @author Sonal Gupta (now implements CoreTokenFactory, you can make tokens using many options)
  */
 public class CoreLabelTokenFactory implements CoreTokenFactory<CoreLabel>, LexedTokenFactory<CoreLabel>, Serializable {
 
+  /** Token Strings up to this length are interned, if interning; longer ones rarely recur. */
+  private static final int MAX_INTERNED_LENGTH = 16;
+
+  private static final ConcurrentInterner<String> interner = new ConcurrentInterner<>();
+
   private final boolean addIndices;
+  private final boolean intern;
 
   /**
    * Constructor for a new token factory which will add in the word, the
@@ -38,8 +48,22 @@ public class CoreLabelTokenFactory implements CoreTokenFactory<CoreLabel>, Lexed
    * @param addIndices if true, begin and end position annotations will be included (this is the default)
    */
   public CoreLabelTokenFactory(boolean addIndices) {
+    this(addIndices, false);
+  }
+
+  /**
+   * Constructor that allows one to choose if index annotation
+   * indicating begin/end position will be included in the label, and if
+   * short token Strings are interned.  The interner is shared by all
+   * factories and threads, and doesn't lock.
+   *
+   * @param addIndices if true, begin and end position annotations will be included (this is the default)
+   * @param intern if true, token Strings of up to 16 characters are interned
+   */
+  public CoreLabelTokenFactory(boolean addIndices, boolean intern) {
     super();
     this.addIndices = addIndices;
+    this.intern = intern;
   }
 
   /**
@@ -57,6 +81,11 @@ public class CoreLabelTokenFactory implements CoreTokenFactory<CoreLabel>, Lexed
    * (Does not take substring).
    */
   public CoreLabel makeToken(String tokenText, String originalText, int begin, int length) {
+    if (intern) {
+      boolean same = originalText == tokenText;
+      tokenText = intern(tokenText);
+      originalText = same ? tokenText : intern(originalText);
+    }
     CoreLabel cl = addIndices ? new CoreLabel(5) : new CoreLabel();
     cl.setValue(tokenText);
     cl.setWord(tokenText);
@@ -68,6 +97,10 @@ public class CoreLabelTokenFactory implements CoreTokenFactory<CoreLabel>, Lexed
     return cl;
   }
 
+  private static String intern(String str) {
+    return str.length() <= MAX_INTERNED_LENGTH ? interner.intern(str) : str;
+  }
+
   @Override
   public CoreLabel makeToken() {
     CoreLabel l = new CoreLabel();
@@ -32,6 +32,29 @@ public class LexerUtils {
 
   public enum DashesEnum { UNICODE, PTB3, NOT_CP1252, ORIGINAL }
 
+  /** The commonest runs of whitespace between tokens, shared rather than made anew for each token. */
+  private static final String[] COMMON_WHITESPACE = { "", " ", "\n", "\n\n", "  ", "\t", "\r\n", " \n", "\n " };
+
+
+  /** The text of the whitespace collected between two tokens.  Nearly all of it is one of a few
+   *  short strings, so these are returned as shared Strings, which saves making two Strings per
+   *  token (its BeforeAnnotation and the previous token's AfterAnnotation) in invertible mode.
+   *
+   *  @param whitespace The characters between two tokens
+   *  @return A String with the same characters
+   */
+  public static String whitespaceText(StringBuilder whitespace) {
+    int len = whitespace.length();
+    if (len <= 2) {
+      for (String common : COMMON_WHITESPACE) {
+        if (common.length() == len && common.contentEquals(whitespace)) {
+          return common;
+        }
+      }
+    }
+    return whitespace.toString();
+  }
+
 
   /** Change precomposed fraction characters to spelled out letter forms.
    *
@@ -28,6 +28,9 @@ package edu.stanford.nlp.process;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -35,7 +38,9 @@ import java.util.regex.PatternSyntaxException;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.ling.HasOffset;
 import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.io.CharSequenceReader;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.util.Generics;
@@ -286,6 +291,19 @@ public class PTBTokenizer<T extends HasWord> extends AbstractTokenizer<T>  {
   }
 
 
+  /**
+   * Tokenize the text of a new Reader, reusing this tokenizer's lexer, with the same options.
+   * This saves allocating a lexer and parsing the options for each text, which for short texts
+   * is a good part of the time taken.  Tokens already returned are not affected.
+   *
+   * @param r The Reader to read tokens from
+   */
+  public void reset(Reader r) {
+    lexer.reset(r);
+    nextToken = null;
+  }
+
+
   /**
    * Internally fetches the next token.
    *
@@ -582,6 +600,75 @@ public class PTBTokenizer<T extends HasWord> extends AbstractTokenizer<T>  {
   }
 
 
+  /** A blank line, and the whitespace after it: where a paragraph begins, for cutting up long texts. */
+  public static final Pattern BLANK_LINE = Pattern.compile("\\n[ \\t\\x0B\\f\\r]*\\n\\s*");
+  private static final Pattern HYPHEN_OR_DASH = Pattern.compile("[-\u2010-\u2015]");
+
+  /**
+   * Find places where a text can be cut into segments which PTBLexer tokenizes exactly as it does
+   * the whole text, about {@code segmentSize} characters apart.  These are the starts of
+   * paragraphs, after a blank line, except where the lexer may look across the blank line:
+   * when either of the last two tokens before it has a period (an abbreviation, acronym or
+   * ellipsis is tokenized according to the words and punctuation after it), before a hyphen
+   * or dash (it may be joined to a number before it), and within what may be an SGML tag,
+   * which may run over several lines.
+   *
+   * @param text The text to cut up
+   * @param segmentSize The least number of characters in a segment
+   * @return The beginnings of the segments, starting with 0
+   */
+  public static List<Integer> safeSplitPoints(CharSequence text, int segmentSize) {
+    List<Integer> begins = new ArrayList<>();
+    begins.add(0);
+    Matcher m = BLANK_LINE.matcher(text);
+    int from = Math.max(1, segmentSize);
+    int scanned = 0;
+    int openTag = -1; // where the last unclosed '<' which may begin a tag is, if any
+    while (from < text.length() && m.find(from)) {
+      int begin = m.end();
+      from = begin;
+      if (begin >= text.length()) {
+        break;
+      }
+      for (; scanned < m.start(); scanned++) {
+        char ch = text.charAt(scanned);
+        if (ch == '<' && scanned + 1 < text.length() && isTagStart(text.charAt(scanned + 1))) {
+          openTag = scanned;
+        } else if (ch == '>') {
+          openTag = -1;
+        }
+      }
+      if (openTag >= 0 || hasPeriodBefore(text, m.start(), 2) ||
+          HYPHEN_OR_DASH.matcher(text.subSequence(begin, begin + 1)).matches()) {
+        continue;
+      }
+      begins.add(begin);
+      from = begin + segmentSize;
+    }
+    return begins;
+  }
+
+  /** Whether any of the last {@code tokens} runs of non-whitespace characters before {@code end} has a period. */
+  private static boolean hasPeriodBefore(CharSequence text, int end, int tokens) {
+    int i = end - 1;
+    for (int token = 0; token < tokens; token++) {
+      while (i >= 0 && Character.isWhitespace(text.charAt(i))) {
+        i--;
+      }
+      for (; i >= 0 && ! Character.isWhitespace(text.charAt(i)); i--) {
+        if (text.charAt(i) == '.') {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isTagStart(char ch) {
+    return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || ch == '!' || ch == '?' || ch == '/';
+  }
+
+
   /** This class provides a factory which will vend instances of PTBTokenizer
    *  which wrap a provided Reader.  See the documentation for
    *  {@link PTBTokenizer} for details of the parameters and options.
@@ -707,6 +794,79 @@ public class PTBTokenizer<T extends HasWord> extends AbstractTokenizer<T>  {
       }
     }
 
+    /**
+     * Tokenize a long text in segments in parallel, cutting it at {@link #safeSplitPoints}, and
+     * join the tokens as if the text had been tokenized as a whole: character offsets are into
+     * the whole text, and with the invertible option, the BeforeAnnotation and AfterAnnotation at
+     * each cut are the whole whitespace between the tokens.  A text too short to cut is
+     * tokenized in this thread.
+     *
+     * @param text The text to tokenize
+     * @param segmentSize The least number of characters to tokenize in one task
+     * @param executor The threads to tokenize segments on
+     * @return The tokens of the text
+     */
+    public List<T> tokenize(CharSequence text, int segmentSize, Executor executor) {
+      List<Integer> begins = safeSplitPoints(text, segmentSize);
+      if (begins.size() == 1) {
+        return getTokenizer(new CharSequenceReader(text)).tokenize();
+      }
+      List<CompletableFuture<List<T>>> segments = new ArrayList<>(begins.size());
+      for (int i = 0; i < begins.size(); i++) {
+        int begin = begins.get(i);
+        int end = i + 1 < begins.size() ? begins.get(i + 1) : text.length();
+        segments.add(CompletableFuture.supplyAsync(() -> tokenizeSegment(text, begin, end), executor));
+      }
+      List<T> tokens = new ArrayList<>();
+      int[] segmentStarts = new int[segments.size()];
+      for (int i = 0; i < segments.size(); i++) {
+        segmentStarts[i] = tokens.size();
+        try {
+          tokens.addAll(segments.get(i).join());
+        } catch (CompletionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw e;
+        }
+      }
+      if ( ! tokens.isEmpty() && tokens.get(0) instanceof CoreLabel &&
+          ((CoreLabel) tokens.get(0)).containsKey(CoreAnnotations.BeforeAnnotation.class)) {
+        for (int i = 1; i < segmentStarts.length; i++) {
+          joinWhitespace(text, tokens, segmentStarts[i]);
+        }
+      }
+      return tokens;
+    }
+
+    private List<T> tokenizeSegment(CharSequence text, int begin, int end) {
+      List<T> tokens = getTokenizer(new CharSequenceReader(text, begin, end)).tokenize();
+      if (begin > 0) {
+        for (T token : tokens) {
+          if (token instanceof HasOffset) {
+            HasOffset offsets = (HasOffset) token;
+            offsets.setBeginPosition(offsets.beginPosition() + begin);
+            offsets.setEndPosition(offsets.endPosition() + begin);
+          }
+        }
+      }
+      return tokens;
+    }
+
+    /** Make the whitespace around the cut before token {@code next} all of the whitespace between the tokens. */
+    private static <T> void joinWhitespace(CharSequence text, List<T> tokens, int next) {
+      CoreLabel before = next > 0 ? (CoreLabel) tokens.get(next - 1) : null;
+      CoreLabel after = next < tokens.size() ? (CoreLabel) tokens.get(next) : null;
+      String whitespace = text.subSequence(before == null ? 0 : before.endPosition(),
+          after == null ? text.length() : after.beginPosition()).toString();
+      if (before != null) {
+        before.setAfter(whitespace);
+      }
+      if (after != null) {
+        after.setBefore(whitespace);
+      }
+    }
+
     @Override
     public void setOptions(String options) {
       this.options = options;
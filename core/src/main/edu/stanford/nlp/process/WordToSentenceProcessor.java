@@ -11,6 +11,7 @@ import edu.stanford.nlp.ling.Label;
 import edu.stanford.nlp.ling.MultiTokenTag;
 import edu.stanford.nlp.ling.tokensregex.SequenceMatcher;
 import edu.stanford.nlp.ling.tokensregex.SequencePattern;
+import edu.stanford.nlp.util.AbstractIterator;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.logging.Redwood;
@@ -263,7 +264,6 @@ public class WordToSentenceProcessor<IN> implements ListProcessor<IN, List<IN>>
    * @return A list of sentences.
    * @see #WordToSentenceProcessor(String, String, Set, Set, String, NewlineIsSentenceBreak, SequencePattern, Set, boolean, boolean)
    */
-  @SuppressWarnings("ConstantConditions")
   private List<List<IN>> wordsToSentences(List<? extends IN> words) {
     IdentityHashMap<Object, Boolean> isSentenceBoundary = null; // is null unless used by sentenceBoundaryMultiTokenPattern
 
@@ -284,15 +284,82 @@ public class WordToSentenceProcessor<IN> implements ListProcessor<IN, List<IN>>
     }
 
     // Split tokens into sentences!!!
-    List<List<IN>> sentences = Generics.newArrayList();
-    List<IN> currentSentence = new ArrayList<>();
-    List<IN> lastSentence = null;
-    boolean insideRegion = false;
-    boolean inWaitForForcedEnd = false;
-    boolean lastTokenWasNewline = false;
-    boolean lastSentenceEndForced = false;
-
+    Splitter splitter = new Splitter(isSentenceBoundary);
     for (IN o: words) {
+      splitter.add(o);
+    }
+    splitter.finish();
+    return Generics.newArrayList(splitter.sentences);
+  }
+
+  /**
+   * Divides the words of a document into sentences as they are read, rather than needing the whole
+   * document first.  Each sentence is returned as soon as it is certain, which is when the next word
+   * that can't belong to it has been read (a sentence boundary follower such as a close quote may yet
+   * be added to the sentence before), so only the current and previous sentences are kept in memory.
+   * The sentences are the same as those {@link #process(List)} returns for all the words, except that
+   * the whole document is read first if this is a non-splitter or splits with a multi-token pattern,
+   * which match across the document.  Words such as a {@link Tokenizer} yields may be read lazily,
+   * and later processing of the sentences can start before the document has all been tokenized.
+   *
+   * @param words The already tokenized words (must implement HasWord or be a String)
+   * @return An iterator over the sentences, which reads the words as it goes
+   */
+  public Iterator<List<IN>> process(Iterator<? extends IN> words) {
+    if (isOneSentence || sentenceBoundaryMultiTokenPattern != null) {
+      List<IN> all = new ArrayList<>();
+      words.forEachRemaining(all::add);
+      return process(all).iterator();
+    }
+    Splitter splitter = new Splitter(null);
+    return new AbstractIterator<List<IN>>() {
+      @Override
+      public boolean hasNext() {
+        while (splitter.sentences.isEmpty() && ! splitter.finished) {
+          if (words.hasNext()) {
+            splitter.add(words.next());
+          } else {
+            splitter.finish();
+          }
+        }
+        return ! splitter.sentences.isEmpty();
+      }
+
+      @Override
+      public List<IN> next() {
+        if ( ! hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return splitter.sentences.removeFirst();
+      }
+    };
+  }
+
+  /**
+   * The state of splitting one document, which is given a word at a time.  Sentences are put in
+   * {@code sentences} once complete and no later word can be added to them.
+   */
+  private class Splitter {
+
+    private final IdentityHashMap<Object, Boolean> isSentenceBoundary;
+    final ArrayDeque<List<IN>> sentences = new ArrayDeque<>();
+    boolean finished = false;
+
+    private List<IN> currentSentence = new ArrayList<>();
+    private List<IN> lastSentence = null;
+    /** Whether lastSentence is yet to be put in sentences, as words might still be added to it. */
+    private boolean lastSentencePending = false;
+    private boolean insideRegion = false;
+    private boolean inWaitForForcedEnd = false;
+    private boolean lastTokenWasNewline = false;
+    private boolean lastSentenceEndForced = false;
+
+    Splitter(IdentityHashMap<Object, Boolean> isSentenceBoundary) {
+      this.isSentenceBoundary = isSentenceBoundary;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    void add(IN o) {
       String word = getString(o);
       boolean forcedEnd = isForcedEndToken(o);
       // if (DEBUG) { if (forcedEnd) { log.info("Word is " + word + "; marks forced end of sentence [cont.]"); } }
@@ -329,7 +396,7 @@ public class WordToSentenceProcessor<IN> implements ListProcessor<IN, List<IN>>
           if (DEBUG) { log.info("  entering region"); }
         }
         lastTokenWasNewline = false;
-        continue;
+        return;
       }
 
       if ( ! lastSentenceEndForced && lastSentence != null && currentSentence.isEmpty() &&
@@ -342,7 +409,7 @@ public class WordToSentenceProcessor<IN> implements ListProcessor<IN, List<IN>>
           log.info("Word is " + word + (discardToken ? "discarded":"  added to last sentence"));
         }
         lastTokenWasNewline = false;
-        continue;
+        return;
       }
 
       boolean newSentForced = false;
@@ -408,10 +475,11 @@ public class WordToSentenceProcessor<IN> implements ListProcessor<IN, List<IN>>
       }
 
       if ((newSentForced || newSent) && ( ! currentSentence.isEmpty() || allowEmptySentences)) {
-        sentences.add(currentSentence);
+        releaseLastSentence();
         // adds this sentence now that it's complete
         lastSentenceEndForced = ((lastSentence == null || lastSentence.isEmpty()) && lastSentenceEndForced) || newSentForced;
         lastSentence = currentSentence;
+        lastSentencePending = true;
         currentSentence = new ArrayList<>(); // clears the current sentence
         if (DEBUG) {
           String debugWhy = newSentForced ? " because forced" : " due to regular sentence end";
@@ -422,15 +490,29 @@ public class WordToSentenceProcessor<IN> implements ListProcessor<IN, List<IN>>
         lastSentenceEndForced = true;
         if (DEBUG) { log.info("  lastSentenceEndForced=" + lastSentenceEndForced); }
       }
+      // nothing more can be added to the last sentence once there is a current one, or its end was forced
+      if ( ! currentSentence.isEmpty() || lastSentenceEndForced) {
+        releaseLastSentence();
+      }
+    }
+
+    private void releaseLastSentence() {
+      if (lastSentencePending) {
+        sentences.add(lastSentence);
+        lastSentencePending = false;
+      }
     }
 
-    // add any words at the end, even if there isn't a sentence
-    // terminator at the end of file
-    if ( ! currentSentence.isEmpty()) {
-      sentences.add(currentSentence); // adds last sentence
+    void finish() {
+      releaseLastSentence();
+      // add any words at the end, even if there isn't a sentence
+      // terminator at the end of file
+      if ( ! currentSentence.isEmpty()) {
+        sentences.add(currentSentence); // adds last sentence
+      }
+      finished = true;
     }
 
-    return sentences;
   }
 
   public <L, F> Document<L, F, List<IN>> processDocument(Document<L, F, IN> in) {
@@ -74,6 +74,10 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * @param other The ArrayCoreMap to copy. It may not be null.
    */
   public ArrayCoreMap(ArrayCoreMap other) {
+    if ( ! other.isArrayBacked()) {
+      copy(other);
+      return;
+    }
     size = other.size;
     keys = Arrays.copyOf(other.keys, size);
     values = Arrays.copyOf(other.values, size);
@@ -83,8 +87,12 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * Copy constructor.
    * @param other The ArrayCoreMap to copy. It may not be null.
    */
-  @SuppressWarnings("unchecked")
   public ArrayCoreMap(CoreMap other) {
+    copy(other);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void copy(CoreMap other) {
     Set<Class<?>> otherKeys = other.keySet();
 
     size = otherKeys.size();
@@ -465,6 +473,14 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
           new ThreadLocal<>();
 
 
+  /**
+   * Whether all the annotations of this map are kept in its arrays.  A subclass which keeps
+   * some elsewhere returns false, and is then copied and compared through its keys and values.
+   */
+  protected boolean isArrayBacked() {
+    return true;
+  }
+
   /**
    * Two CoreMaps are equal iff all keys and values are .equal.
    */
@@ -480,7 +496,12 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       return obj.equals(this);
     }
 
-    if (obj instanceof ArrayCoreMap) {
+    if (obj instanceof ArrayCoreMap && ! ((ArrayCoreMap) obj).isArrayBacked()) {
+      // overridden behavior for maps which keep annotations outside their arrays
+      return obj.equals(this);
+    }
+
+    if (obj instanceof ArrayCoreMap && isArrayBacked()) {
       // specialized equals for ArrayCoreMap
       return equals((ArrayCoreMap)obj);
     }
@@ -0,0 +1,103 @@
+package edu.stanford.nlp.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which some work should be finished, such as annotating a document.
+ *
+ * Long running loops don't have the deadline passed to them; instead the code running
+ * the work makes it the {@link #current()} deadline of its thread, and the loops fetch it
+ * once and call {@link #check()} on each step. A check usually only decrements a counter,
+ * and reads the clock every {@link #CHECK_INTERVAL} calls, so it is cheap enough for inner loops.
+ * When the deadline has passed, the check throws a {@link DeadlineExceededException}.
+ */
+public class Deadline {
+
+  /** How many calls to {@link #check()} there are between reads of the clock. */
+  public static final int CHECK_INTERVAL = 16;
+
+  private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+  /** The {@link System#nanoTime()} at which the deadline passes. */
+  private final long deadlineNanos;
+  /** Not synchronized: when threads share a deadline, the clock is just read a bit more or less often. */
+  private int countdown = CHECK_INTERVAL;
+  private volatile boolean expired; // = false
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /** A deadline which passes after the given time from now. */
+  public static Deadline after(long duration, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(duration));
+  }
+
+  /** A deadline which passes at the given wall clock time, in milliseconds since the epoch. */
+  public static Deadline atEpochMillis(long epochMillis) {
+    return after(epochMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /** How long is left before the deadline, which is 0 or less once it has passed. */
+  public long remaining(TimeUnit unit) {
+    return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Whether the deadline has passed, always reading the clock. */
+  public boolean isExpired() {
+    if ( ! expired && System.nanoTime() - deadlineNanos >= 0) {
+      expired = true;
+    }
+    return expired;
+  }
+
+  /**
+   * Throw a {@link DeadlineExceededException} if the deadline has passed.
+   * The clock is only read every {@link #CHECK_INTERVAL} calls.
+   */
+  public void check() {
+    if (expired) {
+      throw new DeadlineExceededException(this);
+    }
+    if (--countdown <= 0) {
+      countdown = CHECK_INTERVAL;
+      if (isExpired()) {
+        throw new DeadlineExceededException(this);
+      }
+    }
+  }
+
+  /** The deadline of the work the current thread is doing, or null if there is none. */
+  public static Deadline current() {
+    return current.get();
+  }
+
+  /**
+   * Make the given deadline, which may be null, the one of the current thread.
+   *
+   * @return The previous deadline of the thread, to be restored when the work is done
+   */
+  public static Deadline setCurrent(Deadline deadline) {
+    Deadline previous = current.get();
+    if (deadline == null) {
+      current.remove();
+    } else {
+      current.set(deadline);
+    }
+    return previous;
+  }
+
+  /** Check the deadline of the current thread, if it has one. */
+  public static void checkCurrent() {
+    Deadline deadline = current.get();
+    if (deadline != null) {
+      deadline.check();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline[" + remaining(TimeUnit.MILLISECONDS) + "ms left]";
+  }
+
+}
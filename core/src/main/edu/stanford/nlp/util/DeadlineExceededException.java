@@ -0,0 +1,17 @@
+package edu.stanford.nlp.util;
+
+
+/**
+ * Thrown when work runs past its {@link Deadline}. It is a kind of
+ * {@link RuntimeInterruptedException}, since code which gives up cleanly
+ * when interrupted should give up the same way when out of time.
+ */
+public class DeadlineExceededException extends RuntimeInterruptedException {
+
+  private static final long serialVersionUID = 1L;
+
+  public DeadlineExceededException(Deadline deadline) {
+    super("Deadline exceeded: " + deadline);
+  }
+
+}
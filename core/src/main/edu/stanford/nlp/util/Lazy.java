@@ -40,6 +40,15 @@ public abstract class Lazy<E> {
   }
 
 
+  /**
+   * Forget the value of this lazy, if it has been computed, so that it is computed
+   * again the next time it is needed.
+   */
+  public synchronized void clear() {
+    implOrNullCache = null;
+    implOrNull = null;
+  }
+
   /**
    * Compute the value of this lazy.
    */
@@ -286,6 +286,31 @@ public class PropertiesUtils {
     }
   }
 
+  /**
+   * Load a number of bytes, which may end in k, m or g (case insensitive) for
+   * kibibytes, mebibytes or gibibytes, as in {@code 512m}.
+   * If the key is not present, returns defaultValue.
+   */
+  public static long getBytes(Properties props, String key, long defaultValue) {
+    String value = props.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    value = value.trim().toLowerCase();
+    long multiplier = 1;
+    if (value.endsWith("k")) {
+      multiplier = 1L << 10;
+    } else if (value.endsWith("m")) {
+      multiplier = 1L << 20;
+    } else if (value.endsWith("g")) {
+      multiplier = 1L << 30;
+    }
+    if (multiplier > 1) {
+      value = value.substring(0, value.length() - 1).trim();
+    }
+    return Long.parseLong(value) * multiplier;
+  }
+
   /**
    * Load a double property.  If the key is not present, returns 0.0.
    */
@@ -15,4 +15,8 @@ public class RuntimeInterruptedException extends RuntimeException {
   public RuntimeInterruptedException(InterruptedException e) {
     super(e);
   }
+
+  public RuntimeInterruptedException(String message) {
+    super(message);
+  }
 }
\ No newline at end of file
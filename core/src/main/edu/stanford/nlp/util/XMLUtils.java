@@ -2,13 +2,20 @@ package edu.stanford.nlp.util;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
@@ -22,6 +29,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.util.logging.Redwood;
 
 
@@ -77,21 +85,7 @@ public class XMLUtils  {
       for (int i = 0; i < nodeList.getLength(); i++) {
         // Get element
         Element element = (Element)nodeList.item(i);
-        String raw = element.getTextContent();
-        StringBuilder builtUp = new StringBuilder();
-        boolean inTag = false;
-        for (int j = 0; j < raw.length(); j++) {
-          if (raw.charAt(j) == '<') {
-            inTag = true;
-          }
-          if (!inTag) {
-            builtUp.append(raw.charAt(j));
-          }
-          if (raw.charAt(j) == '>') {
-            inTag = false;
-          }
-        }
-        sents.add(builtUp.toString());
+        sents.add(stripEmbeddedTags(element.getTextContent()));
       }
     } catch (IOException | ParserConfigurationException e) {
       log.warn(e);
@@ -146,6 +140,355 @@ public class XMLUtils  {
     return sents;
   }
 
+  /**
+   * Returns the text content of the nodes in the given file with the given tag, as
+   * {@link #getTextContentFromTagsFromFile} does, but reading the file as it goes, so that only
+   * the tag being read is in memory: the file need not fit in memory, as the DOM does for the
+   * methods returning a List.  Embedded tags are handled the same way, and the tag "*" matches
+   * all tags.  The file is closed when the stream has been read to the end or is closed.
+   *
+   * @return Stream of String text contents of tags, in the order of the tags in the file
+   */
+  public static Stream<String> streamTextContentFromTagsFromFile(File f, String tag) {
+    return streamFromFile(f, in -> new TextContentIterator(in, tag));
+  }
+
+  /**
+   * Returns the nodes in the given file with the given tag, as {@link #getTagElementsFromFile}
+   * does, but reading the file as it goes, so that only the tag being read is in memory.
+   * Each Element is the document element of a Document holding just it.  CDATA sections in them
+   * are text.  The file is closed when the stream has been read to the end or is closed.
+   *
+   * @return Stream of Elements, in the order of the tags in the file
+   */
+  public static Stream<Element> streamTagElementsFromFile(File f, String tag) {
+    return streamFromFile(f, in -> new ElementIterator(in, tag));
+  }
+
+  /**
+   * Returns the text content of the nodes with the given tag in the XML read from the given Reader,
+   * as {@link #streamTextContentFromTagsFromFile} does.  The Reader isn't closed.
+   *
+   * @return Iterator over String text contents of tags
+   */
+  public static Iterator<String> textContentFromTags(Reader r, String tag) {
+    return new TextContentIterator(newXmlStreamReader(r), tag);
+  }
+
+  /**
+   * Returns the nodes with the given tag in the XML read from the given Reader,
+   * as {@link #streamTagElementsFromFile} does.  The Reader isn't closed.
+   *
+   * @return Iterator over Elements
+   */
+  public static Iterator<Element> tagElements(Reader r, String tag) {
+    return new ElementIterator(newXmlStreamReader(r), tag);
+  }
+
+  private static <T> Stream<T> streamFromFile(File f, Function<XMLStreamReader, TagIterator<T>> iterator) {
+    InputStream in;
+    try {
+      in = new BufferedInputStream(new FileInputStream(f));
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    TagIterator<T> tags;
+    try {
+      // from the bytes, so that the parser reads the encoding from the XML declaration
+      tags = iterator.apply(xmlInputFactory().createXMLStreamReader(in));
+    } catch (XMLStreamException | RuntimeException e) {
+      IOUtils.closeIgnoringExceptions(in);
+      throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    }
+    tags.closeWhenDone(in);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tags, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(tags::close);
+  }
+
+  private static XMLStreamReader newXmlStreamReader(Reader r) {
+    try {
+      return xmlInputFactory().createXMLStreamReader(r);
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Like the DocumentBuilders above: tags aren't split by namespace.  External entities aren't read. */
+  private static XMLInputFactory xmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /** Strips anything that looks like a tag from the text content of a tag. */
+  private static String stripEmbeddedTags(String raw) {
+    StringBuilder builtUp = new StringBuilder();
+    boolean inTag = false;
+    for (int j = 0; j < raw.length(); j++) {
+      if (raw.charAt(j) == '<') {
+        inTag = true;
+      }
+      if (!inTag) {
+        builtUp.append(raw.charAt(j));
+      }
+      if (raw.charAt(j) == '>') {
+        inTag = false;
+      }
+    }
+    return builtUp.toString();
+  }
+
+  /**
+   * Pulls events from an XMLStreamReader only as far as needed to return the next tag matched.
+   * A tag is returned when it ends, but tags inside matching tags are returned after the tags
+   * they are in, so that they come in the order the DOM would give them.
+   */
+  private abstract static class TagIterator<T> implements Iterator<T>, Closeable {
+
+    private final XMLStreamReader reader;
+    private final String tag;
+    /** The tags matched and ended, ready to be returned */
+    private final ArrayDeque<T> matched = new ArrayDeque<>();
+    /** The tags matched since the outermost open match began, in order, the ones still open being null */
+    private final List<T> pending = new ArrayList<>();
+    /** The places in pending of the matches still open, innermost first */
+    private final ArrayDeque<Integer> openMatches = new ArrayDeque<>();
+    private Closeable source;
+    private boolean done = false;
+
+    TagIterator(XMLStreamReader reader, String tag) {
+      this.reader = reader;
+      this.tag = tag;
+    }
+
+    void closeWhenDone(Closeable source) {
+      this.source = source;
+    }
+
+    private boolean matches(String name) {
+      return tag.equals("*") || tag.equals(name);
+    }
+
+    /** Whether the parser is inside a matching tag, so that what it reads must be kept. */
+    boolean inMatch() {
+      return ! openMatches.isEmpty();
+    }
+
+    /** The name of the tag the reader is at, with its prefix. */
+    static String qualifiedName(String prefix, String localName) {
+      return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+    }
+
+    /** A tag starts.  Whether it matched is given, since a tag inside a match must be kept anyway. */
+    abstract void startTag(XMLStreamReader reader, String name, boolean match);
+
+    abstract void text(XMLStreamReader reader, int event);
+
+    /** A tag ends.  If it is a match, what it made is returned. */
+    abstract T endTag(boolean match);
+
+    @Override
+    public boolean hasNext() {
+      while (matched.isEmpty() && ! done) {
+        try {
+          if ( ! reader.hasNext()) {
+            close();
+            break;
+          }
+          int event = reader.next();
+          switch (event) {
+            case XMLStreamConstants.START_ELEMENT: {
+              String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+              boolean match = matches(name);
+              startTag(reader, name, match);
+              if (match) {
+                // keep its place in the order, until it ends
+                openMatches.push(pending.size());
+                pending.add(null);
+              }
+              break;
+            }
+            case XMLStreamConstants.END_ELEMENT: {
+              boolean match = inMatch() && matches(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+              T made = endTag(match);
+              if (match) {
+                pending.set(openMatches.pop(), made);
+                if ( ! inMatch()) {
+                  matched.addAll(pending);
+                  pending.clear();
+                }
+              }
+              break;
+            }
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.ENTITY_REFERENCE:
+            case XMLStreamConstants.COMMENT:
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+              if (inMatch()) {
+                text(reader, event);
+              }
+              break;
+            default:
+              break;
+          }
+        } catch (XMLStreamException e) {
+          close();
+          throw new RuntimeException(e);
+        }
+      }
+      return ! matched.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      if ( ! hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return matched.poll();
+    }
+
+    @Override
+    public void close() {
+      if (done) {
+        return;
+      }
+      done = true;
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        log.warn(e);
+      }
+      if (source != null) {
+        IOUtils.closeIgnoringExceptions(source);
+      }
+    }
+
+  }
+
+  /** The text content of each matching tag, with embedded tags stripped, as getTextContentFromTagsFromFile gives it. */
+  private static class TextContentIterator extends TagIterator<String> {
+
+    /** The text of each matching tag open, innermost last */
+    private final List<StringBuilder> open = new ArrayList<>();
+
+    TextContentIterator(XMLStreamReader reader, String tag) {
+      super(reader, tag);
+    }
+
+    @Override
+    void startTag(XMLStreamReader reader, String name, boolean match) {
+      if (match) {
+        open.add(new StringBuilder());
+      }
+    }
+
+    @Override
+    void text(XMLStreamReader reader, int event) {
+      if (event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+        // not part of the text content
+        return;
+      }
+      String text = reader.getText();
+      for (StringBuilder sb : open) {
+        sb.append(text);
+      }
+    }
+
+    @Override
+    String endTag(boolean match) {
+      if ( ! match) {
+        return null;
+      }
+      return stripEmbeddedTags(open.remove(open.size() - 1).toString());
+    }
+
+  }
+
+  /** Each matching tag as an Element, built from the events as the DOM would build it. */
+  private static class ElementIterator extends TagIterator<Element> {
+
+    private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+
+    private final DocumentBuilder builder;
+    private Document document;
+    /** The elements open in the document being built, innermost last */
+    private final List<Element> open = new ArrayList<>();
+
+    ElementIterator(XMLStreamReader reader, String tag) {
+      super(reader, tag);
+      try {
+        synchronized (documentBuilderFactory) {
+          builder = documentBuilderFactory.newDocumentBuilder();
+        }
+      } catch (ParserConfigurationException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    void startTag(XMLStreamReader reader, String name, boolean match) {
+      if ( ! match && ! inMatch()) {
+        return;
+      }
+      if (open.isEmpty()) {
+        document = builder.newDocument();
+      }
+      Element element = document.createElement(name);
+      for (int i = 0; i < reader.getNamespaceCount(); i++) {
+        String prefix = reader.getNamespacePrefix(i);
+        element.setAttribute(qualifiedName("xmlns", prefix), reader.getNamespaceURI(i));
+      }
+      for (int i = 0; i < reader.getAttributeCount(); i++) {
+        element.setAttribute(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+            reader.getAttributeValue(i));
+      }
+      if (open.isEmpty()) {
+        document.appendChild(element);
+      } else {
+        open.get(open.size() - 1).appendChild(element);
+      }
+      open.add(element);
+    }
+
+    @Override
+    void text(XMLStreamReader reader, int event) {
+      Node node;
+      switch (event) {
+        case XMLStreamConstants.COMMENT:
+          node = document.createComment(reader.getText());
+          break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          node = document.createProcessingInstruction(reader.getPITarget(), reader.getPIData());
+          break;
+        case XMLStreamConstants.CDATA:
+          node = document.createCDATASection(reader.getText());
+          break;
+        default:
+          node = document.createTextNode(reader.getText());
+          break;
+      }
+      open.get(open.size() - 1).appendChild(node);
+    }
+
+    @Override
+    Element endTag(boolean match) {
+      if (open.isEmpty()) {
+        return null;
+      }
+      Element element = open.remove(open.size() - 1);
+      if (open.isEmpty()) {
+        // the text may have come in pieces
+        document.getDocumentElement().normalize();
+      }
+      return match ? element : null;
+    }
+
+  }
+
+
   /**
    * Returns the elements in the given file with the given tag associated with
    * the text content of the two previous siblings and two next siblings.
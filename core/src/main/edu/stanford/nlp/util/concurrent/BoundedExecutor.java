@@ -0,0 +1,370 @@
+package edu.stanford.nlp.util.concurrent;
+
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A reusable executor with a bounded number of running and waiting tasks.
+ * At most {@code nThreads} tasks run at once, and at most {@code queueCapacity}
+ * further tasks wait for a free worker. What happens to a task submitted
+ * beyond that is decided by the {@link RejectionPolicy}.
+ *
+ * Two backends are supported: a fixed pool of reusable platform threads
+ * ({@link Mode#POOL}), or one virtual thread per task ({@link Mode#VIRTUAL}),
+ * where the latter is only available when running on a JVM which has virtual threads
+ * and falls back to a pool otherwise.
+ *
+ * The executor keeps counters on the number of waiting tasks, on how long
+ * tasks spent waiting before they got to run, and on how busy the workers were,
+ * so that callers can see whether the queue or the workers are the bottleneck.
+ */
+public class BoundedExecutor implements java.util.concurrent.Executor {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(BoundedExecutor.class);
+
+  /** The kind of threads that tasks run on. */
+  public enum Mode { POOL, VIRTUAL }
+
+  /** What to do with a task when both the workers and the queue are full. */
+  public enum RejectionPolicy {
+    /** Block the submitting thread until there is room. */
+    BLOCK,
+    /** Throw a {@link RejectedExecutionException}. */
+    ABORT,
+    /** Run the task in the submitting thread. */
+    CALLER_RUNS
+  }
+
+  private final String name;
+  private final Mode mode;
+  private final int nThreads;
+  private final int queueCapacity;
+  private final RejectionPolicy rejectionPolicy;
+
+  private final ExecutorService executor;
+  /** Admission permits: one per running or waiting task. */
+  private final Semaphore admitted;
+  /** Running permits, only used for virtual threads, which would otherwise all run at once. */
+  private final Semaphore running;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong callerRuns = new AtomicLong();
+  private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+  private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+  private final AtomicLong busyNanos = new AtomicLong();
+  private final long createdNanos = System.nanoTime();
+
+
+  /**
+   * Create a new bounded executor.
+   *
+   * @param name The name given to worker threads
+   * @param mode The kind of threads to run on
+   * @param nThreads The number of tasks to run at once. If less than or equal to 0,
+   *                 then the number of available processors is used
+   * @param queueCapacity The number of tasks which may wait for a worker
+   * @param rejectionPolicy What to do with a task when workers and queue are full
+   * @param keepAliveMillis How long idle pool threads are kept before being released.
+   *                        This keeps a program from hanging on exit when the executor is never shut down.
+   */
+  public BoundedExecutor(String name, Mode mode, int nThreads, int queueCapacity,
+                         RejectionPolicy rejectionPolicy, long keepAliveMillis) {
+    this(name, mode, nThreads, queueCapacity, rejectionPolicy, keepAliveMillis, false);
+  }
+
+  /**
+   * Create a new bounded executor, whose pool threads may be daemon threads.
+   * An executor which is shared and never shut down should use daemon threads,
+   * so that it doesn't keep the JVM alive after the program is done.
+   *
+   * @param daemon Whether pool threads are daemon threads (virtual threads always are)
+   * @see #BoundedExecutor(String, Mode, int, int, RejectionPolicy, long)
+   */
+  public BoundedExecutor(String name, Mode mode, int nThreads, int queueCapacity,
+                         RejectionPolicy rejectionPolicy, long keepAliveMillis, boolean daemon) {
+    if (queueCapacity < 0) {
+      throw new IllegalArgumentException("Queue capacity must be non-negative: " + queueCapacity);
+    }
+    this.name = name;
+    this.nThreads = nThreads <= 0 ? Runtime.getRuntime().availableProcessors() : nThreads;
+    this.queueCapacity = queueCapacity;
+    this.rejectionPolicy = rejectionPolicy;
+    this.admitted = new Semaphore(this.nThreads + queueCapacity);
+
+    ExecutorService virtual = (mode == Mode.VIRTUAL) ? newVirtualThreadExecutor() : null;
+    if (virtual != null) {
+      this.mode = Mode.VIRTUAL;
+      this.executor = virtual;
+      this.running = new Semaphore(this.nThreads);
+    } else {
+      if (mode == Mode.VIRTUAL) {
+        log.warn("Virtual threads are not available on this JVM; using a thread pool instead");
+      }
+      this.mode = Mode.POOL;
+      // The admission semaphore already bounds the queue, so the pool queue itself need not be bounded
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(this.nThreads, this.nThreads,
+          Math.max(1, keepAliveMillis), TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name, daemon));
+      pool.allowCoreThreadTimeOut(keepAliveMillis > 0);
+      this.executor = pool;
+      this.running = null;
+    }
+  }
+
+  /**
+   * Create an executor from properties. The properties read, after the given prefix, are:
+   * <ul>
+   *   <li>{@code type}: {@code pool} (default) or {@code virtual}</li>
+   *   <li>{@code queueSize}: the number of waiting tasks allowed (default: the number of threads)</li>
+   *   <li>{@code rejection}: {@code block} (default), {@code abort}, or {@code callerRuns}</li>
+   *   <li>{@code keepAlive}: milliseconds to keep idle pool threads around (default: 5000)</li>
+   * </ul>
+   *
+   * @param name The name given to worker threads
+   * @param props The properties to read
+   * @param prefix The prefix of the properties, for example {@code "executor."}
+   * @param nThreads The number of tasks to run at once
+   */
+  public static BoundedExecutor fromProperties(String name, Properties props, String prefix, int nThreads) {
+    Mode mode = modeFromProperties(props, prefix + "type");
+    int queueSize = PropertiesUtils.getInt(props, prefix + "queueSize", Math.max(1, nThreads));
+    String rejection = props.getProperty(prefix + "rejection", "block");
+    RejectionPolicy policy;
+    switch (rejection.toLowerCase()) {
+      case "block": policy = RejectionPolicy.BLOCK; break;
+      case "abort": policy = RejectionPolicy.ABORT; break;
+      case "callerruns": case "caller_runs": policy = RejectionPolicy.CALLER_RUNS; break;
+      default: throw new IllegalArgumentException("Unknown " + prefix + "rejection " + rejection +
+          "; expected one of block, abort, callerRuns");
+    }
+    long keepAlive = PropertiesUtils.getLong(props, prefix + "keepAlive", 5000L);
+    return new BoundedExecutor(name, mode, nThreads, queueSize, policy, keepAlive);
+  }
+
+  /**
+   * Read a {@link Mode} from a property, case-insensitively, defaulting to {@link Mode#POOL}.
+   *
+   * @throws IllegalArgumentException If the property names no mode, with a message giving the allowed values
+   */
+  public static Mode modeFromProperties(Properties props, String property) {
+    String value = props.getProperty(property, "pool");
+    try {
+      return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown " + property + " " + value + "; expected one of " +
+          Arrays.toString(Mode.values()).toLowerCase(Locale.ROOT), e);
+    }
+  }
+
+  /** Returns an executor which starts a virtual thread per task, or null if this JVM doesn't have them. */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+
+  /**
+   * Run the given task on a worker. If the workers and queue are full, then the
+   * rejection policy decides whether this blocks, throws, or runs the task in this thread.
+   *
+   * @throws RejectedExecutionException If the task is refused under the {@link RejectionPolicy#ABORT}
+   *                                    policy, or the executor has been shut down
+   */
+  @Override
+  public void execute(Runnable task) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException(name + " has been shut down");
+    }
+    if ( ! admit()) {
+      rejected.incrementAndGet();
+      if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+        callerRuns.incrementAndGet();
+        submitted.incrementAndGet();
+        try {
+          runTimed(task);
+        } finally {
+          completed.incrementAndGet();
+        }
+        return;
+      }
+      throw new RejectedExecutionException(name + " is full: " + this);
+    }
+    submitted.incrementAndGet();
+    int depth = queueDepth.incrementAndGet();
+    maxQueueDepth.accumulateAndGet(depth, Math::max);
+    final long enqueued = System.nanoTime();
+    try {
+      executor.execute(() -> {
+        try {
+          if (running != null) {
+            running.acquireUninterruptibly();
+          }
+          long waited = System.nanoTime() - enqueued;
+          queueDepth.decrementAndGet();
+          totalQueueWaitNanos.addAndGet(waited);
+          maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+          try {
+            runTimed(task);
+          } finally {
+            if (running != null) {
+              running.release();
+            }
+          }
+        } finally {
+          completed.incrementAndGet();
+          admitted.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      queueDepth.decrementAndGet();
+      admitted.release();
+      throw e;
+    }
+  }
+
+  private void runTimed(Runnable task) {
+    long start = System.nanoTime();
+    try {
+      task.run();
+    } finally {
+      busyNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  private boolean admit() {
+    if (rejectionPolicy == RejectionPolicy.BLOCK) {
+      try {
+        admitted.acquire();
+      } catch (InterruptedException e) {
+        throw new RuntimeInterruptedException(e);
+      }
+      return true;
+    }
+    return admitted.tryAcquire();
+  }
+
+  /**
+   * Stop accepting new tasks and wait for the tasks already submitted to finish.
+   */
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      while ( ! executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.info("Waiting for " + name + " to finish: " + this);
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    }
+  }
+
+  public boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  public Mode mode() { return mode; }
+
+  public int nThreads() { return nThreads; }
+
+  public int queueCapacity() { return queueCapacity; }
+
+  public RejectionPolicy rejectionPolicy() { return rejectionPolicy; }
+
+  /** The number of tasks currently waiting for a worker. */
+  public int queueDepth() { return queueDepth.get(); }
+
+  /** The largest number of tasks which have been waiting for a worker at once. */
+  public int maxQueueDepth() { return maxQueueDepth.get(); }
+
+  /** The number of tasks accepted, including those run in the caller's thread. */
+  public long submittedCount() { return submitted.get(); }
+
+  /** The number of tasks finished, whether normally or with an exception. */
+  public long completedCount() { return completed.get(); }
+
+  /** The number of tasks which found the workers and queue full. */
+  public long rejectedCount() { return rejected.get(); }
+
+  /** The number of rejected tasks which were run in the caller's thread. */
+  public long callerRunsCount() { return callerRuns.get(); }
+
+  /** The total time, in nanoseconds, that tasks spent waiting for a worker. */
+  public long totalQueueWaitNanos() { return totalQueueWaitNanos.get(); }
+
+  /** The longest time, in nanoseconds, that a task spent waiting for a worker. */
+  public long maxQueueWaitNanos() { return maxQueueWaitNanos.get(); }
+
+  /** The mean time, in milliseconds, that tasks spent waiting for a worker. */
+  public double averageQueueWaitMillis() {
+    long started = submitted.get() - callerRuns.get() - queueDepth.get();
+    return started <= 0 ? 0.0 : totalQueueWaitNanos.get() / 1e6 / started;
+  }
+
+  /** The total time, in nanoseconds, that tasks spent running. */
+  public long busyNanos() { return busyNanos.get(); }
+
+  /**
+   * The fraction of the time since this executor was created that its workers spent running tasks,
+   * between 0 and 1 (tasks run in the caller's thread are counted too, so it can slightly exceed 1).
+   * A stage whose utilization is near 1 is the bottleneck; one near 0 is waiting on others.
+   */
+  public double utilization() {
+    long elapsed = System.nanoTime() - createdNanos;
+    return elapsed <= 0 ? 0.0 : ((double) busyNanos.get()) / elapsed / nThreads;
+  }
+
+  /**
+   * Return status information about the executor.
+   */
+  @Override
+  public String toString() {
+    return String.format("%s[%s threads: %d  queued: %d/%d (max %d)  submitted: %d  completed: %d  rejected: %d  avg_wait: %.2fms  max_wait: %.2fms  busy: %.0f%%]",
+        name, mode.name().toLowerCase(), nThreads, queueDepth(), queueCapacity, maxQueueDepth(),
+        submittedCount(), completedCount(), rejectedCount(), averageQueueWaitMillis(), maxQueueWaitNanos() / 1e6,
+        utilization() * 100);
+  }
+
+
+  /**
+   * Names the threads of a pool after the pool, so they can be recognized in a thread dump.
+   */
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final boolean daemon;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String prefix, boolean daemon) {
+      this.prefix = prefix;
+      this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, prefix + '-' + count.incrementAndGet());
+      t.setDaemon(daemon);
+      return t;
+    }
+  }
+
+}
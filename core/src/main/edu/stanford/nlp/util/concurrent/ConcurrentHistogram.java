@@ -0,0 +1,154 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative long values, such as latencies in nanoseconds,
+ * from which percentiles can be read while values are still being recorded.
+ *
+ * As in an HDR histogram, values are put in buckets whose width grows with
+ * the value: each power of two is split into {@code 2^precisionBits} equal buckets, so
+ * a reported percentile is within a relative error of {@code 2^-precisionBits}
+ * of the true one, over the whole range of long values.
+ * Recording a value is a couple of bit operations and an atomic increment,
+ * so it is cheap enough to leave on all the time.
+ */
+public class ConcurrentHistogram {
+
+  private final int precisionBits;
+  private final AtomicLongArray counts;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+  /** Create a histogram with a relative error of 1/32, about 3%. */
+  public ConcurrentHistogram() {
+    this(5);
+  }
+
+  /**
+   * Create a histogram.
+   *
+   * @param precisionBits The log2 of the number of buckets per power of two, between 0 and 10
+   */
+  public ConcurrentHistogram(int precisionBits) {
+    if (precisionBits < 0 || precisionBits > 10) {
+      throw new IllegalArgumentException("precisionBits must be between 0 and 10: " + precisionBits);
+    }
+    this.precisionBits = precisionBits;
+    // values below 2^precisionBits get a bucket each; each higher power of two gets 2^precisionBits buckets
+    this.counts = new AtomicLongArray((64 - precisionBits + 1) << precisionBits);
+  }
+
+  /** The bucket a value goes in. */
+  private int bucketOf(long value) {
+    int exponent = 63 - Long.numberOfLeadingZeros(value);  // -1 for 0
+    if (exponent < precisionBits) {
+      return (int) value;
+    }
+    int shift = exponent - precisionBits;
+    // the top precisionBits + 1 bits of the value, including the leading one
+    int mantissa = (int) (value >>> shift);
+    return ((shift + 1) << precisionBits) + (mantissa - (1 << precisionBits));
+  }
+
+  /** The largest value which goes in a bucket. */
+  private long highestValueIn(int bucket) {
+    int block = bucket >>> precisionBits;
+    if (block == 0) {
+      return bucket;
+    }
+    int shift = block - 1;
+    long mantissa = (bucket & ((1 << precisionBits) - 1)) + (1L << precisionBits);
+    long low = mantissa << shift;
+    return low + ((1L << shift) - 1);
+  }
+
+  /**
+   * Record a value. Negative values are recorded as 0.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /** The number of values recorded. */
+  public long count() {
+    return count.sum();
+  }
+
+  /** The sum of the values recorded. */
+  public long sum() {
+    return sum.sum();
+  }
+
+  /** The largest value recorded, or 0 if none have been. */
+  public long max() {
+    return max.get();
+  }
+
+  /** The mean of the values recorded, or 0 if none have been. */
+  public double mean() {
+    long n = count();
+    return n == 0 ? 0.0 : ((double) sum()) / n;
+  }
+
+  /**
+   * The value below which the given fraction of the recorded values fall, up to the precision
+   * of the histogram. The maximum is exact.
+   *
+   * @param percentile A number between 0 and 100, for example 99.9
+   * @return The value at that percentile, or 0 if no values have been recorded
+   */
+  public long percentile(double percentile) {
+    if (percentile < 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    long total = 0;
+    int length = counts.length();
+    long[] snapshot = new long[length];
+    for (int i = 0; i < length; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), max());
+      }
+    }
+    return max();
+  }
+
+  /**
+   * Forget all the values recorded.
+   * Values recorded at the same time as this call may or may not be forgotten.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d mean=%.1f p50=%d p95=%d p99=%d max=%d",
+        count(), mean(), percentile(50), percentile(95), percentile(99), max());
+  }
+
+}
@@ -0,0 +1,179 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * For interning (canonicalizing) things in a multi-threaded environment,
+ * without a lock.
+ * <br>
+ * Like {@link edu.stanford.nlp.util.Interner}, it maps any object to a
+ * unique interned version which .equals the presented object, and the
+ * first object presented becomes the interned version.  The interned
+ * objects are held by weak references, so that they may be garbage
+ * collected when nothing else points to them.  Unlike {@link SynchronizedInterner},
+ * which puts a lock around an Interner, the interned objects are kept in a
+ * {@link ConcurrentHashMap}, so that looking up an object already interned
+ * never blocks, and threads interning new objects only contend with those
+ * adding to the same part of the map.  This makes it suitable for interning
+ * words and tags as they are made in a multithreaded pipeline.
+ * <br>
+ * Entries whose objects have been collected are removed as later objects
+ * are interned.
+ *
+ * @see edu.stanford.nlp.util.Interner
+ * @see SynchronizedInterner
+ */
+public class ConcurrentInterner<T> {
+
+  private static final ConcurrentInterner<Object> interner = new ConcurrentInterner<>();
+
+  /**
+   * For getting the instance that global methods use.
+   */
+  public static ConcurrentInterner<Object> getGlobal() {
+    return interner;
+  }
+
+  /**
+   * Returns a unique object o' that .equals the argument o.  If o
+   * itself is returned, this is the first request for an object
+   * .equals to o.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T globalIntern(T o) {
+    return (T) getGlobal().intern(o);
+  }
+
+
+  private final ConcurrentHashMap<WeakKey<T>,WeakKey<T>> map;
+  private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+  public ConcurrentInterner() {
+    map = new ConcurrentHashMap<>();
+  }
+
+  public ConcurrentInterner(int initialCapacity) {
+    map = new ConcurrentHashMap<>(initialCapacity);
+  }
+
+  public void clear() {
+    map.clear();
+    expungeStaleEntries();
+  }
+
+  /**
+   * Returns a unique object o' that .equals the argument o.  If o
+   * itself is returned, this is the first request for an object
+   * .equals to o.
+   */
+  public T intern(T o) {
+    expungeStaleEntries();
+    WeakKey<T> found = map.get(new LookupKey(o));
+    if (found != null) {
+      T interned = found.get();
+      if (interned != null) {
+        return interned;
+      }
+    }
+    WeakKey<T> key = new WeakKey<>(o, queue);
+    while (true) {
+      WeakKey<T> previous = map.putIfAbsent(key, key);
+      if (previous == null) {
+        return o;
+      }
+      T interned = previous.get();
+      if (interned != null) {
+        return interned;
+      }
+      // collected since it was found; take its place
+      map.remove(previous, previous);
+    }
+  }
+
+  /**
+   * Returns a <code>Set</code> such that each element in the returned set
+   * is a unique object e' that .equals the corresponding element e in the
+   * original set.
+   */
+  public Set<T> internAll(Set<T> s) {
+    Set<T> result = Generics.newHashSet();
+    for (T o : s) {
+      result.add(intern(o));
+    }
+    return result;
+  }
+
+  /** The number of objects interned and not yet collected. */
+  public int size() {
+    expungeStaleEntries();
+    return map.size();
+  }
+
+  private void expungeStaleEntries() {
+    for (Reference<? extends T> ref; (ref = queue.poll()) != null; ) {
+      map.remove(ref);
+    }
+  }
+
+
+  /**
+   * A key in the map.  Its hash code is kept, so that it can still be found
+   * and removed after its object is collected; a key whose object has been
+   * collected equals only itself.
+   */
+  private static class WeakKey<T> extends WeakReference<T> {
+
+    private final int hash;
+
+    WeakKey(T o, ReferenceQueue<T> queue) {
+      super(o, queue);
+      hash = o.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if ( ! (obj instanceof WeakKey)) {
+        return false;
+      }
+      Object o = get();
+      return o != null && hash == obj.hashCode() && o.equals(((WeakKey<?>) obj).get());
+    }
+
+  }
+
+  /** An object looked up in the map, without making a weak reference to it. */
+  private static class LookupKey {
+
+    private final Object o;
+
+    LookupKey(Object o) {
+      this.o = o;
+    }
+
+    @Override
+    public int hashCode() {
+      return o.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof WeakKey && o.equals(((WeakKey<?>) obj).get());
+    }
+
+  }
+
+}
@@ -0,0 +1,160 @@
+package edu.stanford.nlp.util.concurrent;
+
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+
+/**
+ * Turns a {@link Flow.Publisher} into a blocking {@link Iterator}.
+ * At most {@code bufferSize} items are requested from the publisher before
+ * they are consumed by the iterator, so a fast publisher cannot run ahead of
+ * a slow consumer.
+ *
+ * An error signalled by the publisher is rethrown from {@link #hasNext()}
+ * once the items received before it have been consumed.
+ *
+ * @param <T> The type of item published
+ */
+public class PublisherIterator<T> implements Iterator<T>, Flow.Subscriber<T> {
+
+  /** Marks the end of the items, whether normal or not. */
+  private static final Object END = new Object();
+
+  private final int bufferSize;
+  private final BlockingQueue<Object> buffer;
+  private volatile Flow.Subscription subscription;
+  private volatile Throwable error;
+  /** Set once END has been put in the buffer, after which the publisher is no longer listened to. */
+  private volatile boolean ended; // = false
+
+  private Object next; // = null
+  private boolean done; // = false
+
+  /**
+   * Subscribe to the given publisher.
+   *
+   * @param publisher The publisher to read items from
+   * @param bufferSize The most items to hold which haven't been consumed yet
+   */
+  public PublisherIterator(Flow.Publisher<? extends T> publisher, int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+    // one extra slot for the END marker
+    this.buffer = new ArrayBlockingQueue<>(bufferSize + 1);
+    publisher.subscribe(this);
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    subscription.request(bufferSize);
+  }
+
+  @Override
+  public void onNext(T item) {
+    if (ended) {
+      return;
+    }
+    // The publisher signals one thing at a time, and only the consumer takes from the buffer,
+    // so if there is more than one free slot now, there is still one for END after this item
+    if (buffer.remainingCapacity() <= 1) {
+      // the publisher sent more than was requested
+      Flow.Subscription s = subscription;
+      if (s != null) {
+        s.cancel();
+      }
+      onError(new IllegalStateException("Publisher did not respect the requested demand of " + bufferSize));
+      return;
+    }
+    buffer.add(item);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if ( ! ended) {
+      error = throwable;
+      end();
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    if ( ! ended) {
+      end();
+    }
+  }
+
+  /** Put END in the slot kept free for it, which wakes the consumer. */
+  private void end() {
+    ended = true;
+    boolean interrupted = false;
+    while (true) {
+      try {
+        buffer.put(END);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next != null) {
+      return true;
+    }
+    if (done) {
+      return false;
+    }
+    try {
+      next = buffer.take();
+    } catch (InterruptedException e) {
+      cancel();
+      throw new RuntimeInterruptedException(e);
+    }
+    if (next == END) {
+      next = null;
+      done = true;
+      if (error != null) {
+        throw new RuntimeException("Publisher failed", error);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T next() {
+    if ( ! hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T item = (T) next;
+    next = null;
+    subscription.request(1);
+    return item;
+  }
+
+  /** Stop receiving items from the publisher. */
+  public void cancel() {
+    done = true;
+    Flow.Subscription s = subscription;
+    if (s != null) {
+      s.cancel();
+    }
+  }
+
+}
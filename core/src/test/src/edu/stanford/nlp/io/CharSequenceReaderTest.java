@@ -0,0 +1,52 @@
+package edu.stanford.nlp.io;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CharSequenceReader}.
+ */
+public class CharSequenceReaderTest {
+
+  private static String readAll(CharSequenceReader reader, int chunk) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    char[] buffer = new char[chunk];
+    int n;
+    while ((n = reader.read(buffer, 0, chunk)) >= 0) {
+      sb.append(buffer, 0, n);
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    String text = "The quick brown fox.";
+    CharBuffer offset = CharBuffer.wrap("**" + text);
+    offset.position(2);
+    for (CharSequence seq : Arrays.asList(text, new StringBuilder(text), CharBuffer.wrap(text), offset.slice(),
+        new javax.swing.text.Segment(text.toCharArray(), 0, text.length()))) {
+      assertEquals(text, readAll(new CharSequenceReader(seq), 3));
+    }
+    assertEquals(0, offset.slice().position());
+    assertEquals("quick", readAll(new CharSequenceReader(text, 4, 9), 100));
+  }
+
+  @Test
+  public void testMarkAndSkip() throws IOException {
+    CharSequenceReader reader = new CharSequenceReader(new StringBuilder("abcdef"));
+    assertEquals('a', reader.read());
+    reader.mark(0);
+    assertEquals(2, reader.skip(2));
+    assertEquals('d', reader.read());
+    reader.reset();
+    assertEquals("bcdef", readAll(reader, 2));
+    assertEquals(0, reader.skip(5));
+    assertEquals(-1, reader.read());
+  }
+
+}
@@ -0,0 +1,139 @@
+package edu.stanford.nlp.ling;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.CoNLLOutputter;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.TypesafeMap;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link TokenColumns}.
+ */
+public class TokenColumnsTest {
+
+  private static CoreLabel token(String word, int begin, int index) {
+    CoreLabel token = new CoreLabel();
+    token.setWord(word);
+    token.setValue(word);
+    token.setBeginPosition(begin);
+    token.setEndPosition(begin + word.length());
+    token.setIndex(index);
+    token.setIsNewline(false);
+    token.set(CoreAnnotations.ShapeAnnotation.class, "x");
+    return token;
+  }
+
+  @Test
+  public void testSameAnnotations() {
+    List<CoreLabel> plain = Arrays.asList(token("the", 0, 1), token("cat", 4, 2), token("the", 8, 3));
+    List<CoreLabel> columnar = TokenColumns.of(plain);
+    assertEquals(3, columnar.size());
+    for (int i = 0; i < plain.size(); i++) {
+      CoreLabel token = columnar.get(i);
+      assertTrue(token instanceof TokenColumns.Token);
+      assertEquals(plain.get(i).keySet(), token.keySet());
+      assertEquals(plain.get(i).size(), token.size());
+      assertEquals(plain.get(i), token);
+      assertEquals(token, plain.get(i));
+      assertEquals(plain.get(i).hashCode(), token.hashCode());
+      assertEquals(plain.get(i).toString(), token.toString());
+    }
+    // words are interned
+    assertSame(columnar.get(0).word(), columnar.get(2).word());
+  }
+
+  @Test
+  public void testSetAndRemove() {
+    CoreLabel token = TokenColumns.of(Arrays.asList(token("dogs", 5, 1))).get(0);
+    token.setLemma("dog");
+    token.setTag("NNS");
+    token.set(CoreAnnotations.CoarseTagAnnotation.class, "NOUN");
+    assertEquals("dog", token.lemma());
+    assertEquals("NNS", token.tag());
+    assertEquals("NOUN", token.get(CoreAnnotations.CoarseTagAnnotation.class));
+    // changing the word removes the lemma, as for any CoreLabel
+    token.setWord("cats");
+    assertNull(token.lemma());
+    assertFalse(token.containsKey(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals(Integer.valueOf(5), token.remove(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+    assertFalse(token.containsKey(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+    assertEquals(-1, token.beginPosition());
+    assertEquals(Boolean.FALSE, token.isNewline());
+    assertFalse(token.keySet().contains(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+    // every int may be kept, with none of them taken to mean no value
+    token.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, Integer.MIN_VALUE);
+    assertTrue(token.containsKey(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+    assertEquals(Integer.MIN_VALUE, token.beginPosition());
+    assertTrue(token.keySet().contains(CoreAnnotations.CoarseTagAnnotation.class));
+  }
+
+  @Test
+  public void testCopiedAndListened() {
+    CoreLabel plain = token("dogs", 5, 1);
+    CoreLabel token = TokenColumns.of(Arrays.asList(plain)).get(0);
+    // the ArrayCoreMap copy constructor copies the columns too
+    ArrayCoreMap copy = new ArrayCoreMap(token);
+    assertEquals("dogs", copy.get(CoreAnnotations.TextAnnotation.class));
+    assertEquals(token, copy);
+    assertEquals(copy, token);
+    assertEquals(plain, copy);
+
+    List<Class<?>> read = new ArrayList<>();
+    Consumer<Class<? extends TypesafeMap.Key<?>>> savedListener = ArrayCoreMap.listener;
+    ArrayCoreMap.listener = read::add;
+    try {
+      token.word();
+      token.get(CoreAnnotations.ShapeAnnotation.class);
+      token.lemma();  // not set, so not read
+    } finally {
+      ArrayCoreMap.listener = savedListener;
+    }
+    assertEquals(Arrays.asList(CoreAnnotations.TextAnnotation.class, CoreAnnotations.ShapeAnnotation.class), read);
+  }
+
+  @Test
+  public void testSerializedAsCoreLabel() throws IOException, ClassNotFoundException {
+    CoreLabel token = TokenColumns.of(Arrays.asList(token("dogs", 5, 1))).get(0);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(token);
+    }
+    Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(CoreLabel.class, read.getClass());
+    assertEquals(token, read);
+  }
+
+  @Test
+  public void testPipeline() throws IOException {
+    String text = "The cat sat on the mat.  The dog didn't.\n\nIt barked.";
+    String[] outputs = new String[2];
+    for (int i = 0; i < 2; i++) {
+      StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+          "annotators", "tokenize,ssplit", "tokenize.columnar", Boolean.toString(i == 1)));
+      Annotation annotation = new Annotation(text);
+      pipeline.annotate(annotation);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new CoNLLOutputter().print(annotation, os, pipeline);
+      outputs[i] = os.toString("UTF-8");
+      if (i == 1) {
+        assertTrue(annotation.get(CoreAnnotations.TokensAnnotation.class).get(0) instanceof TokenColumns.Token);
+      }
+    }
+    assertEquals(outputs[0], outputs[1]);
+  }
+
+}
@@ -0,0 +1,132 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.SentenceUtils;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that simple patterns are compiled to an automaton, and that it matches as the NFA simulation does.
+ */
+public class SequencePatternAutomatonTest extends TestCase {
+
+  public void testSimplePatterns() {
+    String[] simple = { "a", "a b c", "a | b c", "a? b+ c*", "(?: a | b){2,3} c", "^ a []* $", "/a|b/ [!{word:c}]" };
+    for (String p : simple) {
+      assertNotNull(p, TokenSequencePattern.compile(p).automaton);
+    }
+    String[] complex = { "(a) b", "(?$x a) b", "a*? b", "a{2,7}", "(?: a?)* b", "(?: a b) & (?: [] b)" };
+    for (String p : complex) {
+      assertNull(p, TokenSequencePattern.compile(p).automaton);
+    }
+  }
+
+  public void testMatches() {
+    List<CoreLabel> tokens = SentenceUtils.toCoreLabelList("a", "b", "a", "a", "c", "b");
+    checkFind("a+", tokens, 0, 1, 2, 4);
+    checkFind("a+ | a b", tokens, 0, 1, 2, 4);
+    checkFind("a b | a+", tokens, 0, 2, 2, 4);
+    checkFind("[]? b", tokens, 0, 2, 4, 6);
+    checkFind("^ a", tokens, 0, 1);
+    checkFind("b $", tokens, 5, 6);
+    checkFind("c?", tokens, 4, 5);
+    assertTrue(TokenSequencePattern.compile("a b []* b").matcher(tokens).matches());
+    assertFalse(TokenSequencePattern.compile("a b []* c").matcher(tokens).matches());
+  }
+
+  private static void checkFind(String pattern, List<CoreLabel> tokens, int... offsets) {
+    assertEquals(pattern, toString(offsets), findAll(TokenSequencePattern.compile(pattern), tokens, false));
+  }
+
+  /** Random simple patterns match the same with the automaton and with the NFA simulation. */
+  public void testSameAsNfa() {
+    Random random = new Random(42);
+    String[] words = { "a", "b", "c" };
+    for (int i = 0; i < 1000; i++) {
+      String p = randomPattern(random);
+      TokenSequencePattern pattern = TokenSequencePattern.compile(p);
+      for (int j = 0; j < 10; j++) {
+        String[] sentence = new String[random.nextInt(10)];
+        for (int k = 0; k < sentence.length; k++) {
+          sentence[k] = words[random.nextInt(words.length)];
+        }
+        List<CoreLabel> tokens = SentenceUtils.toCoreLabelList(sentence);
+        String message = p + " on " + tokens;
+        assertEquals(message, findAll(pattern, tokens, true), findAll(pattern, tokens, false));
+        assertEquals(message, matches(pattern, tokens, true), matches(pattern, tokens, false));
+      }
+    }
+  }
+
+  private static String randomPattern(Random random) {
+    StringBuilder sb = new StringBuilder();
+    if (random.nextInt(6) == 0) {
+      sb.append("^ ");
+    }
+    int items = 1 + random.nextInt(3);
+    for (int i = 0; i < items; i++) {
+      if (random.nextInt(3) == 0) {
+        sb.append("(?: ");
+        int alternatives = 1 + random.nextInt(3);
+        for (int j = 0; j < alternatives; j++) {
+          if (j > 0) {
+            sb.append(" | ");
+          }
+          for (int k = random.nextInt(2); k >= 0; k--) {
+            sb.append(randomNode(random)).append(' ');
+          }
+        }
+        sb.append(')');
+      } else {
+        sb.append(randomNode(random));
+      }
+      String[] quantifiers = { "", "", "?", "*", "+", "{2}", "{1,3}", "{0,2}", "{2,}" };
+      sb.append(quantifiers[random.nextInt(quantifiers.length)]).append(' ');
+    }
+    if (random.nextInt(6) == 0) {
+      sb.append('$');
+    }
+    return sb.toString();
+  }
+
+  private static String randomNode(Random random) {
+    String[] nodes = { "a", "b", "c", "/a|b/", "[]" };
+    return nodes[random.nextInt(nodes.length)];
+  }
+
+  private static SequenceMatcher<?> matcher(TokenSequencePattern pattern, List<CoreLabel> tokens, boolean nfa) {
+    SequenceMatcher<?> m = pattern.matcher(tokens);
+    // Keeping the results of node matches needs the NFA simulation
+    m.setMatchWithResult(nfa);
+    return m;
+  }
+
+  private static String findAll(TokenSequencePattern pattern, List<CoreLabel> tokens, boolean nfa) {
+    SequenceMatcher<?> m = matcher(pattern, tokens, nfa);
+    List<Integer> offsets = new ArrayList<>();
+    while (m.find()) {
+      offsets.add(m.start());
+      offsets.add(m.end());
+    }
+    return offsets.toString();
+  }
+
+  private static String matches(TokenSequencePattern pattern, List<CoreLabel> tokens, boolean nfa) {
+    SequenceMatcher<?> m = matcher(pattern, tokens, nfa);
+    // With branches left for later, the NFA simulation doesn't always find the longest match
+    m.setBranchLimit(-1);
+    return m.matches() ? m.start() + "-" + m.end() : "no match";
+  }
+
+  private static String toString(int... offsets) {
+    List<Integer> list = new ArrayList<>();
+    for (int offset : offsets) {
+      list.add(offset);
+    }
+    return list.toString();
+  }
+
+}
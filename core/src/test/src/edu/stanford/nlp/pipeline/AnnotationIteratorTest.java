@@ -0,0 +1,88 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.PipelineTestUtils.SlowAnnotator;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the streaming annotate methods of {@link AnnotationPipeline}.
+ */
+public class AnnotationIteratorTest {
+
+  private static List<Annotation> documents(int n) {
+    return IntStream.range(0, n).mapToObj(i -> new Annotation(Integer.toString(i))).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testOrdered() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new SlowAnnotator());
+    Iterator<Annotation> iter = pipeline.annotate(documents(200).iterator(), 4, 8, true);
+    int i = 0;
+    while (iter.hasNext()) {
+      assertEquals(Integer.toString(i), iter.next().get(CoreAnnotations.DocIDAnnotation.class));
+      i += 1;
+    }
+    assertEquals(200, i);
+  }
+
+  @Test
+  public void testUnorderedBoundsInFlight() {
+    SlowAnnotator annotator = new SlowAnnotator();
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(annotator);
+    AtomicInteger read = new AtomicInteger();
+    Iterator<Annotation> input = documents(200).stream().peek(x -> read.incrementAndGet()).iterator();
+    AnnotationIterator iter = pipeline.annotate(input, 4, 6, false);
+    Set<String> seen = new HashSet<>();
+    int returned = 0;
+    while (iter.hasNext()) {
+      assertTrue(read.get() - returned <= 6);
+      seen.add(iter.next().get(CoreAnnotations.DocIDAnnotation.class));
+      returned += 1;
+    }
+    assertEquals(200, seen.size());
+    assertTrue(annotator.maxInside.get() <= 4);
+  }
+
+  @Test
+  public void testExceptionsAreStored() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new SlowAnnotator());
+    List<Annotation> docs = Arrays.asList(new Annotation("a"), new Annotation("fail"), new Annotation("b"));
+    try (Stream<Annotation> stream = pipeline.annotate(docs.stream(), 2, 2, true)) {
+      List<Annotation> out = stream.collect(Collectors.toList());
+      assertEquals(3, out.size());
+      assertNull(out.get(0).get(CoreAnnotations.ExceptionAnnotation.class));
+      assertTrue(out.get(1).get(CoreAnnotations.ExceptionAnnotation.class) instanceof IllegalStateException);
+      assertEquals("b", out.get(2).get(CoreAnnotations.DocIDAnnotation.class));
+    }
+  }
+
+  @Test
+  public void testPublisher() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new SlowAnnotator());
+    SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+    Stream<Annotation> stream = pipeline.annotateTexts(publisher, 3, 5, true);
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < 100; ++i) {
+        publisher.submit(Integer.toString(i));
+      }
+      publisher.close();
+    });
+    producer.start();
+    List<String> ids = stream.map(x -> x.get(CoreAnnotations.DocIDAnnotation.class)).collect(Collectors.toList());
+    assertEquals(IntStream.range(0, 100).mapToObj(Integer::toString).collect(Collectors.toList()), ids);
+  }
+
+}
@@ -0,0 +1,249 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.PipelineTestUtils.SlowAnnotator;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Deadline;
+import edu.stanford.nlp.util.DeadlineExceededException;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static edu.stanford.nlp.pipeline.PipelineTestUtils.mwtMapping;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnnotationPipeline}.
+ */
+public class AnnotationPipelineTest {
+
+  private static final String TEXT = "Il parle des livres. Je vois des chats et DES chiens. " +
+      "Des amis viennent. Elle lit. Nous mangeons des pommes du jardin.";
+
+  private static AnnotationPipeline mwtPipeline(File mapping, int sentenceThreads) {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    pipeline.addAnnotator(new MWTAnnotator("", PropertiesUtils.asProperties("mwt.mappingFile", mapping.getPath())));
+    pipeline.setSentenceThreads(sentenceThreads);
+    return pipeline;
+  }
+
+  @Test
+  public void testSentenceThreadsGiveSameResult() throws IOException {
+    File mapping = mwtMapping("des\tde,les", "du\tde,le");
+
+    Annotation serial = new Annotation(TEXT);
+    mwtPipeline(mapping, 1).annotate(serial);
+    Annotation parallel = new Annotation(TEXT);
+    mwtPipeline(mapping, 4).annotate(parallel);
+
+    List<CoreLabel> serialTokens = serial.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreLabel> parallelTokens = parallel.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(serialTokens.size(), parallelTokens.size());
+    for (int i = 0; i < serialTokens.size(); ++i) {
+      assertEquals(serialTokens.get(i).toShorterString(), parallelTokens.get(i).toShorterString());
+      assertEquals(i, (int) parallelTokens.get(i).get(CoreAnnotations.TokenBeginAnnotation.class));
+    }
+    List<CoreMap> sentences = parallel.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(5, sentences.size());
+    CoreMap second = sentences.get(1);
+    assertEquals(6, (int) second.get(CoreAnnotations.TokenBeginAnnotation.class));
+    CoreLabel split = second.get(CoreAnnotations.TokensAnnotation.class).get(2);
+    assertEquals("de", split.word());
+    assertEquals(1, split.sentIndex());
+  }
+
+  private static void assertSameAnnotation(Annotation expected, Annotation actual) {
+    assertEquals(expected.get(CoreAnnotations.TextAnnotation.class), actual.get(CoreAnnotations.TextAnnotation.class));
+    List<CoreLabel> expectedTokens = expected.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreLabel> actualTokens = actual.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(expectedTokens.size(), actualTokens.size());
+    for (int i = 0; i < expectedTokens.size(); ++i) {
+      CoreLabel e = expectedTokens.get(i);
+      CoreLabel a = actualTokens.get(i);
+      assertEquals(e.toShorterString(), a.toShorterString());
+      assertEquals(e.beginPosition(), a.beginPosition());
+      assertEquals(e.endPosition(), a.endPosition());
+      assertEquals(e.index(), a.index());
+      assertEquals(e.sentIndex(), a.sentIndex());
+      assertEquals(e.before(), a.before());
+      assertEquals(e.after(), a.after());
+      assertEquals(i, (int) a.get(CoreAnnotations.TokenBeginAnnotation.class));
+    }
+    List<CoreMap> expectedSentences = expected.get(CoreAnnotations.SentencesAnnotation.class);
+    List<CoreMap> actualSentences = actual.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(expectedSentences.size(), actualSentences.size());
+    for (int i = 0; i < expectedSentences.size(); ++i) {
+      CoreMap e = expectedSentences.get(i);
+      CoreMap a = actualSentences.get(i);
+      assertEquals(e.get(CoreAnnotations.TextAnnotation.class), a.get(CoreAnnotations.TextAnnotation.class));
+      assertEquals(i, (int) a.get(CoreAnnotations.SentenceIndexAnnotation.class));
+      assertEquals(e.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class), a.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+      assertEquals(e.get(CoreAnnotations.CharacterOffsetEndAnnotation.class), a.get(CoreAnnotations.CharacterOffsetEndAnnotation.class));
+      assertEquals(e.get(CoreAnnotations.TokenBeginAnnotation.class), a.get(CoreAnnotations.TokenBeginAnnotation.class));
+      assertEquals(e.get(CoreAnnotations.TokenEndAnnotation.class), a.get(CoreAnnotations.TokenEndAnnotation.class));
+    }
+  }
+
+  @Test
+  public void testReannotateMatchesFullAnnotation() throws IOException {
+    File mapping = mwtMapping("des\tde,les", "du\tde,le");
+    AnnotationPipeline pipeline = mwtPipeline(mapping, 1);
+    assertTrue(pipeline.isIncremental());
+    String[] edits = {
+        // a word changed in the middle
+        TEXT.replace("chats", "grands chats"),
+        // a sentence split in two, and two joined
+        TEXT.replace("chats et", "chats. Et"),
+        TEXT.replace("viennent. Elle", "viennent et elle"),
+        // edits at either end, and in the space between sentences
+        "Oui. " + TEXT,
+        TEXT + " Fin du texte.",
+        TEXT.replace("livres. Je", "livres.\n\nJe"),
+        TEXT.replace("Des amis viennent. ", ""),
+        "Tout change.",
+    };
+    for (String edit : edits) {
+      Annotation document = new Annotation(TEXT);
+      pipeline.annotate(document);
+      pipeline.reannotate(document, edit);
+      Annotation expected = new Annotation(edit);
+      pipeline.annotate(expected);
+      assertSameAnnotation(expected, document);
+    }
+
+    // edits can follow one another
+    Annotation document = new Annotation(TEXT);
+    pipeline.annotate(document);
+    String text = TEXT;
+    for (String[] change : new String[][] { {"chats", "grands chats"}, {"Elle lit.", "Elle lit des livres."}, {"Il parle", "Il ne parle pas"} }) {
+      text = text.replace(change[0], change[1]);
+      pipeline.reannotate(document, text);
+    }
+    Annotation expected = new Annotation(text);
+    pipeline.annotate(expected);
+    assertSameAnnotation(expected, document);
+  }
+
+
+  @Test
+  public void testDeadline() {
+    SlowAnnotator slow = new SlowAnnotator(true);
+    SlowAnnotator after = new SlowAnnotator(true);
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(slow);
+    pipeline.addAnnotator(after);
+    pipeline.setTimeBudget(50, AnnotationPipeline.DeadlinePolicy.DEGRADE);
+
+    Annotation document = new Annotation("The cat sat.");
+    pipeline.annotate(document);
+    assertEquals("SlowAnnotator", document.get(CoreAnnotations.DeadlineExceededAnnotation.class));
+    assertEquals(4, document.get(CoreAnnotations.TokensAnnotation.class).size());
+    assertEquals(1, slow.runs.get());
+    assertEquals(0, after.runs.get());
+    assertNull(Deadline.current());
+
+    // a deadline on the document itself, which has already passed
+    Annotation late = new Annotation("The cat sat.");
+    late.set(CoreAnnotations.DeadlineAnnotation.class, System.currentTimeMillis() - 1);
+    pipeline.annotate(late);
+    assertEquals("TokenizerAnnotator", late.get(CoreAnnotations.DeadlineExceededAnnotation.class));
+    assertNull(late.get(CoreAnnotations.TokensAnnotation.class));
+
+    pipeline.setTimeBudget(50, AnnotationPipeline.DeadlinePolicy.FAIL);
+    try {
+      pipeline.annotate(new Annotation("The cat sat."));
+      fail("Expected the document to run out of time");
+    } catch (DeadlineExceededException e) {
+      // expected
+    }
+    assertEquals(2, slow.runs.get());
+  }
+
+  @Test
+  public void testChunkingMatchesWholeDocument() throws IOException {
+    File mapping = mwtMapping("des\tde,les");
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      sb.append("Paragraphe ").append(i).append(". ").append(TEXT).append(i % 3 == 0 ? "\n\n\n" : "\n\n");
+    }
+    String text = sb.toString();
+    Annotation expected = new Annotation(text);
+    mwtPipeline(mapping, 1).annotate(expected);
+    AnnotationPipeline chunked = mwtPipeline(mapping, 1);
+    chunked.setChunking(500, 4);
+    Annotation actual = new Annotation(text);
+    chunked.annotate(actual);
+    assertSameAnnotation(expected, actual);
+    assertEquals(1, chunked.metrics().getDocuments());
+
+    // XML is cut after top-level sections
+    sb = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      sb.append("<post id=\"").append(i).append("\">\n<p>Post ").append(i).append(" is here.</p> <p>").append(TEXT).append("</p>\n</post>\n");
+    }
+    String xml = sb.toString();
+    CleanXmlAnnotator cleanXml = new CleanXmlAnnotator();
+    cleanXml.setSectionTagMatcher("post");
+    AnnotationPipeline xmlPipeline = new AnnotationPipeline();
+    xmlPipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    xmlPipeline.addAnnotator(cleanXml);
+    xmlPipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    expected = new Annotation(xml);
+    xmlPipeline.annotate(expected);
+    xmlPipeline.setChunking(300, 4);
+    actual = new Annotation(xml);
+    xmlPipeline.annotate(actual);
+    assertSameAnnotation(expected, actual);
+    List<CoreMap> sections = actual.get(CoreAnnotations.SectionsAnnotation.class);
+    assertEquals(20, sections.size());
+    List<CoreMap> sentences = actual.get(CoreAnnotations.SentencesAnnotation.class);
+    for (int i = 0; i < sentences.size(); ++i) {
+      assertEquals(expected.get(CoreAnnotations.SentencesAnnotation.class).get(i).get(CoreAnnotations.SectionIndexAnnotation.class),
+          sentences.get(i).get(CoreAnnotations.SectionIndexAnnotation.class));
+    }
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    pipeline.annotate(new Annotation("The cat sat."));
+    pipeline.annotate(new Annotation("Café au lait."));
+
+    PipelineMetrics metrics = pipeline.metrics();
+    assertEquals(2, metrics.getDocuments());
+    assertEquals(8, metrics.getTokens());
+    assertEquals(25, metrics.getCharacters());
+    assertEquals(26, metrics.getBytes());
+    assertEquals(2, metrics.annotators().size());
+    assertEquals("TokenizerAnnotator", metrics.annotators().get(0).getName());
+    assertEquals(2, metrics.annotators().get(0).getCount());
+    assertTrue(metrics.annotators().get(0).getMaxMillis() > 0.0);
+
+    metrics.registerMBeans("AnnotationPipelineTest");
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(PipelineMetrics.JMX_DOMAIN + ":type=AnnotationPipeline,pipeline=\"AnnotationPipelineTest\"");
+      assertEquals(2L, server.getAttribute(name, "Documents"));
+      assertEquals(2, server.queryNames(new ObjectName(PipelineMetrics.JMX_DOMAIN + ":type=Annotator,*"), null).size());
+    } finally {
+      metrics.unregisterMBeans();
+    }
+
+    metrics.reset();
+    assertEquals(0, metrics.getDocuments());
+    assertEquals(0, metrics.annotators().get(1).getCount());
+  }
+
+}
@@ -0,0 +1,117 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnnotationResultCache}.
+ */
+public class AnnotationResultCacheTest {
+
+  private static final String TEXT = "The cat sat on the mat. It was happy.";
+
+  private static Annotation annotate(String text) {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    Annotation document = new Annotation(text);
+    pipeline.annotate(document);
+    return document;
+  }
+
+  @Test
+  public void testKey() {
+    AnnotationResultCache cache = new AnnotationResultCache("tokenize", 1 << 20, null, 0, 0);
+    AnnotationResultCache other = new AnnotationResultCache("tokenize,ssplit", 1 << 20, null, 0, 0);
+    assertEquals(cache.key(new Annotation(TEXT)), cache.key(new Annotation(TEXT)));
+    assertNotEquals(cache.key(new Annotation(TEXT)), cache.key(new Annotation(TEXT + " ")));
+    assertNotEquals(cache.key(new Annotation(TEXT)), other.key(new Annotation(TEXT)));
+    Annotation dated = new Annotation(TEXT);
+    dated.set(CoreAnnotations.DocDateAnnotation.class, "2020-01-01");
+    assertNotEquals(cache.key(new Annotation(TEXT)), cache.key(dated));
+  }
+
+  @Test
+  public void testMemoryHitIsCopy() {
+    AnnotationResultCache cache = new AnnotationResultCache("tokenize,ssplit", 1 << 20, null, 0, 0);
+    Annotation input = new Annotation(TEXT);
+    String key = cache.key(input);
+    assertFalse(cache.get(key, input));
+    cache.put(key, annotate(TEXT));
+
+    Annotation first = new Annotation(TEXT);
+    assertTrue(cache.get(key, first));
+    List<CoreLabel> tokens = first.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(11, tokens.size());
+    assertEquals(2, first.get(CoreAnnotations.SentencesAnnotation.class).size());
+    tokens.get(0).setWord("changed");
+
+    Annotation second = new Annotation(TEXT);
+    assertTrue(cache.get(key, second));
+    assertEquals("The", second.get(CoreAnnotations.TokensAnnotation.class).get(0).word());
+    assertEquals(2, cache.memoryHits());
+    assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testMemoryLimit() {
+    Annotation document = annotate(TEXT);
+    AnnotationResultCache cache = new AnnotationResultCache("p", 1 << 20, null, 0, 0);
+    cache.put("a", document);
+    long size = cache.memoryBytes();
+    cache = new AnnotationResultCache("p", size * 2 + size / 2, null, 0, 0);
+    cache.put("a", document);
+    cache.put("b", document);
+    assertTrue(cache.get("a", new Annotation(TEXT)));
+    cache.put("c", document);
+    // b was least recently used
+    assertEquals(2, cache.memoryCount());
+    assertFalse(cache.get("b", new Annotation(TEXT)));
+    assertTrue(cache.get("a", new Annotation(TEXT)));
+    assertTrue(cache.get("c", new Annotation(TEXT)));
+    assertEquals(1, cache.evictions());
+  }
+
+  @Test
+  public void testDiskTierAndTtl() throws IOException, InterruptedException {
+    File dir = Files.createTempDirectory("resultCache").toFile();
+    try {
+      AnnotationResultCache cache = new AnnotationResultCache("p", 1 << 20, dir, 1 << 20, 0);
+      String key = cache.key(new Annotation(TEXT));
+      cache.put(key, annotate(TEXT));
+      assertEquals(1, cache.diskCount());
+
+      // a new cache, as after a restart, finds the document on disk
+      AnnotationResultCache restarted = new AnnotationResultCache("p", 1 << 20, dir, 1 << 20, 0);
+      Annotation fromDisk = new Annotation(TEXT);
+      assertTrue(restarted.get(key, fromDisk));
+      assertEquals(1, restarted.diskHits());
+      assertEquals(11, fromDisk.get(CoreAnnotations.TokensAnnotation.class).size());
+      assertTrue(restarted.get(key, new Annotation(TEXT)));
+      assertEquals(1, restarted.memoryHits());
+
+      AnnotationResultCache expiring = new AnnotationResultCache("p", 1 << 20, dir, 1 << 20, 1);
+      Thread.sleep(10);
+      assertFalse(expiring.get(key, new Annotation(TEXT)));
+      assertEquals(1, expiring.expirations());
+      assertEquals(0, expiring.diskCount());
+    } finally {
+      File[] files = dir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          assertTrue(file.delete());
+        }
+      }
+      assertTrue(dir.delete());
+    }
+  }
+
+}
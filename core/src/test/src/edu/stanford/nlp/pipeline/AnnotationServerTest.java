@@ -0,0 +1,156 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnnotationServer}, on an ephemeral loopback port.
+ */
+public class AnnotationServerTest {
+
+  private static AnnotationServer server;
+
+  @BeforeClass
+  public static void startServer() throws IOException {
+    Properties props = PropertiesUtils.asProperties(
+        "annotators", "tokenize,ssplit", "threads", "2",
+        "server.port", "0", "server.maxBodyBytes", "1k");
+    server = new AnnotationServer(new StanfordCoreNLP(props), props);
+    server.start();
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    server.stop(0);
+  }
+
+  private static URL url(String path) throws IOException {
+    return new URL("http", "127.0.0.1", server.address().getPort(), path);
+  }
+
+  /** Returns the status and the body of the response. */
+  private static String[] request(String method, String path, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream os = connection.getOutputStream()) {
+        os.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    String response = is == null ? "" : IOUtils.slurpInputStream(is, "UTF-8");
+    return new String[] { Integer.toString(status), response };
+  }
+
+  @Test
+  public void testAnnotate() throws IOException {
+    String[] json = request("POST", "/annotate", "The cat sat. It purred.");
+    assertEquals("200", json[0]);
+    assertTrue(json[1], json[1].contains("\"sentences\""));
+    assertTrue(json[1], json[1].contains("\"purred\""));
+
+    String[] conll = request("POST", "/annotate?outputFormat=conll", "The cat sat.");
+    assertEquals("200", conll[0]);
+    assertTrue(conll[1], conll[1].startsWith("1\tThe"));
+
+    assertEquals("200", request("GET", "/ready", null)[0]);
+  }
+
+  @Test
+  public void testConcurrentRequests() throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    List<Future<String[]>> responses = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      // every other text is repeated, so that some batches hold identical documents
+      String text = i % 2 == 0 ? "Document number " + i + "." : "The same document.";
+      responses.add(clients.submit(() -> request("POST", "/annotate?outputFormat=conll", text)));
+    }
+    for (int i = 0; i < responses.size(); i++) {
+      String[] response = responses.get(i).get();
+      assertEquals("200", response[0]);
+      assertTrue(response[1], response[1].contains(i % 2 == 0 ? "\t" + i + "\t" : "\tsame\t"));
+    }
+    clients.shutdown();
+
+    String metrics = request("GET", "/metrics", null)[1];
+    assertTrue(metrics, metrics.contains("# TYPE corenlp_server_requests_total counter"));
+    assertTrue(metrics, metrics.contains("corenlp_annotator_latency_seconds{annotator="));
+    assertTrue(metrics, metrics.contains("# TYPE corenlp_server_in_flight gauge"));
+  }
+
+  @Test
+  public void testBadRequests() throws IOException {
+    assertEquals("405", request("GET", "/annotate", null)[0]);
+    assertEquals("400", request("POST", "/annotate?outputFormat=nonsense", "Text.")[0]);
+    StringBuilder tooLong = new StringBuilder();
+    while (tooLong.length() <= 1024) {
+      tooLong.append("Too long. ");
+    }
+    assertEquals("413", request("POST", "/annotate", tooLong.toString())[0]);
+  }
+
+  /** A huge body is refused without being read: the connection is closed after a little of it. */
+  @Test
+  public void testHugeBody() throws Exception {
+    long claimed = 4L << 30;
+    AtomicLong sent = new AtomicLong();
+    try (Socket socket = new Socket("127.0.0.1", server.address().getPort())) {
+      OutputStream os = socket.getOutputStream();
+      os.write(("POST /annotate HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/plain\r\n" +
+          "Content-Length: " + claimed + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      Thread writer = new Thread(() -> {
+        byte[] text = new byte[64 << 10];
+        Arrays.fill(text, (byte) 'a');
+        try {
+          while (sent.get() < claimed) {
+            os.write(text);
+            sent.addAndGet(text.length);
+          }
+        } catch (IOException e) {
+          // the server closed the connection
+        }
+      });
+      writer.setDaemon(true);
+      writer.start();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      assertEquals("HTTP/1.1 413 Request Entity Too Large", reader.readLine());
+      boolean close = false;
+      for (String header = reader.readLine(); header != null && ! header.isEmpty(); header = reader.readLine()) {
+        close |= header.equalsIgnoreCase("Connection: close");
+      }
+      assertTrue(close);
+      // the writer stops when the server closes the connection, long before the end of the body
+      writer.join(10000);
+      assertFalse(writer.isAlive());
+      assertTrue("sent " + sent.get(), sent.get() < (64 << 20));
+    }
+    // and the server still answers
+    assertEquals("200", request("POST", "/annotate", "Still here.")[0]);
+  }
+
+}
@@ -0,0 +1,153 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.util.Lazy;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnnotatorCache}.
+ */
+public class AnnotatorCacheTest {
+
+  /** An annotator holding on to a given amount of memory. */
+  private static class HeavyAnnotator implements Annotator {
+    @SuppressWarnings("unused")
+    private final byte[] model;
+
+    HeavyAnnotator(int bytes) {
+      model = new byte[bytes];
+    }
+
+    @Override
+    public void annotate(Annotation annotation) { }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.emptySet();
+    }
+  }
+
+  private static StanfordCoreNLP.AnnotatorSignature sig(String name, String signature) {
+    return new StanfordCoreNLP.AnnotatorSignature(name, signature);
+  }
+
+  private static Lazy<Annotator> load(AnnotatorCache cache, StanfordCoreNLP.AnnotatorSignature key, int bytes) {
+    Lazy<Annotator> lazy = cache.computeIfAbsent(key, k -> Lazy.cache(() -> new HeavyAnnotator(bytes)));
+    lazy.get();
+    return lazy;
+  }
+
+  @Test
+  public void testUnboundedByDefault() {
+    AnnotatorCache cache = new AnnotatorCache();
+    for (int i = 0; i < 100; i++) {
+      load(cache, sig("sample", Integer.toString(i)), 16);
+    }
+    assertEquals(100, cache.size());
+    assertEquals(0, cache.evictions());
+    assertEquals(100, cache.misses());
+    load(cache, sig("sample", "5"), 16);
+    assertEquals(1, cache.hits());
+    assertEquals(100, cache.creations());
+  }
+
+  @Test
+  public void testLRUEviction() {
+    AnnotatorCache cache = new AnnotatorCache();
+    cache.setMaxEntries(2);
+    Lazy<Annotator> a = load(cache, sig("a", ""), 16);
+    load(cache, sig("b", ""), 16);
+    a.get();  // a is now more recently used than b
+    load(cache, sig("c", ""), 16);
+    assertEquals(2, cache.size());
+    assertTrue(cache.containsKey(sig("a", "")));
+    assertFalse(cache.containsKey(sig("b", "")));
+    assertTrue(cache.containsKey(sig("c", "")));
+    assertEquals(1, cache.evictions());
+  }
+
+  @Test
+  public void testLFUEvictionAndPinning() {
+    AnnotatorCache cache = new AnnotatorCache();
+    cache.setPolicy(AnnotatorCache.Policy.LFU);
+    cache.pin("tokenize");
+    Lazy<Annotator> a = load(cache, sig("a", ""), 16);
+    load(cache, sig("tokenize", ""), 16);
+    load(cache, sig("b", ""), 16);
+    a.get();
+    a.get();
+    cache.setMaxEntries(2);
+    // b was used least, and tokenize is pinned
+    assertTrue(cache.containsKey(sig("a", "")));
+    assertTrue(cache.containsKey(sig("tokenize", "")));
+    assertFalse(cache.containsKey(sig("b", "")));
+    cache.setMaxEntries(1);
+    assertEquals(Collections.singletonList(sig("tokenize", "")), cache.createdSignatures());
+  }
+
+  @Test
+  public void testByteBudget() {
+    AnnotatorCache cache = new AnnotatorCache();
+    if (AnnotatorCache.allocatedBytes() < 0) {
+      return;  // this JVM can't measure the memory taken
+    }
+    cache.setMaxBytes(3 << 20);
+    Lazy<Annotator> first = load(cache, sig("a", "1"), 2 << 20);
+    assertTrue(cache.bytes() >= 2 << 20);
+    load(cache, sig("a", "2"), 2 << 20);
+    assertEquals(1, cache.createdCount());
+    assertFalse(cache.containsKey(sig("a", "1")));
+    assertNull(first.getIfDefined());
+    // an entry which was never created takes no memory, and isn't removed for it
+    cache.computeIfAbsent(sig("a", "3"), k -> Lazy.cache(() -> new HeavyAnnotator(16)));
+    assertEquals(2, cache.size());
+  }
+
+  /** A pipeline which kept the lazy of a removed entry gets its annotator through the cache. */
+  @Test
+  public void testEvictedLazyIsTrackedAgain() {
+    AnnotatorCache cache = new AnnotatorCache();
+    cache.setMaxEntries(1);
+    Lazy<Annotator> a = load(cache, sig("a", ""), 16);
+    load(cache, sig("b", ""), 16);
+    assertFalse(cache.containsKey(sig("a", "")));
+    assertNull(a.getIfDefined());
+    // made again, added back, and b is removed to make room for it
+    a.get();
+    assertEquals(3, cache.creations());
+    assertEquals(Collections.singletonList(sig("a", "")), cache.createdSignatures());
+    assertEquals(2, cache.evictions());
+    // once the key has been added again, the old lazy shares the annotator of the new entry
+    Lazy<Annotator> b = load(cache, sig("b", ""), 16);
+    Lazy<Annotator> newA = load(cache, sig("a", ""), 16);
+    assertNull(a.getIfDefined());
+    assertSame(newA.get(), a.get());
+    assertNull(b.getIfDefined());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testConfigureReplacesPins() {
+    AnnotatorCache cache = new AnnotatorCache();
+    cache.configure(PropertiesUtils.asProperties("annotatorCache.pin", "tokenize,ssplit"));
+    cache.configure(PropertiesUtils.asProperties("annotatorCache.pin", "pos"));
+    assertTrue(cache.isPinned("pos"));
+    assertFalse(cache.isPinned("tokenize"));
+    assertFalse(cache.isPinned("ssplit"));
+    // pipelines which don't say what to pin keep the pins
+    cache.configure(PropertiesUtils.asProperties("annotators", "tokenize"));
+    assertTrue(cache.isPinned("pos"));
+  }
+
+}
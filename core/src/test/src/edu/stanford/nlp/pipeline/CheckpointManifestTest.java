@@ -0,0 +1,66 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CheckpointManifest}.
+ */
+public class CheckpointManifestTest {
+
+  private static File tempFile(String contents) throws IOException {
+    File file = File.createTempFile("checkpoint", ".txt");
+    file.deleteOnExit();
+    try (PrintWriter pw = IOUtils.getPrintWriter(file)) {
+      pw.print(contents);
+    }
+    return file;
+  }
+
+  @Test
+  public void testRestart() throws IOException {
+    File manifestFile = tempFile("");
+    File input = tempFile("Some text.");
+    File other = tempFile("Other text.");
+    String hash = CheckpointManifest.hash(input);
+    assertEquals(hash, CheckpointManifest.hash("Some text.".getBytes(StandardCharsets.UTF_8)));
+    assertEquals(32, hash.length());
+
+    try (CheckpointManifest manifest = new CheckpointManifest(manifestFile)) {
+      assertFalse(manifest.isDone(input, input.length(), input.lastModified(), false));
+      manifest.markDone(input, input.length(), input.lastModified(), hash);
+      assertTrue(manifest.isDone(input, input.length(), input.lastModified(), false));
+    }
+
+    // a partly written line, as left by a crash
+    try (FileOutputStream fos = new FileOutputStream(manifestFile, true)) {
+      fos.write("11\t123".getBytes(StandardCharsets.UTF_8));
+    }
+
+    try (CheckpointManifest manifest = new CheckpointManifest(manifestFile)) {
+      assertEquals(1, manifest.size());
+      assertTrue(manifest.isDone(input, input.length(), input.lastModified(), false));
+      assertFalse(manifest.isDone(other, other.length(), other.lastModified(), false));
+      // touched but not changed
+      assertFalse(manifest.isDone(input, input.length(), input.lastModified() + 1000, false));
+      assertTrue(manifest.isDone(input, input.length(), input.lastModified() + 1000, true));
+      // changed
+      assertFalse(manifest.isDone(input, input.length() + 1, input.lastModified(), true));
+      manifest.markDone(other, other.length(), other.lastModified(), CheckpointManifest.hash(other));
+    }
+
+    try (CheckpointManifest manifest = new CheckpointManifest(manifestFile)) {
+      assertEquals(2, manifest.size());
+      assertTrue(manifest.isDone(other, other.length(), other.lastModified(), false));
+    }
+  }
+
+}
@@ -4,7 +4,10 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.util.CoreMap;
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * Tests Chunk Annotation Utility functions
@@ -15,8 +18,8 @@ public class ChunkAnnotationUtilsTest extends TestCase {
   public void testMergeChunks() throws Exception {
     // Create 4 sentences
     String text = "I have created sentence1.  And then sentence2.  Now sentence3. Finally sentence4.";
-    Annotator tokenizer = new TokenizerAnnotator("en");
-    Annotator ssplit = new WordsToSentencesAnnotator();
+    Annotator tokenizer = new TokenizerAnnotator(false, "en");
+    Annotator ssplit = new WordsToSentencesAnnotator(false);
     Annotation annotation = new Annotation(text);
     tokenizer.annotate(annotation);
     ssplit.annotate(annotation);
@@ -30,4 +33,16 @@ public class ChunkAnnotationUtilsTest extends TestCase {
     assertEquals("2 sentence expected", 2, sentences.size());
   }
 
+  public void testSafeChunkBoundaries() {
+    String text = "One para.\n\nTwo para.\n \n\nThree para.\nStill three.\n\nFour.";
+    assertEquals(Arrays.asList(0, 11, 24, 50), ChunkAnnotationUtils.safeChunkBoundaries(text, 5, null));
+    assertEquals(Arrays.asList(0, 50), ChunkAnnotationUtils.safeChunkBoundaries(text, 30, null));
+    assertEquals(Collections.singletonList(0), ChunkAnnotationUtils.safeChunkBoundaries(text, 100, null));
+
+    // only after the ends of sections which aren't inside another element, and not at the end of the text
+    String xml = "<post><p>One.</p></post>\n<post>Two.<br/></post> <doc><post>Three.</post></doc><post>Four.</post>";
+    Pattern post = Pattern.compile("post");
+    assertEquals(Arrays.asList(0, 25, 48), ChunkAnnotationUtils.safeChunkBoundaries(xml, 1, post));
+  }
+
 }
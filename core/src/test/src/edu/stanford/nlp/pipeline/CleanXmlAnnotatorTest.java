@@ -270,6 +270,22 @@ public class CleanXmlAnnotatorTest {
     checkResult(annotation, "This text has an attribute");
   }
 
+  /** Tags are classified by the annotator's current patterns, even if they changed after it was used. */
+  @Test
+  public void testTagsChangedAfterUse() {
+    String testString = "<doc><turn>Hello there</turn><turn>Goodbye</turn></doc>";
+    CleanXmlAnnotator cleaner = new CleanXmlAnnotator(".*", "", "", false);
+    Annotation annotation = annotate(testString, ptbInvertible, cleaner, wtsSplitter);
+    checkResult(annotation, "Hello there Goodbye");
+
+    cleaner.setDiscourseTags("turn", null);
+    annotation = annotate(testString, ptbInvertible, cleaner, wtsSplitter);
+    checkResult(annotation, "Hello there", "Goodbye");
+    List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    assertEquals(1, tokens.get(0).get(CoreAnnotations.UtteranceAnnotation.class).intValue());
+    assertEquals(2, tokens.get(2).get(CoreAnnotations.UtteranceAnnotation.class).intValue());
+  }
+
   @Test
   public void testViaCoreNlp() {
     String testManyTags =
@@ -0,0 +1,167 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link LaneScheduler}.
+ */
+public class LaneSchedulerTest {
+
+  @Test
+  public void testEstimateTokens() {
+    assertEquals(4, LaneScheduler.estimateTokens("The cat sat."));
+    assertEquals(6, LaneScheduler.estimateTokens("  It's 3.5\n"));
+    assertEquals(0, LaneScheduler.estimateTokens(""));
+  }
+
+  @Test
+  public void testShortDocumentsDontWaitForLongOnes() throws InterruptedException {
+    LaneScheduler lanes = new LaneScheduler("test", new long[] {10}, new int[] {1, 1}, 4,
+        LaneScheduler.Measure.CHARS, false);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch shortDone = new CountDownLatch(1);
+    lanes.execute(100, () -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    lanes.execute(new Annotation("Short."), shortDone::countDown);
+    // the long lane is busy, but the short document still runs
+    assertTrue(shortDone.await(10, TimeUnit.SECONDS));
+    assertSame(lanes.lanes().get(1), lanes.laneFor(11));
+    assertSame(lanes.lanes().get(0), lanes.laneFor(10));
+    release.countDown();
+    lanes.shutdown();
+    assertEquals(1, lanes.lanes().get(0).completedCount());
+    assertEquals(1, lanes.lanes().get(1).completedCount());
+    assertEquals(1, lanes.lanes().get(1).latency().count());
+  }
+
+  @Test
+  public void testShortestFirst() throws InterruptedException {
+    LaneScheduler lanes = new LaneScheduler("test", new long[0], new int[] {1}, 10,
+        LaneScheduler.Measure.CHARS, true);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    lanes.execute(0, () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    List<Long> order = Collections.synchronizedList(new ArrayList<>());
+    for (long size : new long[] {50, 10, 30, 20}) {
+      lanes.execute(size, () -> order.add(size));
+    }
+    assertEquals(4, lanes.lanes().get(0).queueDepth());
+    release.countDown();
+    lanes.shutdown();
+    assertEquals(Arrays.asList(10L, 20L, 30L, 50L), order);
+  }
+
+  @Test
+  public void testPipelineOnLanes() {
+    LaneScheduler lanes = LaneScheduler.fromProperties("test",
+        PropertiesUtils.asProperties("lanes", "5", "lanes.measure", "tokens", "lanes.threads", "2,1"), 4);
+    assertNotNull(lanes);
+    assertEquals(2, lanes.lanes().get(0).nThreads());
+    assertEquals(1, lanes.lanes().get(1).nThreads());
+    // by default, each lane queues twice its own threads
+    assertEquals(4, lanes.lanes().get(0).queueCapacity());
+    assertEquals(2, lanes.lanes().get(1).queueCapacity());
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    List<Annotation> documents = Arrays.asList(new Annotation("A cat."), new Annotation("The cat sat on the mat."),
+        new Annotation("Dogs bark."));
+    List<Annotation> done = Collections.synchronizedList(new ArrayList<>());
+    pipeline.annotate(documents, lanes, done::add);
+    assertEquals(3, done.size());
+    for (Annotation document : documents) {
+      assertNotNull(document.get(CoreAnnotations.TokensAnnotation.class));
+    }
+    lanes.shutdown();
+    assertEquals(2, lanes.lanes().get(0).completedCount());
+    assertEquals(1, lanes.lanes().get(1).completedCount());
+    assertNull(LaneScheduler.fromProperties("test", new java.util.Properties(), 4));
+  }
+
+  @Test
+  public void testStanfordCoreNLPLanes() {
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "tokenize", "lanes", "5", "lanes.threads", "2,1", "lanes.shortestFirst", "true"));
+    LaneScheduler lanes = pipeline.laneScheduler();
+    assertNotNull(lanes);
+    assertSame(lanes, pipeline.laneScheduler());
+    List<Annotation> done = Collections.synchronizedList(new ArrayList<>());
+    pipeline.annotate(new Annotation("A cat."), done::add);
+    pipeline.annotate(new Annotation("The cat sat on the mat."), done::add);
+    pipeline.awaitAnnotations();
+    assertEquals(2, done.size());
+    assertTrue(lanes.isShutdown());
+    // the lanes are made again with the same settings, rather than from the properties
+    LaneScheduler again = pipeline.laneScheduler();
+    assertNotSame(lanes, again);
+    assertEquals(2, again.lanes().size());
+    assertEquals(2, again.lanes().get(0).nThreads());
+    assertTrue(again.shortestFirst());
+    assertEquals(0, again.lanes().get(0).completedCount());
+    assertNull(new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", "tokenize")).laneScheduler());
+  }
+
+  @Test
+  public void testErrorStopsScheduler() {
+    LaneScheduler lanes = new LaneScheduler("test", new long[0], new int[] {1}, -1,
+        LaneScheduler.Measure.CHARS, false);
+    AssertionError thrown = new AssertionError("task failed");
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch ran = new CountDownLatch(1);
+    lanes.execute(0, () -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      throw thrown;
+    });
+    lanes.execute(0, ran::countDown);
+    release.countDown();
+    // once the error has been thrown, no more documents are taken
+    try {
+      while (true) {
+        lanes.execute(0, () -> { });
+        Thread.sleep(1);
+      }
+    } catch (RejectedExecutionException e) {
+      assertSame(thrown, e.getCause());
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    try {
+      lanes.shutdown();
+      fail("shutdown() should throw the error");
+    } catch (AssertionError e) {
+      assertSame(thrown, e);
+    }
+    // the document queued behind the failed one still ran
+    assertEquals(0, ran.getCount());
+    assertEquals(1, lanes.lanes().get(0).failedCount());
+  }
+
+}
@@ -0,0 +1,89 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.Deadline;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Annotators and files shared by the tests of {@link AnnotationPipeline}.
+ */
+final class PipelineTestUtils {
+
+  private PipelineTestUtils() { } // static methods only
+
+  /**
+   * Marks each document with its own text after a random short pause, failing on the text "fail".
+   * Made to wait for the deadline, it instead takes until the deadline, or forever if there is none.
+   */
+  static class SlowAnnotator implements Annotator {
+    private final boolean untilDeadline;
+    final AtomicInteger runs = new AtomicInteger();
+    final AtomicInteger inside = new AtomicInteger();
+    final AtomicInteger maxInside = new AtomicInteger();
+
+    SlowAnnotator() {
+      this(false);
+    }
+
+    SlowAnnotator(boolean untilDeadline) {
+      this.untilDeadline = untilDeadline;
+    }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      runs.incrementAndGet();
+      maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+      try {
+        if (untilDeadline) {
+          while (true) {
+            Deadline.checkCurrent();
+            Thread.sleep(1);
+          }
+        }
+        Thread.sleep(new Random().nextInt(3));
+        String text = annotation.get(CoreAnnotations.TextAnnotation.class);
+        if (text.equals("fail")) {
+          throw new IllegalStateException("failed");
+        }
+        annotation.set(CoreAnnotations.DocIDAnnotation.class, text);
+      } catch (InterruptedException e) {
+        throw new RuntimeInterruptedException(e);
+      } finally {
+        inside.decrementAndGet();
+      }
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.emptySet();
+    }
+  }
+
+  /** A temporary mwt.mappingFile, deleted on exit, with one tab separated mapping on each line. */
+  static File mwtMapping(String... lines) throws IOException {
+    File mapping = File.createTempFile("mwt", ".tsv");
+    mapping.deleteOnExit();
+    try (PrintWriter pw = IOUtils.getPrintWriter(mapping)) {
+      for (String line : lines) {
+        pw.println(line);
+      }
+    }
+    return mapping;
+  }
+
+}
@@ -0,0 +1,101 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import edu.stanford.nlp.util.Pair;
+
+import static org.junit.Assert.assertEquals;
+
+public class QuoteAnnotatorTest {
+
+  private static QuoteAnnotator annotator(boolean singleQuotes, boolean extractUnclosed) {
+    Properties props = new Properties();
+    props.setProperty("quote.singleQuotes", String.valueOf(singleQuotes));
+    props.setProperty("quote.extractUnclosedQuotes", String.valueOf(extractUnclosed));
+    return new QuoteAnnotator("quote", props, false);
+  }
+
+  private static List<Pair<Integer, Integer>> spans(int... offsets) {
+    List<Pair<Integer, Integer>> spans = new ArrayList<>();
+    for (int i = 0; i < offsets.length; i += 2) {
+      spans.add(new Pair<>(offsets[i], offsets[i + 1]));
+    }
+    return spans;
+  }
+
+  private static void checkQuotes(QuoteAnnotator annotator, String text,
+                                  List<Pair<Integer, Integer>> quotes, List<Pair<Integer, Integer>> unclosed) {
+    Pair<List<Pair<Integer, Integer>>, List<Pair<Integer, Integer>>> result = annotator.recursiveQuotes(text, 0, null);
+    assertEquals(quotes, result.first());
+    assertEquals(unclosed, result.second());
+  }
+
+  @Test
+  public void testQuotes() {
+    QuoteAnnotator annotator = annotator(false, false);
+    checkQuotes(annotator, "\"I didn't,\" he said, \"think so.\"", spans(0, 11, 21, 32), Collections.emptyList());
+    checkQuotes(annotator, "“She told me ‘never again’ and left,” he said.", spans(13, 26, 0, 37), Collections.emptyList());
+    checkQuotes(annotator, "It's Tom's 'book' and ``latex quotes'' too.", spans(22, 38), Collections.emptyList());
+  }
+
+  @Test
+  public void testSingleQuotes() {
+    checkQuotes(annotator(true, false), "It's Tom's 'book' and ``latex quotes'' too.",
+        spans(22, 38, 11, 17), Collections.emptyList());
+  }
+
+  @Test
+  public void testUnclosedQuotes() {
+    String text = "He said “stop and then “go” and left.";
+    checkQuotes(annotator(false, false), text, spans(23, 27), Collections.emptyList());
+    checkQuotes(annotator(false, true), text, spans(23, 27), spans(8, 37));
+  }
+
+  /** A double quote before the one last character of the text, which isn't punctuation, doesn't end a quote. */
+  @Test
+  public void testDoubleQuoteBeforeLastChar() {
+    checkQuotes(annotator(false, false), "He said \"hello\"s", Collections.emptyList(), Collections.emptyList());
+  }
+
+  /** Many unclosed quotes, or quotes nested deep, are found without overflowing the stack. */
+  @Test
+  public void testManyUnclosedAndNestedQuotes() {
+    int n = 200000;
+    StringBuilder sb = new StringBuilder();
+    List<Pair<Integer, Integer>> unclosed = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      sb.append('“');
+      if (i < n - 3) {
+        unclosed.add(new Pair<>(i, n));
+      }
+    }
+    checkQuotes(annotator(false, true), sb.toString(), Collections.emptyList(), unclosed);
+
+    int depth = 20000;
+    sb.setLength(0);
+    for (int i = 0; i < depth; i++) {
+      sb.append(i % 2 == 0 ? "“so " : "‘so ");
+    }
+    sb.append("deep");
+    List<Pair<Integer, Integer>> nested = new ArrayList<>();
+    for (int i = depth - 1; i >= 0; i--) {
+      sb.append(i % 2 == 0 ? " ”" : " ’");
+      nested.add(new Pair<>(4 * i, sb.length()));
+    }
+    checkQuotes(annotator(false, true), sb.toString(), nested, Collections.emptyList());
+  }
+
+  @Test
+  public void testWhitespaceOrPunctChars() {
+    for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+      String s = String.valueOf((char) c);
+      assertEquals("char " + Integer.toHexString(c), QuoteAnnotator.isWhitespaceOrPunct(s), QuoteAnnotator.isWhitespaceOrPunct((char) c));
+    }
+  }
+
+}
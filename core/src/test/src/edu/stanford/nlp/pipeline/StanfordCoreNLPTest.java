@@ -1,7 +1,15 @@
 package edu.stanford.nlp.pipeline;
 
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.util.PropertiesUtils;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
 
 import static org.junit.Assert.*;
@@ -73,4 +81,33 @@ public class StanfordCoreNLPTest {
     assertEquals("__empty__", props.getProperty("coref.md.type", "__empty__"));
   }
 
+
+  /** An error thrown while annotating stops the run without leaving the reader threads blocked. */
+  @Test(timeout = 60000)
+  public void testProcessFilesErrorStopsReaders() throws IOException, InterruptedException {
+    File dir = Files.createTempDirectory("processFiles").toFile();
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      File file = new File(dir, "input" + i + ".txt");
+      IOUtils.writeStringToFile("Document " + i + ".", file.getPath(), "UTF-8");
+      files.add(file);
+    }
+    Properties props = PropertiesUtils.asProperties("outputDirectory", dir.getPath(),
+        "reader.threads", "2", "reader.queueSize", "1");
+    try {
+      StanfordCoreNLP.processFiles(null, files, 1, props,
+          (annotation, callback) -> { throw new AssertionError("Annotator failed"); },
+          (annotation, os) -> { }, StanfordCoreNLP.OutputFormat.TEXT, false, Optional.empty(), Optional.empty());
+      fail("The error should have been thrown");
+    } catch (AssertionError e) {
+      assertEquals("Annotator failed", e.getMessage());
+    }
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("processFiles-")) {
+        thread.join();
+      }
+    }
+    IOUtils.deleteDirRecursively(dir);
+  }
+
 }
@@ -3,6 +3,7 @@ package edu.stanford.nlp.pipeline;
 import java.util.*;
 
 import edu.stanford.nlp.ling.SentenceUtils;
+import edu.stanford.nlp.process.PTBTokenizer;
 import edu.stanford.nlp.util.PropertiesUtils;
 import junit.framework.TestCase;
 
@@ -31,7 +32,7 @@ public class TokenizerAnnotatorTest extends TestCase {
 
   public void testNewVersion() {
     Annotation ann = new Annotation(text);
-    Annotator annotator = new TokenizerAnnotator("en");
+    Annotator annotator = new TokenizerAnnotator(false, "en");
     annotator.annotate(ann);
     Iterator<String> it = tokenWords.iterator();
     for (CoreLabel word : ann.get(CoreAnnotations.TokensAnnotation.class)) {
@@ -46,6 +47,133 @@ public class TokenizerAnnotatorTest extends TestCase {
     assertFalse("Too few tokens in new CoreLabel usage", it2.hasNext());
   }
 
+  public void testTokenizeCharSequence() {
+    TokenizerAnnotator annotator = new TokenizerAnnotator(false, "en");
+    Annotation ann = new Annotation("Intro.  " + text);
+    annotator.annotate(ann);
+    List<CoreLabel> expected = ann.get(CoreAnnotations.TokensAnnotation.class);
+    // a buffer whose position isn't 0, read in place
+    java.nio.CharBuffer buffer = java.nio.CharBuffer.wrap("xx" + "Intro.  " + text);
+    buffer.position(2);
+    for (CharSequence seq : Arrays.asList(new StringBuilder("Intro.  " + text), buffer.slice())) {
+      List<CoreLabel> tokens = annotator.tokenize(seq);
+      assertEquals(expected.size(), tokens.size());
+      for (int i = 0; i < tokens.size(); i++) {
+        assertEquals(expected.get(i).word(), tokens.get(i).word());
+        assertEquals(expected.get(i).beginPosition(), tokens.get(i).beginPosition());
+        assertEquals(expected.get(i).before(), tokens.get(i).before());
+        assertEquals(expected.get(i).after(), tokens.get(i).after());
+      }
+    }
+    assertEquals("  ", expected.get(1).after());
+    // common whitespace is shared between tokens
+    assertSame(expected.get(3).after(), expected.get(4).after());
+  }
+
+  public void testReusedTokenizer() {
+    TokenizerAnnotator annotator = new TokenizerAnnotator(false, "en");
+    List<CoreLabel> first = annotator.tokenize("Untokenizable \u0001 here.  ");
+    List<CoreLabel> second = annotator.tokenize(text);
+    // the first text's tokens are left as they were
+    assertEquals("  ", first.get(first.size() - 1).after());
+    assertEquals("", second.get(0).before());
+    assertEquals(0, second.get(0).beginPosition());
+    assertEquals(tokenWords, second.stream().map(CoreLabel::word).collect(java.util.stream.Collectors.toList()));
+    // and the same text again tokenizes the same
+    List<CoreLabel> third = annotator.tokenize(text);
+    for (int i = 0; i < second.size(); i++) {
+      assertEquals(second.get(i).word(), third.get(i).word());
+      assertEquals(second.get(i).beginPosition(), third.get(i).beginPosition());
+      assertEquals(second.get(i).after(), third.get(i).after());
+    }
+  }
+
+  public void testOverriddenTokenizer() {
+    java.util.concurrent.atomic.AtomicInteger made = new java.util.concurrent.atomic.AtomicInteger();
+    TokenizerAnnotator annotator = new TokenizerAnnotator(false, PropertiesUtils.asProperties(
+        "tokenize.threads", "2", "tokenize.segmentSize", "5"), null) {
+      @Override
+      public edu.stanford.nlp.process.Tokenizer<CoreLabel> getTokenizer(java.io.Reader r) {
+        made.incrementAndGet();
+        return super.getTokenizer(r);
+      }
+    };
+    // neither a reused tokenizer nor tokenizing in segments goes around the subclass
+    annotator.tokenize(text);
+    annotator.tokenize(text);
+    assertEquals(2, made.get());
+  }
+
+  public void testInternedTokens() {
+    Properties props = new Properties();
+    props.setProperty("tokenize.intern", "true");
+    TokenizerAnnotator annotator = new TokenizerAnnotator(false, props, null);
+    List<CoreLabel> first = annotator.tokenize(new String("The cat sat, and the cat ran."));
+    List<CoreLabel> second = annotator.tokenize(new String("The cat sat."));
+    assertSame(first.get(1).word(), first.get(6).word());
+    assertSame(first.get(1).word(), second.get(1).word());
+    assertSame(first.get(0).word(), second.get(0).originalText());
+    assertSame(first.get(2).value(), second.get(2).word());
+    assertEquals("cat", second.get(1).word());
+  }
+
+  public void testSafeSplitPoints() {
+    String text = "One para.\n\nTwo para\n\n-3 is a number\n\nThree <a\n\nhref='x'> para\n\nFour";
+    assertEquals(Arrays.asList(0, 37, 63), PTBTokenizer.safeSplitPoints(text, 1));
+    assertEquals(Collections.singletonList(0), PTBTokenizer.safeSplitPoints(text, 100));
+  }
+
+  public void testParallelTokenization() {
+    StringBuilder sb = new StringBuilder();
+    String[] paragraphs = {
+        "The U.S. Corp.", "It's early", "-20 degrees, 11", "-20 in the game...", "<p\n\nclass=\"x\"> Hello </p>",
+        "Untokenizable \u0001 chars", "  Indented\ttext", "\"Quoted,\" he said.", "Dr.", "Smith left!",
+        "U.S.\n\n\n  ?", "<p>", "i.e.\n\n?", "Mr.", "A. ?", "Mr.",
+    };
+    for (int i = 0; i < 200; i++) {
+      sb.append(paragraphs[i % paragraphs.length]).append(i % 3 == 0 ? "\n\n" : i % 3 == 1 ? "\n \n\n  " : "\r\n\r\n");
+    }
+    String longText = sb.toString();
+    for (String options : Arrays.asList("invertible", "invertible,tokenizeNLs", "invertible=false")) {
+      List<CoreLabel> expected = new TokenizerAnnotator(false, new Properties(), options).tokenize(longText);
+      TokenizerAnnotator parallel = new TokenizerAnnotator(false,
+          PropertiesUtils.asProperties("tokenize.threads", "4", "tokenize.segmentSize", "100"), options);
+      List<CoreLabel> tokens = parallel.tokenize(longText);
+      assertEquals(expected.size(), tokens.size());
+      for (int i = 0; i < tokens.size(); i++) {
+        assertEquals(options + " token " + i, expected.get(i), tokens.get(i));
+      }
+    }
+  }
+
+  /** Random texts with blank lines next to the tokens the lexer looks ahead from tokenize the same in segments. */
+  public void testRandomParallelTokenization() {
+    String[] pieces = {
+        "U.S.", "i.e.", "A.", "Mr.", "Inc.", "etc.", "x.txt", "...", ".", "?", "!", "OK!", "magazine", "-", "--",
+        "-3", "3", "'99", "<p>", "</p>", "<a\nhref='x'>", "<a\n\nhref='x'>", "\"", "'", "The", "He", "cat", "don't", ":-)",
+    };
+    String[] spaces = { " ", " ", "\n", "\n\n", "\n\n\n  ", " \n \n", "\r\n\r\n", "\t" };
+    Random random = new Random(1234);
+    for (String options : Arrays.asList("invertible", "invertible=false", "invertible,splitHyphenated=false")) {
+      TokenizerAnnotator serial = new TokenizerAnnotator(false, new Properties(), options);
+      TokenizerAnnotator parallel = new TokenizerAnnotator(false,
+          PropertiesUtils.asProperties("tokenize.threads", "4", "tokenize.segmentSize", "20"), options);
+      for (int n = 0; n < 1000; n++) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 5 + random.nextInt(60); i > 0; i--) {
+          sb.append(pieces[random.nextInt(pieces.length)]).append(spaces[random.nextInt(spaces.length)]);
+        }
+        String text = sb.toString();
+        List<CoreLabel> expected = serial.tokenize(text);
+        List<CoreLabel> tokens = parallel.tokenize(text);
+        assertEquals(options + ": " + text, expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+          assertEquals(options + ": " + text, expected.get(i), tokens.get(i));
+        }
+      }
+    }
+  }
+
   public void testBadLanguage() {
     Properties props = new Properties();
     props.setProperty("annotators", "tokenize");
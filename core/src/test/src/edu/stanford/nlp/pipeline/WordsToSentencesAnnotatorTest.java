@@ -56,6 +56,33 @@ public class WordsToSentencesAnnotatorTest {
     */
   }
 
+  /** Sentences made as the tokens are read are the same as those annotate() makes. */
+  @Test
+  public void testStreamingSentences() {
+    String text = "Dr. Spock was there.\nHe said, \"Stop.\"\n\nThen he left!  The end";
+    Properties props = PropertiesUtils.asProperties("tokenize.language", "en", "tokenize.options", "tokenizeNLs",
+        "ssplit.newlineIsSentenceBreak", "two");
+    TokenizerAnnotator tokenizer = new TokenizerAnnotator(false, props, null);
+    WordsToSentencesAnnotator ssplit = new WordsToSentencesAnnotator(props);
+
+    Annotation doc = new Annotation(text);
+    doc.set(CoreAnnotations.DocIDAnnotation.class, "doc");
+    tokenizer.annotate(doc);
+    ssplit.annotate(doc);
+    List<CoreMap> gold = doc.get(CoreAnnotations.SentencesAnnotation.class);
+
+    for (CharSequence sentenceText : Arrays.asList(text, null)) {
+      Annotation streamed = new Annotation(text);
+      tokenizer.annotate(streamed);
+      Iterator<CoreMap> sentences = ssplit.sentences(
+          streamed.get(CoreAnnotations.TokensAnnotation.class).iterator(), sentenceText, "doc");
+      List<CoreMap> result = new ArrayList<>();
+      sentences.forEachRemaining(result::add);
+      assertEquals(4, gold.size());
+      assertEquals(gold, result);
+    }
+  }
+
   @Test
   public void testSentenceSplitting() {
     String text = "Date :\n01/02/2012\nContent :\nSome words are here .\n";
@@ -6,8 +6,10 @@ import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.Annotator;
 import edu.stanford.nlp.pipeline.TokenizerAnnotator;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import edu.stanford.nlp.util.Generics;
@@ -20,7 +22,7 @@ public class WordToSentenceProcessorTest extends TestCase {
   private static final Annotator ud = new TokenizerAnnotator(false, "en");
   private static final Annotator udNL = new TokenizerAnnotator(false, "en", "invertible,tokenizeNLs=true");
   private static final Annotator wsNL = new TokenizerAnnotator(false,
-          PropertiesUtils.asProperties("tokenize.whitespace", "true", "invertible", "true", "tokenizeNLs", "true"));
+          PropertiesUtils.asProperties("tokenize.whitespace", "true", "invertible", "true", "tokenizeNLs", "true"), null);
 
   private static final WordToSentenceProcessor<CoreLabel> wts = new WordToSentenceProcessor<>();
   private static final WordToSentenceProcessor<CoreLabel> wtsNull =
@@ -41,6 +43,10 @@ public class WordToSentenceProcessorTest extends TestCase {
     udNL.annotate(annotation);
     List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
     List<List<CoreLabel>> sentences = wts.process(tokens);
+    // splitting the tokens as they are read gives the same sentences
+    List<List<CoreLabel>> streamed = new ArrayList<>();
+    wts.process(tokens.iterator()).forEachRemaining(streamed::add);
+    assertEquals(sentences, streamed);
 
     assertEquals("Output number of sentences didn't match:\n" +
             Arrays.toString(gold) + " vs. \n" + sentences + '\n',
@@ -222,6 +228,34 @@ public class WordToSentenceProcessorTest extends TestCase {
   }
 
 
+  /** A sentence is returned once it is certain, with a close quote after its end, before all the tokens are read. */
+  public void testStreaming() {
+    Annotation annotation = new Annotation("He said, \"Stop.\" Then he left.  She stayed.");
+    ud.annotate(annotation);
+    List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    int[] read = { 0 };
+    Iterator<CoreLabel> reader = new Iterator<CoreLabel>() {
+      @Override
+      public boolean hasNext() {
+        return read[0] < tokens.size();
+      }
+
+      @Override
+      public CoreLabel next() {
+        return tokens.get(read[0]++);
+      }
+    };
+    Iterator<List<CoreLabel>> sentences = wts.process(reader);
+    List<CoreLabel> first = sentences.next();
+    assertEquals(7, first.size());
+    assertEquals("\"", first.get(6).word());
+    assertEquals(8, read[0]);
+    assertEquals(4, sentences.next().size());
+    assertEquals(12, read[0]);
+    assertEquals(3, sentences.next().size());
+    assertFalse(sentences.hasNext());
+  }
+
   /**
    * Ensure that the unicode paragraph separator always
    * starts a new sentence.
@@ -10,7 +10,19 @@ package edu.stanford.nlp.util;
 import junit.framework.TestCase;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.w3c.dom.Element;
 
 public class XMLUtilsTest extends TestCase {
   public void testStripTags() {
@@ -46,4 +58,84 @@ public class XMLUtilsTest extends TestCase {
     assertEquals("P", foo.name);
   }
 
+  private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+      "<!DOCTYPE docs [<!ENTITY co \"Acme Corp.\">]>\n" +
+      "<docs xmlns:n=\"http://example.com/ns\">\n" +
+      "<doc id=\"1\"><title>First</title> &co; said &lt;no&gt; &amp; <![CDATA[left <early>]]>.<!-- a comment --></doc>\n" +
+      "<other><doc id=\"2\" n:kind=\"nested\">This is a <doc id=\"3\">sentence</doc> with embedded tags</doc></other>\n" +
+      "<n:doc>Prefixed, ça va</n:doc>\n" +
+      "<doc id=\"4\"/>\n" +
+      "</docs>\n";
+
+  private static File xmlFile() throws IOException {
+    File file = File.createTempFile("XMLUtilsTest", ".xml");
+    file.deleteOnExit();
+    Files.write(file.toPath(), XML.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  /** The streaming methods find the same text as the ones which parse the whole file. */
+  public void testStreamTextContentFromTags() throws IOException {
+    File file = xmlFile();
+    for (String tag : new String[] { "doc", "n:doc", "title", "*", "missing" }) {
+      List<String> expected = XMLUtils.getTextContentFromTagsFromFile(file, tag);
+      try (Stream<String> texts = XMLUtils.streamTextContentFromTagsFromFile(file, tag)) {
+        assertEquals(tag, expected, texts.collect(Collectors.toList()));
+      }
+      List<String> fromReader = new ArrayList<>();
+      XMLUtils.textContentFromTags(new StringReader(XML), tag).forEachRemaining(fromReader::add);
+      assertEquals(tag, expected, fromReader);
+    }
+    assertEquals(4, XMLUtils.getTextContentFromTagsFromFile(file, "doc").size());
+  }
+
+  public void testStreamTagElements() throws IOException {
+    File file = xmlFile();
+    for (String tag : new String[] { "doc", "n:doc", "*" }) {
+      List<Element> expected = XMLUtils.getTagElementsFromFile(file, tag);
+      List<Element> elements;
+      try (Stream<Element> stream = XMLUtils.streamTagElementsFromFile(file, tag)) {
+        elements = stream.collect(Collectors.toList());
+      }
+      assertEquals(tag, expected.size(), elements.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getTagName(), elements.get(i).getTagName());
+        assertEquals(expected.get(i).getTextContent(), elements.get(i).getTextContent());
+        assertEquals(expected.get(i).getAttribute("id"), elements.get(i).getAttribute("id"));
+        assertEquals(expected.get(i).getAttribute("n:kind"), elements.get(i).getAttribute("n:kind"));
+        assertEquals(expected.get(i).getElementsByTagName("doc").getLength(), elements.get(i).getElementsByTagName("doc").getLength());
+      }
+    }
+  }
+
+  /** Tags are returned as they are read, without reading to the end of the input. */
+  public void testTextContentFromTagsIsLazy() {
+    Reader endless = new Reader() {
+      private final String start = "<docs>";
+      private long count = 0;
+      private String buffer = start;
+      private int position = 0;
+
+      @Override
+      public int read(char[] cbuf, int off, int len) {
+        if (position == buffer.length()) {
+          buffer = "<doc>document " + (count++) + "</doc>\n";
+          position = 0;
+        }
+        int n = Math.min(len, buffer.length() - position);
+        buffer.getChars(position, position + n, cbuf, off);
+        position += n;
+        return n;
+      }
+
+      @Override
+      public void close() {}
+    };
+    Iterator<String> texts = XMLUtils.textContentFromTags(endless, "doc");
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(texts.hasNext());
+      assertEquals("document " + i, texts.next());
+    }
+  }
+
 }
@@ -0,0 +1,138 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test of BoundedExecutor.
+ */
+public class BoundedExecutorTest {
+
+  @Test
+  public void testRunsEverything() {
+    BoundedExecutor executor = new BoundedExecutor("test", BoundedExecutor.Mode.POOL, 4, 4,
+        BoundedExecutor.RejectionPolicy.BLOCK, 1000);
+    AtomicInteger count = new AtomicInteger();
+    for (int i = 0; i < 1000; ++i) {
+      executor.execute(count::incrementAndGet);
+    }
+    executor.shutdown();
+    Assert.assertEquals(1000, count.get());
+    Assert.assertEquals(1000, executor.submittedCount());
+    Assert.assertEquals(1000, executor.completedCount());
+    Assert.assertEquals(0, executor.queueDepth());
+    Assert.assertTrue(executor.maxQueueDepth() <= 4 + 4);
+  }
+
+  @Test
+  public void testAbortWhenFull() throws InterruptedException {
+    BoundedExecutor executor = new BoundedExecutor("test", BoundedExecutor.Mode.POOL, 1, 1,
+        BoundedExecutor.RejectionPolicy.ABORT, 1000);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    executor.execute(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    started.await();
+    executor.execute(() -> { });  // waits in the queue
+    Assert.assertEquals(1, executor.queueDepth());
+    try {
+      executor.execute(() -> { });
+      Assert.fail("Expected the third task to be rejected");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    Assert.assertEquals(1, executor.rejectedCount());
+    release.countDown();
+    executor.shutdown();
+    Assert.assertEquals(2, executor.completedCount());
+  }
+
+  @Test
+  public void testCallerRunsWhenFull() throws InterruptedException {
+    BoundedExecutor executor = new BoundedExecutor("test", BoundedExecutor.Mode.POOL, 1, 0,
+        BoundedExecutor.RejectionPolicy.CALLER_RUNS, 1000);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    executor.execute(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    started.await();
+    Thread caller = Thread.currentThread();
+    AtomicInteger ranHere = new AtomicInteger();
+    executor.execute(() -> {
+      if (Thread.currentThread() == caller) {
+        ranHere.incrementAndGet();
+      }
+    });
+    Assert.assertEquals(1, ranHere.get());
+    Assert.assertEquals(1, executor.callerRunsCount());
+    release.countDown();
+    executor.shutdown();
+  }
+
+  @Test
+  public void testVirtualModeRunsEverything() {
+    // falls back to a pool on JVMs without virtual threads
+    BoundedExecutor executor = new BoundedExecutor("test", BoundedExecutor.Mode.VIRTUAL, 2, 2,
+        BoundedExecutor.RejectionPolicy.BLOCK, 1000);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    for (int i = 0; i < 200; ++i) {
+      executor.execute(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        running.decrementAndGet();
+      });
+    }
+    executor.shutdown();
+    Assert.assertEquals(200, executor.completedCount());
+    Assert.assertTrue(maxRunning.get() <= 2);
+  }
+
+  @Test
+  public void testBadType() {
+    java.util.Properties props = edu.stanford.nlp.util.PropertiesUtils.asProperties("executor.type", "fibers");
+    try {
+      BoundedExecutor.fromProperties("test", props, "executor.", 2);
+      Assert.fail("An unknown type should be refused");
+    } catch (IllegalArgumentException e) {
+      // the message says which property is wrong, and what it may be
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("executor.type"));
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("[pool, virtual]"));
+    }
+    props.setProperty("executor.type", "Virtual");
+    Assert.assertEquals(BoundedExecutor.Mode.VIRTUAL, BoundedExecutor.modeFromProperties(props, "executor.type"));
+  }
+
+  @Test
+  public void testDaemonThreads() throws InterruptedException {
+    for (boolean daemon : new boolean[] { false, true }) {
+      BoundedExecutor executor = new BoundedExecutor("test", BoundedExecutor.Mode.POOL, 1, 1,
+          BoundedExecutor.RejectionPolicy.BLOCK, 1000, daemon);
+      CountDownLatch ran = new CountDownLatch(1);
+      AtomicInteger isDaemon = new AtomicInteger(-1);
+      executor.execute(() -> {
+        isDaemon.set(Thread.currentThread().isDaemon() ? 1 : 0);
+        ran.countDown();
+      });
+      ran.await();
+      Assert.assertEquals(daemon ? 1 : 0, isDaemon.get());
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+package edu.stanford.nlp.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ConcurrentHistogram}.
+ */
+public class ConcurrentHistogramTest {
+
+  @Test
+  public void testSmallValuesAreExact() {
+    ConcurrentHistogram histogram = new ConcurrentHistogram();
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    assertEquals(10, histogram.count());
+    assertEquals(55, histogram.sum());
+    assertEquals(10, histogram.max());
+    assertEquals(5.5, histogram.mean(), 1e-9);
+    assertEquals(5, histogram.percentile(50));
+    assertEquals(10, histogram.percentile(99));
+    assertEquals(1, histogram.percentile(0));
+  }
+
+  @Test
+  public void testRelativeError() {
+    ConcurrentHistogram histogram = new ConcurrentHistogram(5);
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    long[] expected = { 50000000L, 95000000L, 99000000L };
+    double[] percentiles = { 50, 95, 99 };
+    for (int i = 0; i < percentiles.length; i++) {
+      long actual = histogram.percentile(percentiles[i]);
+      assertTrue("p" + percentiles[i] + " = " + actual, actual >= expected[i]);
+      assertTrue("p" + percentiles[i] + " = " + actual, actual <= expected[i] * (1.0 + 1.0 / 32));
+    }
+    assertEquals(100000000L, histogram.percentile(100));
+    assertEquals(100000000L, histogram.max());
+  }
+
+  @Test
+  public void testExtremeValues() {
+    ConcurrentHistogram histogram = new ConcurrentHistogram();
+    histogram.record(0);
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(3, histogram.count());
+    assertEquals(0, histogram.percentile(50));
+    assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+    histogram.reset();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.percentile(99));
+  }
+
+  @Test
+  public void testConcurrentRecording() throws InterruptedException {
+    ConcurrentHistogram histogram = new ConcurrentHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          histogram.record(i % 100);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(80000, histogram.count());
+    assertEquals(99, histogram.max());
+    long p50 = histogram.percentile(50);
+    assertTrue("p50 = " + p50, p50 >= 49 && p50 <= 51);
+  }
+
+}
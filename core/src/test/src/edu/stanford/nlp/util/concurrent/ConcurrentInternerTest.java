@@ -0,0 +1,80 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class ConcurrentInternerTest extends TestCase {
+
+  public void testIntern() {
+    ConcurrentInterner<String> interner = new ConcurrentInterner<>();
+    String a = new String("salamander");
+    String b = new String("salamander");
+    assertSame(a, interner.intern(a));
+    assertSame(a, interner.intern(b));
+    assertSame(a, interner.intern("salamander"));
+    String c = new String("kitten");
+    assertSame(c, interner.intern(c));
+    assertEquals(2, interner.size());
+    interner.clear();
+    assertEquals(0, interner.size());
+    assertSame(b, interner.intern(b));
+  }
+
+  /** Threads interning equal objects all get the same one back. */
+  public void testThreads() throws InterruptedException {
+    ConcurrentInterner<String> interner = new ConcurrentInterner<>();
+    ConcurrentMap<String, String> seen = new ConcurrentHashMap<>();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    List<Throwable> failures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < 2000; i++) {
+            String word = new String("w" + (i % 300));
+            String interned = interner.intern(word);
+            assertEquals(word, interned);
+            String first = seen.putIfAbsent(word, interned);
+            if (first != null) {
+              assertSame(first, interned);
+            }
+          }
+        } catch (Throwable e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(failures.toString(), 0, failures.size());
+    assertEquals(300, interner.size());
+  }
+
+  /** Objects no longer used elsewhere are collected and leave the interner. */
+  public void testCollected() throws InterruptedException {
+    ConcurrentInterner<String> interner = new ConcurrentInterner<>();
+    for (int i = 0; i < 1000; i++) {
+      interner.intern(new String("w" + i));
+    }
+    for (int tries = 0; tries < 50 && interner.size() > 0; tries++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertEquals(0, interner.size());
+    String word = new String("w1");
+    assertSame(word, interner.intern(word));
+  }
+
+}
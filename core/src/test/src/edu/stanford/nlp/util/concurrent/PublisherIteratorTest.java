@@ -0,0 +1,89 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PublisherIterator}.
+ */
+public class PublisherIteratorTest {
+
+  @Test
+  public void testReadsEverything() {
+    List<Integer> read = new ArrayList<>();
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      PublisherIterator<Integer> it = new PublisherIterator<>(publisher, 4);
+      Thread producer = new Thread(() -> {
+        for (int i = 0; i < 100; i++) {
+          publisher.submit(i);
+        }
+        publisher.close();
+      });
+      producer.start();
+      while (it.hasNext()) {
+        read.add(it.next());
+      }
+    }
+    Assert.assertEquals(100, read.size());
+    Assert.assertEquals(Integer.valueOf(99), read.get(99));
+  }
+
+  /** A publisher which sends more than was asked for is an error, rather than a hang. */
+  @Test(timeout = 10000)
+  public void testPublisherIgnoringDemand() {
+    Flow.Publisher<Integer> publisher = subscriber -> {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) { }
+
+        @Override
+        public void cancel() { }
+      });
+      for (int i = 0; i < 10; i++) {
+        subscriber.onNext(i);
+      }
+      subscriber.onComplete();
+    };
+    PublisherIterator<Integer> it = new PublisherIterator<>(publisher, 3);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(it.hasNext());
+      Assert.assertEquals(Integer.valueOf(i), it.next());
+    }
+    try {
+      it.hasNext();
+      Assert.fail("Expected the publisher to fail");
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    Assert.assertFalse(it.hasNext());
+  }
+
+  @Test(timeout = 10000)
+  public void testError() {
+    Flow.Publisher<Integer> publisher = subscriber -> {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) { }
+
+        @Override
+        public void cancel() { }
+      });
+      subscriber.onNext(1);
+      subscriber.onError(new ArithmeticException());
+    };
+    PublisherIterator<Integer> it = new PublisherIterator<>(publisher, 1);
+    Assert.assertEquals(Integer.valueOf(1), it.next());
+    try {
+      it.hasNext();
+      Assert.fail("Expected the publisher to fail");
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getCause() instanceof ArithmeticException);
+    }
+  }
+
+}